@@ -0,0 +1,69 @@
+package com.yebuxiu.benchmark;
+
+import com.yebuxiu.config.DynamicRedisTemplateFactory;
+import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.helper.RedisHelper;
+import com.yebuxiu.stub.RedisStubServer;
+import com.yebuxiu.template.DynamicRedisTemplate;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * 基准测试夹具：进程内的redis替身（redis-stub-server） + 与自动配置相同方式组装的工厂、动态模板和RedisHelper，不启动spring容器
+ */
+class BenchmarkRedis implements Closeable {
+
+    static final int DATABASES = 16;
+
+    final RedisStubServer server;
+
+    final ClientResources clientResources;
+
+    final DynamicRedisTemplateFactory<String, String> factory;
+
+    final DynamicRedisTemplate<String, String> dynamicRedisTemplate;
+
+    final RedisHelper redisHelper;
+
+    BenchmarkRedis() throws IOException {
+        server = new RedisStubServer(DATABASES).start();
+        RedisProperties redisProperties = new RedisProperties();
+        redisProperties.setUrl(server.getRedisUrl());
+        redisProperties.setTimeout(Duration.ofSeconds(2));
+        MyRedisProperties myRedisProperties = new MyRedisProperties();
+        myRedisProperties.setRedisProperties(redisProperties);
+        myRedisProperties.setDatabases(DATABASES);
+
+        clientResources = DefaultClientResources.create();
+        factory = new DynamicRedisTemplateFactory<>(myRedisProperties, Collections.emptyList(), clientResources);
+        dynamicRedisTemplate = new DynamicRedisTemplate<>(factory, DATABASES);
+        dynamicRedisTemplate.setDefaultRedisTemplate(factory.createRedisTemplate(redisProperties.getDatabase()));
+        dynamicRedisTemplate.afterPropertiesSet();
+        redisHelper = new RedisHelper(dynamicRedisTemplate);
+    }
+
+    /**
+     * 预先创建指定数量的db模板并完成连接，避免测量时包含创建和握手
+     */
+    void activate(int activeDatabases) {
+        for (int db = 0; db < activeDatabases; db++) {
+            RedisTemplate<String, String> redisTemplate = dynamicRedisTemplate.getRedisTemplate(db);
+            factory.warmUp(redisTemplate);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        redisHelper.destroy();
+        factory.destroy();
+        clientResources.shutdown();
+        server.close();
+    }
+}
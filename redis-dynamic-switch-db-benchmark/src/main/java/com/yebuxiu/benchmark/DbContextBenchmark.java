@@ -0,0 +1,90 @@
+package com.yebuxiu.benchmark;
+
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisDatabaseThreadLocalHelper 的上下文切换开销：set/get/clear、嵌套作用域、跨线程传递的捕获与恢复，
+ * 以及多线程同时切换（threaded 后缀）时的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DbContextBenchmark {
+
+    private static final int THREADS = 4;
+
+    private int[] snapshot;
+
+    private int db;
+
+    private int nextDb() {
+        int current = db;
+        db = (current + 1) & 15;
+        return current;
+    }
+
+    @Benchmark
+    public int setGetClear() {
+        RedisDatabaseThreadLocalHelper.set(nextDb());
+        int current = RedisDatabaseThreadLocalHelper.current();
+        RedisDatabaseThreadLocalHelper.clear();
+        return current;
+    }
+
+    @Benchmark
+    public int nestedUse() {
+        int sum = 0;
+        try (DbScope outer = RedisDatabaseThreadLocalHelper.use(nextDb())) {
+            sum += RedisDatabaseThreadLocalHelper.current();
+            try (DbScope middle = RedisDatabaseThreadLocalHelper.use(nextDb())) {
+                sum += RedisDatabaseThreadLocalHelper.current();
+                try (DbScope inner = RedisDatabaseThreadLocalHelper.use(nextDb())) {
+                    sum += RedisDatabaseThreadLocalHelper.current();
+                }
+                sum += RedisDatabaseThreadLocalHelper.current();
+            }
+            sum += RedisDatabaseThreadLocalHelper.current();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int captureRestore() {
+        try (DbScope outer = RedisDatabaseThreadLocalHelper.use(nextDb());
+             DbScope inner = RedisDatabaseThreadLocalHelper.use(nextDb())) {
+            snapshot = RedisDatabaseThreadLocalHelper.capture();
+        }
+        int depth = RedisDatabaseThreadLocalHelper.restore(snapshot);
+        int current = RedisDatabaseThreadLocalHelper.current();
+        RedisDatabaseThreadLocalHelper.reset(depth);
+        return current;
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public int setGetClearThreaded() {
+        return setGetClear();
+    }
+
+    @Benchmark
+    @Threads(THREADS)
+    public int nestedUseThreaded() {
+        return nestedUse();
+    }
+}
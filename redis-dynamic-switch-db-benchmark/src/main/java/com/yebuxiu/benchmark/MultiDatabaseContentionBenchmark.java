@@ -0,0 +1,75 @@
+package com.yebuxiu.benchmark;
+
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个线程同时在16个db之间切换读写，替身注入固定延迟以模拟网络往返，观察共享连接在多db并发下的吞吐
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class MultiDatabaseContentionBenchmark {
+
+    private static final String VALUE = "contention-value";
+
+    @Param({"0", "200"})
+    public long latencyMicros;
+
+    private BenchmarkRedis redis;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private final String key = "contention-" + Thread.currentThread().getId();
+
+        private int next = (int) (Thread.currentThread().getId() % BenchmarkRedis.DATABASES);
+
+        int next() {
+            int db = next;
+            next = (db + 1) % BenchmarkRedis.DATABASES;
+            return db;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        redis = new BenchmarkRedis();
+        redis.activate(BenchmarkRedis.DATABASES);
+        redis.server.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        redis.close();
+    }
+
+    @Benchmark
+    public String setThenGet(Cursor cursor) {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(cursor.next())) {
+            redis.redisHelper.strSet(cursor.key, VALUE, 60, TimeUnit.SECONDS);
+            return redis.redisHelper.strGet(cursor.key);
+        }
+    }
+}
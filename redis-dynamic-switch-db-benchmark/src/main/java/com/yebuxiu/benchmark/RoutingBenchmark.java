@@ -0,0 +1,110 @@
+package com.yebuxiu.benchmark;
+
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AbstractRoutingRedisTemplate 的委派开销：
+ * <ul>
+ *     <li>lookup：只做路由（解析当前db并找到对应模板），与直接使用RedisTemplate对比，不访问网络</li>
+ *     <li>get：经过本地redis替身的完整GET，与直接使用同一db的RedisTemplate对比</li>
+ * </ul>
+ * activeDbs 为已创建模板的db数量，rotating 类用例在这些db之间轮流切换
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RoutingBenchmark {
+
+    private static final String KEY = "routing-benchmark";
+
+    @Param({"1", "4", "16"})
+    public int activeDbs;
+
+    private BenchmarkRedis redis;
+
+    private RedisTemplate<String, String> plainRedisTemplate;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int bound) {
+            int db = next;
+            next = db + 1 == bound ? 0 : db + 1;
+            return db;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        redis = new BenchmarkRedis();
+        redis.activate(activeDbs);
+        plainRedisTemplate = redis.dynamicRedisTemplate.getRedisTemplate(0);
+        for (int db = 0; db < activeDbs; db++) {
+            redis.dynamicRedisTemplate.getRedisTemplate(db).opsForValue().set(KEY, "value-" + db);
+        }
+        redis.dynamicRedisTemplate.getDefaultRedisTemplate().opsForValue().set(KEY, "value-default");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        redis.close();
+    }
+
+    @Benchmark
+    public RedisSerializer<?> lookupPlain() {
+        return plainRedisTemplate.getKeySerializer();
+    }
+
+    @Benchmark
+    public RedisSerializer<?> lookupRoutedDefault() {
+        return redis.dynamicRedisTemplate.getKeySerializer();
+    }
+
+    @Benchmark
+    public RedisSerializer<?> lookupRoutedRotating(Cursor cursor) {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(cursor.next(activeDbs))) {
+            return redis.dynamicRedisTemplate.getKeySerializer();
+        }
+    }
+
+    @Benchmark
+    public String getPlain() {
+        return plainRedisTemplate.opsForValue().get(KEY);
+    }
+
+    @Benchmark
+    public String getRoutedDefault() {
+        return redis.dynamicRedisTemplate.opsForValue().get(KEY);
+    }
+
+    @Benchmark
+    public String getRoutedRotating(Cursor cursor) {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(cursor.next(activeDbs))) {
+            return redis.dynamicRedisTemplate.opsForValue().get(KEY);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.yebuxiu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisHelper.strSetWithDb 经过本地redis替身的端到端耗时，与不切换db的 strSet 对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StrSetWithDbBenchmark {
+
+    private static final String VALUE = "benchmark-value";
+
+    @Param({"1", "16"})
+    public int activeDbs;
+
+    private BenchmarkRedis redis;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        private final String key = "str-set-" + Thread.currentThread().getId();
+
+        int next(int bound) {
+            int db = next;
+            next = db + 1 == bound ? 0 : db + 1;
+            return db;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        redis = new BenchmarkRedis();
+        redis.activate(activeDbs);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        redis.close();
+    }
+
+    @Benchmark
+    public void strSet(Cursor cursor) {
+        redis.redisHelper.strSet(cursor.key, VALUE, 60, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void strSetWithDb(Cursor cursor) {
+        redis.redisHelper.strSetWithDb(cursor.next(activeDbs), cursor.key, VALUE, 60, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,71 @@
+package com.yebuxiu.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 首次使用某个db时创建模板（连接工厂、连接池）的耗时，每次调用后销毁，避免连接累积：
+ * <ul>
+ *     <li>create：只创建模板，不建立连接</li>
+ *     <li>createAndConnect：创建后执行一次命令，包含TCP握手和SELECT</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TemplateCreationBenchmark {
+
+    private BenchmarkRedis redis;
+
+    private int db;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        redis = new BenchmarkRedis();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        redis.close();
+    }
+
+    @Benchmark
+    public RedisTemplate<String, String> create() {
+        RedisTemplate<String, String> redisTemplate = redis.factory.createRedisTemplate(nextDb());
+        redis.factory.destroyRedisTemplate(redisTemplate);
+        return redisTemplate;
+    }
+
+    @Benchmark
+    public String createAndConnect() {
+        RedisTemplate<String, String> redisTemplate = redis.factory.createRedisTemplate(nextDb());
+        try {
+            return redisTemplate.opsForValue().get("template-creation");
+        } finally {
+            redis.factory.destroyRedisTemplate(redisTemplate);
+        }
+    }
+
+    private int nextDb() {
+        int current = db;
+        db = (current + 1) % BenchmarkRedis.DATABASES;
+        return current;
+    }
+}
@@ -0,0 +1,60 @@
+package com.yebuxiu.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 压测数据：所有db使用同一组key，value以 "db号|" 开头，读到其他db写入的value即说明路由到了错误的db
+ */
+class LoadDataset {
+
+    private final int[] databases;
+
+    private final String[] keys;
+
+    /**
+     * 下标为db号
+     */
+    private final String[] prefixes;
+
+    /**
+     * 下标为db号
+     */
+    private final String[] values;
+
+    LoadDataset(int[] databases, int keysPerDatabase, int valueSize) {
+        this.databases = databases;
+        this.keys = new String[keysPerDatabase];
+        for (int i = 0; i < keysPerDatabase; i++) {
+            keys[i] = "loadtest:" + i;
+        }
+        int size = Arrays.stream(databases).max().orElse(0) + 1;
+        this.prefixes = new String[size];
+        this.values = new String[size];
+        char[] payload = new char[valueSize];
+        Arrays.fill(payload, 'x');
+        for (int database : databases) {
+            prefixes[database] = database + "|";
+            values[database] = prefixes[database] + new String(payload);
+        }
+    }
+
+    int[] getDatabases() {
+        return databases;
+    }
+
+    int getKeysPerDatabase() {
+        return keys.length;
+    }
+
+    String key(int index) {
+        return keys[index];
+    }
+
+    String prefix(int database) {
+        return prefixes[database];
+    }
+
+    String value(int database) {
+        return values[database];
+    }
+}
@@ -0,0 +1,139 @@
+package com.yebuxiu.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测统计：每个db一个HdrHistogram Recorder记录延迟（纳秒），Recorder支持多线程无锁记录，
+ * 采样时取出区间直方图并累加到该db的总直方图中
+ */
+@Slf4j
+class LoadStatistics {
+
+    /**
+     * 可记录的最大延迟，超出的按最大值记录
+     */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * 最多输出多少条读到其他db数据的详情，之后只计数
+     */
+    private static final int MAX_LOGGED_WRONG_READS = 20;
+
+    /**
+     * 下标为db号，未参与压测的db为null
+     */
+    private final Recorder[] recorders;
+
+    private final Histogram[] intervals;
+
+    private final Histogram[] totals;
+
+    private final LongAdder[] operations = new LongAdder[Operation.values().length];
+
+    private final LongAdder wrongDatabaseReads = new LongAdder();
+
+    private final LongAdder missingReads = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicInteger loggedWrongReads = new AtomicInteger();
+
+    LoadStatistics(int[] databases) {
+        int size = 0;
+        for (int database : databases) {
+            size = Math.max(size, database + 1);
+        }
+        recorders = new Recorder[size];
+        intervals = new Histogram[size];
+        totals = new Histogram[size];
+        for (int database : databases) {
+            recorders[database] = new Recorder(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+            totals[database] = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        }
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new LongAdder();
+        }
+    }
+
+    void record(int database, Operation operation, long nanos) {
+        recorders[database].recordValue(Math.min(nanos, HIGHEST_TRACKABLE_NANOS));
+        operations[operation.ordinal()].increment();
+    }
+
+    /**
+     * 校验读到的value属于预期的db
+     */
+    void checkRead(int database, String key, String value, String expectedPrefix) {
+        if (value == null) {
+            missingReads.increment();
+            return;
+        }
+        if (!value.startsWith(expectedPrefix)) {
+            wrongDatabaseReads.increment();
+            if (loggedWrongReads.incrementAndGet() <= MAX_LOGGED_WRONG_READS) {
+                log.error("Wrong database read on thread {}: expected db {}, key {}, value prefix {}",
+                        Thread.currentThread().getName(), database, key,
+                        value.substring(0, Math.min(value.indexOf('|') + 1, value.length())));
+            }
+        }
+    }
+
+    void error(Operation operation, Exception e) {
+        errors.increment();
+        if (log.isDebugEnabled() || errors.sum() <= MAX_LOGGED_WRONG_READS) {
+            log.warn("{} failed", operation, e);
+        }
+    }
+
+    /**
+     * 取出上一次采样之后的区间直方图
+     *
+     * @param accumulate 是否累加到总直方图，预热期间为false
+     * @return 所有db合并后的区间直方图
+     */
+    Histogram sample(boolean accumulate) {
+        Histogram merged = new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+        for (int database = 0; database < recorders.length; database++) {
+            if (recorders[database] == null) {
+                continue;
+            }
+            intervals[database] = recorders[database].getIntervalHistogram(intervals[database]);
+            merged.add(intervals[database]);
+            if (accumulate) {
+                totals[database].add(intervals[database]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return 指定db测量期间的总直方图
+     */
+    Histogram total(int database) {
+        return totals[database];
+    }
+
+    long operations(Operation operation) {
+        return operations[operation.ordinal()].sum();
+    }
+
+    long getWrongDatabaseReads() {
+        return wrongDatabaseReads.sum();
+    }
+
+    long getMissingReads() {
+        return missingReads.sum();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,77 @@
+package com.yebuxiu.loadtest;
+
+import com.yebuxiu.config.EnhanceDataRedisAutoConfiguration;
+import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.helper.RedisHelper;
+import com.yebuxiu.stub.RedisStubServer;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多db压测入口，连接配置与业务应用相同（spring.redis.* 和 redis.*），压测参数见 {@link LoadTestProperties}：
+ * <pre>
+ * java -jar redis-dynamic-switch-db-loadtest.jar --spring.redis.host=127.0.0.1 --loadtest.threads=32 --loadtest.duration=30m
+ * # 不连接redis，使用进程内的redis替身并注入200微秒延迟
+ * java -jar redis-dynamic-switch-db-loadtest.jar --loadtest.stub.enabled=true --loadtest.stub.latency=200us
+ * </pre>
+ */
+@SpringBootApplication
+@Import(EnhanceDataRedisAutoConfiguration.class)
+@EnableConfigurationProperties(LoadTestProperties.class)
+public class LoadTestApplication {
+
+    @Bean
+    public LoadTestRunner loadTestRunner(RedisHelper redisHelper, LoadTestProperties loadTestProperties,
+                                         MyRedisProperties myRedisProperties) {
+        return new LoadTestRunner(redisHelper, loadTestProperties, myRedisProperties);
+    }
+
+    public static void main(String[] args) throws Exception {
+        SpringApplication application = new SpringApplication(LoadTestApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        RedisStubServer stub = startStubIfEnabled(args, application);
+        int exitCode;
+        try (ConfigurableApplicationContext context = application.run(args)) {
+            exitCode = SpringApplication.exit(context);
+        } finally {
+            if (stub != null) {
+                stub.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * 替身需要在容器创建连接工厂之前启动，因此直接从命令行参数中读取替身配置
+     */
+    private static RedisStubServer startStubIfEnabled(String[] args, SpringApplication application)
+            throws Exception {
+        SimpleCommandLinePropertySource commandLine = new SimpleCommandLinePropertySource(args);
+        if (!Boolean.parseBoolean(commandLine.getProperty("loadtest.stub.enabled"))) {
+            return null;
+        }
+        String latency = commandLine.getProperty("loadtest.stub.latency");
+        String databases = commandLine.getProperty("redis.databases");
+        RedisStubServer stub = new RedisStubServer(databases == null ? 16 : Integer.parseInt(databases));
+        if (latency != null) {
+            stub.setLatency(DurationStyle.detectAndParse(latency).toNanos(), TimeUnit.NANOSECONDS);
+        }
+        stub.start();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.redis.url", stub.getRedisUrl());
+        properties.put("redis.redisProperties.url", stub.getRedisUrl());
+        application.setDefaultProperties(properties);
+        return stub;
+    }
+}
@@ -0,0 +1,270 @@
+package com.yebuxiu.loadtest;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压测配置，前缀 loadtest，可以通过命令行参数覆盖，例如 --loadtest.threads=32
+ */
+@ConfigurationProperties(prefix = "loadtest")
+public class LoadTestProperties {
+
+    /**
+     * 并发线程数
+     */
+    private int threads = 16;
+
+    /**
+     * 预热时长，预热期间的延迟和吞吐不计入结果
+     */
+    private Duration warmup = Duration.ofSeconds(10);
+
+    /**
+     * 测量时长，长时间的稳定性测试可以设置为数小时
+     */
+    private Duration duration = Duration.ofSeconds(60);
+
+    /**
+     * 参与压测的db，为空时使用 [0, redis.databases) 中的所有db
+     */
+    private List<Integer> databases = new ArrayList<>();
+
+    /**
+     * 每个db中的key数量，压测开始前会预先写入
+     */
+    private int keysPerDatabase = 1000;
+
+    /**
+     * value长度（字节），不包括用于检查db的前缀
+     */
+    private int valueSize = 64;
+
+    /**
+     * 每次操作前切换到另一个随机db的概率，0表示线程一直使用同一个db
+     */
+    private double switchRatio = 0.5;
+
+    /**
+     * 操作比例，按权重随机选择
+     */
+    private MixProperties mix = new MixProperties();
+
+    /**
+     * pipeline操作每次读取的key数量
+     */
+    private int pipelineSize = 16;
+
+    /**
+     * 中间结果的输出间隔
+     */
+    private Duration reportInterval = Duration.ofSeconds(10);
+
+    /**
+     * 结果输出文件（json），为空时不输出
+     */
+    private String output = "target/loadtest-result.json";
+
+    /**
+     * 最低吞吐（ops/s），低于该值时以非0状态码退出，0表示不检查
+     */
+    private double minThroughput;
+
+    /**
+     * 内置的redis替身
+     */
+    private StubProperties stub = new StubProperties();
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(Duration warmup) {
+        this.warmup = warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Duration duration) {
+        this.duration = duration;
+    }
+
+    public List<Integer> getDatabases() {
+        return databases;
+    }
+
+    public void setDatabases(List<Integer> databases) {
+        this.databases = databases;
+    }
+
+    public int getKeysPerDatabase() {
+        return keysPerDatabase;
+    }
+
+    public void setKeysPerDatabase(int keysPerDatabase) {
+        this.keysPerDatabase = keysPerDatabase;
+    }
+
+    public int getValueSize() {
+        return valueSize;
+    }
+
+    public void setValueSize(int valueSize) {
+        this.valueSize = valueSize;
+    }
+
+    public double getSwitchRatio() {
+        return switchRatio;
+    }
+
+    public void setSwitchRatio(double switchRatio) {
+        this.switchRatio = switchRatio;
+    }
+
+    public MixProperties getMix() {
+        return mix;
+    }
+
+    public void setMix(MixProperties mix) {
+        this.mix = mix;
+    }
+
+    public int getPipelineSize() {
+        return pipelineSize;
+    }
+
+    public void setPipelineSize(int pipelineSize) {
+        this.pipelineSize = pipelineSize;
+    }
+
+    public Duration getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(Duration reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public double getMinThroughput() {
+        return minThroughput;
+    }
+
+    public void setMinThroughput(double minThroughput) {
+        this.minThroughput = minThroughput;
+    }
+
+    public StubProperties getStub() {
+        return stub;
+    }
+
+    public void setStub(StubProperties stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * 各类操作的权重
+     */
+    public static class MixProperties {
+
+        /**
+         * 在当前db上下文中 strGet
+         */
+        private int read = 60;
+
+        /**
+         * 在当前db上下文中 strSet
+         */
+        private int write = 20;
+
+        /**
+         * strGetWithDb，不依赖线程当前的db
+         */
+        private int readWithDb = 10;
+
+        /**
+         * 通过DynamicRedisTemplate在pipeline中批量GET
+         */
+        private int pipeline = 10;
+
+        public int getRead() {
+            return read;
+        }
+
+        public void setRead(int read) {
+            this.read = read;
+        }
+
+        public int getWrite() {
+            return write;
+        }
+
+        public void setWrite(int write) {
+            this.write = write;
+        }
+
+        public int getReadWithDb() {
+            return readWithDb;
+        }
+
+        public void setReadWithDb(int readWithDb) {
+            this.readWithDb = readWithDb;
+        }
+
+        public int getPipeline() {
+            return pipeline;
+        }
+
+        public void setPipeline(int pipeline) {
+            this.pipeline = pipeline;
+        }
+    }
+
+    /**
+     * 不连接真实redis，而是在进程内启动redis替身
+     */
+    public static class StubProperties {
+
+        private boolean enabled;
+
+        /**
+         * 替身注入的响应延迟
+         */
+        private Duration latency = Duration.ZERO;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getLatency() {
+            return latency;
+        }
+
+        public void setLatency(Duration latency) {
+            this.latency = latency;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.yebuxiu.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压测结果，输出为json便于与升级前的结果对比
+ */
+public class LoadTestResult {
+
+    private int threads;
+
+    private double switchRatio;
+
+    private long durationMillis;
+
+    private long operations;
+
+    private double throughput;
+
+    private long wrongDatabaseReads;
+
+    private long missingReads;
+
+    private long errors;
+
+    private LatencySummary total;
+
+    private List<LatencySummary> databases = new ArrayList<>();
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public double getSwitchRatio() {
+        return switchRatio;
+    }
+
+    public void setSwitchRatio(double switchRatio) {
+        this.switchRatio = switchRatio;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public void setOperations(long operations) {
+        this.operations = operations;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+
+    public long getWrongDatabaseReads() {
+        return wrongDatabaseReads;
+    }
+
+    public void setWrongDatabaseReads(long wrongDatabaseReads) {
+        this.wrongDatabaseReads = wrongDatabaseReads;
+    }
+
+    public long getMissingReads() {
+        return missingReads;
+    }
+
+    public void setMissingReads(long missingReads) {
+        this.missingReads = missingReads;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    public LatencySummary getTotal() {
+        return total;
+    }
+
+    public void setTotal(LatencySummary total) {
+        this.total = total;
+    }
+
+    public List<LatencySummary> getDatabases() {
+        return databases;
+    }
+
+    public void setDatabases(List<LatencySummary> databases) {
+        this.databases = databases;
+    }
+
+    /**
+     * 单个db（或所有db合计）的吞吐和延迟分位数，延迟单位为微秒
+     */
+    public static class LatencySummary {
+
+        /**
+         * db号，合计时为null
+         */
+        private Integer database;
+
+        private long operations;
+
+        private double throughput;
+
+        private double p50;
+
+        private double p99;
+
+        private double p999;
+
+        private double max;
+
+        public Integer getDatabase() {
+            return database;
+        }
+
+        public void setDatabase(Integer database) {
+            this.database = database;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public void setOperations(long operations) {
+            this.operations = operations;
+        }
+
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public void setThroughput(double throughput) {
+            this.throughput = throughput;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public void setP50(double p50) {
+            this.p50 = p50;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public void setP99(double p99) {
+            this.p99 = p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        public void setP999(double p999) {
+            this.p999 = p999;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public void setMax(double max) {
+            this.max = max;
+        }
+    }
+}
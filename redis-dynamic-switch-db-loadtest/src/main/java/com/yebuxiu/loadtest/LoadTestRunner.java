@@ -0,0 +1,226 @@
+package com.yebuxiu.loadtest;
+
+import com.alibaba.fastjson.JSON;
+import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.RedisHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测流程：预先写入数据 -> 多线程预热 -> 测量并定期输出区间结果 -> 输出每个db的吞吐和延迟分位数
+ * 读到其他db的数据、操作失败或吞吐低于 loadtest.min-throughput 时以非0状态码退出
+ */
+@Slf4j
+public class LoadTestRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final RedisHelper redisHelper;
+
+    private final LoadTestProperties properties;
+
+    private final MyRedisProperties myRedisProperties;
+
+    private int exitCode;
+
+    public LoadTestRunner(RedisHelper redisHelper, LoadTestProperties properties, MyRedisProperties myRedisProperties) {
+        this.redisHelper = redisHelper;
+        this.properties = properties;
+        this.myRedisProperties = myRedisProperties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        int[] databases = resolveDatabases();
+        LoadDataset dataset = new LoadDataset(databases, properties.getKeysPerDatabase(), properties.getValueSize());
+        preload(dataset);
+
+        LoadStatistics statistics = new LoadStatistics(databases);
+        long warmupNanos = properties.getWarmup().toNanos();
+        long durationNanos = properties.getDuration().toNanos();
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long deadline = measureStart + durationNanos;
+        ExecutorService workers = Executors.newFixedThreadPool(properties.getThreads(),
+                new CustomizableThreadFactory("loadtest-"));
+        for (int i = 0; i < properties.getThreads(); i++) {
+            workers.execute(new LoadWorker(redisHelper, properties, dataset, statistics, deadline,
+                    ThreadLocalRandom.current().nextLong()));
+        }
+        workers.shutdown();
+        log.info("Load test started: {} threads, databases {}, warmup {}, duration {}",
+                properties.getThreads(), databases.length, properties.getWarmup(), properties.getDuration());
+
+        sleepUntil(measureStart);
+        statistics.sample(false);
+        long intervalNanos = properties.getReportInterval().toNanos();
+        long lastReport = System.nanoTime();
+        while (lastReport < deadline) {
+            sleepUntil(Math.min(lastReport + intervalNanos, deadline));
+            long now = System.nanoTime();
+            Histogram interval = statistics.sample(true);
+            log.info("[{}s] {} ops/s, p50 {}us, p99 {}us, p999 {}us, wrong db reads {}, errors {}",
+                    TimeUnit.NANOSECONDS.toSeconds(now - measureStart),
+                    Math.round(interval.getTotalCount() * 1e9 / (now - lastReport)),
+                    micros(interval.getValueAtPercentile(50)), micros(interval.getValueAtPercentile(99)),
+                    micros(interval.getValueAtPercentile(99.9)), statistics.getWrongDatabaseReads(),
+                    statistics.getErrors());
+            lastReport = now;
+        }
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        // 截止时间之后完成的操作不计入
+        statistics.sample(false);
+
+        LoadTestResult result = summarize(databases, statistics, lastReport - measureStart);
+        report(result);
+        write(result);
+        exitCode = verdict(result);
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    private int[] resolveDatabases() {
+        if (properties.getDatabases().isEmpty()) {
+            int[] databases = new int[myRedisProperties.getDatabases()];
+            for (int i = 0; i < databases.length; i++) {
+                databases[i] = i;
+            }
+            return databases;
+        }
+        return properties.getDatabases().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 每个db写入同一组key，value带有db号前缀
+     */
+    private void preload(LoadDataset dataset) {
+        for (int database : dataset.getDatabases()) {
+            Map<String, String> values = new HashMap<>(dataset.getKeysPerDatabase() * 2);
+            for (int i = 0; i < dataset.getKeysPerDatabase(); i++) {
+                values.put(dataset.key(i), dataset.value(database));
+            }
+            try (DbScope ignored = RedisHelper.useDatabase(database)) {
+                redisHelper.strSetAll(values, RedisHelper.NOT_EXPIRE, null);
+            }
+        }
+        log.info("Preloaded {} keys into each of {} databases", dataset.getKeysPerDatabase(),
+                dataset.getDatabases().length);
+    }
+
+    private LoadTestResult summarize(int[] databases, LoadStatistics statistics, long measuredNanos) {
+        LoadTestResult result = new LoadTestResult();
+        result.setThreads(properties.getThreads());
+        result.setSwitchRatio(properties.getSwitchRatio());
+        result.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(measuredNanos));
+        result.setWrongDatabaseReads(statistics.getWrongDatabaseReads());
+        result.setMissingReads(statistics.getMissingReads());
+        result.setErrors(statistics.getErrors());
+        Histogram merged = null;
+        for (int database : databases) {
+            Histogram histogram = statistics.total(database);
+            result.getDatabases().add(summarize(database, histogram, measuredNanos));
+            if (merged == null) {
+                merged = histogram.copy();
+            } else {
+                merged.add(histogram);
+            }
+        }
+        LoadTestResult.LatencySummary total = summarize(null, merged, measuredNanos);
+        result.setTotal(total);
+        result.setOperations(total.getOperations());
+        result.setThroughput(total.getThroughput());
+        return result;
+    }
+
+    private static LoadTestResult.LatencySummary summarize(Integer database, Histogram histogram, long measuredNanos) {
+        LoadTestResult.LatencySummary summary = new LoadTestResult.LatencySummary();
+        summary.setDatabase(database);
+        summary.setOperations(histogram.getTotalCount());
+        summary.setThroughput(measuredNanos == 0 ? 0 : histogram.getTotalCount() * 1e9 / measuredNanos);
+        summary.setP50(micros(histogram.getValueAtPercentile(50)));
+        summary.setP99(micros(histogram.getValueAtPercentile(99)));
+        summary.setP999(micros(histogram.getValueAtPercentile(99.9)));
+        summary.setMax(micros(histogram.getMaxValue()));
+        return summary;
+    }
+
+    private static void report(LoadTestResult result) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%n%8s %12s %12s %10s %10s %10s %10s%n",
+                "db", "ops", "ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+        for (LoadTestResult.LatencySummary summary : result.getDatabases()) {
+            appendRow(table, String.valueOf(summary.getDatabase()), summary);
+        }
+        appendRow(table, "total", result.getTotal());
+        log.info("Load test finished in {}ms:{}wrong db reads {}, missing reads {}, errors {}",
+                result.getDurationMillis(), table, result.getWrongDatabaseReads(), result.getMissingReads(),
+                result.getErrors());
+    }
+
+    private static void appendRow(StringBuilder table, String database, LoadTestResult.LatencySummary summary) {
+        table.append(String.format("%8s %12d %12.0f %10.1f %10.1f %10.1f %10.1f%n", database,
+                summary.getOperations(), summary.getThroughput(), summary.getP50(), summary.getP99(),
+                summary.getP999(), summary.getMax()));
+    }
+
+    private void write(LoadTestResult result) throws IOException {
+        if (!StringUtils.hasText(properties.getOutput())) {
+            return;
+        }
+        Path output = Paths.get(properties.getOutput());
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        Files.write(output, JSON.toJSONString(result, true).getBytes(StandardCharsets.UTF_8));
+        log.info("Load test result written to {}", output.toAbsolutePath());
+    }
+
+    private int verdict(LoadTestResult result) {
+        if (result.getWrongDatabaseReads() > 0) {
+            log.error("FAILED: {} reads returned data of another database", result.getWrongDatabaseReads());
+            return 1;
+        }
+        if (result.getErrors() > 0) {
+            log.error("FAILED: {} operations failed", result.getErrors());
+            return 1;
+        }
+        if (properties.getMinThroughput() > 0 && result.getThroughput() < properties.getMinThroughput()) {
+            log.error("FAILED: throughput {} ops/s is below the minimum {} ops/s",
+                    Math.round(result.getThroughput()), properties.getMinThroughput());
+            return 1;
+        }
+        return 0;
+    }
+
+    private static double micros(long nanos) {
+        return Math.round(nanos / NANOS_PER_MICRO * 10) / 10.0;
+    }
+
+    private static void sleepUntil(long deadlineNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.yebuxiu.loadtest;
+
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.RedisHelper;
+import com.yebuxiu.template.DynamicRedisTemplate;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 单个压测线程：按配置的概率切换db，按权重随机选择操作，记录每次操作的延迟并校验读到的数据属于当前db
+ */
+class LoadWorker implements Runnable {
+
+    private final RedisHelper redisHelper;
+
+    private final DynamicRedisTemplate<String, String> redisTemplate;
+
+    private final LoadTestProperties properties;
+
+    private final LoadDataset dataset;
+
+    private final LoadStatistics statistics;
+
+    private final long deadlineNanos;
+
+    private final SplittableRandom random;
+
+    /**
+     * 按权重展开的操作表，随机选择时只需一次取模
+     */
+    private final Operation[] mix;
+
+    LoadWorker(RedisHelper redisHelper, LoadTestProperties properties, LoadDataset dataset,
+               LoadStatistics statistics, long deadlineNanos, long seed) {
+        this.redisHelper = redisHelper;
+        this.redisTemplate = redisHelper.getRedisTemplate();
+        this.properties = properties;
+        this.dataset = dataset;
+        this.statistics = statistics;
+        this.deadlineNanos = deadlineNanos;
+        this.random = new SplittableRandom(seed);
+        this.mix = buildMix(properties.getMix());
+    }
+
+    @Override
+    public void run() {
+        int[] databases = dataset.getDatabases();
+        int database = databases[random.nextInt(databases.length)];
+        while (System.nanoTime() < deadlineNanos) {
+            if (random.nextDouble() < properties.getSwitchRatio()) {
+                database = databases[random.nextInt(databases.length)];
+            }
+            Operation operation = mix[random.nextInt(mix.length)];
+            long start = System.nanoTime();
+            try {
+                execute(operation, database);
+            } catch (Exception e) {
+                statistics.error(operation, e);
+            }
+            statistics.record(database, operation, System.nanoTime() - start);
+        }
+    }
+
+    private void execute(Operation operation, int database) {
+        String key = dataset.key(random.nextInt(dataset.getKeysPerDatabase()));
+        switch (operation) {
+            case READ:
+                try (DbScope ignored = RedisHelper.useDatabase(database)) {
+                    statistics.checkRead(database, key, redisHelper.strGet(key), dataset.prefix(database));
+                }
+                break;
+            case WRITE:
+                try (DbScope ignored = RedisHelper.useDatabase(database)) {
+                    redisHelper.strSet(key, dataset.value(database), RedisHelper.NOT_EXPIRE, null);
+                }
+                break;
+            case READ_WITH_DB:
+                statistics.checkRead(database, key, redisHelper.strGetWithDb(database, key), dataset.prefix(database));
+                break;
+            case PIPELINE:
+                pipeline(database);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    private void pipeline(int database) {
+        String[] keys = new String[properties.getPipelineSize()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = dataset.key(random.nextInt(dataset.getKeysPerDatabase()));
+        }
+        List<Object> values;
+        try (DbScope ignored = RedisHelper.useDatabase(database)) {
+            values = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    ValueOperations<String, String> valueOperations =
+                            ((RedisOperations<String, String>) operations).opsForValue();
+                    for (String key : keys) {
+                        valueOperations.get(key);
+                    }
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < keys.length; i++) {
+            statistics.checkRead(database, keys[i], (String) values.get(i), dataset.prefix(database));
+        }
+    }
+
+    private static Operation[] buildMix(LoadTestProperties.MixProperties mix) {
+        int[] weights = {mix.getRead(), mix.getWrite(), mix.getReadWithDb(), mix.getPipeline()};
+        Operation[] operations = Operation.values();
+        int total = 0;
+        for (int weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Operation weight must not be negative");
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one operation weight must be positive");
+        }
+        Operation[] table = new Operation[total];
+        int index = 0;
+        for (int i = 0; i < weights.length; i++) {
+            for (int j = 0; j < weights[i]; j++) {
+                table[index++] = operations[i];
+            }
+        }
+        return table;
+    }
+}
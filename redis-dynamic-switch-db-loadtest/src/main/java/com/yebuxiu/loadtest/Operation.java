@@ -0,0 +1,27 @@
+package com.yebuxiu.loadtest;
+
+/**
+ * 压测中的操作类型
+ */
+enum Operation {
+
+    /**
+     * 在当前db上下文中 strGet
+     */
+    READ,
+
+    /**
+     * 在当前db上下文中 strSet
+     */
+    WRITE,
+
+    /**
+     * strGetWithDb
+     */
+    READ_WITH_DB,
+
+    /**
+     * 通过DynamicRedisTemplate在pipeline中批量GET
+     */
+    PIPELINE
+}
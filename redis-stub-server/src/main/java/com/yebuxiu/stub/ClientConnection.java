@@ -0,0 +1,743 @@
+package com.yebuxiu.stub;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一个客户端连接：读取线程按顺序解析并执行命令；
+ * 没有注入延迟时响应由读取线程直接写出，注入延迟时响应带上到期时间交给写出线程，到期后按顺序写出，
+ * 因此流水线中的多条命令的延迟是重叠的，与真实网络往返一致
+ */
+class ClientConnection implements Runnable {
+
+    private static final long NO_EXPIRE = 0;
+
+    /**
+     * DUMP序列化值的类型字节（字符串）与结尾的版本号，只能被替身自己的RESTORE识别
+     */
+    private static final byte DUMP_TYPE = 0;
+
+    private static final byte[] DUMP_TRAILER = {9, 0};
+
+    /**
+     * 到期时间相差不超过该值的延迟响应合并写出
+     */
+    private static final long BATCH_SLACK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final RedisStubServer server;
+
+    private final Socket socket;
+
+    private final long id;
+
+    private final RespWriter writer = new RespWriter();
+
+    private final OutputStream out;
+
+    private final RespReader reader;
+
+    /**
+     * 等待写出的延迟响应
+     */
+    private final BlockingQueue<DelayedResponse> delayed = new LinkedBlockingQueue<>();
+
+    /**
+     * 已交给写出线程但还未写出的响应数量，为0时读取线程才能直接写出，保证响应顺序
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Thread writerThread;
+
+    private int database;
+
+    private boolean authenticated;
+
+    private String name;
+
+    /**
+     * MULTI之后排队的命令，为null时不在事务中
+     */
+    private List<List<byte[]>> transaction;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private static final class DelayedResponse {
+
+        final long dueNanos;
+
+        final byte[] bytes;
+
+        final boolean close;
+
+        DelayedResponse(long dueNanos, byte[] bytes, boolean close) {
+            this.dueNanos = dueNanos;
+            this.bytes = bytes;
+            this.close = close;
+        }
+    }
+
+    ClientConnection(RedisStubServer server, Socket socket, long id) throws IOException {
+        this.server = server;
+        this.socket = socket;
+        this.id = id;
+        this.reader = new RespReader(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.authenticated = server.getPassword() == null;
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<byte[]> command;
+            while (!closed.get() && (command = reader.readCommand()) != null) {
+                if (command.isEmpty()) {
+                    continue;
+                }
+                int commandDatabase = database;
+                boolean keepOpen = execute(command);
+                server.recordCommand(commandDatabase);
+                respond(server.getLatencyNanos(commandDatabase), !keepOpen);
+                if (!keepOpen) {
+                    return;
+                }
+            }
+        } catch (RespReader.ProtocolException e) {
+            writer.error("ERR " + e.getMessage());
+            respond(0, true);
+        } catch (IOException e) {
+            // 客户端断开
+        } finally {
+            if (writerThread == null) {
+                close();
+            } else {
+                // 等写出线程把已执行命令的响应写完后再关闭
+                inFlight.incrementAndGet();
+                delayed.add(new DelayedResponse(System.nanoTime(), new byte[0], true));
+            }
+        }
+    }
+
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // ignore
+        }
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+        server.connectionClosed(this);
+    }
+
+    private void respond(long latencyNanos, boolean close) {
+        try {
+            if (latencyNanos <= 0 && inFlight.get() == 0) {
+                synchronized (out) {
+                    writer.drainTo(out);
+                    // 客户端流水线发送的命令还没读完时先不刷出，与redis一次写出多条响应一致
+                    if (close || !reader.hasBufferedInput()) {
+                        out.flush();
+                    }
+                }
+                if (close) {
+                    close();
+                }
+                return;
+            }
+            if (writerThread == null) {
+                writerThread = new Thread(this::writeDelayed, "redis-stub-writer-" + id);
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            inFlight.incrementAndGet();
+            delayed.add(new DelayedResponse(System.nanoTime() + latencyNanos, writer.drain(), close));
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private void writeDelayed() {
+        try {
+            while (true) {
+                DelayedResponse response = delayed.take();
+                long wait;
+                while ((wait = response.dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                synchronized (out) {
+                    // 同一批到期（相差不超过一次park的精度）的响应一起写出后再刷出，避免每条响应都单独唤醒一次
+                    while (true) {
+                        out.write(response.bytes);
+                        inFlight.decrementAndGet();
+                        DelayedResponse next = delayed.peek();
+                        if (response.close || next == null || next.dueNanos - System.nanoTime() > BATCH_SLACK_NANOS) {
+                            break;
+                        }
+                        response = delayed.poll();
+                    }
+                    out.flush();
+                }
+                if (response.close) {
+                    break;
+                }
+            }
+        } catch (InterruptedException | IOException e) {
+            // 连接已关闭
+        }
+        close();
+    }
+
+    /**
+     * @return 执行后是否保持连接
+     */
+    private boolean execute(List<byte[]> args) {
+        String name = string(args.get(0)).toUpperCase(Locale.ROOT);
+        if (!authenticated && !"AUTH".equals(name) && !"HELLO".equals(name) && !"QUIT".equals(name)) {
+            writer.error("NOAUTH Authentication required.");
+            return true;
+        }
+        try {
+            if (transaction != null && !isTransactionControl(name)) {
+                transaction.add(args);
+                writer.simple("QUEUED");
+                return true;
+            }
+            return dispatch(name, args);
+        } catch (CommandException e) {
+            writer.error(e.getMessage());
+            return true;
+        }
+    }
+
+    private static boolean isTransactionControl(String name) {
+        switch (name) {
+            case "MULTI":
+            case "EXEC":
+            case "DISCARD":
+            case "WATCH":
+            case "UNWATCH":
+            case "QUIT":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean dispatch(String name, List<byte[]> args) {
+        long now = System.currentTimeMillis();
+        Keyspace keyspace = server.keyspace(database);
+        switch (name) {
+            case "PING":
+                arity(args, 1, 2);
+                if (args.size() == 2) {
+                    writer.bulk(args.get(1));
+                } else {
+                    writer.simple("PONG");
+                }
+                break;
+            case "ECHO":
+                arity(args, 2, 2);
+                writer.bulk(args.get(1));
+                break;
+            case "QUIT":
+                writer.ok();
+                return false;
+            case "AUTH":
+                arity(args, 2, 3);
+                auth(string(args.get(args.size() - 1)));
+                writer.ok();
+                break;
+            case "HELLO":
+                hello(args);
+                break;
+            case "SELECT":
+                arity(args, 2, 2);
+                int index = integer(args.get(1));
+                if (index < 0 || index >= server.getDatabases()) {
+                    throw new CommandException("ERR DB index is out of range");
+                }
+                database = index;
+                writer.ok();
+                break;
+            case "CLIENT":
+                client(args);
+                break;
+            case "COMMAND":
+                writer.arrayHeader(0);
+                break;
+            case "INFO":
+                writer.bulk("# Server\r\nredis_version:" + RedisStubServer.VERSION + "\r\nredis_mode:standalone\r\n"
+                        + "# Keyspace\r\n" + keyspaceInfo());
+                break;
+            case "GET":
+                arity(args, 2, 2);
+                writer.bulk(keyspace.get(key(args, 1), now));
+                break;
+            case "SET":
+                set(keyspace, args, now);
+                break;
+            case "SETEX":
+            case "PSETEX":
+                arity(args, 4, 4);
+                long ttl = positive(args.get(2), name);
+                keyspace.set(key(args, 1), args.get(3), now + ("SETEX".equals(name) ? ttl * 1000 : ttl));
+                writer.ok();
+                break;
+            case "MGET":
+                arity(args, 2, Integer.MAX_VALUE);
+                writer.arrayHeader(args.size() - 1);
+                for (int i = 1; i < args.size(); i++) {
+                    writer.bulk(keyspace.get(key(args, i), now));
+                }
+                break;
+            case "MSET":
+                if (args.size() < 3 || args.size() % 2 == 0) {
+                    throw wrongArguments(name);
+                }
+                for (int i = 1; i < args.size(); i += 2) {
+                    keyspace.set(key(args, i), args.get(i + 1), NO_EXPIRE);
+                }
+                writer.ok();
+                break;
+            case "DEL":
+            case "UNLINK":
+                arity(args, 2, Integer.MAX_VALUE);
+                long removed = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    if (keyspace.remove(key(args, i), now)) {
+                        removed++;
+                    }
+                }
+                writer.integer(removed);
+                break;
+            case "EXISTS":
+                arity(args, 2, Integer.MAX_VALUE);
+                long exists = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    if (keyspace.getEntry(key(args, i), now) != null) {
+                        exists++;
+                    }
+                }
+                writer.integer(exists);
+                break;
+            case "TYPE":
+                arity(args, 2, 2);
+                writer.simple(keyspace.getEntry(key(args, 1), now) == null ? "none" : "string");
+                break;
+            case "EXPIRE":
+            case "PEXPIRE":
+                arity(args, 3, 3);
+                long timeout = longValue(args.get(2));
+                long expireAt = now + ("EXPIRE".equals(name) ? timeout * 1000 : timeout);
+                writer.integer(keyspace.expire(key(args, 1), expireAt, now) ? 1 : 0);
+                break;
+            case "TTL":
+            case "PTTL":
+                arity(args, 2, 2);
+                long pttl = keyspace.pttl(key(args, 1), now);
+                writer.integer(pttl < 0 || "PTTL".equals(name) ? pttl : (pttl + 500) / 1000);
+                break;
+            case "SCAN":
+                scan(keyspace, args, now);
+                break;
+            case "DUMP":
+                arity(args, 2, 2);
+                writer.bulk(dump(keyspace.get(key(args, 1), now)));
+                break;
+            case "RESTORE":
+                restore(keyspace, args, now);
+                break;
+            case "MOVE":
+                arity(args, 3, 3);
+                writer.integer(move(keyspace, key(args, 1), integer(args.get(2)), now) ? 1 : 0);
+                break;
+            case "DBSIZE":
+                writer.integer(keyspace.size());
+                break;
+            case "FLUSHDB":
+                keyspace.clear();
+                writer.ok();
+                break;
+            case "FLUSHALL":
+                server.flushAll();
+                writer.ok();
+                break;
+            case "MULTI":
+                arity(args, 1, 1);
+                if (transaction != null) {
+                    throw new CommandException("ERR MULTI calls can not be nested");
+                }
+                transaction = new ArrayList<>();
+                writer.ok();
+                break;
+            case "EXEC":
+                arity(args, 1, 1);
+                exec();
+                break;
+            case "DISCARD":
+                arity(args, 1, 1);
+                if (transaction == null) {
+                    throw new CommandException("ERR DISCARD without MULTI");
+                }
+                transaction = null;
+                writer.ok();
+                break;
+            case "WATCH":
+                arity(args, 2, Integer.MAX_VALUE);
+                if (transaction != null) {
+                    throw new CommandException("ERR WATCH inside MULTI is not allowed");
+                }
+                // 不跟踪key的修改，EXEC总是执行
+                writer.ok();
+                break;
+            case "UNWATCH":
+                arity(args, 1, 1);
+                writer.ok();
+                break;
+            default:
+                throw new CommandException("ERR unknown command '" + string(args.get(0)) + "'");
+        }
+        return true;
+    }
+
+    /**
+     * 按顺序执行排队的命令，单条命令的错误作为结果数组中的一个元素返回，不影响其他命令
+     */
+    private void exec() {
+        if (transaction == null) {
+            throw new CommandException("ERR EXEC without MULTI");
+        }
+        List<List<byte[]>> queued = transaction;
+        transaction = null;
+        writer.arrayHeader(queued.size());
+        for (List<byte[]> command : queued) {
+            try {
+                dispatch(string(command.get(0)).toUpperCase(Locale.ROOT), command);
+            } catch (CommandException e) {
+                writer.error(e.getMessage());
+            }
+        }
+    }
+
+    private void auth(String password) {
+        String expected = server.getPassword();
+        if (expected == null) {
+            throw new CommandException("ERR Client sent AUTH, but no password is set");
+        }
+        if (!expected.equals(password)) {
+            throw new CommandException("WRONGPASS invalid username-password pair");
+        }
+        authenticated = true;
+    }
+
+    /**
+     * HELLO [protover [AUTH username password] [SETNAME clientname]]
+     */
+    private void hello(List<byte[]> args) {
+        int protocol = writer.getProtocol();
+        int i = 1;
+        if (args.size() > 1) {
+            protocol = integer(args.get(1));
+            if (protocol != 2 && protocol != 3) {
+                throw new CommandException("NOPROTO unsupported protocol version");
+            }
+            i = 2;
+        }
+        for (; i < args.size(); i++) {
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            if ("AUTH".equals(option) && i + 2 < args.size()) {
+                auth(string(args.get(i + 2)));
+                i += 2;
+            } else if ("SETNAME".equals(option) && i + 1 < args.size()) {
+                name = string(args.get(++i));
+            } else {
+                throw new CommandException("ERR syntax error in HELLO option '" + option + "'");
+            }
+        }
+        if (!authenticated) {
+            throw new CommandException("NOAUTH HELLO must be called with the client already authenticated, "
+                    + "otherwise the HELLO AUTH <user> <pass> option can be used to authenticate the client and "
+                    + "select the RESP protocol version at the same time");
+        }
+        writer.setProtocol(protocol);
+        writer.mapHeader(7);
+        writer.bulk("server");
+        writer.bulk("redis");
+        writer.bulk("version");
+        writer.bulk(RedisStubServer.VERSION);
+        writer.bulk("proto");
+        writer.integer(protocol);
+        writer.bulk("id");
+        writer.integer(id);
+        writer.bulk("mode");
+        writer.bulk("standalone");
+        writer.bulk("role");
+        writer.bulk("master");
+        writer.bulk("modules");
+        writer.arrayHeader(0);
+    }
+
+    private void client(List<byte[]> args) {
+        arity(args, 2, Integer.MAX_VALUE);
+        String subcommand = string(args.get(1)).toUpperCase(Locale.ROOT);
+        switch (subcommand) {
+            case "SETNAME":
+                arity(args, 3, 3);
+                name = string(args.get(2));
+                writer.ok();
+                break;
+            case "GETNAME":
+                writer.bulk(name);
+                break;
+            case "ID":
+                writer.integer(id);
+                break;
+            default:
+                // 其他子命令（例如 CLIENT SETINFO）直接忽略
+                writer.ok();
+        }
+    }
+
+    /**
+     * SET key value [EX seconds|PX milliseconds|KEEPTTL] [NX|XX]
+     */
+    private void set(Keyspace keyspace, List<byte[]> args, long now) {
+        arity(args, 3, Integer.MAX_VALUE);
+        String key = key(args, 1);
+        long expireAt = NO_EXPIRE;
+        boolean keepTtl = false;
+        Boolean onlyIfAbsent = null;
+        for (int i = 3; i < args.size(); i++) {
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "EX":
+                case "PX":
+                    if (i + 1 >= args.size()) {
+                        throw new CommandException("ERR syntax error");
+                    }
+                    long ttl = positive(args.get(++i), "SET");
+                    expireAt = now + ("EX".equals(option) ? ttl * 1000 : ttl);
+                    break;
+                case "KEEPTTL":
+                    keepTtl = true;
+                    break;
+                case "NX":
+                case "XX":
+                    onlyIfAbsent = "NX".equals(option);
+                    break;
+                default:
+                    throw new CommandException("ERR syntax error");
+            }
+        }
+        if (keepTtl) {
+            long pttl = keyspace.pttl(key, now);
+            expireAt = pttl > 0 ? now + pttl : NO_EXPIRE;
+        }
+        if (onlyIfAbsent == null) {
+            keyspace.set(key, args.get(2), expireAt);
+            writer.ok();
+        } else if (keyspace.setIf(key, args.get(2), expireAt, onlyIfAbsent, now)) {
+            writer.ok();
+        } else {
+            writer.nil();
+        }
+    }
+
+    /**
+     * SCAN cursor [MATCH pattern] [COUNT count] [TYPE type]
+     */
+    private void scan(Keyspace keyspace, List<byte[]> args, long now) {
+        arity(args, 2, Integer.MAX_VALUE);
+        long cursor;
+        try {
+            cursor = Long.parseUnsignedLong(string(args.get(1)));
+        } catch (NumberFormatException e) {
+            throw new CommandException("ERR invalid cursor");
+        }
+        String pattern = null;
+        int count = 10;
+        String type = null;
+        for (int i = 2; i < args.size(); i += 2) {
+            if (i + 1 >= args.size()) {
+                throw new CommandException("ERR syntax error");
+            }
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            if ("MATCH".equals(option)) {
+                pattern = key(args, i + 1);
+                if ("*".equals(pattern)) {
+                    pattern = null;
+                }
+            } else if ("COUNT".equals(option)) {
+                count = integer(args.get(i + 1));
+                if (count < 1) {
+                    throw new CommandException("ERR syntax error");
+                }
+            } else if ("TYPE".equals(option)) {
+                type = string(args.get(i + 1));
+            } else {
+                throw new CommandException("ERR syntax error");
+            }
+        }
+        Keyspace.ScanResult result = keyspace.scan(cursor, pattern, count, type, now);
+        if (result == null) {
+            // 游标已失效（超出保留数量），与遍历结束一样处理
+            result = new Keyspace.ScanResult(0, new ArrayList<>());
+        }
+        writer.arrayHeader(2);
+        writer.bulk(Long.toUnsignedString(result.cursor));
+        writer.bulkArray(result.keys);
+    }
+
+    private static byte[] dump(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] payload = new byte[1 + value.length + DUMP_TRAILER.length];
+        payload[0] = DUMP_TYPE;
+        System.arraycopy(value, 0, payload, 1, value.length);
+        System.arraycopy(DUMP_TRAILER, 0, payload, 1 + value.length, DUMP_TRAILER.length);
+        return payload;
+    }
+
+    /**
+     * RESTORE key ttl serialized-value [REPLACE] [ABSTTL]
+     */
+    private void restore(Keyspace keyspace, List<byte[]> args, long now) {
+        arity(args, 4, Integer.MAX_VALUE);
+        String key = key(args, 1);
+        long ttl = longValue(args.get(2));
+        if (ttl < 0) {
+            throw new CommandException("ERR Invalid TTL value, must be >= 0");
+        }
+        boolean replace = false;
+        boolean absolute = false;
+        for (int i = 4; i < args.size(); i++) {
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            if ("REPLACE".equals(option)) {
+                replace = true;
+            } else if ("ABSTTL".equals(option)) {
+                absolute = true;
+            } else {
+                throw new CommandException("ERR syntax error");
+            }
+        }
+        byte[] payload = args.get(3);
+        int length = payload.length - 1 - DUMP_TRAILER.length;
+        if (length < 0 || payload[0] != DUMP_TYPE || payload[payload.length - 2] != DUMP_TRAILER[0]
+                || payload[payload.length - 1] != DUMP_TRAILER[1]) {
+            throw new CommandException("ERR DUMP payload version or checksum are wrong");
+        }
+        byte[] value = new byte[length];
+        System.arraycopy(payload, 1, value, 0, length);
+        long expireAt = ttl == 0 ? NO_EXPIRE : absolute ? ttl : now + ttl;
+        if (replace) {
+            keyspace.set(key, value, expireAt);
+        } else if (!keyspace.setIf(key, value, expireAt, true, now)) {
+            throw new CommandException("BUSYKEY Target key name already exists.");
+        }
+        writer.ok();
+    }
+
+    /**
+     * @return 目标db不存在该key且源key存在时移动并返回true
+     */
+    private boolean move(Keyspace keyspace, String key, int target, long now) {
+        if (target < 0 || target >= server.getDatabases()) {
+            throw new CommandException("ERR DB index is out of range");
+        }
+        if (target == database) {
+            throw new CommandException("ERR source and destination objects are the same");
+        }
+        Keyspace.Entry entry = keyspace.getEntry(key, now);
+        if (entry == null || !server.keyspace(target).setIf(key, entry.value, entry.expireAt, true, now)) {
+            return false;
+        }
+        keyspace.remove(key, now);
+        return true;
+    }
+
+    private String keyspaceInfo() {
+        StringBuilder info = new StringBuilder();
+        for (int db = 0; db < server.getDatabases(); db++) {
+            int size = server.keyspace(db).size();
+            if (size > 0) {
+                info.append("db").append(db).append(":keys=").append(size).append(",expires=0,avg_ttl=0\r\n");
+            }
+        }
+        return info.toString();
+    }
+
+    private static void arity(List<byte[]> args, int min, int max) {
+        if (args.size() < min || args.size() > max) {
+            throw wrongArguments(string(args.get(0)));
+        }
+    }
+
+    private static CommandException wrongArguments(String command) {
+        return new CommandException("ERR wrong number of arguments for '"
+                + command.toLowerCase(Locale.ROOT) + "' command");
+    }
+
+    private static String key(List<byte[]> args, int index) {
+        return string(args.get(index));
+    }
+
+    private static long positive(byte[] value, String command) {
+        long result = longValue(value);
+        if (result <= 0) {
+            throw new CommandException("ERR invalid expire time in '" + command.toLowerCase(Locale.ROOT) + "' command");
+        }
+        return result;
+    }
+
+    private static int integer(byte[] value) {
+        long result = longValue(value);
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            throw new CommandException("ERR value is not an integer or out of range");
+        }
+        return (int) result;
+    }
+
+    private static long longValue(byte[] value) {
+        try {
+            return Long.parseLong(string(value));
+        } catch (NumberFormatException e) {
+            throw new CommandException("ERR value is not an integer or out of range");
+        }
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 命令执行失败，以错误响应返回给客户端，连接保持
+     */
+    private static class CommandException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CommandException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.yebuxiu.stub;
+
+/**
+ * redis KEYS/SCAN MATCH 使用的glob匹配：支持 * ? [abc] [^abc] [a-z] 以及 \ 转义
+ */
+final class GlobMatcher {
+
+    private GlobMatcher() {
+    }
+
+    static boolean matches(String pattern, String text) {
+        return matches(pattern, 0, text, 0);
+    }
+
+    private static boolean matches(String pattern, int p, String text, int t) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            if (c == '\\' && p + 1 < pattern.length()) {
+                // 转义的字符按字面匹配，模式末尾单独的反斜杠按普通字符处理
+                if (t >= text.length() || text.charAt(t) != pattern.charAt(p + 1)) {
+                    return false;
+                }
+                t++;
+                p += 2;
+                continue;
+            }
+            switch (c) {
+                case '*':
+                    while (p + 1 < pattern.length() && pattern.charAt(p + 1) == '*') {
+                        p++;
+                    }
+                    if (p + 1 == pattern.length()) {
+                        return true;
+                    }
+                    for (int i = t; i <= text.length(); i++) {
+                        if (matches(pattern, p + 1, text, i)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case '?':
+                    if (t >= text.length()) {
+                        return false;
+                    }
+                    t++;
+                    p++;
+                    break;
+                case '[':
+                    if (t >= text.length()) {
+                        return false;
+                    }
+                    int end = matchClass(pattern, p + 1, text.charAt(t));
+                    if (end < 0) {
+                        return false;
+                    }
+                    p = end;
+                    t++;
+                    break;
+                default:
+                    if (t >= text.length() || text.charAt(t) != c) {
+                        return false;
+                    }
+                    t++;
+                    p++;
+            }
+        }
+        return t == text.length();
+    }
+
+    /**
+     * @param p 字符类中第一个字符的位置（'['之后）
+     * @return 匹配时返回字符类之后的位置，否则返回-1
+     */
+    private static int matchClass(String pattern, int p, char c) {
+        boolean negate = p < pattern.length() && pattern.charAt(p) == '^';
+        if (negate) {
+            p++;
+        }
+        boolean matched = false;
+        while (p < pattern.length() && pattern.charAt(p) != ']') {
+            char start = pattern.charAt(p);
+            if (start == '\\' && p + 1 < pattern.length()) {
+                p++;
+                start = pattern.charAt(p);
+            }
+            if (p + 2 < pattern.length() && pattern.charAt(p + 1) == '-' && pattern.charAt(p + 2) != ']') {
+                char end = pattern.charAt(p + 2);
+                if (start > end) {
+                    char tmp = start;
+                    start = end;
+                    end = tmp;
+                }
+                matched |= c >= start && c <= end;
+                p += 3;
+            } else {
+                matched |= c == start;
+                p++;
+            }
+        }
+        // 跳过 ']'，没有闭合时与redis一致视为字符类到模式结尾
+        int next = p < pattern.length() ? p + 1 : p;
+        return matched != negate ? next : -1;
+    }
+}
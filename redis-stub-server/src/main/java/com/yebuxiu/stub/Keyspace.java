@@ -0,0 +1,212 @@
+package com.yebuxiu.stub;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个db的内存键空间，只支持字符串类型
+ * key按ISO-8859-1与字节一一对应，保证二进制安全；过期采用访问时惰性删除。
+ * 使用跳表保存key，SCAN按key顺序遍历，在整个遍历期间一直存在的key保证恰好返回一次。
+ * 与redis一样游标可以重复使用（例如从保存的检查点继续），只保留最近的 {@link #MAX_CURSORS} 个游标
+ */
+class Keyspace {
+
+    /**
+     * 最多保留的未完成SCAN游标数量，超出后最早的游标失效
+     */
+    private static final int MAX_CURSORS = 1024;
+
+    static final class Entry {
+
+        final byte[] value;
+
+        /**
+         * 过期的绝对时间（毫秒），0表示不过期
+         */
+        final long expireAt;
+
+        Entry(byte[] value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return expireAt != 0 && expireAt <= now;
+        }
+    }
+
+    static final class ScanResult {
+
+        final long cursor;
+
+        final List<String> keys;
+
+        ScanResult(long cursor, List<String> keys) {
+            this.cursor = cursor;
+            this.keys = keys;
+        }
+    }
+
+    private final ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * 游标 -> 上一批最后访问的key
+     */
+    private final Map<Long, String> cursors = new LinkedHashMap<Long, String>(16, 0.75f, false) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    };
+
+    private final AtomicLong nextCursor = new AtomicLong();
+
+    Entry getEntry(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    byte[] get(String key, long now) {
+        Entry entry = getEntry(key, now);
+        return entry == null ? null : entry.value;
+    }
+
+    void set(String key, byte[] value, long expireAt) {
+        entries.put(key, new Entry(value, expireAt));
+    }
+
+    /**
+     * 带条件写入
+     *
+     * @param onlyIfAbsent true：NX，false：XX
+     * @return 是否写入
+     */
+    boolean setIf(String key, byte[] value, long expireAt, boolean onlyIfAbsent, long now) {
+        Entry entry = new Entry(value, expireAt);
+        while (true) {
+            Entry current = getEntry(key, now);
+            if (onlyIfAbsent) {
+                if (current != null) {
+                    return false;
+                }
+                if (entries.putIfAbsent(key, entry) == null) {
+                    return true;
+                }
+            } else {
+                if (current == null) {
+                    return false;
+                }
+                if (entries.replace(key, current, entry)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    boolean remove(String key, long now) {
+        Entry entry = entries.remove(key);
+        return entry != null && !entry.isExpired(now);
+    }
+
+    /**
+     * @param expireAt 新的过期时间（毫秒），小于等于now时直接删除
+     * @return key是否存在
+     */
+    boolean expire(String key, long expireAt, long now) {
+        while (true) {
+            Entry current = getEntry(key, now);
+            if (current == null) {
+                return false;
+            }
+            if (expireAt <= now) {
+                return entries.remove(key, current);
+            }
+            if (entries.replace(key, current, new Entry(current.value, expireAt))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return 剩余存活毫秒数，key不存在时为-2，不过期时为-1
+     */
+    long pttl(String key, long now) {
+        Entry entry = getEntry(key, now);
+        if (entry == null) {
+            return -2;
+        }
+        return entry.expireAt == 0 ? -1 : entry.expireAt - now;
+    }
+
+    /**
+     * 与redis一致，已过期但还未被访问到的key也会被计入
+     */
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @param cursor  0表示从头开始
+     * @param pattern glob模式，null表示不过滤
+     * @param count   本次最多检查的key数量
+     * @param type    类型过滤，null表示不过滤；只存在string类型
+     * @return 下一个游标（遍历完成时为0）和本批匹配的key；游标无效时返回null
+     */
+    ScanResult scan(long cursor, String pattern, int count, String type, long now) {
+        ConcurrentNavigableMap<String, Entry> range;
+        if (cursor == 0) {
+            range = entries;
+        } else {
+            String last;
+            synchronized (cursors) {
+                last = cursors.get(cursor);
+            }
+            if (last == null) {
+                return null;
+            }
+            range = entries.tailMap(last, false);
+        }
+        boolean typeMatches = type == null || "string".equalsIgnoreCase(type);
+        List<String> keys = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> iterator = range.entrySet().iterator();
+        String last = null;
+        int visited = 0;
+        while (visited < count && iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            last = entry.getKey();
+            visited++;
+            if (entry.getValue().isExpired(now)) {
+                entries.remove(last, entry.getValue());
+                continue;
+            }
+            if (typeMatches && (pattern == null || GlobMatcher.matches(pattern, last))) {
+                keys.add(last);
+            }
+        }
+        if (!iterator.hasNext()) {
+            return new ScanResult(0, keys);
+        }
+        long next = nextCursor.incrementAndGet();
+        synchronized (cursors) {
+            cursors.put(next, last);
+        }
+        return new ScanResult(next, keys);
+    }
+}
@@ -0,0 +1,279 @@
+package com.yebuxiu.stub;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的redis替身，用于在没有真实redis的机器上测量客户端开销、复现多db并发场景：
+ * <ul>
+ *     <li>支持RESP2，通过 HELLO 3 切换到RESP3</li>
+ *     <li>每个db独立的内存键空间，只支持字符串类型</li>
+ *     <li>命令：PING、ECHO、AUTH、HELLO、SELECT、CLIENT、QUIT、GET、SET、SETEX、PSETEX、MGET、MSET、DEL、UNLINK、
+ *     EXISTS、TYPE、EXPIRE、PEXPIRE、TTL、PTTL、SCAN、DUMP、RESTORE、MOVE、DBSIZE、FLUSHDB、FLUSHALL、INFO，
+ *     以及不跟踪key修改的MULTI、EXEC、DISCARD、WATCH、UNWATCH</li>
+ *     <li>可以为所有db或单个db注入固定的响应延迟，流水线中多条命令的延迟是重叠的</li>
+ * </ul>
+ * 每个连接一个读取线程，命令在读取线程上执行，不同连接之间不像真实redis那样串行执行。
+ * 通过 {@link #getRedisUrl()} 得到的地址设置到 spring.redis.url（或分别设置host和port），
+ * 即可让 DynamicRedisTemplateFactory 动态创建的连接都指向该替身
+ */
+public class RedisStubServer implements Closeable {
+
+    /**
+     * INFO和HELLO中返回的版本号
+     */
+    static final String VERSION = "6.0.0";
+
+    private final Keyspace[] keyspaces;
+
+    /**
+     * 下标为db号，每个db处理过的命令数
+     */
+    private final LongAdder[] commandCounts;
+
+    /**
+     * 下标为db号，为负数时使用 {@link #latencyNanos}
+     */
+    private final long[] databaseLatencyNanos;
+
+    private volatile long latencyNanos;
+
+    private volatile String password;
+
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong nextClientId = new AtomicLong();
+
+    private ServerSocket serverSocket;
+
+    private volatile boolean closed;
+
+    /**
+     * 16个db
+     */
+    public RedisStubServer() {
+        this(16);
+    }
+
+    /**
+     * @param databases db数量
+     */
+    public RedisStubServer(int databases) {
+        if (databases <= 0) {
+            throw new IllegalArgumentException("databases must be positive: " + databases);
+        }
+        this.keyspaces = new Keyspace[databases];
+        this.commandCounts = new LongAdder[databases];
+        this.databaseLatencyNanos = new long[databases];
+        for (int db = 0; db < databases; db++) {
+            keyspaces[db] = new Keyspace();
+            commandCounts[db] = new LongAdder();
+        }
+        Arrays.fill(databaseLatencyNanos, -1);
+    }
+
+    /**
+     * 在随机端口上启动
+     */
+    public RedisStubServer start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * @param port 监听端口，0表示随机端口
+     */
+    public synchronized RedisStubServer start(int port) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Redis stub server already started");
+        }
+        serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "redis-stub-acceptor-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return this;
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return redis://[:password@]host:port 形式的地址，可直接设置到 spring.redis.url
+     */
+    public String getRedisUrl() {
+        String auth = password == null ? "" : ":" + password + "@";
+        return "redis://" + auth + getHost() + ":" + getPort();
+    }
+
+    public int getDatabases() {
+        return keyspaces.length;
+    }
+
+    /**
+     * 设置密码后客户端需要先AUTH（或HELLO AUTH），只影响之后建立的连接
+     */
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * 为所有db设置固定的响应延迟，可以在运行期间修改
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * 为单个db设置固定的响应延迟，覆盖 {@link #setLatency(long, TimeUnit)}
+     */
+    public void setLatency(int database, long latency, TimeUnit unit) {
+        databaseLatencyNanos[checkDatabase(database)] = unit.toNanos(latency);
+    }
+
+    /**
+     * 清除单个db的延迟设置，恢复使用所有db的延迟
+     */
+    public void resetLatency(int database) {
+        databaseLatencyNanos[checkDatabase(database)] = -1;
+    }
+
+    /**
+     * @return 指定db处理过的命令数（包括握手命令），用于检查命令是否落到了预期的db
+     */
+    public long getCommandCount(int database) {
+        return commandCounts[checkDatabase(database)].sum();
+    }
+
+    /**
+     * @return 当前连接数
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * 直接读取键空间，不经过网络
+     */
+    public String get(int database, String key) {
+        byte[] value = keyspaces[checkDatabase(database)].get(key, System.currentTimeMillis());
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 直接写入键空间，不经过网络
+     */
+    public void set(int database, String key, String value) {
+        keyspaces[checkDatabase(database)].set(key, value.getBytes(StandardCharsets.UTF_8), 0);
+    }
+
+    public int dbSize(int database) {
+        return keyspaces[checkDatabase(database)].size();
+    }
+
+    public void flushAll() {
+        for (Keyspace keyspace : keyspaces) {
+            keyspace.clear();
+        }
+    }
+
+    /**
+     * 停止监听并断开所有连接
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (ClientConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    Keyspace keyspace(int database) {
+        return keyspaces[database];
+    }
+
+    long getLatencyNanos(int database) {
+        long latency = databaseLatencyNanos[database];
+        return latency >= 0 ? latency : latencyNanos;
+    }
+
+    void recordCommand(int database) {
+        commandCounts[database].increment();
+    }
+
+    void connectionClosed(ClientConnection connection) {
+        connections.remove(connection);
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                // 服务端已关闭
+                return;
+            } catch (IOException e) {
+                continue;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                long id = nextClientId.incrementAndGet();
+                ClientConnection connection = new ClientConnection(this, socket, id);
+                connections.add(connection);
+                Thread thread = new Thread(connection, "redis-stub-client-" + id);
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private int checkDatabase(int database) {
+        if (database < 0 || database >= keyspaces.length) {
+            throw new IllegalArgumentException("Database out of range: " + database);
+        }
+        return database;
+    }
+
+    /**
+     * 在命令行启动：java -cp redis-stub-server.jar com.yebuxiu.stub.RedisStubServer [port] [latencyMicros] [databases]
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 6379;
+        long latencyMicros = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int databases = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        RedisStubServer server = new RedisStubServer(databases);
+        server.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+        server.start(port);
+        System.out.println("Redis stub server listening on " + server.getHost() + ":" + server.getPort()
+                + ", " + databases + " databases, latency " + latencyMicros + "us");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,130 @@
+package com.yebuxiu.stub;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读取客户端请求，支持RESP数组形式的请求和以空格分隔的inline命令（例如telnet/redis-cli直接输入的PING）
+ */
+class RespReader {
+
+    private final InputStream in;
+
+    RespReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return 请求的各个参数，连接关闭时返回null
+     */
+    List<byte[]> readCommand() throws IOException {
+        int type = in.read();
+        while (type == '\r' || type == '\n') {
+            type = in.read();
+        }
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            return readInline(type);
+        }
+        int count = (int) readLong();
+        List<byte[]> command = new ArrayList<>(Math.max(count, 0));
+        for (int i = 0; i < count; i++) {
+            int prefix = in.read();
+            if (prefix != '$') {
+                throw new ProtocolException("Protocol error: expected '$', got '" + (char) prefix + "'");
+            }
+            int length = (int) readLong();
+            byte[] bytes = new byte[length];
+            readFully(bytes);
+            // 跳过 \r\n
+            expect('\r');
+            expect('\n');
+            command.add(bytes);
+        }
+        return command;
+    }
+
+    boolean hasBufferedInput() throws IOException {
+        return in.available() > 0;
+    }
+
+    private List<byte[]> readInline(int first) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b = first;
+        while (b != '\n') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+            b = in.read();
+        }
+        List<byte[]> command = new ArrayList<>();
+        for (String part : line.toString().trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                command.add(part.getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+        return command;
+    }
+
+    private long readLong() throws IOException {
+        long value = 0;
+        boolean negative = false;
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '-') {
+                negative = true;
+            } else if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            } else {
+                throw new ProtocolException("Protocol error: invalid length");
+            }
+        }
+        expect('\n');
+        return negative ? -value : value;
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int b = in.read();
+        if (b != expected) {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            throw new ProtocolException("Protocol error: expected '" + expected + "'");
+        }
+    }
+
+    /**
+     * 请求格式错误，回复错误后关闭连接
+     */
+    static class ProtocolException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.yebuxiu.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 按连接协商的协议版本（RESP2/RESP3）编码响应，先写入缓冲区，由连接决定立即发送还是延迟发送
+ */
+class RespWriter {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Buffer buffer = new Buffer();
+
+    private int protocol = 2;
+
+    void setProtocol(int protocol) {
+        this.protocol = protocol;
+    }
+
+    int getProtocol() {
+        return protocol;
+    }
+
+    void simple(String value) {
+        line('+', value);
+    }
+
+    void ok() {
+        simple("OK");
+    }
+
+    void error(String message) {
+        line('-', message);
+    }
+
+    void integer(long value) {
+        line(':', Long.toString(value));
+    }
+
+    void bulk(byte[] value) {
+        if (value == null) {
+            nil();
+            return;
+        }
+        line('$', Integer.toString(value.length));
+        buffer.write(value, 0, value.length);
+        buffer.write(CRLF, 0, CRLF.length);
+    }
+
+    void bulk(String value) {
+        bulk(value == null ? null : value.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    void nil() {
+        if (protocol == 3) {
+            line('_', "");
+        } else {
+            line('$', "-1");
+        }
+    }
+
+    void arrayHeader(int size) {
+        line('*', Integer.toString(size));
+    }
+
+    /**
+     * RESP3为map，RESP2为 key,value 交替的数组
+     */
+    void mapHeader(int size) {
+        if (protocol == 3) {
+            line('%', Integer.toString(size));
+        } else {
+            arrayHeader(size * 2);
+        }
+    }
+
+    void bulkArray(List<String> values) {
+        arrayHeader(values.size());
+        for (String value : values) {
+            bulk(value);
+        }
+    }
+
+    boolean isEmpty() {
+        return buffer.size() == 0;
+    }
+
+    /**
+     * @return 已编码的响应，并清空缓冲区
+     */
+    byte[] drain() {
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        return bytes;
+    }
+
+    /**
+     * 将已编码的响应写入输出流，并清空缓冲区
+     */
+    void drainTo(OutputStream out) throws IOException {
+        out.write(buffer.array(), 0, buffer.size());
+        buffer.reset();
+    }
+
+    private void line(char type, String value) {
+        buffer.write(type);
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        buffer.write(bytes, 0, bytes.length);
+        buffer.write(CRLF, 0, CRLF.length);
+    }
+
+    /**
+     * 暴露内部数组，避免drainTo时复制
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
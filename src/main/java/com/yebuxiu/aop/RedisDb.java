@@ -0,0 +1,38 @@
+package com.yebuxiu.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明方法执行期间使用的redis db，替代手写的 setCurrentDatabase/clearCurrentDatabase try/finally：
+ * <pre>
+ * &#64;RedisDb(3)
+ * public void saveConfig(String key, String value)
+ *
+ * &#64;RedisDb(expression = "#tenant.db")
+ * public String findUser(Tenant tenant, String id)
+ * </pre>
+ * 标注在类上时对类中所有public方法生效，方法上的注解优先。方法返回后恢复到调用前的db，嵌套调用互不影响。
+ * 返回值为Mono/Flux时db同时写入Reactor Context，订阅时执行的响应式命令同样使用该db
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface RedisDb {
+
+    /**
+     * db号，与 {@link #expression()} 二选一
+     */
+    int value() default -1;
+
+    /**
+     * SpEL表达式，计算结果为db号（数字或数字字符串）。
+     * 通过 #参数名 或 #p0、#a0 引用方法参数，#root 为目标对象，@beanName 引用容器中的bean
+     */
+    String expression() default "";
+}
@@ -0,0 +1,34 @@
+package com.yebuxiu.aop;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+
+/**
+ * 为标注了 {@link RedisDb} 的类或方法创建代理，由springboot自动注册的代理创建器应用，不依赖aspectj
+ */
+public class RedisDbAdvisor extends AbstractPointcutAdvisor {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Pointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(RedisDb.class, true))
+            .union(new AnnotationMatchingPointcut(null, RedisDb.class, true));
+
+    private final RedisDbMethodInterceptor interceptor;
+
+    public RedisDbAdvisor(RedisDbMethodInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+
+    @Override
+    public Advice getAdvice() {
+        return interceptor;
+    }
+}
@@ -0,0 +1,32 @@
+package com.yebuxiu.aop;
+
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+
+/**
+ * 在解析配置类时注册代理创建器，保证 {@link RedisDbAdvisor} 在业务bean创建前生效。
+ * springboot 2.2 在没有aspectj时由 AopAutoConfiguration.ClassProxyingConfiguration 在其构造方法中注册代理创建器，
+ * 此时BeanPostProcessor已经注册完成，代理创建器不会生效。
+ * 与springboot一致，spring.aop.proxy-target-class 不为false时使用cglib代理
+ */
+public class RedisDbAutoProxyRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware {
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        AopConfigUtils.registerAutoProxyCreatorIfNecessary(registry);
+        if (environment.getProperty("spring.aop.proxy-target-class", Boolean.class, Boolean.TRUE)) {
+            AopConfigUtils.forceAutoProxyCreatorToUseClassProxying(registry);
+        }
+    }
+}
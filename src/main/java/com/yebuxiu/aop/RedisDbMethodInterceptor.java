@@ -0,0 +1,266 @@
+package com.yebuxiu.aop;
+
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.ReactiveRedisDatabaseContext;
+import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.expression.BeanFactoryResolver;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link RedisDb} 的拦截器，在方法执行期间切换到注解指定的db
+ * 每个方法第一次调用时解析注解和SpEL表达式并按目标类和方法缓存，之后的调用只有两次无分配的缓存查找：
+ * 固定db直接压栈，表达式db只需对已编译的表达式求值
+ */
+public class RedisDbMethodInterceptor implements MethodInterceptor {
+
+    private static final boolean REACTOR_PRESENT = ClassUtils.isPresent("reactor.core.publisher.Mono",
+            RedisDbMethodInterceptor.class.getClassLoader());
+
+    /**
+     * 没有目标对象（例如直接代理接口）时使用的缓存key，不会与真实的目标类冲突
+     */
+    private static final Class<?> NO_TARGET = Void.class;
+
+    /**
+     * 先按目标类、再按方法缓存解析结果：同一个方法被多个目标类（例如父类方法、接口方法）调用时各自命中，
+     * 查找时不需要分配组合key
+     */
+    private final Map<Class<?>, Map<Method, RedisDbAttribute>> attributeCache = new ConcurrentHashMap<>(64);
+
+    /**
+     * 表达式在解释执行若干次后编译为字节码，失败时回退到解释执行
+     */
+    private final SpelExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, RedisDbMethodInterceptor.class.getClassLoader()));
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final BeanResolver beanResolver;
+
+    /**
+     * @param beanFactory 用于解析表达式中的 @beanName，可以为null
+     */
+    public RedisDbMethodInterceptor(BeanFactory beanFactory) {
+        this.beanResolver = beanFactory == null ? null : new BeanFactoryResolver(beanFactory);
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object target = invocation.getThis();
+        RedisDbAttribute attribute = getAttribute(invocation.getMethod(), target);
+        if (!attribute.present) {
+            return invocation.proceed();
+        }
+        int database = attribute.resolve(invocation.getArguments(), target);
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(database)) {
+            Object result = invocation.proceed();
+            return attribute.returnKind == ReturnKind.OTHER ? result
+                    : ReactorSupport.withDatabase(result, attribute.returnKind, database);
+        }
+    }
+
+    /**
+     * @return 方法对应的注解解析结果，没有注解时 present 为false
+     */
+    RedisDbAttribute getAttribute(Method method, Object target) {
+        Class<?> targetClass = target == null ? NO_TARGET : target.getClass();
+        Map<Method, RedisDbAttribute> methods = attributeCache.get(targetClass);
+        if (methods == null) {
+            methods = attributeCache.computeIfAbsent(targetClass, key -> new ConcurrentHashMap<>(16));
+        }
+        RedisDbAttribute attribute = methods.get(method);
+        if (attribute == null) {
+            attribute = computeAttribute(method, target == null ? null : AopUtils.getTargetClass(target));
+            RedisDbAttribute existing = methods.putIfAbsent(method, attribute);
+            if (existing != null) {
+                attribute = existing;
+            }
+        }
+        return attribute;
+    }
+
+    /**
+     * @param userClass 去掉代理后的目标类，用于查找注解
+     */
+    private RedisDbAttribute computeAttribute(Method method, Class<?> userClass) {
+        // 接口方法需要找到实现类上的方法，实现类方法上的注解优先
+        Method specificMethod = AopUtils.getMostSpecificMethod(method, userClass);
+        RedisDb redisDb = AnnotatedElementUtils.findMergedAnnotation(specificMethod, RedisDb.class);
+        if (redisDb == null && specificMethod != method) {
+            redisDb = AnnotatedElementUtils.findMergedAnnotation(method, RedisDb.class);
+        }
+        if (redisDb == null) {
+            // 类上的注解只对业务方法生效
+            if (!Modifier.isPublic(method.getModifiers()) || method.getDeclaringClass() == Object.class) {
+                return RedisDbAttribute.NONE;
+            }
+            redisDb = AnnotatedElementUtils.findMergedAnnotation(specificMethod.getDeclaringClass(), RedisDb.class);
+            if (redisDb == null && userClass != null) {
+                redisDb = AnnotatedElementUtils.findMergedAnnotation(userClass, RedisDb.class);
+            }
+        }
+        if (redisDb == null) {
+            return RedisDbAttribute.NONE;
+        }
+        boolean hasDatabase = redisDb.value() >= 0;
+        boolean hasExpression = StringUtils.hasText(redisDb.expression());
+        if (hasDatabase == hasExpression) {
+            throw new IllegalStateException("@RedisDb on " + specificMethod
+                    + " must specify exactly one of value or expression");
+        }
+        ReturnKind returnKind = ReturnKind.of(method.getReturnType());
+        if (hasDatabase) {
+            return new RedisDbAttribute(true, redisDb.value(), null, null, returnKind, null);
+        }
+        Expression expression = parser.parseExpression(redisDb.expression());
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(specificMethod);
+        if (parameterNames == null) {
+            // 编译时没有保留参数名，只能通过 #p0、#a0 引用参数
+            parameterNames = new String[specificMethod.getParameterCount()];
+        }
+        return new RedisDbAttribute(true, -1, expression, parameterNames, returnKind, beanResolver);
+    }
+
+    /**
+     * 方法返回值类型，响应式返回值需要额外写入Reactor Context
+     */
+    enum ReturnKind {
+        MONO, FLUX, OTHER;
+
+        static ReturnKind of(Class<?> returnType) {
+            if (REACTOR_PRESENT) {
+                if (ReactorSupport.isMono(returnType)) {
+                    return MONO;
+                }
+                if (ReactorSupport.isFlux(returnType)) {
+                    return FLUX;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * 一个方法上 {@link RedisDb} 的解析结果
+     */
+    static final class RedisDbAttribute {
+
+        static final RedisDbAttribute NONE = new RedisDbAttribute(false, -1, null, null, ReturnKind.OTHER, null);
+
+        /**
+         * 方法上是否有 {@link RedisDb}
+         */
+        private final boolean present;
+
+        private final int database;
+
+        private final Expression expression;
+
+        private final String[] parameterNames;
+
+        /**
+         * #p0、#a0 形式的变量名，预先生成避免每次调用拼接字符串
+         */
+        private final String[] indexedNames;
+
+        private final ReturnKind returnKind;
+
+        private final BeanResolver beanResolver;
+
+        RedisDbAttribute(boolean present, int database, Expression expression,
+                         String[] parameterNames, ReturnKind returnKind, BeanResolver beanResolver) {
+            this.present = present;
+            this.database = database;
+            this.expression = expression;
+            this.parameterNames = parameterNames;
+            this.indexedNames = indexedNames(parameterNames == null ? 0 : parameterNames.length);
+            this.returnKind = returnKind;
+            this.beanResolver = beanResolver;
+        }
+
+        int resolve(Object[] arguments, Object target) {
+            if (expression == null) {
+                return database;
+            }
+            StandardEvaluationContext context = new StandardEvaluationContext(target);
+            if (beanResolver != null) {
+                context.setBeanResolver(beanResolver);
+            }
+            for (int i = 0; i < arguments.length; i++) {
+                if (parameterNames[i] != null) {
+                    context.setVariable(parameterNames[i], arguments[i]);
+                }
+                context.setVariable(indexedNames[2 * i], arguments[i]);
+                context.setVariable(indexedNames[2 * i + 1], arguments[i]);
+            }
+            Object value = expression.getValue(context);
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+            if (value instanceof String && StringUtils.hasText((String) value)) {
+                try {
+                    return Integer.parseInt(((String) value).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalStateException("@RedisDb expression '" + expression.getExpressionString()
+                            + "' evaluated to a non-numeric database: " + value, e);
+                }
+            }
+            throw new IllegalStateException("@RedisDb expression '" + expression.getExpressionString()
+                    + "' evaluated to an invalid database: " + value);
+        }
+
+        private static String[] indexedNames(int parameterCount) {
+            String[] names = new String[parameterCount * 2];
+            for (int i = 0; i < parameterCount; i++) {
+                names[2 * i] = "p" + i;
+                names[2 * i + 1] = "a" + i;
+            }
+            return names;
+        }
+    }
+
+    /**
+     * 隔离对reactor的引用，classpath中没有reactor时不会加载
+     */
+    private static class ReactorSupport {
+
+        static boolean isMono(Class<?> returnType) {
+            return Mono.class.isAssignableFrom(returnType);
+        }
+
+        static boolean isFlux(Class<?> returnType) {
+            return Flux.class.isAssignableFrom(returnType);
+        }
+
+        static Object withDatabase(Object result, ReturnKind returnKind, int database) {
+            if (result == null) {
+                return null;
+            }
+            if (returnKind == ReturnKind.MONO) {
+                return ((Mono<?>) result).subscriberContext(ReactiveRedisDatabaseContext.withDatabase(database));
+            }
+            return ((Flux<?>) result).subscriberContext(ReactiveRedisDatabaseContext.withDatabase(database));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.yebuxiu.cache;
+
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 失效通知订阅连接使用的codec
+ * lettuce 5.x 的pub/sub只会把消息体数组的最后一个元素交给监听器，而CLIENT TRACKING的失效消息体是key数组，
+ * 因此在解码时记录下消息体中的所有key，由监听器在收到消息时取出；消息体为null（FLUSHALL/FLUSHDB）时单独记录清空标记，
+ * 不与真实的key混在一起。
+ * 解码和监听器回调都在该连接的EventLoop线程上顺序执行，不需要额外同步
+ */
+class InvalidationCapturingCodec implements RedisCodec<String, String> {
+
+    /**
+     * 消息体为null时交给lettuce的值，只用于满足解码结果非null，监听器不会读取
+     */
+    private static final String FLUSH = "__flush__";
+
+    private final StringCodec delegate = StringCodec.UTF8;
+
+    private List<String> captured = new ArrayList<>();
+
+    /**
+     * 上一次取出之后是否收到过清空所有缓存的通知
+     */
+    private boolean flush;
+
+    /**
+     * 取出并清空已记录的key
+     */
+    List<String> drain() {
+        List<String> keys = captured;
+        captured = new ArrayList<>();
+        return keys;
+    }
+
+    /**
+     * 取出并清空清空标记，需要在 {@link #drain()} 之前或之后同一次回调中调用
+     *
+     * @return 是否需要清空所有缓存
+     */
+    boolean drainFlush() {
+        boolean result = flush;
+        flush = false;
+        return result;
+    }
+
+    @Override
+    public String decodeKey(ByteBuffer bytes) {
+        return delegate.decodeKey(bytes);
+    }
+
+    @Override
+    public String decodeValue(ByteBuffer bytes) {
+        if (bytes == null) {
+            flush = true;
+            return FLUSH;
+        }
+        String value = delegate.decodeValue(bytes);
+        captured.add(value);
+        return value;
+    }
+
+    @Override
+    public ByteBuffer encodeKey(String key) {
+        return delegate.encodeKey(key);
+    }
+
+    @Override
+    public ByteBuffer encodeValue(String value) {
+        return delegate.encodeValue(value);
+    }
+}
@@ -0,0 +1,149 @@
+package com.yebuxiu.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个db的本地缓存，按访问顺序淘汰（LRU），同时受条目数和估算字节数限制
+ * 不存在的key同样会被缓存（{@link #ABSENT}），避免对不存在的配置key反复穿透
+ */
+class NearCacheRegion {
+
+    /**
+     * 缓存中表示key不存在的占位值
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * 每个条目除key、value字符之外的估算开销（LinkedHashMap节点、String对象头等）
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final int database;
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    /**
+     * 访问顺序的LinkedHashMap，所有访问都在this上加锁
+     */
+    private final LinkedHashMap<String, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    /**
+     * 失效序号，每次失效（包括key不在缓存中时）都会递增，在this上加锁访问。
+     * 未命中时先取序号再读redis，回填时在同一把锁内比较序号，读取期间有失效时不回填
+     */
+    private long invalidationSequence;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    NearCacheRegion(int database, int maxEntries, long maxBytes) {
+        this.database = database;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 缓存的值，key不存在时为 {@link #ABSENT}，未缓存时为null
+     */
+    Object get(String key) {
+        Object value;
+        synchronized (this) {
+            value = entries.get(key);
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * @return 当前的失效序号，未命中读取redis之前获取，回填时传给 {@link #putIfNotInvalidated}
+     */
+    synchronized long invalidationSequence() {
+        return invalidationSequence;
+    }
+
+    /**
+     * 回填未命中读取到的值，从获取序号到现在有过失效时放弃回填：
+     * 失效通知可能在读取返回之后到达，而redis发出通知后就不再追踪该key，此时放入的旧值不会再收到通知
+     *
+     * @param sequence 读取redis之前的 {@link #invalidationSequence()}
+     * @return 是否放入了缓存
+     */
+    boolean putIfNotInvalidated(String key, String value, long sequence) {
+        long size = sizeOf(key, value);
+        if (size > maxBytes) {
+            return false;
+        }
+        synchronized (this) {
+            if (invalidationSequence != sequence) {
+                return false;
+            }
+            Object previous = entries.put(key, value == null ? ABSENT : value);
+            if (previous != null) {
+                bytes -= sizeOf(key, previous);
+            }
+            bytes += size;
+            Iterator<Map.Entry<String, Object>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+                Map.Entry<String, Object> eldest = iterator.next();
+                iterator.remove();
+                bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+                evictions.increment();
+            }
+        }
+        return true;
+    }
+
+    void invalidate(String key) {
+        synchronized (this) {
+            invalidationSequence++;
+            Object previous = entries.remove(key);
+            if (previous == null) {
+                return;
+            }
+            bytes -= sizeOf(key, previous);
+        }
+        invalidations.increment();
+    }
+
+    void invalidateAll() {
+        int size;
+        synchronized (this) {
+            invalidationSequence++;
+            size = entries.size();
+            entries.clear();
+            bytes = 0;
+        }
+        invalidations.add(size);
+    }
+
+    NearCacheStats stats() {
+        int size;
+        long currentBytes;
+        synchronized (this) {
+            size = entries.size();
+            currentBytes = bytes;
+        }
+        return new NearCacheStats(database, hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(),
+                size, currentBytes);
+    }
+
+    private static long sizeOf(String key, Object value) {
+        return ENTRY_OVERHEAD + 2L * key.length() + (value instanceof String ? 2L * ((String) value).length() : 0);
+    }
+}
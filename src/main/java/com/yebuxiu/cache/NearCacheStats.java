@@ -0,0 +1,93 @@
+package com.yebuxiu.cache;
+
+/**
+ * 单个db本地缓存的统计快照
+ */
+public class NearCacheStats {
+
+    private final int database;
+
+    /**
+     * 命中次数
+     */
+    private final long hits;
+
+    /**
+     * 未命中次数
+     */
+    private final long misses;
+
+    /**
+     * 因超出条目数或字节数限制被淘汰的条目数
+     */
+    private final long evictions;
+
+    /**
+     * 因redis失效通知或本地写入被移除的条目数
+     */
+    private final long invalidations;
+
+    /**
+     * 当前条目数
+     */
+    private final int size;
+
+    /**
+     * 当前估算占用的字节数
+     */
+    private final long bytes;
+
+    public NearCacheStats(int database, long hits, long misses, long evictions, long invalidations,
+                          int size, long bytes) {
+        this.database = database;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.bytes = bytes;
+    }
+
+    public int getDatabase() {
+        return database;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return 命中率，没有请求时为0
+     */
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "NearCacheStats{database=" + database + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", invalidations=" + invalidations
+                + ", size=" + size + ", bytes=" + bytes + "}";
+    }
+}
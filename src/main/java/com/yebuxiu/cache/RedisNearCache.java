@@ -0,0 +1,379 @@
+package com.yebuxiu.cache;
+
+import com.yebuxiu.config.DynamicRedisTemplateFactory;
+import com.yebuxiu.config.RedisDatabaseMapping;
+import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.output.IntegerOutput;
+import io.lettuce.core.output.StatusOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按db配置的客户端本地缓存，缓存以(db, key)为单位，通过redis的CLIENT TRACKING保持与服务端一致：
+ * <ul>
+ *     <li>每个开启缓存的db使用一条专用的追踪连接读取未命中的key，该连接开启 CLIENT TRACKING ON REDIRECT</li>
+ *     <li>一条订阅连接订阅 __redis__:invalidate，接收所有追踪连接转发过来的失效通知</li>
+ * </ul>
+ * 追踪连接只能把失效通知转发给同一个节点上的连接，因此db被映射到多个节点时每个节点各有一条订阅连接。
+ * 失效通知中只有key没有db，因此收到通知时会移除该节点上所有db中的同名key。
+ * 订阅连接或任意追踪连接断开时会清空所有缓存并停止缓存，直到重新建立追踪后再恢复，避免断线期间漏掉失效通知
+ */
+@Slf4j
+public class RedisNearCache implements RedisConnectionStateListener {
+
+    /**
+     * CLIENT TRACKING失效通知的频道
+     */
+    public static final String INVALIDATION_CHANNEL = "__redis__:invalidate";
+
+    private final DynamicRedisTemplateFactory<?, ?> dynamicRedisTemplateFactory;
+
+    /**
+     * 下标为db号，未开启缓存的db为null
+     */
+    private final NearCacheRegion[] regions;
+
+    /**
+     * 下标为db号，开启缓存的db的追踪连接
+     */
+    private final AtomicReferenceArray<StatefulRedisConnection<String, String>> trackingConnections;
+
+    /**
+     * 未指定db时使用的db（spring.redis.database）
+     */
+    private final int defaultDatabase;
+
+    private final long reconnectDelayMillis;
+
+    /**
+     * 负责建立和重建追踪的单线程
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 是否已经建立好追踪，为false时所有读取直接访问redis
+     */
+    private volatile boolean tracking;
+
+    /**
+     * 是否已经有等待执行的重建任务
+     */
+    private final AtomicBoolean establishScheduled = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    private RedisClient redisClient;
+
+    /**
+     * 开启缓存的db按所在节点分组
+     */
+    private final Map<String, int[]> cachedDatabasesByNode = new LinkedHashMap<>();
+
+    /**
+     * 节点名称 -> 该节点的订阅连接
+     */
+    private volatile Map<String, StatefulRedisPubSubConnection<String, String>> subscribers = Collections.emptyMap();
+
+    /**
+     * @param dynamicRedisTemplateFactory 用于获取连接信息和共享的ClientResources
+     * @param properties                  本地缓存配置
+     * @param databases                   redis服务端的db数量
+     * @param defaultDatabase             未指定db时使用的db
+     */
+    public RedisNearCache(DynamicRedisTemplateFactory<?, ?> dynamicRedisTemplateFactory,
+                          MyRedisProperties.NearCacheProperties properties,
+                          int databases, int defaultDatabase) {
+        Assert.notNull(dynamicRedisTemplateFactory, "dynamicRedisTemplateFactory must not be null.");
+        this.dynamicRedisTemplateFactory = dynamicRedisTemplateFactory;
+        this.regions = new NearCacheRegion[databases];
+        this.trackingConnections = new AtomicReferenceArray<>(databases);
+        this.defaultDatabase = defaultDatabase;
+        this.reconnectDelayMillis = properties.getReconnectDelay().toMillis();
+        for (Map.Entry<Integer, MyRedisProperties.NearCacheDatabaseProperties> entry
+                : properties.getDatabases().entrySet()) {
+            int database = entry.getKey();
+            Assert.isTrue(database >= 0 && database < databases, "Near cache database out of range: " + database);
+            MyRedisProperties.NearCacheDatabaseProperties config = entry.getValue();
+            regions[database] = new NearCacheRegion(database, config.getMaxEntries(), config.getMaxSize().toBytes());
+        }
+        RedisDatabaseMapping databaseMapping = dynamicRedisTemplateFactory.getDatabaseMapping();
+        Map<String, List<Integer>> grouped = new LinkedHashMap<>();
+        for (int database = 0; database < databases; database++) {
+            if (regions[database] != null) {
+                grouped.computeIfAbsent(databaseMapping.locate(database).getNode(), node -> new ArrayList<>())
+                        .add(database);
+            }
+        }
+        grouped.forEach((node, cached) ->
+                cachedDatabasesByNode.put(node, cached.stream().mapToInt(Integer::intValue).toArray()));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("redis-near-cache-"));
+    }
+
+    /**
+     * 连接redis并开启追踪，连接失败时会按reconnectDelay重试，在此期间读取直接访问redis
+     */
+    public void start() {
+        redisClient = RedisClient.create(dynamicRedisTemplateFactory.getClientResources(),
+                dynamicRedisTemplateFactory.createRedisUri(defaultDatabase));
+        redisClient.addListener(this);
+        scheduleEstablish(0);
+    }
+
+    /**
+     * @param database db号，{@link AbstractRoutingRedisTemplate#NO_DATABASE} 表示默认db
+     * @return 该db是否开启了本地缓存
+     */
+    public boolean isCached(int database) {
+        int db = resolve(database);
+        return db >= 0 && db < regions.length && regions[db] != null;
+    }
+
+    /**
+     * @return 追踪是否已经建立，为false时所有读取直接访问redis
+     */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /**
+     * 从本地缓存读取，未命中时通过该db的追踪连接读取并回填
+     * 调用前需要通过 {@link #isCached(int)} 确认该db开启了缓存
+     *
+     * @param database db号，{@link AbstractRoutingRedisTemplate#NO_DATABASE} 表示默认db
+     * @param key      key
+     * @return value，不存在时为null
+     */
+    public String get(int database, String key) {
+        int db = resolve(database);
+        NearCacheRegion region = regions[db];
+        Object cached = region.get(key);
+        if (cached != null) {
+            return cached == NearCacheRegion.ABSENT ? null : (String) cached;
+        }
+        StatefulRedisConnection<String, String> connection = trackingConnections.get(db);
+        if (connection == null) {
+            connection = connectTracking(db);
+        }
+        // 序号按db区分，其他db的写入不会影响这里的回填
+        long sequence = region.invalidationSequence();
+        boolean trackingBefore = tracking;
+        String value = connection.sync().get(key);
+        if (trackingBefore && tracking) {
+            region.putIfNotInvalidated(key, value, sequence);
+        }
+        return value;
+    }
+
+    /**
+     * 移除本地缓存中的key，通过RedisHelper写入后调用，保证写入线程随后的读取不会读到旧值
+     */
+    public void invalidate(int database, String key) {
+        int db = resolve(database);
+        if (db < 0 || db >= regions.length || regions[db] == null) {
+            return;
+        }
+        regions[db].invalidate(key);
+    }
+
+    /**
+     * 清空所有db的本地缓存
+     */
+    public void invalidateAll() {
+        for (NearCacheRegion region : regions) {
+            if (region != null) {
+                region.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * @return 每个开启缓存的db的统计快照
+     */
+    public Map<Integer, NearCacheStats> getStats() {
+        Map<Integer, NearCacheStats> stats = new LinkedHashMap<>();
+        for (int db = 0; db < regions.length; db++) {
+            if (regions[db] != null) {
+                stats.put(db, regions[db].stats());
+            }
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * @param database 开启缓存的db
+     * @return 该db的统计快照
+     */
+    public NearCacheStats getStats(int database) {
+        Assert.isTrue(isCached(database), "Near cache is not enabled for database " + database);
+        return regions[resolve(database)].stats();
+    }
+
+    /**
+     * 关闭所有连接，关闭后读取不再使用缓存
+     */
+    public void shutdown() {
+        closed = true;
+        tracking = false;
+        scheduler.shutdownNow();
+        if (redisClient != null) {
+            redisClient.shutdown();
+        }
+        invalidateAll();
+    }
+
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+    }
+
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+        if (closed || !isOwnConnection(connection)) {
+            return;
+        }
+        // 断线期间可能漏掉失效通知，先停止缓存并清空，重新建立追踪后再恢复
+        if (tracking) {
+            log.warn("Near cache tracking connection lost, near cache disabled until tracking is re-established");
+        }
+        tracking = false;
+        invalidateAll();
+        scheduleEstablish(reconnectDelayMillis);
+    }
+
+    @Override
+    public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+    }
+
+    private boolean isOwnConnection(RedisChannelHandler<?, ?> connection) {
+        if (subscribers.containsValue(connection)) {
+            return true;
+        }
+        for (int db = 0; db < trackingConnections.length(); db++) {
+            if (trackingConnections.get(db) == connection) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleEstablish(long delayMillis) {
+        if (closed || !establishScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            establishScheduled.set(false);
+            try {
+                establish();
+            } catch (Exception e) {
+                log.warn("Failed to establish near cache tracking, retry in {}ms", reconnectDelayMillis, e);
+                tracking = false;
+                scheduleEstablish(reconnectDelayMillis);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重新建立每个节点的订阅连接（新连接才能查询到CLIENT ID），再让该节点上的追踪连接把失效通知转发到该连接
+     */
+    private void establish() {
+        if (closed) {
+            return;
+        }
+        tracking = false;
+        Map<String, StatefulRedisPubSubConnection<String, String>> previous = subscribers;
+        subscribers = Collections.emptyMap();
+        for (StatefulRedisPubSubConnection<String, String> connection : previous.values()) {
+            connection.closeAsync();
+        }
+
+        Map<String, StatefulRedisPubSubConnection<String, String>> established = new HashMap<>();
+        Map<String, Long> clientIds = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, int[]> entry : cachedDatabasesByNode.entrySet()) {
+                int[] databases = entry.getValue();
+                InvalidationCapturingCodec codec = new InvalidationCapturingCodec();
+                StatefulRedisPubSubConnection<String, String> connection = redisClient.connectPubSub(codec,
+                        dynamicRedisTemplateFactory.createRedisUri(databases[0]));
+                established.put(entry.getKey(), connection);
+                Long clientId = connection.sync().dispatch(CommandType.CLIENT, new IntegerOutput<>(codec),
+                        new CommandArgs<>(codec).add("ID"));
+                connection.addListener(new RedisPubSubAdapter<String, String>() {
+                    @Override
+                    public void message(String channel, String message) {
+                        onInvalidation(databases, codec.drain(), codec.drainFlush());
+                    }
+                });
+                connection.sync().subscribe(INVALIDATION_CHANNEL);
+                clientIds.put(entry.getKey(), clientId);
+
+                for (int db : databases) {
+                    StatefulRedisConnection<String, String> trackingConnection = trackingConnections.get(db);
+                    if (trackingConnection == null) {
+                        trackingConnection = connectTracking(db);
+                    }
+                    trackingConnection.sync().dispatch(CommandType.CLIENT, new StatusOutput<>(StringCodec.UTF8),
+                            new CommandArgs<>(StringCodec.UTF8).add("TRACKING").add("ON").add("REDIRECT")
+                                    .add(clientId));
+                }
+            }
+        } finally {
+            // 部分节点失败时也要记录已建立的连接，断开时才能识别并在下次重建前关闭
+            subscribers = established;
+        }
+        // 建立追踪之前缓存的内容可能已经失效
+        invalidateAll();
+        tracking = true;
+        log.info("Near cache tracking established for databases {}, redirect client ids {}",
+                getStats().keySet(), clientIds);
+    }
+
+    private synchronized StatefulRedisConnection<String, String> connectTracking(int database) {
+        StatefulRedisConnection<String, String> connection = trackingConnections.get(database);
+        if (connection == null) {
+            connection = redisClient.connect(StringCodec.UTF8, dynamicRedisTemplateFactory.createRedisUri(database));
+            trackingConnections.set(database, connection);
+        }
+        return connection;
+    }
+
+    private void onInvalidation(int[] databases, List<String> keys, boolean flush) {
+        if (flush || keys.isEmpty()) {
+            for (int db : databases) {
+                regions[db].invalidateAll();
+            }
+            return;
+        }
+        for (int db : databases) {
+            for (String key : keys) {
+                regions[db].invalidate(key);
+            }
+        }
+    }
+
+    private int resolve(int database) {
+        return database == AbstractRoutingRedisTemplate.NO_DATABASE ? defaultDatabase : database;
+    }
+}
@@ -0,0 +1,137 @@
+package com.yebuxiu.config;
+
+import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.template.DynamicReactiveRedisTemplate;
+import com.yebuxiu.template.DynamicRedisTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 定期淘汰长时间未使用的动态db，销毁其连接工厂、连接池和连接，下次使用时重新创建
+ * 淘汰分两步：检查时先从路由表中移除，到下一次检查时才真正销毁，避免销毁正在执行命令的连接
+ */
+@Slf4j
+public class DynamicRedisTemplateEvictor<K, V> implements InitializingBean, DisposableBean {
+
+    private final DynamicRedisTemplate<K, V> dynamicRedisTemplate;
+
+    /**
+     * 响应式动态模板，可以为null
+     */
+    private final DynamicReactiveRedisTemplate<K, V> dynamicReactiveRedisTemplate;
+
+    private final DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory;
+
+    private final MyRedisProperties.EvictionProperties evictionProperties;
+
+    /**
+     * 不允许淘汰的db
+     */
+    private final Set<Integer> pinnedDatabases;
+
+    /**
+     * 已从路由表移除、等待下一次检查时销毁的模板
+     */
+    private List<RedisTemplate<K, V>> retiredRedisTemplates = new ArrayList<>();
+
+    private List<ReactiveRedisTemplate<K, V>> retiredReactiveRedisTemplates = new ArrayList<>();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public DynamicRedisTemplateEvictor(DynamicRedisTemplate<K, V> dynamicRedisTemplate,
+                                       DynamicReactiveRedisTemplate<K, V> dynamicReactiveRedisTemplate,
+                                       DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory,
+                                       MyRedisProperties myRedisProperties) {
+        this.dynamicRedisTemplate = dynamicRedisTemplate;
+        this.dynamicReactiveRedisTemplate = dynamicReactiveRedisTemplate;
+        this.dynamicRedisTemplateFactory = dynamicRedisTemplateFactory;
+        this.evictionProperties = myRedisProperties.getEviction();
+        // 默认db、预热的db以及显式配置的db不淘汰
+        Set<Integer> pinned = new HashSet<>(evictionProperties.getPinnedDatabases());
+        pinned.add(myRedisProperties.getRedisProperties().getDatabase());
+        pinned.addAll(myRedisProperties.getWarmup().getDatabases());
+        this.pinnedDatabases = Collections.unmodifiableSet(pinned);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!evictionProperties.isEnabled()) {
+            return;
+        }
+        long interval = evictionProperties.getCheckInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("redis-evictor-"));
+        scheduler.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 执行一次空闲检查：销毁上一次检查淘汰的模板，并淘汰本次检查中空闲超时的模板
+     */
+    public synchronized void evictIdle() {
+        try {
+            retiredRedisTemplates.forEach(dynamicRedisTemplateFactory::destroyRedisTemplate);
+            retiredReactiveRedisTemplates.forEach(dynamicRedisTemplateFactory::destroyReactiveRedisTemplate);
+            long idleNanos = evictionProperties.getIdleTimeout().toNanos();
+            retiredRedisTemplates = dynamicRedisTemplate.evictIdleRedisTemplates(idleNanos, pinnedDatabases);
+            retiredReactiveRedisTemplates = dynamicReactiveRedisTemplate == null ? Collections.emptyList()
+                    : dynamicReactiveRedisTemplate.evictIdleRedisTemplates(idleNanos, pinnedDatabases);
+            int evicted = retiredRedisTemplates.size() + retiredReactiveRedisTemplates.size();
+            if (evicted > 0) {
+                evictionCount.addAndGet(evicted);
+                log.info("Evicted {} idle redis template(s), eviction counts by database: {}",
+                        evicted, getEvictionCounts());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to evict idle redis templates.", e);
+        }
+    }
+
+    /**
+     * @return 累计淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return 同步模板每个db被淘汰的次数
+     */
+    public Map<Integer, Long> getEvictionCounts() {
+        return dynamicRedisTemplate.getEvictionCounts();
+    }
+
+    /**
+     * @return 响应式模板每个db被淘汰的次数
+     */
+    public Map<Integer, Long> getReactiveEvictionCounts() {
+        return dynamicReactiveRedisTemplate == null ? Collections.emptyMap()
+                : dynamicReactiveRedisTemplate.getEvictionCounts();
+    }
+
+    public Set<Integer> getPinnedDatabases() {
+        return pinnedDatabases;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
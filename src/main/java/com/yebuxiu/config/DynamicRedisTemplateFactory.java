@@ -1,18 +1,33 @@
 package com.yebuxiu.config;
 
 import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.metrics.DynamicRedisMetrics;
+import com.yebuxiu.serializer.CompressingRedisSerializer;
+import com.yebuxiu.serializer.RedisSerializerProfile;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.resource.ClientResources;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 动态 RedisTemplate 工厂类，用于创建和管理RedisTemplate
  */
-public class DynamicRedisTemplateFactory<K, V> {
+public class DynamicRedisTemplateFactory<K, V> implements DisposableBean {
 
     // ==============================================================================================================
     // 从data-redis源码得知，构建lettuce客户端配置（LettuceConnectionConfigure）
@@ -28,6 +43,25 @@ public class DynamicRedisTemplateFactory<K, V> {
      * lettuce配置定制
      */
     private final List<LettuceClientConfigurationBuilderCustomizer> lettuceBuilderCustomizers;
+    /**
+     * 所有动态创建的lettuce连接工厂共享的clientResources
+     */
+    private final ClientResources clientResources;
+
+    /**
+     * 逻辑db到redis节点和物理db的映射
+     */
+    private final RedisDatabaseMapping databaseMapping;
+
+    /**
+     * 由该工厂创建且还未销毁的连接工厂，容器关闭时统一销毁
+     */
+    private final Set<LettuceConnectionFactory> connectionFactories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 模板创建耗时、命令延迟和连接池埋点，默认不记录
+     */
+    private DynamicRedisMetrics metrics = DynamicRedisMetrics.NOOP;
 
 
     /**
@@ -35,9 +69,13 @@ public class DynamicRedisTemplateFactory<K, V> {
      * ObjectProvider更加宽松的依赖注入
      */
     public DynamicRedisTemplateFactory(MyRedisProperties myRedisProperties,
-                                       List<LettuceClientConfigurationBuilderCustomizer> lettuceBuilderCustomizers) {
+                                       List<LettuceClientConfigurationBuilderCustomizer> lettuceBuilderCustomizers,
+                                       ClientResources clientResources) {
+        Assert.notNull(clientResources, "clientResources must not be null.");
         this.myRedisProperties = myRedisProperties;
         this.lettuceBuilderCustomizers = lettuceBuilderCustomizers;
+        this.clientResources = clientResources;
+        this.databaseMapping = new RedisDatabaseMapping(myRedisProperties);
     }
 
     /**
@@ -48,29 +86,190 @@ public class DynamicRedisTemplateFactory<K, V> {
      * @author Mr_wenpan@163.com 2021/8/7 1:47 下午
      */
     public RedisTemplate<K, V> createRedisTemplate(int database) {
-        RedisConnectionFactory redisConnectionFactory = null;
-        // 根据Redis客户端类型创建Redis连接工厂（用于创建RedisTemplate）
-        // 使用指定的db创建lettuce redis连接工厂(创建方式参照源码：LettuceConnectionConfiguration)
+        long start = System.nanoTime();
+        // 通过Redis连接工厂创建RedisTemplate
+        RedisTemplate<K, V> redisTemplate = createRedisTemplate(createConnectionFactory(database),
+                createValueSerializer(database));
+        metrics.recordTemplateCreation(database, System.nanoTime() - start);
+        return redisTemplate;
+    }
+
+    /**
+     * 为指定的db创建ReactiveRedisTemplate，用于在响应式场景下操作Redis
+     * key和value的序列化方式与 {@link #createRedisTemplate(int)} 一致，value按db的序列化配置
+     *
+     * @param database redis db
+     * @return org.springframework.data.redis.core.ReactiveRedisTemplate<K, V>
+     */
+    public ReactiveRedisTemplate<K, V> createReactiveRedisTemplate(int database) {
+        long start = System.nanoTime();
+        ReactiveRedisTemplate<K, V> redisTemplate =
+                new ReactiveRedisTemplate<>(createConnectionFactory(database), createSerializationContext(database));
+        metrics.recordTemplateCreation(database, System.nanoTime() - start);
+        return redisTemplate;
+    }
+
+    /**
+     * 响应式模板的序列化配置，key使用字符串，value按db的序列化配置
+     *
+     * @param database redis db
+     * @return RedisSerializationContext
+     */
+    @SuppressWarnings("unchecked")
+    public RedisSerializationContext<K, V> createSerializationContext(int database) {
+        RedisSerializer<?> valueSerializer = createValueSerializer(database);
+        return RedisSerializationContext.<K, V>newSerializationContext(new StringRedisSerializer())
+                .value((RedisSerializer<V>) valueSerializer)
+                .hashValue(valueSerializer)
+                .build();
+    }
+
+    /**
+     * 创建指定db的lettuce连接地址，连接信息（地址、密码、ssl、超时、客户端名）与动态创建的连接工厂一致，
+     * 供需要直接使用lettuce原生连接的组件（例如本地缓存的失效追踪连接）使用
+     *
+     * @param database redis db
+     * @return RedisURI
+     */
+    public RedisURI createRedisUri(int database) {
+        return new LettuceConnectionConfigure(myRedisProperties, lettuceBuilderCustomizers, clientResources, database,
+                databaseMapping.locate(database)).redisUri();
+    }
+
+    /**
+     * 指定db的value序列化器：按db的序列化方式，开启压缩的db在其上包装 {@link CompressingRedisSerializer}
+     *
+     * @param database redis db
+     * @return value和hash value使用的序列化器
+     */
+    @SuppressWarnings("unchecked")
+    public RedisSerializer<?> createValueSerializer(int database) {
+        RedisSerializer<Object> serializer =
+                (RedisSerializer<Object>) myRedisProperties.getSerializer(database).valueSerializer();
+        MyRedisProperties.CompressionProperties compression = myRedisProperties.getCompression();
+        if (!compression.isCompressed(database)) {
+            return serializer;
+        }
+        return new CompressingRedisSerializer<>(serializer, (int) compression.getThreshold().toBytes(), database, metrics);
+    }
+
+    /**
+     * @return 指定db的value序列化与容器中默认的字符串序列化是否不同
+     */
+    public boolean isCustomSerializer(int database) {
+        return myRedisProperties.getSerializer(database) != RedisSerializerProfile.STRING
+                || myRedisProperties.getCompression().isCompressed(database);
+    }
+
+    public void setMetrics(DynamicRedisMetrics metrics) {
+        this.metrics = metrics == null ? DynamicRedisMetrics.NOOP : metrics;
+    }
+
+    public DynamicRedisMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ClientResources getClientResources() {
+        return clientResources;
+    }
+
+    public RedisDatabaseMapping getDatabaseMapping() {
+        return databaseMapping;
+    }
+
+    /**
+     * 根据Redis客户端类型创建Redis连接工厂（用于创建RedisTemplate）
+     * 使用指定的db创建lettuce redis连接工厂(创建方式参照源码：LettuceConnectionConfiguration)
+     * 连接的节点和SELECT的物理db由 {@link RedisDatabaseMapping} 决定
+     */
+    private LettuceConnectionFactory createConnectionFactory(int database) {
         LettuceConnectionConfigure lettuceConnectionConfigure = new LettuceConnectionConfigure(
-                myRedisProperties, lettuceBuilderCustomizers, database);
-        redisConnectionFactory = lettuceConnectionConfigure.redisConnectionFactory();
+                myRedisProperties, lettuceBuilderCustomizers, metrics.clientResources(database, clientResources), database,
+                databaseMapping.locate(database));
+        LettuceConnectionFactory redisConnectionFactory = lettuceConnectionConfigure.redisConnectionFactory();
         Assert.notNull(redisConnectionFactory, "redisConnectionFactory is null.");
-        // 通过Redis连接工厂创建RedisTemplate
-        return createRedisTemplate(redisConnectionFactory);
+        connectionFactories.add(redisConnectionFactory);
+        metrics.bindConnectionPool(database);
+        return redisConnectionFactory;
+    }
+
+    /**
+     * 销毁由该工厂创建的redisTemplate所持有的连接工厂，关闭连接池和所有连接
+     * 不是由该工厂创建的（例如容器中默认的）redisTemplate不会被处理
+     */
+    public void destroyRedisTemplate(RedisTemplate<K, V> redisTemplate) {
+        destroyConnectionFactory(redisTemplate.getConnectionFactory());
+    }
+
+    /**
+     * 销毁由该工厂创建的reactiveRedisTemplate所持有的连接工厂
+     */
+    public void destroyReactiveRedisTemplate(ReactiveRedisTemplate<K, V> redisTemplate) {
+        destroyConnectionFactory(redisTemplate.getConnectionFactory());
+    }
+
+    private void destroyConnectionFactory(Object connectionFactory) {
+        if (connectionFactory instanceof LettuceConnectionFactory
+                && connectionFactories.remove(connectionFactory)) {
+            ((LettuceConnectionFactory) connectionFactory).destroy();
+        }
+    }
+
+    /**
+     * 容器关闭时销毁所有动态创建的连接工厂（在共享的clientResources关闭之前）
+     */
+    @Override
+    public void destroy() {
+        for (LettuceConnectionFactory connectionFactory : connectionFactories) {
+            destroyConnectionFactory(connectionFactory);
+        }
+    }
+
+    /**
+     * 预热redisTemplate：通过共享连接执行PING以完成TCP握手、AUTH和SELECT，
+     * 再同时借出min-idle个独占连接后归还，将连接池填充到min-idle
+     *
+     * @param redisTemplate 需要预热的redisTemplate
+     */
+    public void warmUp(RedisTemplate<K, V> redisTemplate) {
+        RedisConnectionFactory connectionFactory = redisTemplate.getConnectionFactory();
+        Assert.notNull(connectionFactory, "redisConnectionFactory is null.");
+        RedisConnection sharedConnection = connectionFactory.getConnection();
+        try {
+            sharedConnection.ping();
+        } finally {
+            sharedConnection.close();
+        }
+        RedisProperties.Pool pool = myRedisProperties.getRedisProperties().getLettuce().getPool();
+        int minIdle = pool == null ? 0 : pool.getMinIdle();
+        List<RedisConnection> connections = new ArrayList<>(minIdle);
+        try {
+            for (int i = 0; i < minIdle; i++) {
+                RedisConnection connection = connectionFactory.getConnection();
+                connections.add(connection);
+                // lettuce只有事务、阻塞命令等才会从连接池借出独占连接，这里通过multi/discard触发借出
+                connection.multi();
+                connection.discard();
+            }
+        } finally {
+            for (RedisConnection connection : connections) {
+                connection.close();
+            }
+        }
     }
 
     /**
-     * 通过Redis连接工厂来创建一个redisTemplate用于操作Redis db
+     * 通过Redis连接工厂来创建一个redisTemplate用于操作Redis db，key使用字符串，value按db的序列化配置
      */
-    private RedisTemplate<K, V> createRedisTemplate(RedisConnectionFactory factory) {
+    private RedisTemplate<K, V> createRedisTemplate(RedisConnectionFactory factory, RedisSerializer<?> valueSerializer) {
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
         RedisTemplate<K, V> redisTemplate = new RedisTemplate<>();
         redisTemplate.setKeySerializer(stringRedisSerializer);
         redisTemplate.setStringSerializer(stringRedisSerializer);
         redisTemplate.setDefaultSerializer(stringRedisSerializer);
         redisTemplate.setHashKeySerializer(stringRedisSerializer);
-        redisTemplate.setHashValueSerializer(stringRedisSerializer);
-        redisTemplate.setValueSerializer(stringRedisSerializer);
+        redisTemplate.setHashValueSerializer(valueSerializer);
+        redisTemplate.setValueSerializer(valueSerializer);
         // 设置Redis连接工厂用于创建连接
         redisTemplate.setConnectionFactory(factory);
         // 调用afterPropertiesSet方法，在属性设置完成后做一些检查和额外工作
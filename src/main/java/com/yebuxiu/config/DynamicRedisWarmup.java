@@ -0,0 +1,180 @@
+package com.yebuxiu.config;
+
+import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.template.DynamicRedisTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时并行预热 redis.warmup.databases 中配置的db，避免每个db的第一个请求承担创建lettuce客户端、
+ * 建立连接、AUTH/SELECT以及填充连接池的开销
+ * 预热在所有单例创建完成后、web服务开始监听之前执行，可以通过 {@link #isCompleted()}、
+ * {@link #awaitCompletion(Duration)} 或监听 {@link RedisWarmupCompletedEvent} 获取预热完成信号
+ */
+@Slf4j
+public class DynamicRedisWarmup<K, V> implements SmartInitializingSingleton, ApplicationEventPublisherAware {
+
+    private final DynamicRedisTemplate<K, V> dynamicRedisTemplate;
+
+    private final DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory;
+
+    private final MyRedisProperties.WarmupProperties warmupProperties;
+
+    private final CountDownLatch completed = new CountDownLatch(1);
+
+    /**
+     * 每个db预热耗时（毫秒）
+     */
+    private final Map<Integer, Long> warmupMillis = new ConcurrentHashMap<>();
+
+    /**
+     * 预热失败的db及异常
+     */
+    private final Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    public DynamicRedisWarmup(DynamicRedisTemplate<K, V> dynamicRedisTemplate,
+                              DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory,
+                              MyRedisProperties.WarmupProperties warmupProperties) {
+        this.dynamicRedisTemplate = dynamicRedisTemplate;
+        this.dynamicRedisTemplateFactory = dynamicRedisTemplateFactory;
+        this.warmupProperties = warmupProperties;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Set<Integer> databases = new LinkedHashSet<>(warmupProperties.getDatabases());
+        if (databases.isEmpty()) {
+            completed.countDown();
+            return;
+        }
+        int parallelism = warmupProperties.getParallelism() > 0
+                ? Math.min(warmupProperties.getParallelism(), databases.size()) : databases.size();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new CustomizableThreadFactory("redis-warmup-"));
+        CountDownLatch remaining = new CountDownLatch(databases.size());
+        long start = System.nanoTime();
+        for (Integer database : databases) {
+            executor.execute(() -> {
+                try {
+                    warmUp(database);
+                } finally {
+                    remaining.countDown();
+                }
+            });
+        }
+        executor.shutdown();
+        // 所有db预热结束后发布完成信号，不阻塞启动时也能拿到结果
+        Thread notifier = new Thread(() -> {
+            try {
+                remaining.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            complete(System.nanoTime() - start);
+        }, "redis-warmup-notifier");
+        notifier.setDaemon(true);
+        notifier.start();
+        if (warmupProperties.isBlockStartup() && !awaitCompletion(warmupProperties.getTimeout())) {
+            log.warn("Redis warm-up of databases {} did not finish within {}, continue startup.",
+                    databases, warmupProperties.getTimeout());
+        }
+    }
+
+    private void warmUp(int database) {
+        long start = System.nanoTime();
+        try {
+            RedisTemplate<K, V> redisTemplate = dynamicRedisTemplate.getRedisTemplate(database);
+            dynamicRedisTemplateFactory.warmUp(redisTemplate);
+            warmupMillis.put(database, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            failures.put(database, e);
+            log.warn("Redis warm-up of database {} failed.", database, e);
+        }
+    }
+
+    private void complete(long elapsedNanos) {
+        completed.countDown();
+        log.info("Redis warm-up finished in {} ms, per database: {}, failed: {}",
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getWarmupMillis(), failures.keySet());
+        if (applicationEventPublisher != null) {
+            applicationEventPublisher.publishEvent(new RedisWarmupCompletedEvent(this, getWarmupMillis(), getFailures()));
+        }
+    }
+
+    /**
+     * @return 预热是否已经结束（无论成功或失败）
+     */
+    public boolean isCompleted() {
+        return completed.getCount() == 0;
+    }
+
+    /**
+     * @return 预热已结束且所有db都成功
+     */
+    public boolean isSuccessful() {
+        return isCompleted() && failures.isEmpty();
+    }
+
+    /**
+     * 等待预热结束
+     *
+     * @param timeout 最长等待时间
+     * @return 是否在超时前结束
+     */
+    public boolean awaitCompletion(Duration timeout) {
+        try {
+            return completed.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return 已完成预热的db及耗时（毫秒），按db号排序
+     */
+    public Map<Integer, Long> getWarmupMillis() {
+        Map<Integer, Long> sorted = new LinkedHashMap<>();
+        warmupMillis.keySet().stream().sorted().forEach(db -> sorted.put(db, warmupMillis.get(db)));
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    /**
+     * @return 预热失败的db及异常
+     */
+    public Map<Integer, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return 配置的预热db
+     */
+    public List<Integer> getDatabases() {
+        return Collections.unmodifiableList(warmupProperties.getDatabases());
+    }
+}
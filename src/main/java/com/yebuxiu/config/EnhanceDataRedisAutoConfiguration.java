@@ -1,24 +1,62 @@
 package com.yebuxiu.config;
 
+import com.yebuxiu.aop.RedisDb;
+import com.yebuxiu.aop.RedisDbAdvisor;
+import com.yebuxiu.aop.RedisDbAutoProxyRegistrar;
+import com.yebuxiu.aop.RedisDbMethodInterceptor;
+import com.yebuxiu.cache.RedisNearCache;
 import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.helper.RedisDatabaseTaskDecorator;
+import com.yebuxiu.helper.RedisGetCoalescer;
 import com.yebuxiu.helper.RedisHelper;
+import com.yebuxiu.metrics.DynamicRedisMetrics;
+import com.yebuxiu.metrics.MicrometerDynamicRedisMetrics;
+import com.yebuxiu.routing.CachingTenantDatabaseResolver;
+import com.yebuxiu.routing.CompositeRoutingStrategy;
+import com.yebuxiu.routing.KeyPrefixRoutingStrategy;
+import com.yebuxiu.routing.MapTenantDatabaseResolver;
+import com.yebuxiu.routing.RedisRoutingStrategy;
+import com.yebuxiu.routing.TenantDatabaseResolver;
+import com.yebuxiu.routing.TenantHeaderRoutingStrategy;
+import com.yebuxiu.routing.ThreadLocalRoutingStrategy;
+import com.yebuxiu.template.DynamicReactiveRedisTemplate;
 import com.yebuxiu.template.DynamicRedisTemplate;
+import com.yebuxiu.web.RedisTenantFilter;
+import com.yebuxiu.web.RedisTenantWebFilter;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * stone-redis自动配置，必须要容器中有RedisConnectionFactory才启动该配置类
@@ -28,6 +66,28 @@ import java.util.Map;
 @ConditionalOnClass(name = {"org.springframework.data.redis.connection.RedisConnectionFactory"})
 public class EnhanceDataRedisAutoConfiguration {
 
+    /**
+     * 租户路由策略和租户过滤器共用的租户解析器的bean名称，可以通过该名称取出 {@link CachingTenantDatabaseResolver} 使缓存失效
+     */
+    public static final String TENANT_DATABASE_RESOLVER_BEAN_NAME = "redisTenantDatabaseResolver";
+
+    /**
+     * 共享的lettuce ClientResources，springboot默认lettuce连接工厂和所有动态创建的连接工厂都使用这一份，
+     * 容器中已存在ClientResources时直接复用容器中的，容器关闭时由spring调用shutdown释放线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(ClientResources.class)
+    public DefaultClientResources lettuceClientResources(MyRedisProperties myRedisProperties) {
+        MyRedisProperties.ClientResourcesProperties properties = myRedisProperties.getClientResources();
+        DefaultClientResources.Builder builder = DefaultClientResources.builder();
+        if (properties.getIoThreadPoolSize() > 0) {
+            builder.ioThreadPoolSize(properties.getIoThreadPoolSize());
+        }
+        if (properties.getComputationThreadPoolSize() > 0) {
+            builder.computationThreadPoolSize(properties.getComputationThreadPoolSize());
+        }
+        return builder.build();
+    }
 
     /**
      * 注入RedisTemplate，key-value都使用string类型
@@ -35,9 +95,12 @@ public class EnhanceDataRedisAutoConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean(RedisTemplate.class)
-    public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+    public RedisTemplate<String, String> redisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                      MyRedisProperties myRedisProperties,
+                                                      DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory) {
         RedisTemplate<String, String> redisTemplate = new RedisTemplate<>();
-        buildRedisTemplate(redisTemplate, redisConnectionFactory);
+        buildRedisTemplate(redisTemplate, redisConnectionFactory,
+                dynamicRedisTemplateFactory.createValueSerializer(myRedisProperties.getRedisProperties().getDatabase()));
         return redisTemplate;
     }
 
@@ -48,40 +111,141 @@ public class EnhanceDataRedisAutoConfiguration {
 //    @ConditionalOnMissingBean(StringRedisTemplate.class)
 //    public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
 //        StringRedisTemplate redisTemplate = new StringRedisTemplate();
-//        buildRedisTemplate(redisTemplate, redisConnectionFactory);
+//        buildRedisTemplate(redisTemplate, redisConnectionFactory, RedisSerializer.string());
 //        return redisTemplate;
 //    }
 
     /**
-     * 通过Redis连接工厂构建一个RedisTemplate
+     * 通过Redis连接工厂构建一个RedisTemplate，key使用字符串，value按默认db的序列化配置
      */
     private static void buildRedisTemplate(RedisTemplate<String, String> redisTemplate,
-                                           RedisConnectionFactory redisConnectionFactory) {
+                                           RedisConnectionFactory redisConnectionFactory,
+                                           RedisSerializer<?> valueSerializer) {
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
         redisTemplate.setKeySerializer(stringRedisSerializer);
         redisTemplate.setStringSerializer(stringRedisSerializer);
         redisTemplate.setDefaultSerializer(stringRedisSerializer);
         redisTemplate.setHashKeySerializer(stringRedisSerializer);
-        redisTemplate.setHashValueSerializer(stringRedisSerializer);
-        redisTemplate.setValueSerializer(stringRedisSerializer);
+        redisTemplate.setHashValueSerializer(valueSerializer);
+        redisTemplate.setValueSerializer(valueSerializer);
         redisTemplate.setConnectionFactory(redisConnectionFactory);
     }
 
 
     /**
-     * 默认数据源的动态redisHelper
+     * 将提交线程的redis db传递到线程池任务中，springboot自动配置的任务线程池（@Async）会自动使用该装饰器
+     */
+    @Bean
+    @ConditionalOnMissingBean(TaskDecorator.class)
+    public RedisDatabaseTaskDecorator redisDatabaseTaskDecorator() {
+        return new RedisDatabaseTaskDecorator();
+    }
+
+    /**
+     * 动态RedisTemplate工厂，同步和响应式的动态模板共用
      * 这些参数由lettuce客户端帮我们自动配置并注入到容器
      */
+    @Bean
+    public DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory(
+            MyRedisProperties myRedisProperties,
+            ObjectProvider<List<LettuceClientConfigurationBuilderCustomizer>> builderCustomizers,
+            ClientResources clientResources,
+            ObjectProvider<DynamicRedisMetrics> dynamicRedisMetrics) {
+        DynamicRedisTemplateFactory<String, String> factory =
+                new DynamicRedisTemplateFactory<>(myRedisProperties, builderCustomizers.getIfAvailable(), clientResources);
+        factory.setMetrics(dynamicRedisMetrics.getIfAvailable());
+        return factory;
+    }
+
+    /**
+     * db路由策略，按 redis.routing.strategies 的顺序组合内置策略
+     */
+    @Bean
+    @ConditionalOnMissingBean(RedisRoutingStrategy.class)
+    public RedisRoutingStrategy redisRoutingStrategy(MyRedisProperties myRedisProperties, BeanFactory beanFactory) {
+        MyRedisProperties.RoutingProperties routing = myRedisProperties.getRouting();
+        List<RedisRoutingStrategy> strategies = new ArrayList<>();
+        for (MyRedisProperties.RoutingStrategyType type : routing.getStrategies()) {
+            switch (type) {
+                case KEY_PREFIX:
+                    checkDatabases("redis.routing.key-prefixes", routing.getKeyPrefixes(), myRedisProperties.getDatabases());
+                    strategies.add(new KeyPrefixRoutingStrategy(routing.getKeyPrefixes()));
+                    break;
+                case TENANT:
+                    strategies.add(new TenantHeaderRoutingStrategy(tenantDatabaseResolver(beanFactory)));
+                    break;
+                default:
+                    strategies.add(ThreadLocalRoutingStrategy.INSTANCE);
+            }
+        }
+        return strategies.size() == 1 ? strategies.get(0) : new CompositeRoutingStrategy(strategies);
+    }
+
+    /**
+     * 租户路由策略和租户过滤器共用的租户解析器，只在用到时创建：
+     * 容器中有自定义的 TenantDatabaseResolver（例如查询租户表）时包装一层本地缓存并检查返回的db，否则使用 redis.routing.tenants 配置。
+     * 不作为自动注入的候选，避免与自定义的 TenantDatabaseResolver 冲突，通过 {@link #TENANT_DATABASE_RESOLVER_BEAN_NAME} 获取
+     */
+    @Lazy
+    @Bean(name = TENANT_DATABASE_RESOLVER_BEAN_NAME, autowireCandidate = false)
+    public TenantDatabaseResolver redisTenantDatabaseResolver(MyRedisProperties myRedisProperties,
+                                                              ObjectProvider<TenantDatabaseResolver> tenantDatabaseResolver) {
+        MyRedisProperties.RoutingProperties routing = myRedisProperties.getRouting();
+        TenantDatabaseResolver resolver = tenantDatabaseResolver.getIfAvailable();
+        if (resolver == null) {
+            checkDatabases("redis.routing.tenants", routing.getTenants(), myRedisProperties.getDatabases());
+            return new MapTenantDatabaseResolver(routing.getTenants());
+        }
+        MyRedisProperties.TenantFilterProperties tenantFilter = routing.getTenantFilter();
+        return new CachingTenantDatabaseResolver(checkedTenantDatabaseResolver(resolver, myRedisProperties.getDatabases()),
+                tenantFilter.getCacheMaxEntries(), tenantFilter.getCacheTtl());
+    }
+
+    static TenantDatabaseResolver tenantDatabaseResolver(BeanFactory beanFactory) {
+        return beanFactory.getBean(TENANT_DATABASE_RESOLVER_BEAN_NAME, TenantDatabaseResolver.class);
+    }
+
+    /**
+     * 与 redis.routing.tenants 一样检查自定义解析器返回的db，超出范围时抛出异常（不会被缓存），而不是在执行命令时才失败
+     */
+    private static TenantDatabaseResolver checkedTenantDatabaseResolver(TenantDatabaseResolver resolver, int databaseCount) {
+        return new TenantDatabaseResolver() {
+            @Override
+            public int resolveDatabase(String tenant) {
+                int database = resolver.resolveDatabase(tenant);
+                if (database != DynamicRedisTemplate.NO_DATABASE && (database < 0 || database >= databaseCount)) {
+                    throw new IllegalStateException(resolver.getClass().getName() + " resolved tenant '" + tenant
+                            + "' to database " + database + ", which must be in [0, " + databaseCount + ")");
+                }
+                return database;
+            }
+
+            @Override
+            public boolean isBlocking() {
+                return resolver.isBlocking();
+            }
+        };
+    }
+
+    private static void checkDatabases(String property, Map<String, Integer> databases, int databaseCount) {
+        databases.forEach((name, database) -> {
+            if (database == null || database < 0 || database >= databaseCount) {
+                throw new IllegalArgumentException(property + "[" + name + "] must be in [0, " + databaseCount
+                        + "), but was " + database);
+            }
+        });
+    }
+
+    /**
+     * 默认数据源的动态redisHelper
+     */
     @Primary
     @Bean(name = {"redisHelper", "default", "default-helper"})
     public RedisHelper dynamicRedisHelper(StringRedisTemplate redisTemplate,
                                           MyRedisProperties myRedisProperties,
-                                          ObjectProvider<List<LettuceClientConfigurationBuilderCustomizer>> builderCustomizers) {
+                                          DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory,
+                                          ObjectProvider<RedisRoutingStrategy> redisRoutingStrategy) {
 
-        // 构建动态RedisTemplate工厂
-        DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory =
-                new DynamicRedisTemplateFactory<>(myRedisProperties,
-                        builderCustomizers.getIfAvailable());
         // ======================================================================================================
         // 这里在注入的时候默认值注入一个默认的redisTemplate，以及将这个redisTemplate放入到map中，该redisTemplate
         // 操作的是配置文件中使用spring.redis.database属性指定的db（若不显示指定，则使用的0号db）
@@ -89,16 +253,171 @@ public class EnhanceDataRedisAutoConfiguration {
         // 重新去创建一个redisTemplate，并缓存到map中（懒加载模式），并不会一次性创建出多个redisTemplate然后缓存起来（连接很昂贵）
         // ======================================================================================================
 
-        DynamicRedisTemplate<String, String> dynamicRedisTemplate = new DynamicRedisTemplate<>(dynamicRedisTemplateFactory);
+        DynamicRedisTemplate<String, String> dynamicRedisTemplate =
+                new DynamicRedisTemplate<>(dynamicRedisTemplateFactory, myRedisProperties.getDatabases());
+        int defaultDatabase = myRedisProperties.getRedisProperties().getDatabase();
+        RedisTemplate<String, String> defaultRedisTemplate = redisTemplate;
+        if (dynamicRedisTemplateFactory.getDatabaseMapping().isCustomized(defaultDatabase)
+                || dynamicRedisTemplateFactory.isCustomSerializer(defaultDatabase)) {
+            // 默认db被映射到了其他节点或物理db、配置了读取策略、value不是字符串或开启了压缩，容器中的redisTemplate与它不一致，按配置创建
+            defaultRedisTemplate = dynamicRedisTemplateFactory.createRedisTemplate(defaultDatabase);
+        }
         // 当不指定库时，默认使用的RedisTemplate来操作Redis(直接获取容器中的)
-        dynamicRedisTemplate.setDefaultRedisTemplate(redisTemplate);
-        Map<Object, RedisTemplate<String, String>> map = new HashMap<>(8);
-        // 配置文件中指定使用几号db
-        map.put(myRedisProperties.getRedisProperties().getDatabase(), redisTemplate);
-        // 将redisTemplate缓存起来
-        dynamicRedisTemplate.setRedisTemplates(map);
+        dynamicRedisTemplate.setDefaultRedisTemplate(defaultRedisTemplate);
+        dynamicRedisTemplate.setMetrics(dynamicRedisTemplateFactory.getMetrics());
+        redisRoutingStrategy.ifAvailable(dynamicRedisTemplate::setRoutingStrategy);
+        // 配置文件中指定使用几号db，将redisTemplate缓存起来
+        dynamicRedisTemplate.setRedisTemplates(Collections.singletonMap(defaultDatabase, defaultRedisTemplate));
 
-        return new RedisHelper(dynamicRedisTemplate);
+        // 跨db批量操作的线程池，由redisHelper在容器关闭时关闭
+        ExecutorService fanOutExecutor = Executors.newFixedThreadPool(myRedisProperties.getFanOutThreads(),
+                new CustomizableThreadFactory("redis-fan-out-"));
+        RedisHelper redisHelper = new RedisHelper(dynamicRedisTemplate, fanOutExecutor);
+        redisHelper.setPipelineBatchSize(myRedisProperties.getPipelineBatchSize());
+        MyRedisProperties.CoalescingProperties coalescing = myRedisProperties.getCoalescing();
+        if (coalescing.isEnabled()) {
+            redisHelper.setGetCoalescer(new RedisGetCoalescer(dynamicRedisTemplate, myRedisProperties.getDatabases(),
+                    coalescing.getWindow(), coalescing.getMaxBatchSize(), coalescing.getFlushThreads()));
+        }
+        if (myRedisProperties.getNearCache().isEnabled()) {
+            // 本地缓存通过独立的字符串连接读取，只支持未压缩的字符串value
+            for (Integer database : myRedisProperties.getNearCache().getDatabases().keySet()) {
+                if (dynamicRedisTemplateFactory.isCustomSerializer(database)) {
+                    throw new IllegalStateException("redis.near-cache.databases[" + database
+                            + "] requires the string serializer without compression");
+                }
+            }
+            RedisNearCache nearCache = new RedisNearCache(dynamicRedisTemplateFactory, myRedisProperties.getNearCache(),
+                    myRedisProperties.getDatabases(), myRedisProperties.getRedisProperties().getDatabase());
+            nearCache.start();
+            dynamicRedisTemplateFactory.getMetrics().bindNearCache(nearCache);
+            redisHelper.setNearCache(nearCache);
+        }
+        return redisHelper;
     }
 
+    /**
+     * 启动时并行预热 redis.warmup.databases 中配置的db
+     */
+    @Bean
+    public DynamicRedisWarmup<String, String> dynamicRedisWarmup(RedisHelper redisHelper,
+                                                             DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory,
+                                                             MyRedisProperties myRedisProperties) {
+        return new DynamicRedisWarmup<>(redisHelper.getRedisTemplate(), dynamicRedisTemplateFactory,
+                myRedisProperties.getWarmup());
+    }
+
+    /**
+     * 淘汰长时间未使用的动态db，通过 redis.eviction.enabled 开启
+     */
+    @Bean
+    public DynamicRedisTemplateEvictor<String, String> dynamicRedisTemplateEvictor(
+            RedisHelper redisHelper,
+            ObjectProvider<DynamicReactiveRedisTemplate<String, String>> dynamicReactiveRedisTemplate,
+            DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory,
+            MyRedisProperties myRedisProperties) {
+        return new DynamicRedisTemplateEvictor<>(redisHelper.getRedisTemplate(),
+                dynamicReactiveRedisTemplate.getIfAvailable(), dynamicRedisTemplateFactory, myRedisProperties);
+    }
+
+    /**
+     * 响应式的动态RedisTemplate，db从Reactor Context中获取，未指定db时使用容器中默认的连接工厂
+     * 其他db的连接工厂同样是在第一次使用时通过dynamicRedisTemplateFactory懒创建
+     */
+    @Bean
+    @ConditionalOnClass(name = {"reactor.core.publisher.Flux"})
+    @ConditionalOnMissingBean(DynamicReactiveRedisTemplate.class)
+    public DynamicReactiveRedisTemplate<String, String> dynamicReactiveRedisTemplate(
+            ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+            MyRedisProperties myRedisProperties,
+            DynamicRedisTemplateFactory<String, String> dynamicRedisTemplateFactory) {
+        int defaultDatabase = myRedisProperties.getRedisProperties().getDatabase();
+        if (dynamicRedisTemplateFactory.getDatabaseMapping().isCustomized(defaultDatabase)) {
+            // 默认db被映射或配置了读取策略时，未指定db的命令也需要按映射和读取策略发送
+            reactiveRedisConnectionFactory =
+                    dynamicRedisTemplateFactory.createReactiveRedisTemplate(defaultDatabase).getConnectionFactory();
+        }
+        return new DynamicReactiveRedisTemplate<>(reactiveRedisConnectionFactory,
+                dynamicRedisTemplateFactory.createSerializationContext(defaultDatabase),
+                dynamicRedisTemplateFactory, myRedisProperties.getDatabases());
+    }
+
+    /**
+     * {@link RedisDb} 注解的切面，声明为基础设施bean，使用spring aop的代理创建器，不依赖aspectj；
+     * spring.aop.auto=false 时不加载
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "spring.aop", name = "auto", havingValue = "true", matchIfMissing = true)
+    @Import(RedisDbAutoProxyRegistrar.class)
+    static class RedisDbConfiguration {
+
+        /**
+         * 静态方法避免提前初始化配置类
+         */
+        @Bean
+        @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+        @ConditionalOnMissingBean(RedisDbAdvisor.class)
+        public static RedisDbAdvisor redisDbAdvisor(BeanFactory beanFactory) {
+            return new RedisDbAdvisor(new RedisDbMethodInterceptor(beanFactory));
+        }
+    }
+
+    /**
+     * micrometer指标，classpath中没有micrometer时不加载；容器中没有MeterRegistry或 redis.metrics.enabled=false 时不记录任何指标
+     */
+    @Configuration
+    @ConditionalOnClass(name = {"io.micrometer.core.instrument.MeterRegistry"})
+    static class DynamicRedisMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(DynamicRedisMetrics.class)
+        public DynamicRedisMetrics dynamicRedisMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                                       MyRedisProperties myRedisProperties) {
+            MeterRegistry registry = meterRegistry.getIfUnique();
+            if (!myRedisProperties.getMetrics().isEnabled() || registry == null) {
+                return DynamicRedisMetrics.NOOP;
+            }
+            return new MicrometerDynamicRedisMetrics(registry, myRedisProperties.getDatabases(),
+                    myRedisProperties.getMetrics().isPercentileHistogram());
+        }
+    }
+
+
+    /**
+     * servlet应用的租户过滤器，redis.routing.tenant-filter.enabled=true 时开启
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(prefix = "redis.routing.tenant-filter", name = "enabled", havingValue = "true")
+    static class RedisTenantFilterConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(name = "redisTenantFilter")
+        public FilterRegistrationBean<RedisTenantFilter> redisTenantFilter(MyRedisProperties myRedisProperties,
+                                                                           BeanFactory beanFactory) {
+            MyRedisProperties.RoutingProperties routing = myRedisProperties.getRouting();
+            RedisTenantFilter filter = new RedisTenantFilter(tenantDatabaseResolver(beanFactory), routing.getTenantHeader());
+            FilterRegistrationBean<RedisTenantFilter> registration = new FilterRegistrationBean<>(filter);
+            registration.setOrder(routing.getTenantFilter().getOrder());
+            return registration;
+        }
+    }
+
+    /**
+     * WebFlux应用的租户过滤器，redis.routing.tenant-filter.enabled=true 时开启
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @ConditionalOnProperty(prefix = "redis.routing.tenant-filter", name = "enabled", havingValue = "true")
+    static class RedisTenantWebFilterConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(RedisTenantWebFilter.class)
+        public RedisTenantWebFilter redisTenantWebFilter(MyRedisProperties myRedisProperties, BeanFactory beanFactory) {
+            MyRedisProperties.RoutingProperties routing = myRedisProperties.getRouting();
+            RedisTenantWebFilter filter = new RedisTenantWebFilter(tenantDatabaseResolver(beanFactory), routing.getTenantHeader());
+            filter.setOrder(routing.getTenantFilter().getOrder());
+            return filter;
+        }
+    }
 }
@@ -1,14 +1,18 @@
 package com.yebuxiu.config;
 
 import com.yebuxiu.config.properties.MyRedisProperties;
+import com.yebuxiu.metrics.DynamicRedisMetrics;
 import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisURI;
 import io.lettuce.core.TimeoutOptions;
 import io.lettuce.core.resource.ClientResources;
-import io.lettuce.core.resource.DefaultClientResources;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties.Pool;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration.LettuceClientConfigurationBuilder;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
@@ -38,17 +42,27 @@ class LettuceConnectionConfigure extends RedisConnectionConfiguration {
      */
     private final List<LettuceClientConfigurationBuilderCustomizer> builderCustomizers;
 
+    /**
+     * 所有db共享的clientResources（I/O线程、计算线程、timer），由容器管理其生命周期
+     */
     private final ClientResources clientResources;
 
+    /**
+     * 当前配置的逻辑db
+     */
+    private final int database;
+
     LettuceConnectionConfigure(MyRedisProperties myRedisProperties,
                                List<LettuceClientConfigurationBuilderCustomizer> builderCustomizers,
-                               int database) {
-        super(myRedisProperties, database);
+                               ClientResources clientResources,
+                               int database,
+                               RedisDatabaseLocation location) {
+        super(myRedisProperties, location);
         this.myRedisProperties = myRedisProperties;
         this.builderCustomizers = Optional.ofNullable(builderCustomizers).orElse(new ArrayList<>());
-        // 每次new LettuceConnectionConfiguration 都新建一个clientResources，也可以使用容器中默认注入的
-        // 参考 LettuceConnectionConfiguration
-        clientResources = DefaultClientResources.create();
+        // 不再为每个db新建clientResources，否则每个db都会拥有一套独立的netty EventLoop、计算线程池和timer
+        this.clientResources = clientResources;
+        this.database = database;
     }
 
     /**
@@ -61,26 +75,77 @@ class LettuceConnectionConfigure extends RedisConnectionConfiguration {
         return createLettuceConnectionFactory(clientConfig);
     }
 
+    /**
+     * 创建lettuce原生连接地址，总是指向主节点（哨兵模式下由哨兵解析），不受读取策略影响
+     */
+    RedisURI redisUri() {
+        RedisURI.Builder builder;
+        RedisSentinelConfiguration sentinelConfig = getSentinelConfig();
+        if (sentinelConfig != null) {
+            // 通过哨兵连接到当前的主节点
+            builder = RedisURI.builder().withSentinelMasterId(getLocation().getSentinelMaster());
+            String sentinelPassword = getLocation().getSentinelPassword();
+            for (RedisNode sentinel : getLocation().getSentinels()) {
+                if (sentinelPassword == null) {
+                    builder.withSentinel(sentinel.getHost(), sentinel.getPort());
+                } else {
+                    builder.withSentinel(sentinel.getHost(), sentinel.getPort(), sentinelPassword);
+                }
+            }
+        } else {
+            // 静态主从只连接主节点
+            builder = RedisURI.builder()
+                    .withHost(getLocation().getHost())
+                    .withPort(getLocation().getPort());
+        }
+        builder.withDatabase(getLocation().getDatabase());
+        if (getLocation().getPassword() != null) {
+            builder.withPassword(getLocation().getPassword());
+        }
+        if (getLocation().isSsl()) {
+            builder.withSsl(true);
+        }
+        if (getProperties().getTimeout() != null) {
+            builder.withTimeout(getProperties().getTimeout());
+        }
+        if (StringUtils.hasText(getProperties().getClientName())) {
+            builder.withClientName(getProperties().getClientName());
+        }
+        return builder.build();
+    }
+
     /**
      * 创建lettuce连接工厂
      */
     private LettuceConnectionFactory createLettuceConnectionFactory(LettuceClientConfiguration clientConfiguration) {
-        LettuceConnectionFactory lettuceConnectionFactory = new LettuceConnectionFactory(getStandaloneConfig(), clientConfiguration);
+        LettuceConnectionFactory lettuceConnectionFactory = newLettuceConnectionFactory(clientConfiguration);
         // 由于我们手动创建lettuceConnectionFactory连接工厂，所以afterPropertiesSet并不会像spring一样自动被吊起
         // 必须手动调用afterPropertiesSet()，初始化connectionProvider，不然创建连接会报错空指针
         lettuceConnectionFactory.afterPropertiesSet();
         return lettuceConnectionFactory;
     }
 
+    /**
+     * 按节点拓扑选择连接配置：哨兵 > 静态主从 > 单机
+     */
+    private LettuceConnectionFactory newLettuceConnectionFactory(LettuceClientConfiguration clientConfiguration) {
+        RedisSentinelConfiguration sentinelConfig = getSentinelConfig();
+        if (sentinelConfig != null) {
+            return new LettuceConnectionFactory(sentinelConfig, clientConfiguration);
+        }
+        RedisStaticMasterReplicaConfiguration masterReplicaConfig = getMasterReplicaConfig();
+        if (masterReplicaConfig != null) {
+            return new LettuceConnectionFactory(masterReplicaConfig, clientConfiguration);
+        }
+        return new LettuceConnectionFactory(getStandaloneConfig(), clientConfiguration);
+    }
+
     /**
      * 获取lettuce客户端配置
      */
     private LettuceClientConfiguration getLettuceClientConfiguration(ClientResources clientResources, Pool pool) {
-        LettuceClientConfigurationBuilder builder = createBuilder(pool);
+        LettuceClientConfigurationBuilder builder = createBuilder(pool, database);
         applyProperties(builder);
-        if (StringUtils.hasText(getProperties().getUrl())) {
-            customizeConfigurationFromUrl(builder);
-        }
         builder.clientOptions(createClientOptions());
         builder.clientResources(clientResources);
         customize(builder);
@@ -99,21 +164,26 @@ class LettuceConnectionConfigure extends RedisConnectionConfiguration {
     /**
      * 创建客户端配置构建器，用于构建客户端配置
      */
-    private static LettuceClientConfigurationBuilder createBuilder(Pool pool) {
+    private static LettuceClientConfigurationBuilder createBuilder(Pool pool, int database) {
         if (pool == null) {
             return LettuceClientConfiguration.builder();
         }
-        return PoolBuilderFactory.createBuilder(pool);
+        return PoolBuilderFactory.createBuilder(pool, database);
     }
 
     private LettuceClientConfigurationBuilder applyProperties(
             LettuceClientConfigurationBuilder builder) {
-        if (getProperties().isSsl()) {
+        // ssl由节点决定（isSsl或rediss://地址）
+        if (getLocation().isSsl()) {
             builder.useSsl();
         }
         if (getProperties().getTimeout() != null) {
             builder.commandTimeout(getProperties().getTimeout());
         }
+        // 配置了读取策略时lettuce使用主从连接，读命令按策略选择节点，写命令和事务（multi/exec）发往主节点
+        if (getLocation().getReadFrom() != null) {
+            builder.readFrom(getLocation().getReadFrom());
+        }
         if (getProperties().getLettuce() != null) {
             RedisProperties.Lettuce lettuce = getProperties().getLettuce();
             if (lettuce.getShutdownTimeout() != null && !lettuce.getShutdownTimeout().isZero()) {
@@ -135,24 +205,19 @@ class LettuceConnectionConfigure extends RedisConnectionConfiguration {
         return ClientOptions.builder();
     }
 
-    private void customizeConfigurationFromUrl(LettuceClientConfigurationBuilder builder) {
-        ConnectionInfo connectionInfo = parseUrl(getProperties().getUrl());
-        if (connectionInfo.isUseSsl()) {
-            builder.useSsl();
-        }
-    }
-
     /**
      * Inner class to allow optional commons-pool2 dependency.
      */
     private static class PoolBuilderFactory {
 
-        static LettuceClientConfigurationBuilder createBuilder(Pool properties) {
-            return LettucePoolingClientConfiguration.builder().poolConfig(getPoolConfig(properties));
+        static LettuceClientConfigurationBuilder createBuilder(Pool properties, int database) {
+            return LettucePoolingClientConfiguration.builder().poolConfig(getPoolConfig(properties, database));
         }
 
-        private static GenericObjectPoolConfig<?> getPoolConfig(Pool properties) {
+        private static GenericObjectPoolConfig<?> getPoolConfig(Pool properties, int database) {
             GenericObjectPoolConfig<?> config = new GenericObjectPoolConfig<>();
+            // 按db命名连接池的JMX MBean，用于按db采集连接池指标
+            config.setJmxNameBase(DynamicRedisMetrics.poolJmxNameBase(database));
             config.setMaxTotal(properties.getMaxActive());
             config.setMaxIdle(properties.getMaxIdle());
             config.setMinIdle(properties.getMinIdle());
@@ -2,9 +2,11 @@ package com.yebuxiu.config;
 
 import com.yebuxiu.config.properties.MyRedisProperties;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisNode;
 import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
-import org.springframework.util.StringUtils;
+import org.springframework.data.redis.connection.RedisStaticMasterReplicaConfiguration;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -13,7 +15,7 @@ import java.net.URISyntaxException;
  * Base Redis connection configuration.
  * 参考：spring-boot-autoconfigure 下的 RedisConnectionConfiguration ，参考版本2.2.7
  * 原：从redisProperties 中读取database
- * 修改后：手动指定database
+ * 修改后：手动指定database，连接地址和物理db由 {@link RedisDatabaseMapping} 按逻辑db确定
  *
  * @author Mark Paluch
  * @author Stephane Nicoll
@@ -28,37 +30,70 @@ public abstract class RedisConnectionConfiguration {
 
 
     /**
-     * redis所使用的库，为指定的db动态的创建RedisTemplate
+     * 逻辑db所在的节点和物理db，为指定的db动态的创建RedisTemplate
      */
-    private final int database;
+    private final RedisDatabaseLocation location;
 
     protected RedisConnectionConfiguration(MyRedisProperties myRedisProperties,
-                                           int database) {
+                                           RedisDatabaseLocation location) {
         this.myRedisProperties = myRedisProperties;
-        this.database = database;
+        this.location = location;
     }
 
     /**
      * redis 单机模式配置信息
      */
     protected final RedisStandaloneConfiguration getStandaloneConfig() {
-        RedisProperties gps = myRedisProperties.getRedisProperties();
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
-        if (StringUtils.hasText(gps.getUrl())) {
-            ConnectionInfo connectionInfo = parseUrl(gps.getUrl());
-            config.setHostName(connectionInfo.getHostName());
-            config.setPort(connectionInfo.getPort());
-            config.setPassword(RedisPassword.of(connectionInfo.getPassword()));
-        } else {
-            config.setHostName(gps.getHost());
-            config.setPort(gps.getPort());
-            config.setPassword(RedisPassword.of(gps.getPassword()));
+        config.setHostName(location.getHost());
+        config.setPort(location.getPort());
+        config.setPassword(RedisPassword.of(location.getPassword()));
+        // 使用映射后的物理db
+        config.setDatabase(location.getDatabase());
+        return config;
+    }
+
+    /**
+     * redis 哨兵模式配置信息，节点不是哨兵模式时返回null
+     */
+    protected final RedisSentinelConfiguration getSentinelConfig() {
+        if (!location.isSentinel()) {
+            return null;
+        }
+        RedisSentinelConfiguration config = new RedisSentinelConfiguration();
+        config.master(location.getSentinelMaster());
+        config.setSentinels(location.getSentinels());
+        if (location.getPassword() != null) {
+            config.setPassword(RedisPassword.of(location.getPassword()));
+        }
+        if (location.getSentinelPassword() != null) {
+            config.setSentinelPassword(RedisPassword.of(location.getSentinelPassword()));
+        }
+        config.setDatabase(location.getDatabase());
+        return config;
+    }
+
+    /**
+     * redis 静态主从配置信息（主节点加只读副本），节点没有配置副本时返回null
+     */
+    protected final RedisStaticMasterReplicaConfiguration getMasterReplicaConfig() {
+        if (location.isSentinel() || location.getReplicas().isEmpty()) {
+            return null;
+        }
+        RedisStaticMasterReplicaConfiguration config =
+                new RedisStaticMasterReplicaConfiguration(location.getHost(), location.getPort());
+        for (RedisNode replica : location.getReplicas()) {
+            config.addNode(replica.getHost(), replica.getPort());
         }
-        // 使用自定义db
-        config.setDatabase(database);
+        config.setPassword(RedisPassword.of(location.getPassword()));
+        config.setDatabase(location.getDatabase());
         return config;
     }
 
+    protected final RedisDatabaseLocation getLocation() {
+        return location;
+    }
+
 
     protected final RedisProperties getProperties() {
         return myRedisProperties.getRedisProperties();
@@ -0,0 +1,152 @@
+package com.yebuxiu.config;
+
+import io.lettuce.core.ReadFrom;
+import org.springframework.data.redis.connection.RedisNode;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 逻辑db实际所在的redis节点和物理db，以及节点的拓扑（单机、哨兵、静态主从）和该db的读取策略
+ */
+public final class RedisDatabaseLocation {
+
+    private final String node;
+
+    private final String host;
+
+    private final int port;
+
+    private final String password;
+
+    private final boolean ssl;
+
+    private final int database;
+
+    /**
+     * 哨兵监控的主节点名称，为null时不是哨兵模式
+     */
+    private final String sentinelMaster;
+
+    private final List<RedisNode> sentinels;
+
+    private final String sentinelPassword;
+
+    /**
+     * 静态只读副本，主节点为host、port
+     */
+    private final List<RedisNode> replicas;
+
+    /**
+     * 读取策略，为null时只读主节点
+     */
+    private final ReadFrom readFrom;
+
+    RedisDatabaseLocation(String node, String host, int port, String password, boolean ssl, int database) {
+        this(node, host, port, password, ssl, database, null, Collections.emptyList(), null,
+                Collections.emptyList(), null);
+    }
+
+    RedisDatabaseLocation(String node, String host, int port, String password, boolean ssl, int database,
+                          String sentinelMaster, List<RedisNode> sentinels, String sentinelPassword,
+                          List<RedisNode> replicas, ReadFrom readFrom) {
+        this.node = node;
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.ssl = ssl;
+        this.database = database;
+        this.sentinelMaster = sentinelMaster;
+        this.sentinels = Collections.unmodifiableList(sentinels);
+        this.sentinelPassword = sentinelPassword;
+        this.replicas = Collections.unmodifiableList(replicas);
+        this.readFrom = readFrom;
+    }
+
+    /**
+     * 同一节点上另一个db的位置，拓扑与当前节点相同
+     */
+    RedisDatabaseLocation withDatabase(int database, ReadFrom readFrom) {
+        return new RedisDatabaseLocation(node, host, port, password, ssl, database, sentinelMaster, sentinels,
+                sentinelPassword, replicas, readFrom);
+    }
+
+    /**
+     * @return 节点名称，未映射的db为 {@link RedisDatabaseMapping#DEFAULT_NODE}
+     */
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * @return 主节点地址，哨兵模式下无意义
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isSsl() {
+        return ssl;
+    }
+
+    /**
+     * @return 物理db，即连接建立后SELECT的db
+     */
+    public int getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return 是否通过哨兵发现主节点
+     */
+    public boolean isSentinel() {
+        return sentinelMaster != null;
+    }
+
+    public String getSentinelMaster() {
+        return sentinelMaster;
+    }
+
+    public List<RedisNode> getSentinels() {
+        return sentinels;
+    }
+
+    public String getSentinelPassword() {
+        return sentinelPassword;
+    }
+
+    /**
+     * @return 静态只读副本，哨兵模式下副本由哨兵发现，这里为空
+     */
+    public List<RedisNode> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return 是否存在可以读取的副本（哨兵或静态副本）
+     */
+    public boolean hasReplicas() {
+        return isSentinel() || !replicas.isEmpty();
+    }
+
+    /**
+     * @return 读取策略，为null时只读主节点
+     */
+    public ReadFrom getReadFrom() {
+        return readFrom;
+    }
+
+    @Override
+    public String toString() {
+        String address = isSentinel() ? "sentinel:" + sentinelMaster : host + ":" + port;
+        return node + "(" + address + ")/" + database;
+    }
+}
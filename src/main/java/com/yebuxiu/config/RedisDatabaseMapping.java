@@ -0,0 +1,236 @@
+package com.yebuxiu.config;
+
+import com.yebuxiu.config.properties.MyRedisProperties;
+import io.lettuce.core.ReadFrom;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 逻辑db到redis节点和物理db的映射，启动时根据 redis.nodes 和 redis.mappings 计算好每个逻辑db的位置，
+ * 没有被映射的逻辑db在 redis.redisProperties 指定的节点上，物理db与逻辑db相同。
+ * 节点可以是单机、哨兵或静态主从，配置了 readFrom 的db从副本读取。
+ * 调用方仍然只使用逻辑db（setCurrentDatabase等），由 {@link DynamicRedisTemplateFactory} 按映射连接到对应节点
+ */
+public class RedisDatabaseMapping {
+
+    /**
+     * redis.redisProperties 指定的节点名称
+     */
+    public static final String DEFAULT_NODE = "default";
+
+    /**
+     * 下标为逻辑db
+     */
+    private final RedisDatabaseLocation[] locations;
+
+    /**
+     * 下标为逻辑db，是否被 redis.mappings 显式映射
+     */
+    private final boolean[] mapped;
+
+    public RedisDatabaseMapping(MyRedisProperties myRedisProperties) {
+        int databases = myRedisProperties.getDatabases();
+        this.locations = new RedisDatabaseLocation[databases];
+        this.mapped = new boolean[databases];
+        Map<String, MyRedisProperties.NodeProperties> nodes = myRedisProperties.getNodes();
+        Assert.isTrue(!nodes.containsKey(DEFAULT_NODE), "Node name '" + DEFAULT_NODE + "' is reserved");
+        for (MyRedisProperties.DatabaseMappingProperties mapping : myRedisProperties.getMappings()) {
+            MyRedisProperties.NodeProperties node = nodes.get(mapping.getNode());
+            Assert.notNull(node, "Unknown redis node '" + mapping.getNode() + "' in mapping of databases "
+                    + mapping.getDatabases());
+            RedisDatabaseLocation nodeLocation = nodeLocation(mapping.getNode(), node);
+            ReadFrom readFrom = parseReadFrom(node.getReadFrom());
+            TreeSet<Integer> logical = parseDatabases(mapping.getDatabases(), databases);
+            int offset = mapping.getPhysicalDatabase() == null ? 0 : mapping.getPhysicalDatabase() - logical.first();
+            for (int database : logical) {
+                Assert.isTrue(!mapped[database], "Database " + database + " is mapped more than once");
+                int physical = database + offset;
+                Assert.isTrue(physical >= 0, "Physical database of " + database + " must not be negative");
+                locations[database] = nodeLocation.withDatabase(physical, readFrom);
+                mapped[database] = true;
+            }
+        }
+        RedisDatabaseLocation defaultLocation = defaultLocation(myRedisProperties);
+        for (int database = 0; database < databases; database++) {
+            if (locations[database] == null) {
+                locations[database] = defaultLocation.withDatabase(database, null);
+            }
+        }
+        // 按db配置的读取策略优先于节点的读取策略
+        for (Map.Entry<Integer, String> entry : myRedisProperties.getReadFrom().entrySet()) {
+            int database = entry.getKey();
+            Assert.isTrue(database >= 0 && database < databases, "ReadFrom database " + database
+                    + " out of range [0, " + databases + ")");
+            locations[database] = locations[database].withDatabase(locations[database].getDatabase(),
+                    parseReadFrom(entry.getValue()));
+        }
+        for (int database = 0; database < databases; database++) {
+            RedisDatabaseLocation location = locations[database];
+            Assert.isTrue(location.getReadFrom() == null || location.hasReplicas(), "Database " + database
+                    + " configures readFrom but node '" + location.getNode() + "' has neither sentinel nor replicas");
+        }
+    }
+
+    /**
+     * @param database 逻辑db
+     * @return 该逻辑db所在的节点和物理db
+     */
+    public RedisDatabaseLocation locate(int database) {
+        if (database < 0 || database >= locations.length) {
+            throw new IllegalArgumentException("Redis database index out of range [0, "
+                    + locations.length + "): " + database);
+        }
+        return locations[database];
+    }
+
+    /**
+     * @param database 逻辑db
+     * @return 是否被 redis.mappings 显式映射，未映射时与 redis.redisProperties 的节点和db一致
+     */
+    public boolean isMapped(int database) {
+        return database >= 0 && database < mapped.length && mapped[database];
+    }
+
+    /**
+     * @return 所有节点名称
+     */
+    public Set<String> getNodes() {
+        Set<String> nodes = new LinkedHashSet<>();
+        for (RedisDatabaseLocation location : locations) {
+            nodes.add(location.getNode());
+        }
+        return nodes;
+    }
+
+    /**
+     * @return 按节点分组的逻辑db
+     */
+    public Map<String, List<Integer>> getDatabasesByNode() {
+        Map<String, List<Integer>> databasesByNode = new HashMap<>();
+        for (int database = 0; database < locations.length; database++) {
+            databasesByNode.computeIfAbsent(locations[database].getNode(), node -> new ArrayList<>()).add(database);
+        }
+        return databasesByNode;
+    }
+
+    /**
+     * @param database 逻辑db
+     * @return 是否与springboot自动配置的默认连接工厂连接方式不同（被映射或配置了读取策略），
+     * 默认db为true时需要由 {@link DynamicRedisTemplateFactory} 单独创建默认的redisTemplate
+     */
+    public boolean isCustomized(int database) {
+        return isMapped(database) || locate(database).getReadFrom() != null;
+    }
+
+    private static RedisDatabaseLocation nodeLocation(String name, MyRedisProperties.NodeProperties node) {
+        List<RedisNode> replicas = parseNodes(node.getReplicas(), "replica");
+        MyRedisProperties.SentinelProperties sentinel = node.getSentinel();
+        if (sentinel != null && StringUtils.hasText(sentinel.getMaster())) {
+            Assert.isTrue(replicas.isEmpty(), "Node '" + name + "' can not configure both sentinel and replicas");
+            return new RedisDatabaseLocation(name, null, 0, node.getPassword(), node.isSsl(), 0,
+                    sentinel.getMaster(), parseNodes(sentinel.getNodes(), "sentinel"), sentinel.getPassword(),
+                    replicas, null);
+        }
+        if (StringUtils.hasText(node.getUrl())) {
+            RedisConnectionConfiguration.ConnectionInfo info = RedisConnectionConfiguration.parseUrl(node.getUrl());
+            return new RedisDatabaseLocation(name, info.getHostName(), info.getPort(), info.getPassword(),
+                    info.isUseSsl() || node.isSsl(), 0, null, Collections.emptyList(), null, replicas, null);
+        }
+        return new RedisDatabaseLocation(name, node.getHost(), node.getPort(), node.getPassword(), node.isSsl(), 0,
+                null, Collections.emptyList(), null, replicas, null);
+    }
+
+    /**
+     * redisProperties 指定的节点，与springboot自动配置一致：配置了哨兵时优先使用哨兵，其次是url，最后是host、port
+     */
+    private static RedisDatabaseLocation defaultLocation(MyRedisProperties myRedisProperties) {
+        RedisProperties properties = myRedisProperties.getRedisProperties();
+        List<RedisNode> replicas = parseNodes(myRedisProperties.getReplicas(), "replica");
+        RedisProperties.Sentinel sentinel = properties.getSentinel();
+        if (sentinel != null && StringUtils.hasText(sentinel.getMaster())) {
+            Assert.isTrue(replicas.isEmpty(), "redis.replicas can not be used together with spring.redis.sentinel");
+            return new RedisDatabaseLocation(DEFAULT_NODE, null, 0, properties.getPassword(), properties.isSsl(), 0,
+                    sentinel.getMaster(), parseNodes(sentinel.getNodes(), "sentinel"), null, replicas, null);
+        }
+        if (StringUtils.hasText(properties.getUrl())) {
+            RedisConnectionConfiguration.ConnectionInfo info = RedisConnectionConfiguration.parseUrl(properties.getUrl());
+            return new RedisDatabaseLocation(DEFAULT_NODE, info.getHostName(), info.getPort(), info.getPassword(),
+                    info.isUseSsl() || properties.isSsl(), 0, null, Collections.emptyList(), null, replicas, null);
+        }
+        return new RedisDatabaseLocation(DEFAULT_NODE, properties.getHost(), properties.getPort(),
+                properties.getPassword(), properties.isSsl(), 0, null, Collections.emptyList(), null, replicas, null);
+    }
+
+    /**
+     * 解析 host:port 形式的节点列表
+     */
+    private static List<RedisNode> parseNodes(List<String> values, String type) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<RedisNode> nodes = new ArrayList<>(values.size());
+        for (String value : values) {
+            try {
+                String[] parts = StringUtils.split(value.trim(), ":");
+                Assert.state(parts != null, "Must be defined as 'host:port'");
+                nodes.add(new RedisNode(parts[0], Integer.parseInt(parts[1])));
+            } catch (RuntimeException ex) {
+                throw new IllegalStateException("Invalid redis " + type + " node '" + value + "'", ex);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * 解析读取策略，支持 replicaPreferred、replica-preferred、REPLICA_PREFERRED 等写法
+     */
+    private static ReadFrom parseReadFrom(String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        return ReadFrom.valueOf(value.trim().replace("-", "").replace("_", ""));
+    }
+
+    /**
+     * 解析 3、0-7、0-3,6 形式的db列表
+     */
+    private static TreeSet<Integer> parseDatabases(String value, int databases) {
+        Assert.hasText(value, "Mapping databases must not be empty");
+        TreeSet<Integer> result = new TreeSet<>();
+        for (String part : StringUtils.commaDelimitedListToStringArray(value)) {
+            part = part.trim();
+            int dash = part.indexOf('-');
+            int from;
+            int to;
+            try {
+                if (dash > 0) {
+                    from = Integer.parseInt(part.substring(0, dash).trim());
+                    to = Integer.parseInt(part.substring(dash + 1).trim());
+                } else {
+                    from = Integer.parseInt(part);
+                    to = from;
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid mapping databases '" + value + "'", e);
+            }
+            Assert.isTrue(from <= to, "Invalid database range '" + part + "'");
+            Assert.isTrue(from >= 0 && to < databases, "Database range '" + part + "' out of range [0, "
+                    + databases + ")");
+            for (int database = from; database <= to; database++) {
+                result.add(database);
+            }
+        }
+        return result;
+    }
+}
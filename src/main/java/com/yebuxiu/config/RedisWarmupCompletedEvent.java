@@ -0,0 +1,44 @@
+package com.yebuxiu.config;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * redis预热结束事件，包含每个db的预热耗时和失败信息
+ */
+public class RedisWarmupCompletedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 每个db预热耗时（毫秒）
+     */
+    private final Map<Integer, Long> warmupMillis;
+
+    /**
+     * 预热失败的db及异常
+     */
+    private final Map<Integer, Throwable> failures;
+
+    public RedisWarmupCompletedEvent(Object source, Map<Integer, Long> warmupMillis, Map<Integer, Throwable> failures) {
+        super(source);
+        // 复制为不可修改的快照，监听器拿到的内容不受发布方后续修改的影响，且可以序列化
+        this.warmupMillis = Collections.unmodifiableMap(new LinkedHashMap<>(warmupMillis));
+        this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    public Map<Integer, Long> getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    public Map<Integer, Throwable> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+}
@@ -1,8 +1,18 @@
 package com.yebuxiu.config.properties;
 
+import com.yebuxiu.serializer.RedisSerializerProfile;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "redis")
@@ -10,6 +20,93 @@ public class MyRedisProperties {
 
     private RedisProperties redisProperties;
 
+    /**
+     * redis服务端的db数量（redis.conf中的databases配置），决定可动态切换的db范围[0, databases)
+     */
+    private int databases = 16;
+
+    /**
+     * 跨db批量操作（multiGet/multiSet）并发执行各个db批次的线程数
+     */
+    private int fanOutThreads = 8;
+
+    /**
+     * pipeline批量写入（strSetAll/multiSet）时每批的key数量，超大批次会按该大小分批刷新
+     */
+    private int pipelineBatchSize = 1000;
+
+    /**
+     * GET合并配置
+     */
+    private CoalescingProperties coalescing = new CoalescingProperties();
+
+    /**
+     * 客户端本地缓存配置
+     */
+    private NearCacheProperties nearCache = new NearCacheProperties();
+
+    /**
+     * 指标配置
+     */
+    private MetricsProperties metrics = new MetricsProperties();
+
+    /**
+     * 所有动态创建的lettuce连接工厂共享的ClientResources配置
+     */
+    private ClientResourcesProperties clientResources = new ClientResourcesProperties();
+
+    /**
+     * 启动时预热的db配置
+     */
+    private WarmupProperties warmup = new WarmupProperties();
+
+    /**
+     * 空闲db淘汰配置
+     */
+    private EvictionProperties eviction = new EvictionProperties();
+
+    /**
+     * redis节点，key为节点名称，在 mappings 中引用；未配置时所有db都在 redisProperties 指定的节点上
+     */
+    private Map<String, NodeProperties> nodes = new LinkedHashMap<>();
+
+    /**
+     * 逻辑db到节点和物理db的映射，没有被映射的逻辑db使用 redisProperties 指定的节点，物理db与逻辑db相同
+     */
+    private List<DatabaseMappingProperties> mappings = new ArrayList<>();
+
+    /**
+     * redisProperties 指定节点的静态只读副本（host:port），配置后该节点上的db可以通过 readFrom 从副本读取；
+     * 哨兵模式（spring.redis.sentinel）下副本由哨兵发现，不需要配置
+     */
+    private List<String> replicas = new ArrayList<>();
+
+    /**
+     * 按逻辑db配置的读取策略（master、masterPreferred、replica、replicaPreferred、nearest、any），
+     * 优先于节点的 readFrom；写命令和事务（multi/exec）始终发往主节点。db所在节点需要是哨兵或配置了只读副本
+     */
+    private Map<Integer, String> readFrom = new LinkedHashMap<>();
+
+    /**
+     * 默认的value序列化方式
+     */
+    private RedisSerializerProfile serializer = RedisSerializerProfile.STRING;
+
+    /**
+     * 按逻辑db配置的value序列化方式，优先于 serializer；key始终使用UTF-8字符串
+     */
+    private Map<Integer, RedisSerializerProfile> serializers = new LinkedHashMap<>();
+
+    /**
+     * value压缩配置
+     */
+    private CompressionProperties compression = new CompressionProperties();
+
+    /**
+     * db路由策略配置
+     */
+    private RoutingProperties routing = new RoutingProperties();
+
     public RedisProperties getRedisProperties() {
         return redisProperties;
     }
@@ -17,4 +114,855 @@ public class MyRedisProperties {
     public void setRedisProperties(RedisProperties redisProperties) {
         this.redisProperties = redisProperties;
     }
+
+    public int getDatabases() {
+        return databases;
+    }
+
+    public void setDatabases(int databases) {
+        this.databases = databases;
+    }
+
+    public int getFanOutThreads() {
+        return fanOutThreads;
+    }
+
+    public void setFanOutThreads(int fanOutThreads) {
+        this.fanOutThreads = fanOutThreads;
+    }
+
+    public int getPipelineBatchSize() {
+        return pipelineBatchSize;
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    public CoalescingProperties getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(CoalescingProperties coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public NearCacheProperties getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCacheProperties nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public MetricsProperties getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsProperties metrics) {
+        this.metrics = metrics;
+    }
+
+    public ClientResourcesProperties getClientResources() {
+        return clientResources;
+    }
+
+    public void setClientResources(ClientResourcesProperties clientResources) {
+        this.clientResources = clientResources;
+    }
+
+    public WarmupProperties getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(WarmupProperties warmup) {
+        this.warmup = warmup;
+    }
+
+    public EvictionProperties getEviction() {
+        return eviction;
+    }
+
+    public void setEviction(EvictionProperties eviction) {
+        this.eviction = eviction;
+    }
+
+    public Map<String, NodeProperties> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(Map<String, NodeProperties> nodes) {
+        this.nodes = nodes;
+    }
+
+    public List<DatabaseMappingProperties> getMappings() {
+        return mappings;
+    }
+
+    public void setMappings(List<DatabaseMappingProperties> mappings) {
+        this.mappings = mappings;
+    }
+
+    public List<String> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<String> replicas) {
+        this.replicas = replicas;
+    }
+
+    public Map<Integer, String> getReadFrom() {
+        return readFrom;
+    }
+
+    public void setReadFrom(Map<Integer, String> readFrom) {
+        this.readFrom = readFrom;
+    }
+
+    public RedisSerializerProfile getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(RedisSerializerProfile serializer) {
+        this.serializer = serializer;
+    }
+
+    public Map<Integer, RedisSerializerProfile> getSerializers() {
+        return serializers;
+    }
+
+    public void setSerializers(Map<Integer, RedisSerializerProfile> serializers) {
+        this.serializers = serializers;
+    }
+
+    public CompressionProperties getCompression() {
+        return compression;
+    }
+
+    public void setCompression(CompressionProperties compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * @return 指定逻辑db的value序列化方式
+     */
+    public RedisSerializerProfile getSerializer(int database) {
+        return serializers.getOrDefault(database, serializer);
+    }
+
+    public RoutingProperties getRouting() {
+        return routing;
+    }
+
+    public void setRouting(RoutingProperties routing) {
+        this.routing = routing;
+    }
+
+    /**
+     * GET合并配置：同一db上的并发 strGet 在window时间内或攒够maxBatchSize个key后合并为一条MGET发送
+     */
+    public static class CoalescingProperties {
+
+        /**
+         * 是否开启GET合并
+         */
+        private boolean enabled;
+
+        /**
+         * 批次最长等待时间，即每次读取最多增加的排队延迟
+         */
+        private Duration window = Duration.ofMillis(1);
+
+        /**
+         * 批次最大key数量，达到后立即发送
+         */
+        private int maxBatchSize = 64;
+
+        /**
+         * 执行MGET的线程数
+         */
+        private int flushThreads = 2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getFlushThreads() {
+            return flushThreads;
+        }
+
+        public void setFlushThreads(int flushThreads) {
+            this.flushThreads = flushThreads;
+        }
+    }
+
+    /**
+     * 客户端本地缓存配置：对读多写少的db在本地缓存 strGet 的结果，通过redis的CLIENT TRACKING失效通知保持一致
+     * 需要redis 6.0及以上版本
+     */
+    public static class NearCacheProperties {
+
+        /**
+         * 是否开启本地缓存
+         */
+        private boolean enabled;
+
+        /**
+         * 开启本地缓存的db及其容量配置，key为db号
+         */
+        private Map<Integer, NearCacheDatabaseProperties> databases = new LinkedHashMap<>();
+
+        /**
+         * 追踪连接断开后重新建立追踪的间隔
+         */
+        private Duration reconnectDelay = Duration.ofSeconds(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<Integer, NearCacheDatabaseProperties> getDatabases() {
+            return databases;
+        }
+
+        public void setDatabases(Map<Integer, NearCacheDatabaseProperties> databases) {
+            this.databases = databases;
+        }
+
+        public Duration getReconnectDelay() {
+            return reconnectDelay;
+        }
+
+        public void setReconnectDelay(Duration reconnectDelay) {
+            this.reconnectDelay = reconnectDelay;
+        }
+    }
+
+    /**
+     * 单个db的本地缓存容量，超出任意一项时淘汰最久未访问的条目
+     */
+    public static class NearCacheDatabaseProperties {
+
+        /**
+         * 最大条目数
+         */
+        private int maxEntries = 10000;
+
+        /**
+         * 最大占用内存（按key和value的字符数估算）
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(16);
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * 指标配置：classpath中存在micrometer且容器中有MeterRegistry时，按db记录路由耗时、模板创建耗时、命令延迟和连接池状态
+     */
+    public static class MetricsProperties {
+
+        /**
+         * 是否开启指标
+         */
+        private boolean enabled = true;
+
+        /**
+         * 命令延迟是否发布百分位直方图
+         */
+        private boolean percentileHistogram;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isPercentileHistogram() {
+            return percentileHistogram;
+        }
+
+        public void setPercentileHistogram(boolean percentileHistogram) {
+            this.percentileHistogram = percentileHistogram;
+        }
+    }
+
+    /**
+     * lettuce ClientResources 线程配置，小于等于0时使用lettuce默认值（CPU核数，最少3个）
+     */
+    public static class ClientResourcesProperties {
+
+        /**
+         * netty I/O 线程数
+         */
+        private int ioThreadPoolSize;
+
+        /**
+         * 计算线程数（用于回调、事件发布等）
+         */
+        private int computationThreadPoolSize;
+
+        public int getIoThreadPoolSize() {
+            return ioThreadPoolSize;
+        }
+
+        public void setIoThreadPoolSize(int ioThreadPoolSize) {
+            this.ioThreadPoolSize = ioThreadPoolSize;
+        }
+
+        public int getComputationThreadPoolSize() {
+            return computationThreadPoolSize;
+        }
+
+        public void setComputationThreadPoolSize(int computationThreadPoolSize) {
+            this.computationThreadPoolSize = computationThreadPoolSize;
+        }
+    }
+
+    /**
+     * 启动预热配置：启动时并行创建这些db的RedisTemplate，建立连接并将连接池填充到min-idle
+     */
+    public static class WarmupProperties {
+
+        /**
+         * 需要预热的db
+         */
+        private List<Integer> databases = new ArrayList<>();
+
+        /**
+         * 预热并行度，小于等于0时每个db一个线程
+         */
+        private int parallelism;
+
+        /**
+         * 等待预热完成的最长时间
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+
+        /**
+         * 是否阻塞启动直到预热完成（或超时），为false时在后台预热
+         */
+        private boolean blockStartup = true;
+
+        public List<Integer> getDatabases() {
+            return databases;
+        }
+
+        public void setDatabases(List<Integer> databases) {
+            this.databases = databases;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+
+        public boolean isBlockStartup() {
+            return blockStartup;
+        }
+
+        public void setBlockStartup(boolean blockStartup) {
+            this.blockStartup = blockStartup;
+        }
+    }
+
+    /**
+     * 空闲db淘汰配置：动态创建的db长时间未使用时销毁其连接工厂，下次使用时重新创建
+     * 默认db和预热的db不会被淘汰
+     */
+    public static class EvictionProperties {
+
+        /**
+         * 是否开启空闲淘汰
+         */
+        private boolean enabled;
+
+        /**
+         * 空闲多久后淘汰
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * 空闲检查间隔，被淘汰的连接工厂会在下一次检查时才真正销毁，给正在执行的命令留出时间
+         */
+        private Duration checkInterval = Duration.ofMinutes(1);
+
+        /**
+         * 额外指定不会被淘汰的db
+         */
+        private List<Integer> pinnedDatabases = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        public void setIdleTimeout(Duration idleTimeout) {
+            this.idleTimeout = idleTimeout;
+        }
+
+        public Duration getCheckInterval() {
+            return checkInterval;
+        }
+
+        public void setCheckInterval(Duration checkInterval) {
+            this.checkInterval = checkInterval;
+        }
+
+        public List<Integer> getPinnedDatabases() {
+            return pinnedDatabases;
+        }
+
+        public void setPinnedDatabases(List<Integer> pinnedDatabases) {
+            this.pinnedDatabases = pinnedDatabases;
+        }
+    }
+
+    /**
+     * redis节点的连接地址，超时、连接池、客户端名称等其余配置与 redisProperties 相同
+     */
+    public static class NodeProperties {
+
+        /**
+         * 连接地址，例如 redis://:password@host:port，设置后忽略host、port和password
+         */
+        private String url;
+
+        private String host = "localhost";
+
+        private int port = 6379;
+
+        private String password;
+
+        private boolean ssl;
+
+        /**
+         * 哨兵配置，设置了master时通过哨兵发现主节点，忽略url、host和port
+         */
+        private SentinelProperties sentinel;
+
+        /**
+         * 静态只读副本（host:port），主节点为url或host、port指定的节点
+         */
+        private List<String> replicas = new ArrayList<>();
+
+        /**
+         * 该节点上所有db的默认读取策略，未设置时只读主节点
+         */
+        private String readFrom;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public boolean isSsl() {
+            return ssl;
+        }
+
+        public void setSsl(boolean ssl) {
+            this.ssl = ssl;
+        }
+
+        public SentinelProperties getSentinel() {
+            return sentinel;
+        }
+
+        public void setSentinel(SentinelProperties sentinel) {
+            this.sentinel = sentinel;
+        }
+
+        public List<String> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<String> replicas) {
+            this.replicas = replicas;
+        }
+
+        public String getReadFrom() {
+            return readFrom;
+        }
+
+        public void setReadFrom(String readFrom) {
+            this.readFrom = readFrom;
+        }
+    }
+
+    /**
+     * 节点的哨兵配置
+     */
+    public static class SentinelProperties {
+
+        /**
+         * 哨兵监控的主节点名称
+         */
+        private String master;
+
+        /**
+         * 哨兵节点（host:port）
+         */
+        private List<String> nodes = new ArrayList<>();
+
+        /**
+         * 哨兵自身的密码，数据节点的密码使用节点的 password
+         */
+        private String password;
+
+        public String getMaster() {
+            return master;
+        }
+
+        public void setMaster(String master) {
+            this.master = master;
+        }
+
+        public List<String> getNodes() {
+            return nodes;
+        }
+
+        public void setNodes(List<String> nodes) {
+            this.nodes = nodes;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    /**
+     * 一段逻辑db到节点的映射，例如将逻辑db 8-15 映射到节点b的物理db 0-7：
+     * <pre>
+     * databases: 8-15
+     * node: b
+     * physical-database: 0
+     * </pre>
+     */
+    public static class DatabaseMappingProperties {
+
+        /**
+         * 逻辑db，支持单个db、区间和逗号分隔的组合，例如 3、0-7、0-3,6
+         */
+        private String databases;
+
+        /**
+         * 节点名称，对应 nodes 中的key
+         */
+        private String node;
+
+        /**
+         * 该映射中最小的逻辑db对应的物理db，其余逻辑db按相同的偏移计算（物理db = physicalDatabase + 逻辑db - 最小逻辑db）；
+         * 未设置时物理db与逻辑db相同
+         */
+        private Integer physicalDatabase;
+
+        public String getDatabases() {
+            return databases;
+        }
+
+        public void setDatabases(String databases) {
+            this.databases = databases;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public void setNode(String node) {
+            this.node = node;
+        }
+
+        public Integer getPhysicalDatabase() {
+            return physicalDatabase;
+        }
+
+        public void setPhysicalDatabase(Integer physicalDatabase) {
+            this.physicalDatabase = physicalDatabase;
+        }
+    }
+
+    /**
+     * value透明压缩：databases 中的db在原有序列化方式之上使用LZ4压缩达到 threshold 的value，
+     * 压缩前写入的value仍然可以读取。需要引入 org.lz4:lz4-java
+     */
+    public static class CompressionProperties {
+
+        /**
+         * 开启压缩的逻辑db
+         */
+        private List<Integer> databases = new ArrayList<>();
+
+        /**
+         * 序列化后达到该大小的value才尝试压缩
+         */
+        private DataSize threshold = DataSize.ofKilobytes(1);
+
+        public List<Integer> getDatabases() {
+            return databases;
+        }
+
+        public void setDatabases(List<Integer> databases) {
+            this.databases = databases;
+        }
+
+        public DataSize getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(DataSize threshold) {
+            this.threshold = threshold;
+        }
+
+        /**
+         * @return 指定逻辑db是否开启压缩
+         */
+        public boolean isCompressed(int database) {
+            return databases.contains(database);
+        }
+    }
+
+    /**
+     * db路由策略，按 strategies 的顺序依次询问，第一个给出db的策略生效，都没有给出时使用默认db：
+     * <pre>
+     * strategies: key-prefix, thread-local
+     * key-prefixes:
+     *   "[session:]": 2
+     *   "[order:]": 3
+     * </pre>
+     */
+    public static class RoutingProperties {
+
+        /**
+         * 启用的路由策略及其顺序
+         */
+        private List<RoutingStrategyType> strategies = new ArrayList<>(Collections.singletonList(RoutingStrategyType.THREAD_LOCAL));
+
+        /**
+         * key前缀到db的映射，多个前缀匹配时最长的前缀生效；yaml中包含冒号等特殊字符的前缀需要写成 "[prefix:]"
+         */
+        private Map<String, Integer> keyPrefixes = new LinkedHashMap<>();
+
+        /**
+         * 携带租户标识的请求头
+         */
+        private String tenantHeader = "X-Tenant-Id";
+
+        /**
+         * 租户到db的映射
+         */
+        private Map<String, Integer> tenants = new LinkedHashMap<>();
+
+        /**
+         * 租户过滤器配置
+         */
+        private TenantFilterProperties tenantFilter = new TenantFilterProperties();
+
+        public List<RoutingStrategyType> getStrategies() {
+            return strategies;
+        }
+
+        public void setStrategies(List<RoutingStrategyType> strategies) {
+            this.strategies = strategies;
+        }
+
+        public Map<String, Integer> getKeyPrefixes() {
+            return keyPrefixes;
+        }
+
+        public void setKeyPrefixes(Map<String, Integer> keyPrefixes) {
+            this.keyPrefixes = keyPrefixes;
+        }
+
+        public String getTenantHeader() {
+            return tenantHeader;
+        }
+
+        public void setTenantHeader(String tenantHeader) {
+            this.tenantHeader = tenantHeader;
+        }
+
+        public Map<String, Integer> getTenants() {
+            return tenants;
+        }
+
+        public void setTenants(Map<String, Integer> tenants) {
+            this.tenants = tenants;
+        }
+
+        public TenantFilterProperties getTenantFilter() {
+            return tenantFilter;
+        }
+
+        public void setTenantFilter(TenantFilterProperties tenantFilter) {
+            this.tenantFilter = tenantFilter;
+        }
+    }
+
+    /**
+     * web请求的租户过滤器：按 tenantHeader 解析租户的db，请求期间绑定到当前线程（servlet）或Reactor Context（WebFlux）。
+     * 请求头由客户端传入，只应在网关已经校验过租户的部署中开启
+     */
+    public static class TenantFilterProperties {
+
+        /**
+         * 是否开启
+         */
+        private boolean enabled;
+
+        /**
+         * 过滤器顺序，默认在绝大多数过滤器之前
+         */
+        private int order = Ordered.HIGHEST_PRECEDENCE + 10;
+
+        /**
+         * 自定义 TenantDatabaseResolver 时，最多缓存的租户数
+         */
+        private int cacheMaxEntries = 10000;
+
+        /**
+         * 自定义 TenantDatabaseResolver 时，解析结果的缓存时长
+         */
+        private Duration cacheTtl = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getOrder() {
+            return order;
+        }
+
+        public void setOrder(int order) {
+            this.order = order;
+        }
+
+        public int getCacheMaxEntries() {
+            return cacheMaxEntries;
+        }
+
+        public void setCacheMaxEntries(int cacheMaxEntries) {
+            this.cacheMaxEntries = cacheMaxEntries;
+        }
+
+        public Duration getCacheTtl() {
+            return cacheTtl;
+        }
+
+        public void setCacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+        }
+    }
+
+    /**
+     * 内置的路由策略
+     */
+    public enum RoutingStrategyType {
+
+        /**
+         * 使用当前线程设置的db（RedisHelper#setCurrentDatabase、@RedisDb）
+         */
+        THREAD_LOCAL,
+
+        /**
+         * 按key前缀路由
+         */
+        KEY_PREFIX,
+
+        /**
+         * 按当前请求的租户路由
+         */
+        TENANT
+    }
 }
@@ -31,4 +31,13 @@ public class TestEnhanceDataRedisController {
         redisHelper.strSetWithDb(db, key, value, 1000, null);
         return new ResponseEntity<>(redisHelper.strGetWithDb(db, key), HttpStatus.OK);
     }
+
+    /**
+     * 开启 redis.routing.tenant-filter 后，db由请求头中的租户决定，不需要在controller中切换
+     */
+    @GetMapping("/tenant")
+    public ResponseEntity<String> testTenant(@RequestParam String key, @RequestParam String value) {
+        redisHelper.strSet(key, value, 1000, null);
+        return new ResponseEntity<>(redisHelper.strGet(key), HttpStatus.OK);
+    }
 }
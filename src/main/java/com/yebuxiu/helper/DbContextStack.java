@@ -0,0 +1,76 @@
+package com.yebuxiu.helper;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+
+import java.util.Arrays;
+
+/**
+ * 线程私有的db上下文栈，使用int数组保存db号，避免装箱和Deque节点分配
+ * 每一层对应一个可复用的 {@link DbScope}，稳态下push/pop/open/close都不会分配对象
+ * 非线程安全，只能由所属线程访问
+ */
+final class DbContextStack {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] databases = new int[INITIAL_CAPACITY];
+
+    /**
+     * scopes[i] 关闭时会把栈恢复到深度i
+     */
+    private DbScope[] scopes = new DbScope[INITIAL_CAPACITY];
+
+    private int size;
+
+    void push(int database) {
+        if (size == databases.length) {
+            databases = Arrays.copyOf(databases, size << 1);
+            scopes = Arrays.copyOf(scopes, size << 1);
+        }
+        databases[size++] = database;
+    }
+
+    /**
+     * @return 栈顶db，栈为空时返回 {@link AbstractRoutingRedisTemplate#NO_DATABASE}
+     */
+    int peek() {
+        return size == 0 ? AbstractRoutingRedisTemplate.NO_DATABASE : databases[size - 1];
+    }
+
+    void pop() {
+        if (size > 0) {
+            size--;
+        }
+    }
+
+    int depth() {
+        return size;
+    }
+
+    /**
+     * 将栈恢复到指定深度，丢弃其上的所有db（包括未配对清理的db）
+     */
+    void truncate(int depth) {
+        if (depth < size) {
+            size = Math.max(depth, 0);
+        }
+    }
+
+    /**
+     * 压入db并返回关闭时恢复到压入前深度的scope
+     */
+    DbScope open(int database) {
+        int depth = size;
+        push(database);
+        DbScope scope = scopes[depth];
+        if (scope == null) {
+            scope = new DbScope(this, depth);
+            scopes[depth] = scope;
+        }
+        return scope;
+    }
+
+    int get(int index) {
+        return databases[index];
+    }
+}
@@ -0,0 +1,40 @@
+package com.yebuxiu.helper;
+
+/**
+ * db切换作用域，配合try-with-resources使用，关闭时恢复到进入作用域之前的db：
+ * <pre>
+ * try (DbScope scope = RedisHelper.useDatabase(3)) {
+ *     redisHelper.strGet("key");
+ * }
+ * </pre>
+ * 关闭时直接将上下文栈截断到进入前的深度，即使作用域内有未配对的 set/clear 也能正确恢复。
+ * scope对象由线程私有的上下文栈复用，必须在打开它的线程上关闭，且不应在关闭后继续持有；
+ * 最外层作用域关闭时移除线程的上下文栈
+ */
+public final class DbScope implements AutoCloseable {
+
+    private final DbContextStack stack;
+
+    /**
+     * 进入作用域前的栈深度
+     */
+    private final int depth;
+
+    DbScope(DbContextStack stack, int depth) {
+        this.stack = stack;
+        this.depth = depth;
+    }
+
+    /**
+     * @return 当前作用域的db
+     */
+    public int getDatabase() {
+        return stack.depth() > depth ? stack.get(depth) : RedisDatabaseThreadLocalHelper.current();
+    }
+
+    @Override
+    public void close() {
+        stack.truncate(depth);
+        RedisDatabaseThreadLocalHelper.release(stack);
+    }
+}
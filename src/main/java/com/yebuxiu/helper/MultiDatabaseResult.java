@@ -0,0 +1,42 @@
+package com.yebuxiu.helper;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 跨多个db批量操作的结果，单个db失败不会影响其他db，失败的db记录在 {@link #getFailures()} 中
+ *
+ * @param <T> 单个db的结果类型
+ */
+public class MultiDatabaseResult<T> {
+
+    /**
+     * 执行成功的db及结果
+     */
+    private final Map<Integer, T> results;
+
+    /**
+     * 执行失败的db及异常
+     */
+    private final Map<Integer, Throwable> failures;
+
+    public MultiDatabaseResult(Map<Integer, T> results, Map<Integer, Throwable> failures) {
+        this.results = Collections.unmodifiableMap(results);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public Map<Integer, T> getResults() {
+        return results;
+    }
+
+    public Map<Integer, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return 所有db都执行成功
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+}
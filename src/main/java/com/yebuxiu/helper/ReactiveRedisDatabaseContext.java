@@ -0,0 +1,45 @@
+package com.yebuxiu.helper;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import reactor.util.context.Context;
+
+import java.util.function.Function;
+
+/**
+ * 响应式场景下的redis db上下文，db保存在Reactor {@link Context} 中而不是 ThreadLocal，
+ * 随订阅链传播，与执行线程无关：
+ * <pre>
+ * reactiveRedisTemplate.opsForValue().get("key")
+ *         .subscriberContext(ReactiveRedisDatabaseContext.withDatabase(3));
+ * </pre>
+ */
+public final class ReactiveRedisDatabaseContext {
+
+    /**
+     * Context中保存db号的key
+     */
+    public static final Class<ReactiveRedisDatabaseContext> KEY = ReactiveRedisDatabaseContext.class;
+
+    private ReactiveRedisDatabaseContext() {
+    }
+
+    /**
+     * @param database redis db
+     * @return 向Context中写入db的函数，用于 subscriberContext(...)
+     */
+    public static Function<Context, Context> withDatabase(int database) {
+        if (database < 0) {
+            throw new IllegalArgumentException("Redis database must not be negative: " + database);
+        }
+        return context -> context.put(KEY, database);
+    }
+
+    /**
+     * @param context Reactor Context
+     * @return Context中的db，未指定时返回 {@link AbstractRoutingRedisTemplate#NO_DATABASE}
+     */
+    public static int getDatabase(Context context) {
+        Integer database = context.getOrDefault(KEY, null);
+        return database == null ? AbstractRoutingRedisTemplate.NO_DATABASE : database;
+    }
+}
@@ -0,0 +1,102 @@
+package com.yebuxiu.helper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * 将当前线程的redis db传递到异步任务中
+ * 提交任务时捕获db栈，任务执行前在工作线程上恢复，执行完后恢复工作线程原有的db栈，
+ * 除了捕获快照和包装任务本身外不会产生额外的对象分配：
+ * <pre>
+ * CompletableFuture&lt;String&gt; future = RedisDatabaseContextPropagation.supplyAsync(
+ *         () -&gt; redisHelper.strGet("key"), executor);
+ * </pre>
+ */
+public final class RedisDatabaseContextPropagation {
+
+    private RedisDatabaseContextPropagation() {
+    }
+
+    /**
+     * 包装Runnable，执行时使用提交时的db
+     */
+    public static Runnable wrap(Runnable task) {
+        int[] snapshot = RedisDatabaseThreadLocalHelper.capture();
+        return () -> {
+            int depth = RedisDatabaseThreadLocalHelper.restore(snapshot);
+            try {
+                task.run();
+            } finally {
+                RedisDatabaseThreadLocalHelper.reset(depth);
+            }
+        };
+    }
+
+    /**
+     * 包装Callable，执行时使用提交时的db。
+     * 与 {@link #wrapSupplier(Supplier)} 使用不同的方法名，有返回值的lambda同时匹配两者，同名重载会有歧义
+     */
+    public static <V> Callable<V> wrapCallable(Callable<V> task) {
+        int[] snapshot = RedisDatabaseThreadLocalHelper.capture();
+        return () -> {
+            int depth = RedisDatabaseThreadLocalHelper.restore(snapshot);
+            try {
+                return task.call();
+            } finally {
+                RedisDatabaseThreadLocalHelper.reset(depth);
+            }
+        };
+    }
+
+    /**
+     * 包装Supplier，执行时使用提交时的db
+     */
+    public static <V> Supplier<V> wrapSupplier(Supplier<V> supplier) {
+        int[] snapshot = RedisDatabaseThreadLocalHelper.capture();
+        return () -> {
+            int depth = RedisDatabaseThreadLocalHelper.restore(snapshot);
+            try {
+                return supplier.get();
+            } finally {
+                RedisDatabaseThreadLocalHelper.reset(depth);
+            }
+        };
+    }
+
+    /**
+     * 包装Executor，提交的每个任务都使用提交时的db
+     */
+    public static Executor wrap(Executor executor) {
+        if (executor instanceof ExecutorService) {
+            return wrap((ExecutorService) executor);
+        }
+        return command -> executor.execute(wrap(command));
+    }
+
+    /**
+     * 包装ExecutorService，提交的每个任务都使用提交时的db
+     */
+    public static ExecutorService wrap(ExecutorService executorService) {
+        if (executorService instanceof RedisDatabaseContextExecutorService) {
+            return executorService;
+        }
+        return new RedisDatabaseContextExecutorService(executorService);
+    }
+
+    /**
+     * 与 {@link CompletableFuture#supplyAsync(Supplier, Executor)} 相同，但任务使用调用线程当前的db
+     */
+    public static <V> CompletableFuture<V> supplyAsync(Supplier<V> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(wrapSupplier(supplier), executor);
+    }
+
+    /**
+     * 与 {@link CompletableFuture#runAsync(Runnable, Executor)} 相同，但任务使用调用线程当前的db
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return CompletableFuture.runAsync(wrap(runnable), executor);
+    }
+}
@@ -0,0 +1,14 @@
+package com.yebuxiu.helper;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 将提交线程的redis db传递到spring线程池（ThreadPoolTaskExecutor、@Async）中执行的任务
+ */
+public class RedisDatabaseTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return RedisDatabaseContextPropagation.wrap(runnable);
+    }
+}
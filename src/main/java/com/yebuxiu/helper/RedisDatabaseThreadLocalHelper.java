@@ -1,53 +1,143 @@
 package com.yebuxiu.helper;
 
-import org.springframework.util.CollectionUtils;
-
-import java.util.ArrayDeque;
-import java.util.Deque;
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
 
 
 /**
  * redis动态切换数据库帮助器
+ * 线程在指定db期间持有一个int数组实现的db栈，栈深度大于0时切换db不会产生任何对象分配；
+ * 栈清空时移除ThreadLocal，只读取db（current/get）的线程不会创建栈，线程池线程上不会残留对象
  */
 public class RedisDatabaseThreadLocalHelper {
 
-    private static final ThreadLocal<Deque<Integer>> THREAD_DB = new ThreadLocal<>();
+    private static final ThreadLocal<DbContextStack> THREAD_DB = new ThreadLocal<>();
+
+    /**
+     * 当前线程没有指定db时的快照，共享同一个实例，捕获时不分配
+     */
+    private static final int[] EMPTY_SNAPSHOT = new int[0];
 
     /**
-     * 更改当前线程 RedisTemplate db
+     * 更改当前线程 RedisTemplate db，需要与 {@link #clear()} 成对调用，推荐使用 {@link #use(int)}
      *
      * @param db set current redis db
      */
     public static void set(int db) {
-        Deque<Integer> deque = THREAD_DB.get();
-        if (deque == null) {
-            deque = new ArrayDeque<>();
-        }
-        deque.addFirst(db);
-        THREAD_DB.set(deque);
+        checkDatabase(db);
+        stack().push(db);
     }
 
     /**
-     * @return get current redis db
+     * @return get current redis db，未指定时返回null
      */
     public static Integer get() {
-        Deque<Integer> deque = THREAD_DB.get();
-        if (CollectionUtils.isEmpty(deque)) {
-            return null;
-        }
-        return deque.getFirst();
+        int db = current();
+        return db == AbstractRoutingRedisTemplate.NO_DATABASE ? null : db;
+    }
+
+    /**
+     * @return 当前线程的redis db，未指定时返回 {@link AbstractRoutingRedisTemplate#NO_DATABASE}
+     */
+    public static int current() {
+        DbContextStack stack = THREAD_DB.get();
+        return stack == null ? AbstractRoutingRedisTemplate.NO_DATABASE : stack.peek();
     }
 
     /**
      * 清理
      */
     public static void clear() {
-        Deque<Integer> deque = THREAD_DB.get();
-        if (deque == null || deque.size() <= 1) {
+        DbContextStack stack = THREAD_DB.get();
+        if (stack != null) {
+            stack.pop();
+            release(stack);
+        }
+    }
+
+    /**
+     * 切换到指定db并返回作用域，作用域关闭时恢复到切换前的db
+     *
+     * @param db redis db
+     * @return 可用于try-with-resources的作用域
+     */
+    public static DbScope use(int db) {
+        checkDatabase(db);
+        return stack().open(db);
+    }
+
+    /**
+     * 捕获当前线程的db栈，用于传递到其他线程
+     *
+     * @return db栈快照，当前线程没有指定db时返回共享的空快照
+     */
+    public static int[] capture() {
+        DbContextStack stack = THREAD_DB.get();
+        int depth = stack == null ? 0 : stack.depth();
+        if (depth == 0) {
+            return EMPTY_SNAPSHOT;
+        }
+        int[] snapshot = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            snapshot[i] = stack.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 在当前线程上恢复 {@link #capture()} 得到的快照，必须与 {@link #reset(int)} 成对调用
+     * 快照压在当前栈之上，不会分配新对象；空快照会压入 {@link AbstractRoutingRedisTemplate#NO_DATABASE}，
+     * 以屏蔽线程池线程上残留的db，保证任务使用默认db
+     *
+     * @param snapshot db栈快照
+     * @return 恢复前的栈深度，传给 {@link #reset(int)}
+     */
+    public static int restore(int[] snapshot) {
+        DbContextStack stack = stack();
+        int depth = stack.depth();
+        if (snapshot.length == 0) {
+            stack.push(AbstractRoutingRedisTemplate.NO_DATABASE);
+        } else {
+            for (int database : snapshot) {
+                stack.push(database);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * 将当前线程的db栈恢复到 {@link #restore(int[])} 之前的状态
+     *
+     * @param depth restore返回的栈深度
+     */
+    public static void reset(int depth) {
+        DbContextStack stack = THREAD_DB.get();
+        if (stack != null) {
+            stack.truncate(depth);
+            release(stack);
+        }
+    }
+
+    /**
+     * 栈清空后移除ThreadLocal，栈已经被替换（作用域关闭晚于外层清理）时不做处理
+     */
+    static void release(DbContextStack stack) {
+        if (stack.depth() == 0 && THREAD_DB.get() == stack) {
             THREAD_DB.remove();
-            return;
         }
-        deque.removeFirst();
-        THREAD_DB.set(deque);
+    }
+
+    private static DbContextStack stack() {
+        DbContextStack stack = THREAD_DB.get();
+        if (stack == null) {
+            stack = new DbContextStack();
+            THREAD_DB.set(stack);
+        }
+        return stack;
+    }
+
+    private static void checkDatabase(int db) {
+        if (db < 0) {
+            throw new IllegalArgumentException("Redis database must not be negative: " + db);
+        }
     }
 }
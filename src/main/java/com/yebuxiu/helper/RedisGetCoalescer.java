@@ -0,0 +1,388 @@
+package com.yebuxiu.helper;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import com.yebuxiu.template.DynamicRedisTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单key GET合并器：路由到同一个db的并发GET先进入该db的待发送批次，
+ * 批次等待时间达到window或key数量达到maxBatchSize时合并为一条MGET发送，再用返回结果完成每个调用方的future。
+ * 高并发下可以大幅减少连接池的借出次数，代价是每次读取最多增加window的排队延迟
+ */
+@Slf4j
+public class RedisGetCoalescer {
+
+    /**
+     * 批次大小分布的桶数量，第i个桶统计大小在 (2^(i-1), 2^i] 之间的批次，最后一个桶包含更大的批次
+     */
+    private static final int BATCH_SIZE_BUCKETS = 16;
+
+    private final DynamicRedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 批次最长等待时间（纳秒）
+     */
+    private final long windowNanos;
+
+    /**
+     * 批次最大key数量，达到后立即发送
+     */
+    private final int maxBatchSize;
+
+    /**
+     * 负责定时发送和执行MGET的线程池
+     */
+    private final ScheduledThreadPoolExecutor flushExecutor;
+
+    /**
+     * 每个db当前的待发送批次，下标为db号+1，0号位置存放未指定db（默认redisTemplate）的批次
+     */
+    private final Batch[] pending;
+
+    /**
+     * 每个db一把锁，保护对应的待发送批次
+     */
+    private final Object[] locks;
+
+    private final LongAdder batches = new LongAdder();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder failedBatches = new LongAdder();
+
+    private final LongAdder totalQueueingNanos = new LongAdder();
+
+    private final LongAccumulator maxBatchSizeSeen = new LongAccumulator(Math::max, 0);
+
+    private final LongAccumulator maxQueueingNanos = new LongAccumulator(Math::max, 0);
+
+    private final AtomicLongArray batchSizeHistogram = new AtomicLongArray(BATCH_SIZE_BUCKETS);
+
+    /**
+     * @param redisTemplate 动态RedisTemplate
+     * @param databases     redis服务端的db数量
+     * @param window        批次最长等待时间
+     * @param maxBatchSize  批次最大key数量
+     * @param flushThreads  执行MGET的线程数
+     */
+    public RedisGetCoalescer(DynamicRedisTemplate<String, String> redisTemplate, int databases,
+                             Duration window, int maxBatchSize, int flushThreads) {
+        Assert.notNull(redisTemplate, "redisTemplate must not be null.");
+        Assert.isTrue(databases > 0, "databases must be greater than 0.");
+        Assert.isTrue(window != null && !window.isNegative(), "window must not be negative.");
+        Assert.isTrue(maxBatchSize > 0, "maxBatchSize must be greater than 0.");
+        Assert.isTrue(flushThreads > 0, "flushThreads must be greater than 0.");
+        this.redisTemplate = redisTemplate;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.flushExecutor = new ScheduledThreadPoolExecutor(flushThreads,
+                new CustomizableThreadFactory("redis-get-coalescer-"));
+        this.flushExecutor.setRemoveOnCancelPolicy(true);
+        this.pending = new Batch[databases + 1];
+        this.locks = new Object[databases + 1];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * 将GET加入指定db的待发送批次
+     *
+     * @param database db号，{@link AbstractRoutingRedisTemplate#NO_DATABASE} 表示使用默认redisTemplate
+     * @param key      key
+     * @return 批次发送完成后得到结果的future，key不存在时结果为null
+     */
+    public CompletableFuture<String> get(int database, String key) {
+        if (database < AbstractRoutingRedisTemplate.NO_DATABASE || database + 1 >= pending.length) {
+            throw new IllegalArgumentException("Redis database index out of range [0, "
+                    + (pending.length - 1) + "): " + database);
+        }
+        int slot = database + 1;
+        Request request = new Request(key);
+        Batch full = null;
+        Batch created = null;
+        synchronized (locks[slot]) {
+            Batch batch = pending[slot];
+            if (batch == null) {
+                batch = new Batch(database);
+                pending[slot] = batch;
+                created = batch;
+            }
+            batch.requests.add(request);
+            if (batch.requests.size() >= maxBatchSize) {
+                pending[slot] = null;
+                full = batch;
+            }
+        }
+        if (full != null) {
+            submit(full);
+        } else if (created != null) {
+            Batch batch = created;
+            try {
+                batch.timer = flushExecutor.schedule(() -> flushPending(slot, batch), windowNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // 已关闭时不再合并，直接在调用线程上发送
+                flushPending(slot, batch);
+            }
+        }
+        return request.future;
+    }
+
+    /**
+     * @return 合并统计的快照
+     */
+    public Stats getStats() {
+        long[] histogram = new long[BATCH_SIZE_BUCKETS];
+        for (int i = 0; i < BATCH_SIZE_BUCKETS; i++) {
+            histogram[i] = batchSizeHistogram.get(i);
+        }
+        return new Stats(batches.sum(), requests.sum(), failedBatches.sum(), maxBatchSizeSeen.get(),
+                totalQueueingNanos.sum(), maxQueueingNanos.get(), histogram);
+    }
+
+    /**
+     * 发送所有待发送批次并关闭线程池
+     */
+    public void shutdown() {
+        for (int slot = 0; slot < pending.length; slot++) {
+            Batch batch;
+            synchronized (locks[slot]) {
+                batch = pending[slot];
+                pending[slot] = null;
+            }
+            if (batch != null) {
+                flush(batch);
+            }
+        }
+        flushExecutor.shutdown();
+    }
+
+    /**
+     * 等待时间到达时发送批次，批次已经因为达到maxBatchSize被发送时什么都不做
+     */
+    private void flushPending(int slot, Batch batch) {
+        synchronized (locks[slot]) {
+            if (pending[slot] != batch) {
+                return;
+            }
+            pending[slot] = null;
+        }
+        flush(batch);
+    }
+
+    private void submit(Batch batch) {
+        if (batch.timer != null) {
+            batch.timer.cancel(false);
+        }
+        try {
+            flushExecutor.execute(() -> flush(batch));
+        } catch (RejectedExecutionException e) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * 将批次合并为一条MGET发送，相同的key只发送一次
+     */
+    private void flush(Batch batch) {
+        long start = System.nanoTime();
+        List<Request> batchRequests = batch.requests;
+        Map<String, List<Request>> requestsByKey = new LinkedHashMap<>(batchRequests.size() * 4 / 3 + 1);
+        long queueing = 0;
+        long maxQueueing = 0;
+        for (Request request : batchRequests) {
+            long delay = start - request.enqueuedNanos;
+            queueing += delay;
+            maxQueueing = Math.max(maxQueueing, delay);
+            requestsByKey.computeIfAbsent(request.key, k -> new ArrayList<>(1)).add(request);
+        }
+        record(batchRequests.size(), queueing, maxQueueing);
+
+        List<String> keys = new ArrayList<>(requestsByKey.keySet());
+        List<String> values;
+        try {
+            RedisTemplate<String, String> template = batch.database == AbstractRoutingRedisTemplate.NO_DATABASE
+                    ? redisTemplate.getDefaultRedisTemplate() : redisTemplate.getRedisTemplate(batch.database);
+            values = template.opsForValue().multiGet(keys);
+            if (values == null || values.size() != keys.size()) {
+                throw new IllegalStateException("Unexpected MGET reply for " + keys.size() + " keys on database "
+                        + batch.database);
+            }
+        } catch (Throwable e) {
+            failedBatches.increment();
+            log.debug("Coalesced MGET of {} keys on database {} failed", keys.size(), batch.database, e);
+            for (Request request : batchRequests) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String value = values.get(i);
+            for (Request request : requestsByKey.get(keys.get(i))) {
+                request.future.complete(value);
+            }
+        }
+    }
+
+    private void record(int batchSize, long queueingNanos, long maxQueueingNanosInBatch) {
+        batches.increment();
+        requests.add(batchSize);
+        totalQueueingNanos.add(queueingNanos);
+        maxBatchSizeSeen.accumulate(batchSize);
+        maxQueueingNanos.accumulate(maxQueueingNanosInBatch);
+        int bucket = 32 - Integer.numberOfLeadingZeros(batchSize - 1);
+        batchSizeHistogram.incrementAndGet(Math.min(bucket, BATCH_SIZE_BUCKETS - 1));
+    }
+
+    /**
+     * 单个db的待发送批次
+     */
+    private static final class Batch {
+
+        private final int database;
+
+        private final List<Request> requests = new ArrayList<>();
+
+        private volatile ScheduledFuture<?> timer;
+
+        private Batch(int database) {
+            this.database = database;
+        }
+    }
+
+    /**
+     * 单次GET请求
+     */
+    private static final class Request {
+
+        private final String key;
+
+        private final long enqueuedNanos = System.nanoTime();
+
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private Request(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 合并统计快照
+     */
+    public static class Stats {
+
+        /**
+         * 已发送的批次数
+         */
+        private final long batches;
+
+        /**
+         * 已发送的GET请求数
+         */
+        private final long requests;
+
+        /**
+         * 发送失败的批次数
+         */
+        private final long failedBatches;
+
+        /**
+         * 最大批次大小
+         */
+        private final long maxBatchSize;
+
+        /**
+         * 所有请求排队等待时间之和（纳秒）
+         */
+        private final long totalQueueingNanos;
+
+        /**
+         * 单个请求最长的排队等待时间（纳秒）
+         */
+        private final long maxQueueingNanos;
+
+        /**
+         * 批次大小分布，第i个元素为大小在 (2^(i-1), 2^i] 之间的批次数，最后一个元素包含更大的批次
+         */
+        private final long[] batchSizeHistogram;
+
+        Stats(long batches, long requests, long failedBatches, long maxBatchSize,
+              long totalQueueingNanos, long maxQueueingNanos, long[] batchSizeHistogram) {
+            this.batches = batches;
+            this.requests = requests;
+            this.failedBatches = failedBatches;
+            this.maxBatchSize = maxBatchSize;
+            this.totalQueueingNanos = totalQueueingNanos;
+            this.maxQueueingNanos = maxQueueingNanos;
+            this.batchSizeHistogram = batchSizeHistogram;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getFailedBatches() {
+            return failedBatches;
+        }
+
+        public long getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /**
+         * @return 平均批次大小
+         */
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) requests / batches;
+        }
+
+        public long getTotalQueueingNanos() {
+            return totalQueueingNanos;
+        }
+
+        public long getMaxQueueingNanos() {
+            return maxQueueingNanos;
+        }
+
+        /**
+         * @return 每个请求平均增加的排队延迟（纳秒）
+         */
+        public double getAverageQueueingNanos() {
+            return requests == 0 ? 0 : (double) totalQueueingNanos / requests;
+        }
+
+        public long[] getBatchSizeHistogram() {
+            return batchSizeHistogram.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{batches=" + batches + ", requests=" + requests + ", failedBatches=" + failedBatches
+                    + ", averageBatchSize=" + String.format("%.2f", getAverageBatchSize())
+                    + ", maxBatchSize=" + maxBatchSize
+                    + ", averageQueueingMicros=" + String.format("%.1f", getAverageQueueingNanos() / 1000)
+                    + ", maxQueueingMicros=" + maxQueueingNanos / 1000 + "}";
+        }
+    }
+}
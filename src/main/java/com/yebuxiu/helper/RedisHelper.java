@@ -1,27 +1,83 @@
 package com.yebuxiu.helper;
 
+import com.yebuxiu.cache.RedisNearCache;
+import com.yebuxiu.serializer.ByteBufferRedisSerializer;
+import com.yebuxiu.serializer.CompressingRedisSerializer;
 import com.yebuxiu.template.DynamicRedisTemplate;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.Assert;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Redis操作工具类 集成封装一些常用方法
  */
-public class RedisHelper implements InitializingBean {
+public class RedisHelper implements InitializingBean, DisposableBean {
 
     /**
-     * 不设置过期时长
+     * 不设置过期时长。写入方法的过期时间只能是该值或正数：SET EX/PX 不接受0和负数，
+     * 需要删除key时使用 delete，而不是传入0
      */
     public static final long NOT_EXPIRE = -1;
 
+    /**
+     * pipeline批量写入时默认每批的key数量
+     */
+    public static final int DEFAULT_PIPELINE_BATCH_SIZE = 1000;
+
     private final DynamicRedisTemplate<String, String> redisTemplate;
+
+    /**
+     * 跨db批量操作时并发执行各个db批次的线程池，为null时在调用线程上依次执行
+     */
+    private final ExecutorService fanOutExecutor;
+
+    /**
+     * pipeline批量写入时每批的key数量
+     */
+    private int pipelineBatchSize = DEFAULT_PIPELINE_BATCH_SIZE;
+
+    /**
+     * GET合并器，不为null时并发的 strGet 会按db合并为MGET发送
+     */
+    private RedisGetCoalescer getCoalescer;
+
+    /**
+     * 客户端本地缓存，不为null时开启缓存的db上的 strGet 优先读本地缓存
+     */
+    private RedisNearCache nearCache;
+
     public RedisHelper(DynamicRedisTemplate<String, String> redisTemplate) {
+        this(redisTemplate, null);
+    }
+
+    /**
+     * @param redisTemplate  动态RedisTemplate
+     * @param fanOutExecutor 跨db批量操作使用的线程池，由RedisHelper负责关闭
+     */
+    public RedisHelper(DynamicRedisTemplate<String, String> redisTemplate, ExecutorService fanOutExecutor) {
         this.redisTemplate = redisTemplate;
+        this.fanOutExecutor = fanOutExecutor;
     }
 
     @Override
@@ -29,12 +85,52 @@ public class RedisHelper implements InitializingBean {
         Assert.notNull(redisTemplate, "redisTemplate must not be null.");
     }
 
+    @Override
+    public void destroy() {
+        if (nearCache != null) {
+            nearCache.shutdown();
+        }
+        if (getCoalescer != null) {
+            getCoalescer.shutdown();
+        }
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdown();
+        }
+    }
+
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        Assert.isTrue(pipelineBatchSize > 0, "pipelineBatchSize must be greater than 0.");
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    /**
+     * 开启GET合并，由RedisHelper在容器关闭时关闭
+     */
+    public void setGetCoalescer(RedisGetCoalescer getCoalescer) {
+        this.getCoalescer = getCoalescer;
+    }
+
+    public RedisGetCoalescer getGetCoalescer() {
+        return getCoalescer;
+    }
+
+    /**
+     * 开启客户端本地缓存，由RedisHelper在容器关闭时关闭
+     */
+    public void setNearCache(RedisNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
 
-    public RedisTemplate<String, String> getRedisTemplate() {
+    public RedisNearCache getNearCache() {
+        return nearCache;
+    }
+
+    public DynamicRedisTemplate<String, String> getRedisTemplate() {
         return redisTemplate;
     }
 
-    public Map<Object, RedisTemplate<String, String>> getRedisTemplates() {
+    public Map<Integer, RedisTemplate<String, String>> getRedisTemplates() {
         return redisTemplate.getRedisTemplates();
     }
 
@@ -42,6 +138,13 @@ public class RedisHelper implements InitializingBean {
         return redisTemplate.opsForValue();
     }
 
+    /**
+     * @return 按路由策略获取key所在db的ValueOperations
+     */
+    protected ValueOperations<String, String> getValueOperations(String key) {
+        return redisTemplate.forKey(key).opsForValue();
+    }
+
     /**
      * 设置当前线程操作 redis database，同一个线程内操作多次redis，不同database，
      * 需要调用 {@link RedisHelper#clearCurrentDatabase()} 清除当前线程redis database，从而使用默认的db.
@@ -55,6 +158,22 @@ public class RedisHelper implements InitializingBean {
         RedisDatabaseThreadLocalHelper.set(database);
     }
 
+    /**
+     * 切换当前线程操作的 redis database，返回的作用域关闭时自动恢复到切换前的db，
+     * 不会出现 set/clear 不配对的问题：
+     * <pre>
+     * try (DbScope scope = RedisHelper.useDatabase(3)) {
+     *     redisHelper.strGet("key");
+     * }
+     * </pre>
+     *
+     * @param database redis database
+     * @return db作用域
+     */
+    public static DbScope useDatabase(int database) {
+        return RedisDatabaseThreadLocalHelper.use(database);
+    }
+
     /**
      * 清除当前线程 redis database.
      */
@@ -65,26 +184,133 @@ public class RedisHelper implements InitializingBean {
 
 
     /**
-     * String 设置值
+     * String 设置值，带过期时间时使用一条 SET EX/PX 命令原子写入，不会出现设置了值但没有设置过期时间的情况
      *
      * @param key    key
      * @param value  value
-     * @param expire 过期时间
+     * @param expire 过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
      */
     public void strSet(String key, String value, long expire, TimeUnit timeUnit) {
-        getValueOperations().set(key, value);
-        if (expire != NOT_EXPIRE) {
-            setExpire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
+        if (expire == NOT_EXPIRE) {
+            getValueOperations(key).set(key, value);
+        } else {
+            getValueOperations(key).set(key, value, expire, expireUnit(expire, timeUnit));
         }
+        invalidateNearCache(key);
+    }
+
+    /**
+     * key不存在时设置值（SET NX [EX/PX]）
+     *
+     * @param key    key
+     * @param value  value
+     * @param expire 过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
+     * @return 是否设置成功
+     */
+    public Boolean strSetIfAbsent(String key, String value, long expire, TimeUnit timeUnit) {
+        ValueOperations<String, String> operations = getValueOperations(key);
+        Boolean result = expire == NOT_EXPIRE ? operations.setIfAbsent(key, value)
+                : operations.setIfAbsent(key, value, expire, expireUnit(expire, timeUnit));
+        invalidateNearCache(key);
+        return result;
     }
 
     /**
-     * String 获取值
+     * key存在时设置值（SET XX [EX/PX]）
+     *
+     * @param key    key
+     * @param value  value
+     * @param expire 过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
+     * @return 是否设置成功
+     */
+    public Boolean strSetIfPresent(String key, String value, long expire, TimeUnit timeUnit) {
+        ValueOperations<String, String> operations = getValueOperations(key);
+        Boolean result = expire == NOT_EXPIRE ? operations.setIfPresent(key, value)
+                : operations.setIfPresent(key, value, expire, expireUnit(expire, timeUnit));
+        invalidateNearCache(key);
+        return result;
+    }
+
+    /**
+     * 在每个key路由到的db上通过pipeline批量写入，每 {@link #setPipelineBatchSize(int) pipelineBatchSize}
+     * 个key刷新一次，避免超大批次一次性占用过多内存和连接；带过期时间时每个key使用一条 SET EX/PX 命令
+     *
+     * @param values   要写入的key-value
+     * @param expire   过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
+     * @param timeUnit 时间单位，为null时使用秒
+     */
+    public void strSetAll(Map<String, String> values, long expire, TimeUnit timeUnit) {
+        for (Map.Entry<Integer, Map<String, String>> entry : groupByDatabase(values).entrySet()) {
+            int db = entry.getKey();
+            pipelinedSet(redisTemplate.getTargetRedisTemplate(db), entry.getValue(), expire, timeUnit);
+            if (nearCache != null) {
+                entry.getValue().keySet().forEach(key -> nearCache.invalidate(db, key));
+            }
+        }
+    }
+
+    /**
+     * 按路由策略将key分组，所有key都在同一个db时（例如按线程路由）不复制
+     */
+    private <T> Map<Integer, Map<String, T>> groupByDatabase(Map<String, T> values) {
+        int[] databases = new int[values.size()];
+        boolean sameDatabase = true;
+        int i = 0;
+        for (String key : values.keySet()) {
+            databases[i] = redisTemplate.resolveDatabase(key);
+            sameDatabase &= databases[i] == databases[0];
+            i++;
+        }
+        if (sameDatabase) {
+            return values.isEmpty() ? Collections.emptyMap() : Collections.singletonMap(databases[0], values);
+        }
+        Map<Integer, Map<String, T>> groups = new LinkedHashMap<>();
+        i = 0;
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            groups.computeIfAbsent(databases[i++], db -> new LinkedHashMap<>()).put(entry.getKey(), entry.getValue());
+        }
+        return groups;
+    }
+
+    /**
+     * String 获取值，开启GET合并时与同一db上的并发读取合并为一条MGET
      *
      * @param key key
      */
     public String strGet(String key) {
-        return getValueOperations().get(key);
+        if (nearCache != null) {
+            int db = redisTemplate.resolveDatabase(key);
+            if (nearCache.isCached(db)) {
+                return nearCache.get(db, key);
+            }
+        }
+        if (getCoalescer == null) {
+            return getValueOperations(key).get(key);
+        }
+        try {
+            return strGetAsync(key).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 异步获取值，开启GET合并时返回的future在所在批次的MGET返回后完成，
+     * 否则在调用线程上同步执行GET后返回已完成的future
+     *
+     * @param key key
+     */
+    public CompletableFuture<String> strGetAsync(String key) {
+        if (nearCache != null && nearCache.isCached(redisTemplate.resolveDatabase(key))) {
+            return CompletableFuture.completedFuture(strGet(key));
+        }
+        if (getCoalescer == null) {
+            return CompletableFuture.completedFuture(getValueOperations(key).get(key));
+        }
+        return getCoalescer.get(redisTemplate.resolveDatabase(key), key);
     }
 
     /**
@@ -98,21 +324,265 @@ public class RedisHelper implements InitializingBean {
         return redisTemplate.expire(key, expire, timeUnit == null ? TimeUnit.SECONDS : timeUnit);
     }
 
+    // ====================二进制value：byte[]不经过String和db原有的value序列化器，任何序列化配置的db都可以使用；=====================
+    // ====================开启压缩的db仍然按压缩格式读写（见 CompressingRedisSerializer），与str*方法写入的数据互相兼容=====================
+
+    /**
+     * 写入二进制value（SET [EX/PX]），没有开启压缩的db数组直接交给lettuce写出，不复制
+     *
+     * @param key    key
+     * @param value  value
+     * @param expire 过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
+     */
+    public void binSet(String key, byte[] value, long expire, TimeUnit timeUnit) {
+        Assert.notNull(value, "value must not be null");
+        RedisTemplate<String, String> template = redisTemplate.forKey(key);
+        byte[] rawKey = rawKey(template, key);
+        byte[] rawValue = rawBinaryValue(template, value);
+        Expiration expiration = expiration(expire, timeUnit);
+        template.execute((RedisCallback<Boolean>) connection ->
+                connection.set(rawKey, rawValue, expiration, RedisStringCommands.SetOption.upsert()));
+        invalidateNearCache(key);
+    }
+
+    /**
+     * 写入ByteBuffer中 position 到 limit 之间的字节，buffer正好覆盖整个堆内数组时直接使用该数组，不复制；
+     * 不改变buffer的position，调用返回后buffer可以归还到池中
+     */
+    public void binSet(String key, ByteBuffer value, long expire, TimeUnit timeUnit) {
+        Assert.notNull(value, "value must not be null");
+        binSet(key, ByteBufferRedisSerializer.toBytes(value), expire, timeUnit);
+    }
+
+    /**
+     * key不存在时写入二进制value（SET NX [EX/PX]）
+     *
+     * @return 是否设置成功
+     */
+    public Boolean binSetIfAbsent(String key, byte[] value, long expire, TimeUnit timeUnit) {
+        Assert.notNull(value, "value must not be null");
+        RedisTemplate<String, String> template = redisTemplate.forKey(key);
+        byte[] rawKey = rawKey(template, key);
+        byte[] rawValue = rawBinaryValue(template, value);
+        Expiration expiration = expiration(expire, timeUnit);
+        Boolean result = template.execute((RedisCallback<Boolean>) connection ->
+                connection.set(rawKey, rawValue, expiration, RedisStringCommands.SetOption.ifAbsent()));
+        invalidateNearCache(key);
+        return result;
+    }
+
+    /**
+     * 读取二进制value，没有开启压缩的db返回lettuce解码出的数组本身，不再经过String
+     *
+     * @return value，key不存在时返回null
+     */
+    public byte[] binGet(String key) {
+        RedisTemplate<String, String> template = redisTemplate.forKey(key);
+        byte[] rawKey = rawKey(template, key);
+        byte[] value = template.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+        RedisSerializer<?> valueSerializer = template.getValueSerializer();
+        return valueSerializer instanceof CompressingRedisSerializer
+                ? ((CompressingRedisSerializer<?>) valueSerializer).decompress(value) : value;
+    }
+
+    /**
+     * 读取二进制value并包装为ByteBuffer，不复制
+     *
+     * @return value，key不存在时返回null
+     */
+    public ByteBuffer binGetBuffer(String key) {
+        byte[] value = binGet(key);
+        return value == null ? null : ByteBuffer.wrap(value);
+    }
+
+    /**
+     * 按key路由的db通过pipeline批量写入二进制value，分批方式与 {@link #strSetAll(Map, long, TimeUnit)} 相同
+     *
+     * @param values   要写入的key-value
+     * @param expire   过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
+     * @param timeUnit 时间单位，为null时使用秒
+     */
+    public void binSetAll(Map<String, byte[]> values, long expire, TimeUnit timeUnit) {
+        for (Map.Entry<Integer, Map<String, byte[]>> entry : groupByDatabase(values).entrySet()) {
+            int db = entry.getKey();
+            RedisTemplate<String, String> template = redisTemplate.getTargetRedisTemplate(db);
+            pipelinedSet(template, entry.getValue(), value -> rawBinaryValue(template, value), expire, timeUnit);
+            if (nearCache != null) {
+                entry.getValue().keySet().forEach(key -> nearCache.invalidate(db, key));
+            }
+        }
+    }
+
     public void strSetWithDb(int db, String key, String value, long expire, TimeUnit timeUnit) {
-        try {
-            setCurrentDatabase(db);
-            strSet(key,value,expire,timeUnit);
-        } finally {
-            clearCurrentDatabase();
+        try (DbScope ignored = useDatabase(db)) {
+            strSet(key, value, expire, timeUnit);
         }
     }
 
     public String strGetWithDb(int db, String key) {
-        try {
-            setCurrentDatabase(db);
+        try (DbScope ignored = useDatabase(db)) {
             return strGet(key);
-        } finally {
-            clearCurrentDatabase();
         }
     }
+
+    /**
+     * 跨多个db批量获取值，每个db使用一次MGET，各个db的批次并发执行
+     * 不存在的key不会出现在结果中，单个db失败不会影响其他db
+     *
+     * @param keysByDb 每个db要获取的key
+     * @return 每个db的key-value
+     */
+    public MultiDatabaseResult<Map<String, String>> multiGet(Map<Integer, ? extends Collection<String>> keysByDb) {
+        return fanOut(keysByDb, (db, keys) -> {
+            List<String> keyList = new ArrayList<>(keys);
+            List<String> values = redisTemplate.getRedisTemplate(db).opsForValue().multiGet(keyList);
+            Map<String, String> result = new HashMap<>(keyList.size() * 4 / 3 + 1);
+            if (values != null) {
+                for (int i = 0; i < keyList.size(); i++) {
+                    String value = values.get(i);
+                    if (value != null) {
+                        result.put(keyList.get(i), value);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 跨多个db批量设置值，每个db的key通过pipeline分批写入（带过期时间时使用 SET EX/PX），各个db的批次并发执行
+     * 单个db失败不会影响其他db
+     *
+     * @param valuesByDb 每个db要写入的key-value
+     * @param expire     过期时间，{@link #NOT_EXPIRE} 表示不过期，否则必须为正数
+     * @param timeUnit   时间单位，为null时使用秒
+     * @return 每个db写入的key数量
+     */
+    public MultiDatabaseResult<Integer> multiSet(Map<Integer, ? extends Map<String, String>> valuesByDb,
+                                                 long expire, TimeUnit timeUnit) {
+        return fanOut(valuesByDb, (db, values) -> {
+            pipelinedSet(redisTemplate.getRedisTemplate(db), values, expire, timeUnit);
+            if (nearCache != null) {
+                values.keySet().forEach(key -> nearCache.invalidate(db, key));
+            }
+            return values.size();
+        });
+    }
+
+    /**
+     * 写入后移除key所在db本地缓存中的key，失效通知是异步到达的，这里保证写入线程随后能读到自己的写入
+     */
+    private void invalidateNearCache(String key) {
+        if (nearCache != null) {
+            nearCache.invalidate(redisTemplate.resolveDatabase(key), key);
+        }
+    }
+
+    /**
+     * 将每个db的批次提交到线程池并发执行，等待所有批次结束后汇总结果和失败信息
+     */
+    private <P, R> MultiDatabaseResult<R> fanOut(Map<Integer, P> batches, BatchOperation<P, R> operation) {
+        Map<Integer, CompletableFuture<R>> futures = new LinkedHashMap<>(batches.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, P> entry : batches.entrySet()) {
+            int db = entry.getKey();
+            P batch = entry.getValue();
+            CompletableFuture<R> future;
+            if (fanOutExecutor == null) {
+                future = new CompletableFuture<>();
+                try {
+                    future.complete(operation.apply(db, batch));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            } else {
+                future = CompletableFuture.supplyAsync(() -> operation.apply(db, batch), fanOutExecutor);
+            }
+            futures.put(db, future);
+        }
+        Map<Integer, R> results = new LinkedHashMap<>();
+        Map<Integer, Throwable> failures = new LinkedHashMap<>();
+        for (Map.Entry<Integer, CompletableFuture<R>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                failures.put(entry.getKey(), e.getCause() == null ? e : e.getCause());
+            }
+        }
+        return new MultiDatabaseResult<>(results, failures);
+    }
+
+    /**
+     * 通过pipeline写入所有key-value，每pipelineBatchSize个key刷新一次，带过期时间时每个key使用一条 SET EX/PX 命令
+     */
+    @SuppressWarnings("unchecked")
+    private void pipelinedSet(RedisTemplate<String, String> template, Map<String, String> values,
+                              long expire, TimeUnit timeUnit) {
+        RedisSerializer<String> valueSerializer = (RedisSerializer<String>) template.getValueSerializer();
+        pipelinedSet(template, values, valueSerializer::serialize, expire, timeUnit);
+    }
+
+    /**
+     * @param valueEncoder value转为写入redis的字节
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void pipelinedSet(RedisTemplate<String, String> template, Map<String, T> values,
+                                  Function<T, byte[]> valueEncoder, long expire, TimeUnit timeUnit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) template.getKeySerializer();
+        Expiration expiration = expiration(expire, timeUnit);
+        Iterator<Map.Entry<String, T>> iterator = values.entrySet().iterator();
+        while (iterator.hasNext()) {
+            template.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < pipelineBatchSize && iterator.hasNext(); i++) {
+                    Map.Entry<String, T> entry = iterator.next();
+                    connection.set(keySerializer.serialize(entry.getKey()), valueEncoder.apply(entry.getValue()),
+                            expiration, RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+        }
+    }
+
+    private static Expiration expiration(long expire, TimeUnit timeUnit) {
+        return expire == NOT_EXPIRE ? Expiration.persistent() : Expiration.from(expire, expireUnit(expire, timeUnit));
+    }
+
+    /**
+     * 检查写入时的过期时间：redis拒绝0和负数的 SET EX/PX（invalid expire time），
+     * 在发送命令前给出明确的错误，而不是像 SET + EXPIRE 那样静默删除key
+     *
+     * @return 时间单位，为null时使用秒
+     */
+    private static TimeUnit expireUnit(long expire, TimeUnit timeUnit) {
+        TimeUnit unit = timeUnit == null ? TimeUnit.SECONDS : timeUnit;
+        if (expire <= 0 || unit.toMillis(expire) <= 0) {
+            throw new IllegalArgumentException("expire must be NOT_EXPIRE or at least 1 millisecond, but was "
+                    + expire + " " + unit);
+        }
+        return unit;
+    }
+
+    /**
+     * @return 二进制value写入redis的字节，开启压缩的db按压缩格式编码，否则为value本身
+     */
+    private static byte[] rawBinaryValue(RedisTemplate<String, String> template, byte[] value) {
+        RedisSerializer<?> valueSerializer = template.getValueSerializer();
+        return valueSerializer instanceof CompressingRedisSerializer
+                ? ((CompressingRedisSerializer<?>) valueSerializer).compress(value) : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] rawKey(RedisTemplate<String, String> template, String key) {
+        return ((RedisSerializer<String>) template.getKeySerializer()).serialize(key);
+    }
+
+    /**
+     * 单个db的批量操作
+     */
+    @FunctionalInterface
+    private interface BatchOperation<P, R> {
+        R apply(int db, P batch);
+    }
 }
@@ -0,0 +1,87 @@
+package com.yebuxiu.metrics;
+
+import io.lettuce.core.metrics.CommandLatencyCollector;
+import io.lettuce.core.metrics.CommandLatencyId;
+import io.lettuce.core.metrics.CommandMetrics;
+import io.lettuce.core.protocol.CommandType;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单个db的lettuce命令延迟收集器，每种命令一个Timer
+ * 由lettuce在EventLoop线程上回调，Timer按命令类型的下标缓存，注册之后记录时不再分配对象
+ */
+class DatabaseCommandLatencyCollector implements CommandLatencyCollector {
+
+    private static final CommandType[] COMMAND_TYPES = CommandType.values();
+
+    private final MeterRegistry registry;
+
+    private final String database;
+
+    private final boolean percentileHistogram;
+
+    /**
+     * 下标为 {@link CommandType#ordinal()}
+     */
+    private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(COMMAND_TYPES.length);
+
+    /**
+     * 非 {@link CommandType} 的自定义命令
+     */
+    private final Map<String, Timer> customTimers = new ConcurrentHashMap<>();
+
+    DatabaseCommandLatencyCollector(MeterRegistry registry, String database, boolean percentileHistogram) {
+        this.registry = registry;
+        this.database = database;
+        this.percentileHistogram = percentileHistogram;
+    }
+
+    @Override
+    public void recordCommandLatency(SocketAddress local, SocketAddress remote, ProtocolKeyword commandType,
+                                     long firstResponseLatency, long completionLatency) {
+        Timer timer;
+        if (commandType instanceof CommandType) {
+            int index = ((CommandType) commandType).ordinal();
+            timer = timers.get(index);
+            if (timer == null) {
+                timer = register(commandType.name());
+                timers.set(index, timer);
+            }
+        } else {
+            timer = customTimers.computeIfAbsent(commandType.name(), this::register);
+        }
+        timer.record(completionLatency, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer register(String command) {
+        return Timer.builder(MicrometerDynamicRedisMetrics.PREFIX + ".command")
+                .description("Redis command latency per database and command type")
+                .tag(MicrometerDynamicRedisMetrics.TAG_DATABASE, database)
+                .tag("command", command)
+                .publishPercentileHistogram(percentileHistogram)
+                .register(registry);
+    }
+
+    @Override
+    public Map<CommandLatencyId, CommandMetrics> retrieveMetrics() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -0,0 +1,117 @@
+package com.yebuxiu.metrics;
+
+import com.yebuxiu.cache.RedisNearCache;
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import io.lettuce.core.resource.ClientResources;
+
+/**
+ * 动态切换db的埋点接口，所有指标都以db号为维度
+ * 未开启指标时使用 {@link #NOOP}，热路径上只有一次 {@link #isEnabled()} 判断
+ */
+public interface DynamicRedisMetrics {
+
+    /**
+     * 动态创建的连接池注册到JMX时使用的域名，每个db的连接池名称为 {@code com.yebuxiu.redis:type=ConnectionPool,db=N,name=poolX}
+     */
+    String POOL_JMX_DOMAIN = "com.yebuxiu.redis";
+
+    /**
+     * @param database db号
+     * @return 该db连接池的JMX名称前缀（commons-pool2 的 jmxNameBase）
+     */
+    static String poolJmxNameBase(int database) {
+        return POOL_JMX_DOMAIN + ":type=ConnectionPool,db=" + database + ",name=";
+    }
+
+    /**
+     * 不记录任何指标
+     */
+    DynamicRedisMetrics NOOP = new DynamicRedisMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordRouting(int database, long nanos) {
+        }
+
+        @Override
+        public void recordTemplateCreation(int database, long nanos) {
+        }
+
+        @Override
+        public ClientResources clientResources(int database, ClientResources shared) {
+            return shared;
+        }
+
+        @Override
+        public void bindConnectionPool(int database) {
+        }
+    };
+
+    /**
+     * @return 是否记录指标，为false时调用方可以跳过计时
+     */
+    boolean isEnabled();
+
+    /**
+     * 记录一次路由（解析当前db并找到对应RedisTemplate）的耗时，不包含模板创建
+     *
+     * @param database db号，{@link AbstractRoutingRedisTemplate#NO_DATABASE} 表示默认db
+     * @param nanos    耗时（纳秒）
+     */
+    void recordRouting(int database, long nanos);
+
+    /**
+     * 记录一次模板（连接工厂）创建的耗时
+     *
+     * @param database db号
+     * @param nanos    耗时（纳秒）
+     */
+    void recordTemplateCreation(int database, long nanos);
+
+    /**
+     * 获取指定db连接工厂使用的ClientResources，用于按db记录命令延迟
+     *
+     * @param database db号
+     * @param shared   所有db共享的ClientResources
+     * @return 该db使用的ClientResources，与shared共用I/O线程、计算线程和timer
+     */
+    ClientResources clientResources(int database, ClientResources shared);
+
+    /**
+     * 为指定db的连接池注册 active/idle/waiters 指标，同一个db重复调用只会注册一次
+     *
+     * @param database db号
+     */
+    void bindConnectionPool(int database);
+
+    /**
+     * 记录一次value序列化后的压缩结果
+     *
+     * @param database      db号
+     * @param originalBytes 压缩前的字节数
+     * @param storedBytes   实际写入的字节数（未压缩时与原始字节数相同或多一个转义字节）
+     * @param nanos         压缩耗时（纳秒），没有尝试压缩时为0
+     */
+    default void recordCompression(int database, int originalBytes, int storedBytes, long nanos) {
+    }
+
+    /**
+     * 记录一次value解压的耗时
+     *
+     * @param database db号
+     * @param nanos    耗时（纳秒）
+     */
+    default void recordDecompression(int database, long nanos) {
+    }
+
+    /**
+     * 为开启本地缓存的每个db注册命中、未命中、淘汰、失效次数和当前大小的指标，指标在读取时从统计快照取值
+     *
+     * @param nearCache 已创建的本地缓存
+     */
+    default void bindNearCache(RedisNearCache nearCache) {
+    }
+}
@@ -0,0 +1,283 @@
+package com.yebuxiu.metrics;
+
+import com.yebuxiu.cache.NearCacheStats;
+import com.yebuxiu.cache.RedisNearCache;
+import io.lettuce.core.event.DefaultEventPublisherOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 基于micrometer的埋点实现，指标名称：
+ * <ul>
+ *     <li>redis.dynamic.routing：路由耗时</li>
+ *     <li>redis.dynamic.template.creation：模板（连接工厂）创建耗时</li>
+ *     <li>redis.dynamic.command：每种命令的延迟</li>
+ *     <li>redis.dynamic.pool.active / idle / waiters：连接池状态</li>
+ *     <li>redis.dynamic.compression.original / stored：开启压缩的db写入的value压缩前和实际写入的字节数，两者之比为压缩率</li>
+ *     <li>redis.dynamic.compression.time：压缩和解压耗时，operation 标签为 compress / decompress</li>
+ *     <li>redis.dynamic.nearcache.gets：本地缓存的读取次数，result 标签为 hit / miss</li>
+ *     <li>redis.dynamic.nearcache.evictions / invalidations：本地缓存被淘汰、被失效的条目数</li>
+ *     <li>redis.dynamic.nearcache.size / bytes：本地缓存当前的条目数和估算字节数</li>
+ * </ul>
+ * 所有指标都带有 db 标签，未指定db（使用默认redisTemplate）时标签值为 default。
+ * 路由和模板创建的Timer在构造时按db预先注册好，记录时只做数组下标访问，不分配对象
+ */
+@Slf4j
+public class MicrometerDynamicRedisMetrics implements DynamicRedisMetrics {
+
+    static final String PREFIX = "redis.dynamic";
+
+    static final String TAG_DATABASE = "db";
+
+    private static final String DEFAULT_DATABASE_TAG = "default";
+
+    private final MeterRegistry registry;
+
+    private final boolean percentileHistogram;
+
+    /**
+     * 下标为db号+1，0号位置为未指定db
+     */
+    private final Timer[] routingTimers;
+
+    /**
+     * 下标为db号
+     */
+    private final Timer[] creationTimers;
+
+    /**
+     * 每个db带命令延迟收集器的ClientResources，与共享的ClientResources共用线程，线程由共享的ClientResources统一关闭
+     */
+    private final AtomicReferenceArray<ClientResources> clientResources;
+
+    private final AtomicIntegerArray poolBound;
+
+    /**
+     * 下标为db号，只有开启压缩的db会在第一次使用时注册
+     */
+    private final AtomicReferenceArray<CompressionMeters> compressionMeters;
+
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * @param registry            指标注册中心
+     * @param databases           redis服务端的db数量
+     * @param percentileHistogram 命令延迟是否发布百分位直方图
+     */
+    public MicrometerDynamicRedisMetrics(MeterRegistry registry, int databases, boolean percentileHistogram) {
+        this.registry = registry;
+        this.percentileHistogram = percentileHistogram;
+        this.routingTimers = new Timer[databases + 1];
+        this.creationTimers = new Timer[databases];
+        this.clientResources = new AtomicReferenceArray<>(databases);
+        this.poolBound = new AtomicIntegerArray(databases);
+        this.compressionMeters = new AtomicReferenceArray<>(databases);
+        routingTimers[0] = routingTimer(DEFAULT_DATABASE_TAG);
+        for (int db = 0; db < databases; db++) {
+            String tag = String.valueOf(db);
+            routingTimers[db + 1] = routingTimer(tag);
+            creationTimers[db] = Timer.builder(PREFIX + ".template.creation")
+                    .description("Time to create the RedisTemplate and connection factory of a database")
+                    .tag(TAG_DATABASE, tag)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordRouting(int database, long nanos) {
+        routingTimers[database + 1].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordTemplateCreation(int database, long nanos) {
+        creationTimers[database].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ClientResources clientResources(int database, ClientResources shared) {
+        ClientResources resources = clientResources.get(database);
+        if (resources != null) {
+            return resources;
+        }
+        // lettuce 5.2 的 mutate() 不会复制 EventLoopGroupProvider，这里显式复用共享实例的各个组件，
+        // 显式传入的组件都视为外部共享的，这份ClientResources不会创建也不会关闭任何线程
+        resources = DefaultClientResources.builder()
+                .eventLoopGroupProvider(shared.eventLoopGroupProvider())
+                .eventExecutorGroup(shared.eventExecutorGroup())
+                .timer(shared.timer())
+                .eventBus(shared.eventBus())
+                .dnsResolver(shared.dnsResolver())
+                .reconnectDelay(shared::reconnectDelay)
+                .nettyCustomizer(shared.nettyCustomizer())
+                .tracing(shared.tracing())
+                .commandLatencyCollector(new DatabaseCommandLatencyCollector(registry, String.valueOf(database),
+                        percentileHistogram))
+                .commandLatencyPublisherOptions(DefaultEventPublisherOptions.disabled())
+                .socketAddressResolver(shared.socketAddressResolver())
+                .build();
+        if (!clientResources.compareAndSet(database, null, resources)) {
+            return clientResources.get(database);
+        }
+        return resources;
+    }
+
+    /**
+     * 连接池状态通过commons-pool2注册的JMX MBean读取，同一个db的多个连接池（同步、响应式、被淘汰后重建的）会被累加
+     */
+    @Override
+    public void bindConnectionPool(int database) {
+        if (!poolBound.compareAndSet(database, 0, 1)) {
+            return;
+        }
+        ObjectName pattern;
+        try {
+            pattern = new ObjectName(DynamicRedisMetrics.POOL_JMX_DOMAIN + ":type=ConnectionPool,db=" + database + ",*");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+        String tag = String.valueOf(database);
+        poolGauge("active", "NumActive", "Connections currently borrowed from the pool", pattern, tag);
+        poolGauge("idle", "NumIdle", "Idle connections in the pool", pattern, tag);
+        poolGauge("waiters", "NumWaiters", "Threads blocked waiting for a connection", pattern, tag);
+    }
+
+    private void poolGauge(String name, String attribute, String description, ObjectName pattern, String tag) {
+        Gauge.builder(PREFIX + ".pool." + name, this, metrics -> metrics.sumPoolAttribute(pattern, attribute))
+                .description(description)
+                .tag(TAG_DATABASE, tag)
+                .register(registry);
+    }
+
+    private double sumPoolAttribute(ObjectName pattern, String attribute) {
+        double sum = 0;
+        for (ObjectName name : mBeanServer.queryNames(pattern, null)) {
+            try {
+                sum += ((Number) mBeanServer.getAttribute(name, attribute)).doubleValue();
+            } catch (Exception e) {
+                // 连接池可能在两次调用之间被销毁
+                log.trace("Failed to read {} of {}", attribute, name, e);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void recordCompression(int database, int originalBytes, int storedBytes, long nanos) {
+        CompressionMeters meters = compressionMeters(database);
+        meters.original.record(originalBytes);
+        meters.stored.record(storedBytes);
+        if (nanos > 0L) {
+            meters.compressTime.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void recordDecompression(int database, long nanos) {
+        compressionMeters(database).decompressTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private CompressionMeters compressionMeters(int database) {
+        CompressionMeters meters = compressionMeters.get(database);
+        if (meters == null) {
+            // 重复注册同名指标时micrometer返回已注册的实例
+            meters = new CompressionMeters(registry, String.valueOf(database));
+            compressionMeters.set(database, meters);
+        }
+        return meters;
+    }
+
+    @Override
+    public void bindNearCache(RedisNearCache nearCache) {
+        for (Integer database : nearCache.getStats().keySet()) {
+            String tag = String.valueOf(database);
+            nearCacheCounter("gets", "Near cache lookups", nearCache, database, tag, NearCacheStats::getHits)
+                    .tag("result", "hit").register(registry);
+            nearCacheCounter("gets", "Near cache lookups", nearCache, database, tag, NearCacheStats::getMisses)
+                    .tag("result", "miss").register(registry);
+            nearCacheCounter("evictions", "Near cache entries evicted by the size limits", nearCache, database, tag,
+                    NearCacheStats::getEvictions).register(registry);
+            nearCacheCounter("invalidations", "Near cache entries removed by invalidations", nearCache, database,
+                    tag, NearCacheStats::getInvalidations).register(registry);
+            Gauge.builder(PREFIX + ".nearcache.size", nearCache, cache -> cache.getStats(database).getSize())
+                    .description("Entries in the near cache")
+                    .tag(TAG_DATABASE, tag)
+                    .register(registry);
+            Gauge.builder(PREFIX + ".nearcache.bytes", nearCache, cache -> cache.getStats(database).getBytes())
+                    .description("Estimated size of the near cache")
+                    .baseUnit("bytes")
+                    .tag(TAG_DATABASE, tag)
+                    .register(registry);
+        }
+    }
+
+    private static FunctionCounter.Builder<RedisNearCache> nearCacheCounter(String name, String description,
+                                                                            RedisNearCache nearCache, int database,
+                                                                            String tag,
+                                                                            ToDoubleFunction<NearCacheStats> value) {
+        return FunctionCounter.builder(PREFIX + ".nearcache." + name, nearCache,
+                cache -> value.applyAsDouble(cache.getStats(database)))
+                .description(description)
+                .tag(TAG_DATABASE, tag);
+    }
+
+    private Timer routingTimer(String tag) {
+        return Timer.builder(PREFIX + ".routing")
+                .description("Time to resolve the current database and its RedisTemplate")
+                .tag(TAG_DATABASE, tag)
+                .register(registry);
+    }
+
+    private static final class CompressionMeters {
+
+        private final DistributionSummary original;
+
+        private final DistributionSummary stored;
+
+        private final Timer compressTime;
+
+        private final Timer decompressTime;
+
+        private CompressionMeters(MeterRegistry registry, String database) {
+            this.original = DistributionSummary.builder(PREFIX + ".compression.original")
+                    .description("Serialized size of values written to a compressed database")
+                    .baseUnit("bytes")
+                    .tag(TAG_DATABASE, database)
+                    .register(registry);
+            this.stored = DistributionSummary.builder(PREFIX + ".compression.stored")
+                    .description("Stored size of values written to a compressed database")
+                    .baseUnit("bytes")
+                    .tag(TAG_DATABASE, database)
+                    .register(registry);
+            this.compressTime = compressionTimer(registry, database, "compress");
+            this.decompressTime = compressionTimer(registry, database, "decompress");
+        }
+
+        private static Timer compressionTimer(MeterRegistry registry, String database, String operation) {
+            return Timer.builder(PREFIX + ".compression.time")
+                    .description("CPU time spent compressing or decompressing values")
+                    .tag(TAG_DATABASE, database)
+                    .tag("operation", operation)
+                    .register(registry);
+        }
+    }
+}
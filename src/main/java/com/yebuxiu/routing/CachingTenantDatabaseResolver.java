@@ -0,0 +1,146 @@
+package com.yebuxiu.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带本地缓存的租户解析：结果（包括未知租户）缓存 ttl 时长，条目数超过上限时先清理过期条目，
+ * 仍然超过时淘汰任意条目直到不超过上限（超出上限通常意味着租户标识被滥用，不值得为此维护访问顺序）。命中时只有一次 ConcurrentHashMap 查找；
+ * 同一租户同时未命中时只有一个线程调用被包装的解析器，其余线程等待其结果，解析失败不缓存
+ */
+@Slf4j
+public class CachingTenantDatabaseResolver implements TenantDatabaseResolver {
+
+    private final TenantDatabaseResolver delegate;
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate   被包装的解析器
+     * @param maxEntries 最多缓存的租户数
+     * @param ttl        结果的缓存时长
+     */
+    public CachingTenantDatabaseResolver(TenantDatabaseResolver delegate, int maxEntries, Duration ttl) {
+        Assert.notNull(delegate, "delegate must not be null");
+        Assert.isTrue(maxEntries > 0, "maxEntries must be positive");
+        Assert.isTrue(ttl != null && !ttl.isNegative() && !ttl.isZero(), "ttl must be positive");
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public int resolveDatabase(String tenant) {
+        Entry entry = entries.get(tenant);
+        long now = System.nanoTime();
+        if (entry == null || entry.isExpired(now, ttlNanos)) {
+            entry = load(tenant, entry, now);
+        }
+        try {
+            return entry.database.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 未命中时调用被包装的解析器，是否阻塞与被包装的解析器一致
+     */
+    @Override
+    public boolean isBlocking() {
+        return delegate.isBlocking();
+    }
+
+    /**
+     * @return 缓存中未过期且已经解析完成的db，否则返回null，供不能阻塞的调用方（例如WebFlux）判断是否需要切换线程解析
+     */
+    public Integer getIfPresent(String tenant) {
+        Entry entry = entries.get(tenant);
+        if (entry == null || entry.isExpired(System.nanoTime(), ttlNanos) || !entry.database.isDone()
+                || entry.database.isCompletedExceptionally()) {
+            return null;
+        }
+        return entry.database.join();
+    }
+
+    /**
+     * 移除租户的缓存，租户的db变更后调用
+     */
+    public void invalidate(String tenant) {
+        entries.remove(tenant);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * @return 当前缓存的租户数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry load(String tenant, Entry expired, long now) {
+        Entry loading = new Entry(now);
+        Entry current;
+        if (expired == null) {
+            current = entries.putIfAbsent(tenant, loading);
+        } else {
+            current = entries.replace(tenant, expired, loading) ? null : entries.putIfAbsent(tenant, loading);
+        }
+        if (current != null) {
+            // 其他线程已经在解析
+            return current;
+        }
+        try {
+            loading.database.complete(delegate.resolveDatabase(tenant));
+        } catch (RuntimeException e) {
+            entries.remove(tenant, loading);
+            loading.database.completeExceptionally(e);
+        }
+        if (entries.size() > maxEntries) {
+            evict(now);
+        }
+        return loading;
+    }
+
+    private void evict(long now) {
+        entries.entrySet().removeIf(e -> e.getValue().isExpired(now, ttlNanos));
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        log.debug("Tenant database cache evicted down to {} entries", entries.size());
+    }
+
+    private static final class Entry {
+
+        private final long loadedAt;
+
+        private final CompletableFuture<Integer> database = new CompletableFuture<>();
+
+        private Entry(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return database.isDone() && now - loadedAt >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import org.springframework.util.Assert;
+
+import java.util.List;
+
+/**
+ * 按顺序询问多个策略，使用第一个给出db的策略的结果，都无法决定时使用默认db
+ */
+public class CompositeRoutingStrategy implements RedisRoutingStrategy {
+
+    private final RedisRoutingStrategy[] strategies;
+
+    public CompositeRoutingStrategy(List<? extends RedisRoutingStrategy> strategies) {
+        Assert.notEmpty(strategies, "strategies must not be empty");
+        this.strategies = strategies.toArray(new RedisRoutingStrategy[0]);
+    }
+
+    @Override
+    public int determineDatabase(Object key) {
+        for (RedisRoutingStrategy strategy : strategies) {
+            int database = strategy.determineDatabase(key);
+            if (database != AbstractRoutingRedisTemplate.NO_DATABASE) {
+                return database;
+            }
+        }
+        return AbstractRoutingRedisTemplate.NO_DATABASE;
+    }
+}
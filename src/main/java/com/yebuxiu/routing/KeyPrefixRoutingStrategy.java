@@ -0,0 +1,57 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按key前缀路由，例如 session: 到2号db、rate: 到3号db，多个前缀都匹配时使用最长的前缀。
+ * 前缀在构造时编译为前缀树，每次查找不分配对象，耗时只与前缀长度有关。
+ * 支持String（CharSequence）和byte[]（UTF-8）形式的key，其他类型的key和不知道key的调用返回 NO_DATABASE
+ */
+public class KeyPrefixRoutingStrategy implements RedisRoutingStrategy {
+
+    private final PrefixTrie charTrie;
+
+    private final PrefixTrie byteTrie;
+
+    private final Map<String, Integer> prefixes;
+
+    /**
+     * @param prefixes key前缀到db的映射
+     */
+    public KeyPrefixRoutingStrategy(Map<String, Integer> prefixes) {
+        Map<String, Integer> bytePrefixes = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : prefixes.entrySet()) {
+            Assert.notNull(entry.getKey(), "Key prefix must not be null");
+            Assert.isTrue(entry.getValue() != null && entry.getValue() >= 0,
+                    "Database of key prefix '" + entry.getKey() + "' must not be negative");
+            bytePrefixes.put(new String(entry.getKey().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1),
+                    entry.getValue());
+        }
+        this.prefixes = new LinkedHashMap<>(prefixes);
+        this.charTrie = PrefixTrie.compile(prefixes);
+        this.byteTrie = PrefixTrie.compile(bytePrefixes);
+    }
+
+    @Override
+    public int determineDatabase(Object key) {
+        if (key instanceof CharSequence) {
+            return charTrie.match((CharSequence) key);
+        }
+        if (key instanceof byte[]) {
+            return byteTrie.match((byte[]) key);
+        }
+        return AbstractRoutingRedisTemplate.NO_DATABASE;
+    }
+
+    /**
+     * @return 配置的key前缀到db的映射
+     */
+    public Map<String, Integer> getPrefixes() {
+        return prefixes;
+    }
+}
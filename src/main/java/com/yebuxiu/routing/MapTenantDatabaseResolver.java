@@ -0,0 +1,38 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import org.springframework.util.Assert;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按固定的租户到db映射解析，默认使用 redis.routing.tenants 配置
+ */
+public class MapTenantDatabaseResolver implements TenantDatabaseResolver {
+
+    private final Map<String, Integer> tenantDatabases;
+
+    /**
+     * @param tenantDatabases 租户到db的映射
+     */
+    public MapTenantDatabaseResolver(Map<String, Integer> tenantDatabases) {
+        tenantDatabases.forEach((tenant, database) -> Assert.isTrue(database != null && database >= 0,
+                "Database of tenant '" + tenant + "' must not be negative"));
+        this.tenantDatabases = new HashMap<>(tenantDatabases);
+    }
+
+    @Override
+    public int resolveDatabase(String tenant) {
+        Integer database = tenantDatabases.get(tenant);
+        return database == null ? AbstractRoutingRedisTemplate.NO_DATABASE : database;
+    }
+
+    /**
+     * 只查找内存中的映射，不会阻塞
+     */
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+}
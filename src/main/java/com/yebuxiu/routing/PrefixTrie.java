@@ -0,0 +1,149 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 构建后不可变的前缀树，节点保存在数组中，查找时按key逐个字符下降，取最长匹配的前缀，不分配对象。
+ * 查找耗时只与最长前缀的长度有关，与前缀数量无关
+ */
+final class PrefixTrie {
+
+    /**
+     * 子节点数量不超过该值时顺序查找，否则二分查找
+     */
+    private static final int LINEAR_SCAN_THRESHOLD = 8;
+
+    /**
+     * 下标为节点编号，每个节点的子节点字符（升序）
+     */
+    private final char[][] labels;
+
+    /**
+     * 下标为节点编号，与labels一一对应的子节点编号
+     */
+    private final int[][] children;
+
+    /**
+     * 下标为节点编号，以该节点结束的前缀对应的db，不是前缀结尾时为 NO_DATABASE
+     */
+    private final int[] values;
+
+    private PrefixTrie(char[][] labels, int[][] children, int[] values) {
+        this.labels = labels;
+        this.children = children;
+        this.values = values;
+    }
+
+    /**
+     * @param prefixes 前缀（每个char为一个符号）到db的映射
+     */
+    static PrefixTrie compile(Map<String, Integer> prefixes) {
+        Builder root = new Builder();
+        for (Map.Entry<String, Integer> entry : prefixes.entrySet()) {
+            Builder node = root;
+            String prefix = entry.getKey();
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder());
+            }
+            node.value = entry.getValue();
+        }
+        // 按广度优先给节点编号
+        List<Builder> nodes = new ArrayList<>();
+        nodes.add(root);
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.addAll(nodes.get(i).children.values());
+        }
+        char[][] labels = new char[nodes.size()][];
+        int[][] children = new int[nodes.size()][];
+        int[] values = new int[nodes.size()];
+        int next = 1;
+        for (int i = 0; i < nodes.size(); i++) {
+            Builder node = nodes.get(i);
+            labels[i] = new char[node.children.size()];
+            children[i] = new int[node.children.size()];
+            values[i] = node.value;
+            int j = 0;
+            for (Character label : node.children.keySet()) {
+                labels[i][j] = label;
+                children[i][j] = next++;
+                j++;
+            }
+        }
+        return new PrefixTrie(labels, children, values);
+    }
+
+    /**
+     * @return 最长匹配前缀对应的db，没有匹配的前缀时返回 NO_DATABASE
+     */
+    int match(CharSequence key) {
+        int node = 0;
+        int result = values[0];
+        for (int i = 0, length = key.length(); i < length; i++) {
+            node = child(node, key.charAt(i));
+            if (node < 0) {
+                break;
+            }
+            if (values[node] != AbstractRoutingRedisTemplate.NO_DATABASE) {
+                result = values[node];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按字节匹配，需要用前缀的字节（每个字节作为一个char）构建
+     */
+    int match(byte[] key) {
+        int node = 0;
+        int result = values[0];
+        for (byte b : key) {
+            node = child(node, (char) (b & 0xFF));
+            if (node < 0) {
+                break;
+            }
+            if (values[node] != AbstractRoutingRedisTemplate.NO_DATABASE) {
+                result = values[node];
+            }
+        }
+        return result;
+    }
+
+    private int child(int node, char c) {
+        char[] nodeLabels = labels[node];
+        int length = nodeLabels.length;
+        if (length <= LINEAR_SCAN_THRESHOLD) {
+            for (int i = 0; i < length; i++) {
+                if (nodeLabels[i] == c) {
+                    return children[node][i];
+                }
+            }
+            return -1;
+        }
+        int low = 0;
+        int high = length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = nodeLabels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return children[node][mid];
+            }
+        }
+        return -1;
+    }
+
+    private static final class Builder {
+
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+
+        private int value = AbstractRoutingRedisTemplate.NO_DATABASE;
+    }
+}
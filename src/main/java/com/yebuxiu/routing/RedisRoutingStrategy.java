@@ -0,0 +1,16 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+
+/**
+ * 路由策略，决定一次redis操作使用哪个db
+ * 每条命令都会调用，实现需要线程安全，且不应分配对象或执行阻塞操作
+ */
+public interface RedisRoutingStrategy {
+
+    /**
+     * @param key 本次操作的key，opsForValue() 等在执行命令前就需要确定RedisTemplate的调用为null
+     * @return db号，无法决定时返回 {@link AbstractRoutingRedisTemplate#NO_DATABASE}，交给下一个策略或使用默认db
+     */
+    int determineDatabase(Object key);
+}
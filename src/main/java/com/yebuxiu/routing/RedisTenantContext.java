@@ -0,0 +1,35 @@
+package com.yebuxiu.routing;
+
+/**
+ * 当前线程的租户，通常由web过滤器从请求头中解析后设置，请求结束时清理，
+ * 配合 {@link TenantHeaderRoutingStrategy} 按租户路由
+ */
+public final class RedisTenantContext {
+
+    private static final ThreadLocal<String> TENANT = new ThreadLocal<>();
+
+    private RedisTenantContext() {
+    }
+
+    /**
+     * @param tenant 租户标识，为null时等同于 {@link #clear()}
+     */
+    public static void set(String tenant) {
+        if (tenant == null) {
+            TENANT.remove();
+        } else {
+            TENANT.set(tenant);
+        }
+    }
+
+    /**
+     * @return 当前线程的租户，未设置时返回null
+     */
+    public static String get() {
+        return TENANT.get();
+    }
+
+    public static void clear() {
+        TENANT.remove();
+    }
+}
@@ -0,0 +1,24 @@
+package com.yebuxiu.routing;
+
+/**
+ * 租户到db的解析，例如查询租户表。web过滤器每个请求解析一次，
+ * 耗时的实现可以用 {@link CachingTenantDatabaseResolver} 包装
+ */
+@FunctionalInterface
+public interface TenantDatabaseResolver {
+
+    /**
+     * @param tenant 租户标识，不为null
+     * @return 租户对应的db，未知租户返回 {@link com.yebuxiu.template.AbstractRoutingRedisTemplate#NO_DATABASE}
+     */
+    int resolveDatabase(String tenant);
+
+    /**
+     * WebFlux过滤器据此决定是否可以在事件循环上直接解析：返回false的实现必须只做内存查找，不能有IO或锁等待
+     *
+     * @return 解析是否可能阻塞，默认true（例如查询租户表）
+     */
+    default boolean isBlocking() {
+        return true;
+    }
+}
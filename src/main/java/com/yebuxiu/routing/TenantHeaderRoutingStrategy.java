@@ -0,0 +1,44 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+
+/**
+ * 按请求头中的租户路由：租户由web过滤器写入 {@link RedisTenantContext}，通过 {@link TenantDatabaseResolver} 确定db，
+ * 没有租户或租户未知时返回 NO_DATABASE
+ */
+public class TenantHeaderRoutingStrategy implements RedisRoutingStrategy {
+
+    private final TenantDatabaseResolver tenantDatabaseResolver;
+
+    /**
+     * @param tenantDatabases 租户到db的映射
+     */
+    public TenantHeaderRoutingStrategy(Map<String, Integer> tenantDatabases) {
+        this(new MapTenantDatabaseResolver(tenantDatabases));
+    }
+
+    /**
+     * @param tenantDatabaseResolver 租户到db的解析，每条命令都会调用，耗时的实现需要带缓存
+     */
+    public TenantHeaderRoutingStrategy(TenantDatabaseResolver tenantDatabaseResolver) {
+        Assert.notNull(tenantDatabaseResolver, "tenantDatabaseResolver must not be null");
+        this.tenantDatabaseResolver = tenantDatabaseResolver;
+    }
+
+    @Override
+    public int determineDatabase(Object key) {
+        String tenant = RedisTenantContext.get();
+        return tenant == null ? AbstractRoutingRedisTemplate.NO_DATABASE : getDatabase(tenant);
+    }
+
+    /**
+     * @param tenant 租户
+     * @return 租户对应的db，未知租户返回 NO_DATABASE
+     */
+    public int getDatabase(String tenant) {
+        return tenantDatabaseResolver.resolveDatabase(tenant);
+    }
+}
@@ -0,0 +1,19 @@
+package com.yebuxiu.routing;
+
+import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+
+/**
+ * 按当前线程通过 setCurrentDatabase、useDatabase、@RedisDb 指定的db路由，与key无关
+ */
+public final class ThreadLocalRoutingStrategy implements RedisRoutingStrategy {
+
+    public static final ThreadLocalRoutingStrategy INSTANCE = new ThreadLocalRoutingStrategy();
+
+    private ThreadLocalRoutingStrategy() {
+    }
+
+    @Override
+    public int determineDatabase(Object key) {
+        return RedisDatabaseThreadLocalHelper.current();
+    }
+}
@@ -0,0 +1,48 @@
+package com.yebuxiu.scan;
+
+import java.util.Objects;
+
+/**
+ * 跨db遍历时返回的key及其所在的db
+ */
+public final class DatabaseKey<K> {
+
+    private final int database;
+
+    private final K key;
+
+    public DatabaseKey(int database, K key) {
+        this.database = database;
+        this.key = key;
+    }
+
+    public int getDatabase() {
+        return database;
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DatabaseKey)) {
+            return false;
+        }
+        DatabaseKey<?> that = (DatabaseKey<?>) o;
+        return database == that.database && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * database + Objects.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        return database + ":" + key;
+    }
+}
@@ -0,0 +1,24 @@
+package com.yebuxiu.scan;
+
+/**
+ * 保存在内存中的检查点
+ */
+final class InMemoryMigrationCheckpoint implements RedisMigrationCheckpoint {
+
+    private volatile String cursor;
+
+    @Override
+    public String load() {
+        return cursor;
+    }
+
+    @Override
+    public void save(String cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public void clear() {
+        this.cursor = null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.yebuxiu.scan;
+
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 保存在redis字符串中的检查点，直接读写字节，不受template的value序列化（压缩等）影响
+ */
+final class RedisKeyMigrationCheckpoint implements RedisMigrationCheckpoint {
+
+    private final RedisTemplate<?, ?> template;
+
+    private final byte[] key;
+
+    RedisKeyMigrationCheckpoint(RedisTemplate<?, ?> template, String key) {
+        Assert.notNull(template, "template must not be null");
+        Assert.hasText(key, "key must not be empty");
+        this.template = template;
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String load() {
+        byte[] cursor = template.execute((RedisCallback<byte[]>) connection -> connection.get(key));
+        return cursor == null ? null : new String(cursor, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void save(String cursor) {
+        template.execute((RedisCallback<Boolean>) connection ->
+                connection.set(key, cursor.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void clear() {
+        template.execute((RedisCallback<Long>) connection -> connection.del(key));
+    }
+}
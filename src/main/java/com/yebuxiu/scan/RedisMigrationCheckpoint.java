@@ -0,0 +1,55 @@
+package com.yebuxiu.scan;
+
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * 迁移的检查点，保存一次迁移已完成到的SCAN游标：
+ * 迁移中断（进程退出、命令失败）后使用同一个检查点重新执行，从该游标继续，已迁移的key不会再次SCAN。
+ * 一个检查点只对应一次迁移（源db、目标db、模式相同），迁移完成后清除
+ */
+public interface RedisMigrationCheckpoint {
+
+    /**
+     * 不保存检查点，每次都从头开始
+     */
+    RedisMigrationCheckpoint NONE = new RedisMigrationCheckpoint() {
+
+        @Override
+        public String load() {
+            return null;
+        }
+
+        @Override
+        public void save(String cursor) {
+        }
+
+        @Override
+        public void clear() {
+        }
+    };
+
+    /**
+     * @return 上次保存的游标，没有时返回null
+     */
+    String load();
+
+    void save(String cursor);
+
+    void clear();
+
+    /**
+     * @return 保存在内存中的检查点，用于同一进程内中止后重试
+     */
+    static RedisMigrationCheckpoint inMemory() {
+        return new InMemoryMigrationCheckpoint();
+    }
+
+    /**
+     * @param template 保存检查点的db，不能是源db（否则会被迁移）
+     * @param key      保存游标的key
+     * @return 保存在redis字符串中的检查点，进程重启后可以继续
+     */
+    static RedisMigrationCheckpoint redisKey(RedisTemplate<?, ?> template, String key) {
+        return new RedisKeyMigrationCheckpoint(template, key);
+    }
+}
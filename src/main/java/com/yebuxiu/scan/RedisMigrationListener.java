@@ -0,0 +1,14 @@
+package com.yebuxiu.scan;
+
+/**
+ * 迁移的进度回调：每迁移完一页调用一次，结束时再调用一次（{@link RedisMigrationProgress#isFinished()}）。
+ * 多个worker的回调是串行的，回调抛出的异常会中止迁移并抛给调用方
+ */
+@FunctionalInterface
+public interface RedisMigrationListener {
+
+    RedisMigrationListener NONE = progress -> {
+    };
+
+    void onProgress(RedisMigrationProgress progress);
+}
@@ -0,0 +1,17 @@
+package com.yebuxiu.scan;
+
+/**
+ * 迁移方式
+ */
+public enum RedisMigrationMode {
+
+    /**
+     * 复制到目标db，源db保持不变
+     */
+    COPY,
+
+    /**
+     * 移动到目标db：同一节点上使用MOVE，跨节点复制成功后删除源key
+     */
+    MOVE
+}
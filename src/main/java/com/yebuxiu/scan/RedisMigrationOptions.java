@@ -0,0 +1,153 @@
+package com.yebuxiu.scan;
+
+import org.springframework.util.Assert;
+
+/**
+ * 迁移的参数：
+ * <pre>
+ * RedisMigrationOptions.migrationOptions().match("tenant:42:*").mode(RedisMigrationMode.MOVE).workers(4)
+ *         .checkpoint(RedisMigrationCheckpoint.redisKey(template, "migration:42")).build()
+ * </pre>
+ */
+public final class RedisMigrationOptions {
+
+    /**
+     * 默认每页的key数量（SCAN的COUNT），一页的DUMP、RESTORE各自一起发送
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final String match;
+
+    private final RedisMigrationMode mode;
+
+    private final boolean replace;
+
+    private final int batchSize;
+
+    private final int workers;
+
+    private final RedisMigrationCheckpoint checkpoint;
+
+    private final RedisMigrationListener listener;
+
+    private RedisMigrationOptions(Builder builder) {
+        this.match = builder.match;
+        this.mode = builder.mode;
+        this.replace = builder.replace;
+        this.batchSize = builder.batchSize;
+        this.workers = builder.workers;
+        this.checkpoint = builder.checkpoint;
+        this.listener = builder.listener;
+    }
+
+    public static Builder migrationOptions() {
+        return new Builder();
+    }
+
+    /**
+     * @return 要迁移的key的模式，为null时迁移整个db
+     */
+    public String getMatch() {
+        return match;
+    }
+
+    public RedisMigrationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return 目标db已存在同名key时是否覆盖，不覆盖时跳过该key（移动时源key保留）
+     */
+    public boolean isReplace() {
+        return replace;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return 并行迁移的页数，SCAN在调用线程上按顺序执行
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    public RedisMigrationCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public RedisMigrationListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisMigrationOptions{match=" + match + ", mode=" + mode + ", replace=" + replace
+                + ", batchSize=" + batchSize + ", workers=" + workers + "}";
+    }
+
+    public static final class Builder {
+
+        private String match;
+
+        private RedisMigrationMode mode = RedisMigrationMode.COPY;
+
+        private boolean replace = true;
+
+        private int batchSize = DEFAULT_BATCH_SIZE;
+
+        private int workers = 1;
+
+        private RedisMigrationCheckpoint checkpoint = RedisMigrationCheckpoint.NONE;
+
+        private RedisMigrationListener listener = RedisMigrationListener.NONE;
+
+        private Builder() {
+        }
+
+        public Builder match(String match) {
+            this.match = match;
+            return this;
+        }
+
+        public Builder mode(RedisMigrationMode mode) {
+            Assert.notNull(mode, "mode must not be null");
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder replace(boolean replace) {
+            this.replace = replace;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            Assert.isTrue(batchSize > 0, "batchSize must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder workers(int workers) {
+            Assert.isTrue(workers > 0, "workers must be positive");
+            this.workers = workers;
+            return this;
+        }
+
+        public Builder checkpoint(RedisMigrationCheckpoint checkpoint) {
+            Assert.notNull(checkpoint, "checkpoint must not be null");
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        public Builder listener(RedisMigrationListener listener) {
+            Assert.notNull(listener, "listener must not be null");
+            this.listener = listener;
+            return this;
+        }
+
+        public RedisMigrationOptions build() {
+            return new RedisMigrationOptions(this);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.yebuxiu.scan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 迁移的进度快照，计数只包含本次执行，不包含从检查点恢复之前已迁移的key
+ */
+public final class RedisMigrationProgress {
+
+    private final long scanned;
+
+    private final long migrated;
+
+    private final long skipped;
+
+    private final String checkpoint;
+
+    private final long elapsedNanos;
+
+    private final boolean finished;
+
+    RedisMigrationProgress(long scanned, long migrated, long skipped, String checkpoint, long elapsedNanos,
+                           boolean finished) {
+        this.scanned = scanned;
+        this.migrated = migrated;
+        this.skipped = skipped;
+        this.checkpoint = checkpoint;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = finished;
+    }
+
+    /**
+     * @return SCAN返回的key数量，可能包含重复返回的key
+     */
+    public long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * @return 写入目标db的key数量
+     */
+    public long getMigrated() {
+        return migrated;
+    }
+
+    /**
+     * @return 跳过的key数量：SCAN之后已过期或被删除，或者不覆盖时目标db已存在
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return 之前的key都已迁移完的SCAN游标，迁移完成后为null
+     */
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 平均每秒迁移的key数量
+     */
+    public double getKeysPerSecond() {
+        return elapsedNanos == 0 ? 0 : migrated * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisMigrationProgress{scanned=" + scanned + ", migrated=" + migrated + ", skipped=" + skipped
+                + ", checkpoint=" + checkpoint + ", elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                + ", keysPerSecond=" + (long) getKeysPerSecond() + ", finished=" + finished + "}";
+    }
+}
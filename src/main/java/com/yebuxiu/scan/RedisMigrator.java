@@ -0,0 +1,404 @@
+package com.yebuxiu.scan;
+
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisCommandInterruptedException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RestoreArgs;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在两个db之间复制或移动匹配的key，db可以在同一个redis节点上，也可以在不同节点上：
+ * 调用线程按顺序SCAN源db，每一页交给worker迁移。同一节点上移动时一页的MOVE一起发送；
+ * 否则一页的DUMP+PTTL一起发送到源db，再把RESTORE（带剩余过期时间，可选REPLACE）一起发送到目标db，移动时最后UNLINK源key。
+ * 之前的页都迁移完后保存SCAN游标作为检查点，中断后使用同一个检查点重新执行会从该游标继续
+ */
+@Slf4j
+public final class RedisMigrator {
+
+    /**
+     * 源db与目标db不在同一个节点上，不能使用MOVE
+     */
+    public static final int CROSS_NODE = -1;
+
+    private RedisMigrator() {
+    }
+
+    /**
+     * 在调用线程上执行迁移直到完成
+     *
+     * @param source       源db的RedisTemplate
+     * @param target       目标db的RedisTemplate
+     * @param moveDatabase 目标db与源db在同一个节点上时为目标的物理db，此时移动使用MOVE；否则为 {@link #CROSS_NODE}
+     * @param options      模式、批大小、并行数、检查点和进度回调
+     * @return 最终进度，调用线程被中断时提前返回（{@link RedisMigrationProgress#isFinished()} 为false，并保留中断状态）
+     */
+    public static RedisMigrationProgress migrate(RedisTemplate<?, ?> source, RedisTemplate<?, ?> target,
+                                                 int moveDatabase, RedisMigrationOptions options) {
+        return new Migration(source, target, moveDatabase, options).run();
+    }
+
+    /**
+     * 一次迁移的状态
+     */
+    private static final class Migration {
+
+        private final RedisTemplate<?, ?> source;
+
+        private final RedisTemplate<?, ?> target;
+
+        private final int moveDatabase;
+
+        private final RedisMigrationOptions options;
+
+        private final long sourceTimeout;
+
+        private final long targetTimeout;
+
+        private final LongAdder scanned = new LongAdder();
+
+        private final LongAdder migrated = new LongAdder();
+
+        private final LongAdder skipped = new LongAdder();
+
+        /**
+         * 第一个失败的页的异常，出现后不再SCAN新的页
+         */
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /**
+         * 调用线程被中断或SCAN失败，正在中止worker，被中止的页抛出的异常不算迁移失败
+         */
+        private volatile boolean aborted;
+
+        /**
+         * 已完成但之前还有页未完成的页：页号 -> 该页之后的游标（最后一页为null）
+         */
+        private final Map<Long, String> completedPages = new HashMap<>();
+
+        private long nextPage;
+
+        private String checkpoint;
+
+        private long start;
+
+        private Migration(RedisTemplate<?, ?> source, RedisTemplate<?, ?> target, int moveDatabase,
+                          RedisMigrationOptions options) {
+            this.source = source;
+            this.target = target;
+            this.moveDatabase = moveDatabase;
+            this.options = options;
+            this.sourceTimeout = RedisScanner.timeoutMillis(source.getConnectionFactory());
+            this.targetTimeout = RedisScanner.timeoutMillis(target.getConnectionFactory());
+        }
+
+        private RedisMigrationProgress run() {
+            RedisScanOptions.Builder scanOptions = RedisScanOptions.scanOptions().count(options.getBatchSize());
+            if (options.getMatch() != null) {
+                scanOptions.match(options.getMatch());
+            }
+            ScanArgs args = scanOptions.build().toScanArgs();
+            checkpoint = options.getCheckpoint().load();
+            if (checkpoint != null) {
+                log.info("Resuming redis migration {} from cursor {}.", options, checkpoint);
+            }
+            ScanCursor cursor = checkpoint == null ? ScanCursor.INITIAL : ScanCursor.of(checkpoint);
+            int workers = options.getWorkers();
+            // 最多有两倍worker数量的页在内存中等待迁移
+            int maxPages = workers * 2;
+            Semaphore pages = new Semaphore(maxPages);
+            ExecutorService executor = workers > 1
+                    ? Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("redis-migration-")) : null;
+            start = System.nanoTime();
+            boolean interrupted = false;
+            boolean drained = false;
+            try {
+                long page = 0;
+                while (failure.get() == null) {
+                    KeyScanCursor<byte[]> result;
+                    try {
+                        result = RedisScanner.scanPage(source, ScanCursor.of(cursor.getCursor()), args);
+                    } catch (RuntimeException e) {
+                        // 等待SCAN结果时被中断（lettuce会恢复中断状态），与等待页的许可时被中断一样提前返回
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                        throw e;
+                    }
+                    cursor = result;
+                    long pageNo = page++;
+                    String next = result.isFinished() ? null : result.getCursor();
+                    List<byte[]> keys = result.getKeys();
+                    scanned.add(keys.size());
+                    if (keys.isEmpty()) {
+                        complete(pageNo, next);
+                    } else {
+                        pages.acquire();
+                        Runnable task = () -> {
+                            try {
+                                migratePage(keys);
+                                complete(pageNo, next);
+                            } catch (Throwable e) {
+                                if (!aborted) {
+                                    failure.compareAndSet(null, e);
+                                }
+                            } finally {
+                                pages.release();
+                            }
+                        };
+                        if (executor == null) {
+                            task.run();
+                        } else {
+                            executor.execute(task);
+                        }
+                    }
+                    if (result.isFinished()) {
+                        break;
+                    }
+                }
+                // 等待所有页迁移完成
+                pages.acquire(maxPages);
+                drained = true;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } finally {
+                if (executor != null) {
+                    if (drained) {
+                        executor.shutdown();
+                    } else {
+                        // 不再提交新的页，中断正在迁移的页，等worker都退出后检查点和计数不会再变化
+                        aborted = true;
+                        executor.shutdownNow();
+                    }
+                    awaitTermination(executor);
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Throwable error = failure.get();
+            if (error != null) {
+                log.warn("Redis migration {} failed, checkpoint {}.", options, checkpoint, error);
+                if (error instanceof Error) {
+                    throw (Error) error;
+                }
+                throw error instanceof RuntimeException ? (RuntimeException) error : new IllegalStateException(error);
+            }
+            if (!interrupted) {
+                options.getCheckpoint().clear();
+            }
+            RedisMigrationProgress progress = progress(!interrupted);
+            log.info("Redis migration {} {}: {} key(s) scanned, {} migrated, {} skipped in {} ms ({} keys/s).",
+                    options, interrupted ? "interrupted" : "finished", progress.getScanned(), progress.getMigrated(),
+                    progress.getSkipped(), progress.getElapsed(TimeUnit.MILLISECONDS), (long) progress.getKeysPerSecond());
+            options.getListener().onProgress(progress);
+            return progress;
+        }
+
+        /**
+         * 一页迁移完成，之前的页都已完成时推进检查点
+         */
+        private synchronized void complete(long page, String next) {
+            completedPages.put(page, next);
+            boolean advanced = false;
+            while (completedPages.containsKey(nextPage)) {
+                checkpoint = completedPages.remove(nextPage++);
+                advanced = true;
+            }
+            if (advanced && checkpoint != null) {
+                options.getCheckpoint().save(checkpoint);
+            }
+            options.getListener().onProgress(progress(false));
+        }
+
+        private RedisMigrationProgress progress(boolean finished) {
+            return new RedisMigrationProgress(scanned.sum(), migrated.sum(), skipped.sum(),
+                    finished ? null : checkpoint, System.nanoTime() - start, finished);
+        }
+
+        private void migratePage(List<byte[]> keys) {
+            if (moveDatabase != CROSS_NODE && options.getMode() == RedisMigrationMode.MOVE) {
+                keys = move(keys);
+                if (keys.isEmpty()) {
+                    return;
+                }
+            }
+            List<byte[]> restored = copy(keys);
+            if (options.getMode() == RedisMigrationMode.MOVE && !restored.isEmpty()) {
+                RedisPurger.unlink(source, restored, sourceTimeout);
+            }
+        }
+
+        /**
+         * 同一节点上一起发送一页的MOVE
+         *
+         * @return 没有移动的key（已过期或目标db已存在），覆盖时需要改用DUMP/RESTORE
+         */
+        private List<byte[]> move(List<byte[]> keys) {
+            List<byte[]> rejected = RedisScanner.execute(source, commands -> {
+                List<RedisFuture<Boolean>> futures = new ArrayList<>(keys.size());
+                for (byte[] key : keys) {
+                    futures.add(commands.move(key, moveDatabase));
+                }
+                awaitAll(futures, sourceTimeout);
+                List<byte[]> notMoved = new ArrayList<>();
+                for (int i = 0; i < keys.size(); i++) {
+                    if (!Boolean.TRUE.equals(result(futures.get(i)))) {
+                        notMoved.add(keys.get(i));
+                    }
+                }
+                return notMoved;
+            });
+            migrated.add(keys.size() - rejected.size());
+            if (options.isReplace()) {
+                return rejected;
+            }
+            skipped.add(rejected.size());
+            return new ArrayList<>();
+        }
+
+        /**
+         * 一起发送一页的DUMP+PTTL，再一起发送RESTORE
+         *
+         * @return 写入目标db的key
+         */
+        private List<byte[]> copy(List<byte[]> keys) {
+            List<RestoreEntry> entries = RedisScanner.execute(source, commands -> {
+                List<RedisFuture<byte[]>> dumps = new ArrayList<>(keys.size());
+                List<RedisFuture<Long>> ttls = new ArrayList<>(keys.size());
+                for (byte[] key : keys) {
+                    dumps.add(commands.dump(key));
+                    ttls.add(commands.pttl(key));
+                }
+                awaitAll(dumps, sourceTimeout);
+                awaitAll(ttls, sourceTimeout);
+                List<RestoreEntry> dumped = new ArrayList<>(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    byte[] value = result(dumps.get(i));
+                    Long ttl = result(ttls.get(i));
+                    // -1 表示没有过期时间，-2 或 0 表示DUMP之后已经过期，RESTORE的ttl为0会变成永不过期
+                    if (value != null && ttl != null && (ttl == -1 || ttl > 0)) {
+                        dumped.add(new RestoreEntry(keys.get(i), value, Math.max(ttl, 0)));
+                    }
+                }
+                return dumped;
+            });
+            skipped.add(keys.size() - entries.size());
+            if (entries.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<byte[]> restored = RedisScanner.execute(target, commands -> {
+                List<RedisFuture<String>> futures = new ArrayList<>(entries.size());
+                for (RestoreEntry entry : entries) {
+                    futures.add(commands.restore(entry.key, entry.value,
+                            new RestoreArgs().ttl(entry.ttl).replace(options.isReplace())));
+                }
+                awaitAll(futures, targetTimeout);
+                List<byte[]> written = new ArrayList<>(entries.size());
+                for (int i = 0; i < entries.size(); i++) {
+                    try {
+                        result(futures.get(i));
+                        written.add(entries.get(i).key);
+                    } catch (RedisCommandExecutionException e) {
+                        // 不覆盖时目标db已存在的key
+                        if (options.isReplace() || e.getMessage() == null || !e.getMessage().startsWith("BUSYKEY")) {
+                            throw e;
+                        }
+                    }
+                }
+                return written;
+            });
+            migrated.add(restored.size());
+            skipped.add(entries.size() - restored.size());
+            return restored;
+        }
+    }
+
+    /**
+     * 等待worker都退出，期间忽略调用线程的中断并在返回前恢复中断状态
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待所有命令完成，单个命令的失败由 {@link #result(RedisFuture)} 抛出
+     */
+    private static void awaitAll(List<? extends RedisFuture<?>> futures, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (RedisFuture<?> future : futures) {
+            try {
+                future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException ignored) {
+                // 由 result 抛出
+            } catch (TimeoutException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw new RedisCommandTimeoutException("Command timed out after " + timeoutMillis + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RedisCommandInterruptedException(e);
+            }
+        }
+    }
+
+    /**
+     * @return 已完成的命令的结果，命令失败时抛出其异常
+     */
+    private static <T> T result(RedisFuture<T> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisCommandInterruptedException(e);
+        }
+    }
+
+    private static final class RestoreEntry {
+
+        private final byte[] key;
+
+        private final byte[] value;
+
+        /**
+         * 剩余过期时间（毫秒），0表示不过期
+         */
+        private final long ttl;
+
+        private RestoreEntry(byte[] key, byte[] value, long ttl) {
+            this.key = key;
+            this.value = value;
+            this.ttl = ttl;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.yebuxiu.scan;
+
+/**
+ * 批量删除的进度回调，在执行删除的线程上调用：每删除一批调用一次，结束时再调用一次（{@link RedisPurgeProgress#isFinished()}）。
+ * 回调抛出的异常会中止删除并抛给调用方
+ */
+@FunctionalInterface
+public interface RedisPurgeListener {
+
+    RedisPurgeListener NONE = progress -> {
+    };
+
+    void onProgress(RedisPurgeProgress progress);
+}
@@ -0,0 +1,105 @@
+package com.yebuxiu.scan;
+
+import org.springframework.util.Assert;
+
+/**
+ * 批量删除的参数：
+ * <pre>
+ * RedisPurgeOptions.purgeOptions().match("tenant:42:*").keysPerSecond(5000).listener(log::info).build()
+ * </pre>
+ */
+public final class RedisPurgeOptions {
+
+    /**
+     * 默认每批删除的key数量，也是每次SCAN的COUNT
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final String match;
+
+    private final int batchSize;
+
+    private final long keysPerSecond;
+
+    private final RedisPurgeListener listener;
+
+    private RedisPurgeOptions(String match, int batchSize, long keysPerSecond, RedisPurgeListener listener) {
+        this.match = match;
+        this.batchSize = batchSize;
+        this.keysPerSecond = keysPerSecond;
+        this.listener = listener;
+    }
+
+    public static Builder purgeOptions() {
+        return new Builder();
+    }
+
+    /**
+     * @return 要删除的key的模式，为null时删除整个db
+     */
+    public String getMatch() {
+        return match;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return 每秒最多删除的key数量，0表示不限速
+     */
+    public long getKeysPerSecond() {
+        return keysPerSecond;
+    }
+
+    public RedisPurgeListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisPurgeOptions{match=" + match + ", batchSize=" + batchSize
+                + ", keysPerSecond=" + keysPerSecond + "}";
+    }
+
+    public static final class Builder {
+
+        private String match;
+
+        private int batchSize = DEFAULT_BATCH_SIZE;
+
+        private long keysPerSecond;
+
+        private RedisPurgeListener listener = RedisPurgeListener.NONE;
+
+        private Builder() {
+        }
+
+        public Builder match(String match) {
+            this.match = match;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            Assert.isTrue(batchSize > 0, "batchSize must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder keysPerSecond(long keysPerSecond) {
+            Assert.isTrue(keysPerSecond >= 0, "keysPerSecond must not be negative");
+            this.keysPerSecond = keysPerSecond;
+            return this;
+        }
+
+        public Builder listener(RedisPurgeListener listener) {
+            Assert.notNull(listener, "listener must not be null");
+            this.listener = listener;
+            return this;
+        }
+
+        public RedisPurgeOptions build() {
+            return new RedisPurgeOptions(match, batchSize, keysPerSecond, listener);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.yebuxiu.scan;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量删除的进度快照
+ */
+public final class RedisPurgeProgress {
+
+    private final int database;
+
+    private final String match;
+
+    private final long scanned;
+
+    private final long deleted;
+
+    private final long elapsedNanos;
+
+    private final boolean finished;
+
+    RedisPurgeProgress(int database, String match, long scanned, long deleted, long elapsedNanos, boolean finished) {
+        this.database = database;
+        this.match = match;
+        this.scanned = scanned;
+        this.deleted = deleted;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = finished;
+    }
+
+    /**
+     * @return 执行删除的db，连接工厂不是lettuce时为 -1
+     */
+    public int getDatabase() {
+        return database;
+    }
+
+    /**
+     * @return 删除的key的模式，为null时删除整个db
+     */
+    public String getMatch() {
+        return match;
+    }
+
+    /**
+     * @return SCAN返回的key数量，可能包含重复返回的key
+     */
+    public long getScanned() {
+        return scanned;
+    }
+
+    /**
+     * @return UNLINK实际删除的key数量，SCAN之后已过期或被删除的key不计入
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 是否已遍历完所有key，等待限速时线程被中断会提前结束
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisPurgeProgress{database=" + database + ", match=" + match + ", scanned=" + scanned
+                + ", deleted=" + deleted + ", elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                + ", finished=" + finished + "}";
+    }
+}
@@ -0,0 +1,130 @@
+package com.yebuxiu.scan;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.RedisFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按模式或整个db批量删除key，替代 keys() + delete(Collection)：
+ * SCAN分批取出key，每批拆成多条UNLINK一起发送（不等待前一条的响应），服务端在后台线程释放内存，
+ * 不会像KEYS和大DEL一样长时间阻塞同一个redis上的其他db。可以限制每秒删除的key数量，并按批回调进度
+ */
+@Slf4j
+public final class RedisPurger {
+
+    /**
+     * 每条UNLINK的key数量，一批key拆成多条UNLINK，避免单条命令过大
+     */
+    private static final int KEYS_PER_UNLINK = 100;
+
+    /**
+     * 限速时每批最多为0.1秒的配额，让删除均匀分布，而不是每秒开始时集中删除
+     */
+    private static final int BATCHES_PER_SECOND = 10;
+
+    private RedisPurger() {
+    }
+
+    /**
+     * 在template所在的db上删除匹配的key，在调用线程上执行直到删除完毕
+     *
+     * @param template 要删除key的db的RedisTemplate
+     * @param options  模式、批大小、限速和进度回调
+     * @return 最终进度，等待限速时线程被中断会提前返回（{@link RedisPurgeProgress#isFinished()} 为false，并保留中断状态）
+     */
+    public static RedisPurgeProgress purge(RedisTemplate<?, ?> template, RedisPurgeOptions options) {
+        int database = database(template.getConnectionFactory());
+        long keysPerSecond = options.getKeysPerSecond();
+        int batchSize = keysPerSecond > 0
+                ? (int) Math.max(1, Math.min(options.getBatchSize(), keysPerSecond / BATCHES_PER_SECOND))
+                : options.getBatchSize();
+        RedisScanOptions.Builder scanOptions = RedisScanOptions.scanOptions().count(batchSize);
+        if (options.getMatch() != null) {
+            scanOptions.match(options.getMatch());
+        }
+        Iterator<byte[]> keys = RedisScanner.rawScanIterator(template, scanOptions.build());
+        long timeout = RedisScanner.timeoutMillis(template.getConnectionFactory());
+        long start = System.nanoTime();
+        // 下一批可以发送的时间
+        long nextPermit = start;
+        long scanned = 0;
+        long deleted = 0;
+        boolean finished = true;
+        List<byte[]> batch = new ArrayList<>(batchSize);
+        while (keys.hasNext()) {
+            batch.add(keys.next());
+            scanned++;
+            if (batch.size() < batchSize && keys.hasNext()) {
+                continue;
+            }
+            if (keysPerSecond > 0) {
+                long now = System.nanoTime();
+                if (nextPermit - now > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(nextPermit - now);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        finished = false;
+                        break;
+                    }
+                }
+                nextPermit = Math.max(nextPermit, now) + TimeUnit.SECONDS.toNanos(batch.size()) / keysPerSecond;
+            }
+            deleted += unlink(template, batch, timeout);
+            batch.clear();
+            options.getListener().onProgress(new RedisPurgeProgress(database, options.getMatch(), scanned, deleted,
+                    System.nanoTime() - start, false));
+        }
+        RedisPurgeProgress progress = new RedisPurgeProgress(database, options.getMatch(), scanned, deleted,
+                System.nanoTime() - start, finished);
+        log.info("Redis purge of database {} matching {} {}: {} key(s) scanned, {} deleted in {} ms.", database,
+                options.getMatch() == null ? "*" : options.getMatch(), finished ? "finished" : "interrupted",
+                scanned, deleted, progress.getElapsed(TimeUnit.MILLISECONDS));
+        options.getListener().onProgress(progress);
+        return progress;
+    }
+
+    /**
+     * 一批key拆成多条UNLINK一起发送后等待全部响应
+     *
+     * @return 实际删除的key数量
+     */
+    static long unlink(RedisTemplate<?, ?> template, List<byte[]> keys, long timeout) {
+        return RedisScanner.execute(template, commands -> {
+            List<RedisFuture<Long>> futures = new ArrayList<>((keys.size() + KEYS_PER_UNLINK - 1) / KEYS_PER_UNLINK);
+            for (int from = 0; from < keys.size(); from += KEYS_PER_UNLINK) {
+                List<byte[]> chunk = keys.subList(from, Math.min(from + KEYS_PER_UNLINK, keys.size()));
+                futures.add(commands.unlink(chunk.toArray(new byte[0][])));
+            }
+            if (!LettuceFutures.awaitAll(timeout, TimeUnit.MILLISECONDS, futures.toArray(new RedisFuture<?>[0]))) {
+                futures.forEach(future -> future.cancel(true));
+                throw new RedisCommandTimeoutException("UNLINK timed out after " + timeout + " ms");
+            }
+            long deleted = 0;
+            for (RedisFuture<Long> future : futures) {
+                try {
+                    deleted += future.get();
+                } catch (InterruptedException | ExecutionException e) {
+                    // awaitAll 已经确认全部完成且没有失败
+                    throw new IllegalStateException(e);
+                }
+            }
+            return deleted;
+        });
+    }
+
+    private static int database(RedisConnectionFactory connectionFactory) {
+        return connectionFactory instanceof LettuceConnectionFactory
+                ? ((LettuceConnectionFactory) connectionFactory).getDatabase() : -1;
+    }
+}
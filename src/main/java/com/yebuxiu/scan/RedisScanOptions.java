@@ -0,0 +1,124 @@
+package com.yebuxiu.scan;
+
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.protocol.CommandArgs;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.util.Assert;
+
+/**
+ * SCAN/HSCAN/SSCAN/ZSCAN 的参数：
+ * <pre>
+ * RedisScanOptions.scanOptions().match("user:*").count(1000).type(DataType.HASH).build()
+ * </pre>
+ * count 是每次SCAN服务端遍历的槽位数量提示，也是客户端一次最多持有的元素数量的数量级
+ */
+public final class RedisScanOptions {
+
+    /**
+     * 不带任何参数，遍历全部元素，每次遍历服务端默认的10个槽位
+     */
+    public static final RedisScanOptions NONE = new RedisScanOptions(null, null, null);
+
+    private final String match;
+
+    private final Long count;
+
+    private final DataType type;
+
+    private RedisScanOptions(String match, Long count, DataType type) {
+        this.match = match;
+        this.count = count;
+        this.type = type;
+    }
+
+    public static Builder scanOptions() {
+        return new Builder();
+    }
+
+    public String getMatch() {
+        return match;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    /**
+     * @return 只返回该类型的key，只对SCAN有效，需要redis 6.0及以上
+     */
+    public DataType getType() {
+        return type;
+    }
+
+    /**
+     * @return lettuce的SCAN参数
+     */
+    ScanArgs toScanArgs() {
+        TypedScanArgs args = new TypedScanArgs(type);
+        if (match != null) {
+            args.match(match);
+        }
+        if (count != null) {
+            args.limit(count);
+        }
+        return args;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisScanOptions{match=" + match + ", count=" + count + ", type=" + type + "}";
+    }
+
+    public static final class Builder {
+
+        private String match;
+
+        private Long count;
+
+        private DataType type;
+
+        private Builder() {
+        }
+
+        public Builder match(String match) {
+            this.match = match;
+            return this;
+        }
+
+        public Builder count(long count) {
+            Assert.isTrue(count > 0, "count must be positive");
+            this.count = count;
+            return this;
+        }
+
+        public Builder type(DataType type) {
+            Assert.isTrue(type != DataType.NONE, "type must not be NONE");
+            this.type = type;
+            return this;
+        }
+
+        public RedisScanOptions build() {
+            return new RedisScanOptions(match, count, type);
+        }
+    }
+
+    /**
+     * lettuce 5.2 的 ScanArgs 不支持 TYPE，在其参数之后追加
+     */
+    private static final class TypedScanArgs extends ScanArgs {
+
+        private final DataType type;
+
+        private TypedScanArgs(DataType type) {
+            this.type = type;
+        }
+
+        @Override
+        public <K, V> void build(CommandArgs<K, V> args) {
+            super.build(args);
+            if (type != null) {
+                args.add("TYPE").add(type.code());
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.yebuxiu.scan;
+
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.MapScanCursor;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScoredValue;
+import io.lettuce.core.ScoredValueScanCursor;
+import io.lettuce.core.ValueScanCursor;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceExceptionConverter;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 基于SCAN系列命令的惰性遍历，替代会阻塞redis并一次性返回全部key的KEYS：
+ * 返回的Stream按需翻页，消费多快就拉取多快，内存中最多只有一页元素，中途停止消费不会再发送SCAN。
+ * 与SCAN的语义一致，遍历期间一直存在的元素至少返回一次，但可能重复返回。
+ * 传入 {@link Supplier} 时每一页都重新获取template，两页之间db的template被淘汰、重新创建也不影响遍历
+ */
+public final class RedisScanner {
+
+    /**
+     * 连接工厂不是lettuce时等待一页结果的超时时间
+     */
+    private static final long DEFAULT_TIMEOUT_MILLIS = 60_000L;
+
+    private static final LettuceExceptionConverter EXCEPTION_CONVERTER = new LettuceExceptionConverter();
+
+    private RedisScanner() {
+    }
+
+    /**
+     * SCAN遍历template所在db的key
+     */
+    public static <K> Stream<K> scan(RedisTemplate<K, ?> template, RedisScanOptions options) {
+        return scan(() -> template, options);
+    }
+
+    /**
+     * SCAN遍历template所在db的key，每一页都从templates获取template
+     */
+    public static <K> Stream<K> scan(Supplier<? extends RedisTemplate<K, ?>> templates, RedisScanOptions options) {
+        return stream(scanIterator(templates, options));
+    }
+
+    /**
+     * 依次遍历多个db的key，一个db遍历完才开始下一个db，任何时候只有一个db的一页元素在内存中
+     *
+     * @param templates 获取db对应的RedisTemplate，每一页都会调用
+     * @param databases 要遍历的db
+     */
+    public static <K> Stream<DatabaseKey<K>> scan(IntFunction<? extends RedisTemplate<K, ?>> templates,
+                                                  Collection<Integer> databases, RedisScanOptions options) {
+        List<Integer> dbs = new ArrayList<>(databases);
+        return stream(new ConcatIterator<>(dbs.iterator(), database -> {
+            Iterator<K> keys = scanIterator(() -> templates.apply(database), options);
+            return new MappingIterator<>(keys, key -> new DatabaseKey<>(database, key));
+        }));
+    }
+
+    /**
+     * HSCAN遍历hash的field和value
+     */
+    public static <K, HK, HV> Stream<Map.Entry<HK, HV>> hscan(RedisTemplate<K, ?> template, K key,
+                                                             RedisScanOptions options) {
+        return hscan(() -> template, key, options);
+    }
+
+    /**
+     * HSCAN遍历hash的field和value，每一页都从templates获取template
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, HK, HV> Stream<Map.Entry<HK, HV>> hscan(Supplier<? extends RedisTemplate<K, ?>> templates, K key,
+                                                             RedisScanOptions options) {
+        checkNoType(options);
+        RedisTemplate<K, ?> template = templates.get();
+        byte[] rawKey = rawKey(template, key);
+        RedisSerializer<HK> fieldSerializer = (RedisSerializer<HK>) template.getHashKeySerializer();
+        RedisSerializer<HV> valueSerializer = (RedisSerializer<HV>) template.getHashValueSerializer();
+        ScanArgs args = options.toScanArgs();
+        return stream(new ScanIterator<MapScanCursor<byte[], byte[]>, Map.Entry<HK, HV>>(
+                cursor -> await(templates.get(), commands -> commands.hscan(rawKey, cursor, args)),
+                result -> {
+                    List<Map.Entry<HK, HV>> entries = new ArrayList<>(result.getMap().size());
+                    result.getMap().forEach((field, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(
+                            deserialize(fieldSerializer, field), deserialize(valueSerializer, value))));
+                    return entries;
+                }));
+    }
+
+    /**
+     * SSCAN遍历set的成员
+     */
+    public static <K, V> Stream<V> sscan(RedisTemplate<K, V> template, K key, RedisScanOptions options) {
+        return sscan(() -> template, key, options);
+    }
+
+    /**
+     * SSCAN遍历set的成员，每一页都从templates获取template
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Stream<V> sscan(Supplier<? extends RedisTemplate<K, V>> templates, K key,
+                                         RedisScanOptions options) {
+        checkNoType(options);
+        RedisTemplate<K, V> template = templates.get();
+        byte[] rawKey = rawKey(template, key);
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        ScanArgs args = options.toScanArgs();
+        return stream(new ScanIterator<ValueScanCursor<byte[]>, V>(
+                cursor -> await(templates.get(), commands -> commands.sscan(rawKey, cursor, args)),
+                result -> deserializeAll(valueSerializer, result.getValues())));
+    }
+
+    /**
+     * ZSCAN遍历有序集合的成员和分数
+     */
+    public static <K, V> Stream<ZSetOperations.TypedTuple<V>> zscan(RedisTemplate<K, V> template, K key,
+                                                                   RedisScanOptions options) {
+        return zscan(() -> template, key, options);
+    }
+
+    /**
+     * ZSCAN遍历有序集合的成员和分数，每一页都从templates获取template
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Stream<ZSetOperations.TypedTuple<V>> zscan(Supplier<? extends RedisTemplate<K, V>> templates,
+                                                                   K key, RedisScanOptions options) {
+        checkNoType(options);
+        RedisTemplate<K, V> template = templates.get();
+        byte[] rawKey = rawKey(template, key);
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        ScanArgs args = options.toScanArgs();
+        return stream(new ScanIterator<ScoredValueScanCursor<byte[]>, ZSetOperations.TypedTuple<V>>(
+                cursor -> await(templates.get(), commands -> commands.zscan(rawKey, cursor, args)),
+                result -> {
+                    List<ZSetOperations.TypedTuple<V>> tuples = new ArrayList<>(result.getValues().size());
+                    for (ScoredValue<byte[]> value : result.getValues()) {
+                        tuples.add(new DefaultTypedTuple<>(deserialize(valueSerializer, value.getValue()),
+                                value.getScore()));
+                    }
+                    return tuples;
+                }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Iterator<K> scanIterator(Supplier<? extends RedisTemplate<K, ?>> templates,
+                                                RedisScanOptions options) {
+        RedisSerializer<K> keySerializer = (RedisSerializer<K>) templates.get().getKeySerializer();
+        ScanArgs args = options.toScanArgs();
+        return new ScanIterator<KeyScanCursor<byte[]>, K>(
+                cursor -> await(templates.get(), commands -> commands.scan(cursor, args)),
+                result -> deserializeAll(keySerializer, result.getKeys()));
+    }
+
+    /**
+     * 不反序列化的key迭代器
+     */
+    static Iterator<byte[]> rawScanIterator(RedisTemplate<?, ?> template, RedisScanOptions options) {
+        ScanArgs args = options.toScanArgs();
+        return new ScanIterator<KeyScanCursor<byte[]>, byte[]>(cursor -> scanPage(template, cursor, args),
+                KeyScanCursor::getKeys);
+    }
+
+    /**
+     * 从给定游标开始执行一次SCAN，返回一页不反序列化的key和下一页的游标
+     */
+    static KeyScanCursor<byte[]> scanPage(RedisTemplate<?, ?> template, ScanCursor cursor, ScanArgs args) {
+        return await(template, commands -> commands.scan(cursor, args));
+    }
+
+    /**
+     * 借用template的连接，通过lettuce原生命令执行一次SCAN并等待结果
+     */
+    private static <T> T await(RedisTemplate<?, ?> template,
+                               Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        long timeout = timeoutMillis(template.getConnectionFactory());
+        return execute(template,
+                commands -> LettuceFutures.awaitOrCancel(command.apply(commands), timeout, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 借用template的连接执行lettuce原生命令，lettuce的异常转换为spring的 DataAccessException
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T execute(RedisTemplate<?, ?> template, Function<RedisClusterAsyncCommands<byte[], byte[]>, T> action) {
+        return template.execute((RedisCallback<T>) connection -> {
+            RedisClusterAsyncCommands<byte[], byte[]> commands =
+                    (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            try {
+                return action.apply(commands);
+            } catch (RuntimeException e) {
+                throw convert(e);
+            }
+        });
+    }
+
+    private static RuntimeException convert(RuntimeException e) {
+        DataAccessException converted = EXCEPTION_CONVERTER.convert(e);
+        return converted != null ? converted : e;
+    }
+
+    static long timeoutMillis(RedisConnectionFactory connectionFactory) {
+        return connectionFactory instanceof LettuceConnectionFactory
+                ? ((LettuceConnectionFactory) connectionFactory).getTimeout() : DEFAULT_TIMEOUT_MILLIS;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> byte[] rawKey(RedisTemplate<K, ?> template, K key) {
+        Assert.notNull(key, "key must not be null");
+        return ((RedisSerializer<K>) template.getKeySerializer()).serialize(key);
+    }
+
+    private static void checkNoType(RedisScanOptions options) {
+        Assert.isNull(options.getType(), "TYPE is only supported by SCAN");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T deserialize(RedisSerializer<T> serializer, byte[] bytes) {
+        return serializer == null ? (T) bytes : serializer.deserialize(bytes);
+    }
+
+    private static <T> List<T> deserializeAll(RedisSerializer<T> serializer, List<byte[]> values) {
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>(values.size());
+        for (byte[] value : values) {
+            result.add(deserialize(serializer, value));
+        }
+        return result;
+    }
+
+    private static <T> Stream<T> stream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 依次连接多个惰性迭代器，前一个耗尽后才创建下一个。
+     * 不使用 Stream.flatMap：java8 中 flatMap 之后的 iterator()/tryAdvance 会把内层流一次性全部取出
+     */
+    private static final class ConcatIterator<S, T> implements Iterator<T> {
+
+        private final Iterator<S> sources;
+
+        private final Function<S, Iterator<T>> opener;
+
+        private Iterator<T> current = Collections.emptyIterator();
+
+        private ConcatIterator(Iterator<S> sources, Function<S, Iterator<T>> opener) {
+            this.sources = sources;
+            this.opener = opener;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (!sources.hasNext()) {
+                    return false;
+                }
+                current = opener.apply(sources.next());
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    private static final class MappingIterator<S, T> implements Iterator<T> {
+
+        private final Iterator<S> source;
+
+        private final Function<S, T> mapper;
+
+        private MappingIterator(Iterator<S> source, Function<S, T> mapper) {
+            this.source = source;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return source.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return mapper.apply(source.next());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.yebuxiu.scan;
+
+import io.lettuce.core.ScanCursor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * 按需拉取的SCAN迭代器：当前一页消费完才发送下一次SCAN，内存中最多只有一页元素；
+ * 每一页单独借用连接，两页之间不占用连接，不需要关闭
+ *
+ * @param <C> lettuce返回的游标类型
+ * @param <T> 元素类型
+ */
+final class ScanIterator<C extends ScanCursor, T> implements Iterator<T> {
+
+    private final Function<ScanCursor, C> scanner;
+
+    private final Function<C, Collection<T>> extractor;
+
+    private ScanCursor cursor = ScanCursor.INITIAL;
+
+    private Iterator<T> page = Collections.emptyIterator();
+
+    /**
+     * @param scanner   从给定游标开始执行一次SCAN
+     * @param extractor 取出一页的元素（已反序列化）
+     */
+    ScanIterator(Function<ScanCursor, C> scanner, Function<C, Collection<T>> extractor) {
+        this.scanner = scanner;
+        this.extractor = extractor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        // 一页可能为空（MATCH/TYPE 过滤掉了这一批槽位的所有元素），需要继续翻页
+        while (!page.hasNext()) {
+            if (cursor.isFinished()) {
+                return false;
+            }
+            C result = scanner.apply(ScanCursor.of(cursor.getCursor()));
+            cursor = result;
+            page = extractor.apply(result).iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+}
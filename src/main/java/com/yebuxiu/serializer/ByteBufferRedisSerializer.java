@@ -0,0 +1,44 @@
+package com.yebuxiu.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBuffer直通序列化：覆盖整个底层数组的堆内buffer直接交出数组，不复制；
+ * 其余buffer（切片、直接内存）复制一次剩余的字节。反序列化时包装lettuce返回的数组，不复制
+ */
+public class ByteBufferRedisSerializer implements RedisSerializer<ByteBuffer> {
+
+    public static final ByteBufferRedisSerializer INSTANCE = new ByteBufferRedisSerializer();
+
+    @Override
+    public byte[] serialize(ByteBuffer buffer) {
+        return buffer == null ? null : toBytes(buffer);
+    }
+
+    @Override
+    public ByteBuffer deserialize(byte[] bytes) {
+        return bytes == null ? null : ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return ByteBuffer.class;
+    }
+
+    /**
+     * 取出buffer中 position 到 limit 之间的字节，不改变buffer的position
+     *
+     * @return buffer正好覆盖整个堆内数组时返回该数组本身，否则返回副本
+     */
+    public static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,213 @@
+package com.yebuxiu.serializer;
+
+import com.yebuxiu.metrics.DynamicRedisMetrics;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+
+/**
+ * 透明压缩的value序列化器，包装db原有的序列化器：
+ * <ul>
+ *     <li>序列化后不小于 threshold 字节且压缩后更小的value使用LZ4压缩，格式为 0xF5 + 4字节原始长度（大端） + 压缩数据</li>
+ *     <li>其余value原样写入；原样写入的value首字节恰好是 0xF5 或 0xF6 时在前面加一个 0xF6</li>
+ * </ul>
+ * 读取时首字节不是 0xF5/0xF6 的value按未压缩处理，开启压缩前写入的数据仍然可以读取。
+ * UTF-8文本（包括JSON）不会以 0xF5/0xF6 开头，二进制value开启压缩前写入的数据如果以这两个字节开头会被误判。
+ * 压缩输出写入线程私有的缓冲区，每次只分配最终大小的结果数组。
+ * {@link #compress(byte[])}、{@link #decompress(byte[])} 只处理压缩格式，供不经过原有序列化器的二进制value使用
+ */
+public class CompressingRedisSerializer<T> implements RedisSerializer<T> {
+
+    /**
+     * 压缩的value的首字节
+     */
+    static final byte COMPRESSED = (byte) 0xF5;
+
+    /**
+     * 首字节与标记冲突、需要转义的未压缩value的首字节
+     */
+    static final byte ESCAPED = (byte) 0xF6;
+
+    private static final int HEADER_LENGTH = 5;
+
+    /**
+     * 超过该大小的线程缓冲区用完后不保留，避免偶发的超大value长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    /**
+     * 解压时允许的最大原始长度，防止损坏的数据触发超大分配
+     */
+    private static final int MAX_ORIGINAL_LENGTH = 512 << 20;
+
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<>();
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final RedisSerializer<T> delegate;
+
+    private final int threshold;
+
+    private final int database;
+
+    private final DynamicRedisMetrics metrics;
+
+    private final LZ4Compressor compressor = LZ4.fastCompressor();
+
+    /**
+     * 数据来自redis，可能被其他客户端写坏，使用会检查输入边界的解压器
+     */
+    private final LZ4SafeDecompressor decompressor = LZ4.safeDecompressor();
+
+    /**
+     * @param delegate  原有的value序列化器
+     * @param threshold 序列化后达到该字节数才尝试压缩
+     * @param database  所属db，用于指标
+     * @param metrics   压缩率和耗时指标
+     */
+    public CompressingRedisSerializer(RedisSerializer<T> delegate, int threshold, int database,
+                                      DynamicRedisMetrics metrics) {
+        Assert.notNull(delegate, "delegate must not be null");
+        Assert.isTrue(threshold >= 0, "threshold must not be negative");
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.database = database;
+        this.metrics = metrics == null ? DynamicRedisMetrics.NOOP : metrics;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] raw = delegate.serialize(value);
+        return raw == null ? null : compress(raw);
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        return delegate.deserialize(decompress(bytes));
+    }
+
+    /**
+     * 把已经序列化的字节转为存储格式：达到 threshold 且压缩后更小时压缩，否则原样写入（首字节与标记冲突时转义）
+     *
+     * @param raw 序列化后的字节
+     * @return 写入redis的字节
+     */
+    public byte[] compress(byte[] raw) {
+        Assert.notNull(raw, "raw must not be null");
+        if (raw.length < threshold) {
+            return record(raw.length, escape(raw), 0L);
+        }
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        int maxLength = compressor.maxCompressedLength(raw.length);
+        byte[] buffer = buffer(HEADER_LENGTH + maxLength);
+        int length = compressor.compress(raw, 0, raw.length, buffer, HEADER_LENGTH, maxLength);
+        byte[] result;
+        if (HEADER_LENGTH + length >= raw.length) {
+            // 压缩后没有变小（例如已经压缩过的数据），原样写入
+            result = escape(raw);
+        } else {
+            buffer[0] = COMPRESSED;
+            buffer[1] = (byte) (raw.length >>> 24);
+            buffer[2] = (byte) (raw.length >>> 16);
+            buffer[3] = (byte) (raw.length >>> 8);
+            buffer[4] = (byte) raw.length;
+            result = Arrays.copyOf(buffer, HEADER_LENGTH + length);
+        }
+        release(buffer);
+        return record(raw.length, result, start);
+    }
+
+    /**
+     * 把redis中读到的字节还原为序列化后的字节，{@link #compress(byte[])} 的逆操作
+     *
+     * @param bytes 从redis读到的字节，可以为null
+     * @return 序列化后的字节
+     * @throws SerializationException 压缩数据损坏
+     */
+    public byte[] decompress(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return bytes;
+        }
+        if (bytes[0] == ESCAPED) {
+            return Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes[0] != COMPRESSED) {
+            return bytes;
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Truncated compressed value of " + bytes.length + " bytes");
+        }
+        int originalLength = (bytes[1] & 0xFF) << 24 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 8 | bytes[4] & 0xFF;
+        if (originalLength < 0 || originalLength > MAX_ORIGINAL_LENGTH) {
+            throw new SerializationException("Invalid original length " + originalLength + " of compressed value");
+        }
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        byte[] original = new byte[originalLength];
+        try {
+            int written = decompressor.decompress(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH,
+                    original, 0, originalLength);
+            if (written != originalLength) {
+                throw new SerializationException("Corrupted compressed value: expected " + originalLength
+                        + " original bytes but got " + written);
+            }
+        } catch (LZ4Exception e) {
+            throw new SerializationException("Corrupted compressed value", e);
+        }
+        if (start != 0L) {
+            metrics.recordDecompression(database, System.nanoTime() - start);
+        }
+        return original;
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    public RedisSerializer<T> getDelegate() {
+        return delegate;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    private byte[] record(int originalBytes, byte[] stored, long start) {
+        if (metrics.isEnabled()) {
+            metrics.recordCompression(database, originalBytes, stored.length,
+                    start == 0L ? 0L : System.nanoTime() - start);
+        }
+        return stored;
+    }
+
+    private static byte[] escape(byte[] raw) {
+        if (raw.length == 0 || (raw[0] != COMPRESSED && raw[0] != ESCAPED)) {
+            return raw;
+        }
+        byte[] escaped = new byte[raw.length + 1];
+        escaped[0] = ESCAPED;
+        System.arraycopy(raw, 0, escaped, 1, raw.length);
+        return escaped;
+    }
+
+    private static byte[] buffer(int length) {
+        byte[] buffer = BUFFER.get();
+        if (buffer == null || buffer.length < length) {
+            buffer = new byte[Math.max(length, 4096)];
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static void release(byte[] buffer) {
+        if (buffer.length > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.yebuxiu.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * db的value序列化方式，key和hash key始终使用UTF-8字符串
+ */
+public enum RedisSerializerProfile {
+
+    /**
+     * UTF-8字符串，RedisHelper的 str* 方法、GET合并和本地缓存只支持该方式
+     */
+    STRING {
+        @Override
+        public RedisSerializer<?> valueSerializer() {
+            return RedisSerializer.string();
+        }
+    },
+
+    /**
+     * byte[]直通，不经过String，写入和读取都不复制
+     */
+    BYTES {
+        @Override
+        public RedisSerializer<?> valueSerializer() {
+            return RedisSerializer.byteArray();
+        }
+    },
+
+    /**
+     * ByteBuffer直通，见 {@link ByteBufferRedisSerializer}
+     */
+    BYTE_BUFFER {
+        @Override
+        public RedisSerializer<?> valueSerializer() {
+            return ByteBufferRedisSerializer.INSTANCE;
+        }
+    };
+
+    /**
+     * @return value和hash value使用的序列化器
+     */
+    public abstract RedisSerializer<?> valueSerializer();
+}
@@ -0,0 +1,158 @@
+package com.yebuxiu.template;
+
+import org.reactivestreams.Publisher;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisCallback;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * 响应式的路由RedisTemplate，订阅时从Reactor Context中解析目标db，再委托给对应db的ReactiveRedisTemplate执行
+ * ReactiveRedisTemplate的所有命令以及opsForXxx返回的操作对象最终都会调用 createMono/createFlux/execute，
+ * 所以只需要重写这几个方法即可完成路由
+ */
+public abstract class AbstractRoutingReactiveRedisTemplate<K, V> extends ReactiveRedisTemplate<K, V> {
+
+    /**
+     * 存放对应库的reactiveRedisTemplate，下标即db号
+     */
+    private final RedisTemplateRegistry<ReactiveRedisTemplate<K, V>> redisTemplates;
+
+    private final IntFunction<ReactiveRedisTemplate<K, V>> redisTemplateCreator = this::createRedisTemplateOnMissing;
+
+    /**
+     * @param connectionFactory    未指定db时使用的默认连接工厂
+     * @param serializationContext 序列化配置
+     * @param databases            redis服务端的db数量
+     */
+    protected AbstractRoutingReactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                   RedisSerializationContext<K, V> serializationContext,
+                                                   int databases) {
+        super(connectionFactory, serializationContext);
+        this.redisTemplates = new RedisTemplateRegistry<>(databases);
+    }
+
+    /**
+     * 获取Context中db对应的ReactiveRedisTemplate，未指定db时返回null，表示使用默认连接工厂
+     * 创建连接工厂时并不会建立连接，所以在event loop线程上懒创建是安全的
+     */
+    protected ReactiveRedisTemplate<K, V> determineTargetRedisTemplate(Context context) {
+        int database = determineCurrentDatabase(context);
+        if (database == AbstractRoutingRedisTemplate.NO_DATABASE) {
+            return null;
+        }
+        ReactiveRedisTemplate<K, V> redisTemplate = redisTemplates.get(database);
+        if (redisTemplate != null) {
+            return redisTemplate;
+        }
+        return redisTemplates.getOrCreate(database, redisTemplateCreator);
+    }
+
+    /**
+     * 从Reactor Context中获取当前 Redis db
+     *
+     * @return current redis db，没有指定时返回 {@link AbstractRoutingRedisTemplate#NO_DATABASE}
+     */
+    protected abstract int determineCurrentDatabase(Context context);
+
+    /**
+     * 没有对应 db 的 ReactiveRedisTemplate 时，则调用此方法创建
+     *
+     * @param database RedisDB
+     * @return ReactiveRedisTemplate
+     */
+    public abstract ReactiveRedisTemplate<K, V> createRedisTemplateOnMissing(int database);
+
+    /**
+     * 淘汰空闲的ReactiveRedisTemplate，被淘汰的db在下一次使用时会重新创建
+     *
+     * @param idleNanos 空闲时长（纳秒）
+     * @param pinned    不允许淘汰的db
+     * @return 被淘汰的ReactiveRedisTemplate，由调用方负责销毁
+     */
+    public List<ReactiveRedisTemplate<K, V>> evictIdleRedisTemplates(long idleNanos, Set<Integer> pinned) {
+        return redisTemplates.evictIdle(idleNanos, pinned);
+    }
+
+    /**
+     * @return 每个db被淘汰的次数
+     */
+    public Map<Integer, Long> getEvictionCounts() {
+        return redisTemplates.getEvictionCounts();
+    }
+
+    public void setRedisTemplates(Map<Integer, ReactiveRedisTemplate<K, V>> redisTemplates) {
+        redisTemplates.forEach(this.redisTemplates::register);
+    }
+
+    /**
+     * @return 当前已创建的reactiveRedisTemplate快照，key为db号
+     */
+    public Map<Integer, ReactiveRedisTemplate<K, V>> getRedisTemplates() {
+        return redisTemplates.snapshot();
+    }
+
+
+    // ====================以下方法在订阅时根据Context路由到对应db的ReactiveRedisTemplate=====================
+
+    @NonNull
+    @Override
+    public <T> Flux<T> execute(@NonNull ReactiveRedisCallback<T> action, boolean exposeConnection) {
+        return Mono.subscriberContext().flatMapMany(context -> {
+            ReactiveRedisTemplate<K, V> target = determineTargetRedisTemplate(context);
+            return target == null ? super.execute(action, exposeConnection) : target.execute(action, exposeConnection);
+        });
+    }
+
+    @NonNull
+    @Override
+    public <T> Flux<T> createFlux(@NonNull ReactiveRedisCallback<T> callback) {
+        return Mono.subscriberContext().flatMapMany(context -> {
+            ReactiveRedisTemplate<K, V> target = determineTargetRedisTemplate(context);
+            return target == null ? super.createFlux(callback) : target.createFlux(callback);
+        });
+    }
+
+    @NonNull
+    @Override
+    public <T> Mono<T> createMono(@NonNull ReactiveRedisCallback<T> callback) {
+        return Mono.subscriberContext().flatMap(context -> {
+            ReactiveRedisTemplate<K, V> target = determineTargetRedisTemplate(context);
+            return target == null ? super.createMono(callback) : target.createMono(callback);
+        });
+    }
+
+    @NonNull
+    @Override
+    public <T> Flux<T> execute(@NonNull RedisScript<T> script, @NonNull List<K> keys, @NonNull List<?> args) {
+        return Mono.subscriberContext().flatMapMany(context -> {
+            ReactiveRedisTemplate<K, V> target = determineTargetRedisTemplate(context);
+            return target == null ? super.execute(script, keys, args) : target.execute(script, keys, args);
+        });
+    }
+
+    @NonNull
+    @Override
+    public <T> Flux<T> execute(@NonNull RedisScript<T> script, @NonNull List<K> keys, @NonNull List<?> args,
+                               @NonNull RedisElementWriter<?> argsWriter,
+                               @NonNull RedisElementReader<T> resultReader) {
+        return Mono.subscriberContext().flatMapMany(context -> {
+            ReactiveRedisTemplate<K, V> target = determineTargetRedisTemplate(context);
+            return target == null
+                    ? super.execute(script, keys, args, argsWriter, resultReader)
+                    : target.execute(script, keys, args, argsWriter, resultReader);
+        });
+    }
+}
@@ -1,5 +1,15 @@
 package com.yebuxiu.template;
 
+import com.yebuxiu.metrics.DynamicRedisMetrics;
+import com.yebuxiu.scan.DatabaseKey;
+import com.yebuxiu.scan.RedisMigrationOptions;
+import com.yebuxiu.scan.RedisMigrationProgress;
+import com.yebuxiu.scan.RedisMigrator;
+import com.yebuxiu.scan.RedisPurgeOptions;
+import com.yebuxiu.scan.RedisPurgeProgress;
+import com.yebuxiu.scan.RedisPurger;
+import com.yebuxiu.scan.RedisScanOptions;
+import com.yebuxiu.scan.RedisScanner;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.data.redis.connection.DataType;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -14,13 +24,25 @@ import org.springframework.lang.NonNull;
 import java.io.Closeable;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K, V> implements InitializingBean {
 
     /**
-     * 存放对应库的redisTemplate，用于操作对应的db
+     * 没有指定db时的返回值，此时使用默认的redisTemplate
      */
-    private Map<Object, RedisTemplate<K, V>> redisTemplates;
+    public static final int NO_DATABASE = -1;
+
+    /**
+     * 存放对应库的redisTemplate，用于操作对应的db，下标即db号
+     */
+    private final RedisTemplateRegistry<RedisTemplate<K, V>> redisTemplates;
+
+    /**
+     * 未命中时创建redisTemplate的函数，提前创建好避免每次未命中都生成lambda
+     */
+    private final IntFunction<RedisTemplate<K, V>> redisTemplateCreator = this::createRedisTemplateOnMissing;
 
     /**
      * 当不指定库时默认使用的redisTemplate
@@ -28,67 +50,185 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
     private RedisTemplate<K, V> defaultRedisTemplate;
 
     /**
-     * 当类被加载到容器中属性设置完毕后检查redisTemplates和defaultRedisTemplate是否为空
+     * 路由耗时埋点，默认不记录
+     */
+    private DynamicRedisMetrics metrics = DynamicRedisMetrics.NOOP;
+
+    /**
+     * @param databases redis服务端的db数量
+     */
+    protected AbstractRoutingRedisTemplate(int databases) {
+        this.redisTemplates = new RedisTemplateRegistry<>(databases);
+    }
+
+    /**
+     * 当类被加载到容器中属性设置完毕后检查defaultRedisTemplate是否为空
      */
     @Override
     public void afterPropertiesSet() {
-        if (redisTemplates == null) {
-            throw new IllegalArgumentException("Property 'redisTemplates' is required");
-        }
         if (defaultRedisTemplate == null) {
             throw new IllegalArgumentException("Property 'defaultRedisTemplate' is required");
         }
     }
 
     /**
-     * 获取要操作的RedisTemplate
+     * 获取要操作的RedisTemplate，用于执行命令前还不知道key的调用（opsForValue()、execute等）
      */
     protected RedisTemplate<K, V> determineTargetRedisTemplate() {
+        DynamicRedisMetrics metrics = this.metrics;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
         // 当前要操作的DB
-        Object lookupKey = determineCurrentLookupKey();
-        // 如果当前要操作的DB为空则使用默认的RedisTemplate（使用0号库）
-        if (lookupKey == null) {
-            return defaultRedisTemplate;
-        }
-        RedisTemplate<K, V> redisTemplate = redisTemplates.get(lookupKey);
-        // 如果当前要操作的db还没有维护到redisTemplates中，则创建一个对该库的连接并缓存起来
-        if (redisTemplate == null) {
-            // 双重检查，这里直接使用synchronized锁，因为创建redisTemplate不会很频繁，一般整个生命周期只有几次，不会有性能问题
-            synchronized (DynamicRedisTemplate.class) {
-                if (null == redisTemplates.get(lookupKey)) {
-                    redisTemplate = createRedisTemplateOnMissing(lookupKey);
-                    redisTemplates.put(lookupKey, redisTemplate);
-                }
+        return routeTo(determineCurrentDatabase(), start);
+    }
+
+    /**
+     * 按key获取要操作的RedisTemplate，路由策略可以根据key决定db
+     *
+     * @param key 本次操作的key
+     */
+    protected RedisTemplate<K, V> determineTargetRedisTemplate(Object key) {
+        DynamicRedisMetrics metrics = this.metrics;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        return routeTo(determineCurrentDatabase(key), start);
+    }
+
+    private RedisTemplate<K, V> routeTo(int database, long start) {
+        // 如果当前要操作的DB为空则使用默认的RedisTemplate
+        RedisTemplate<K, V> redisTemplate = database == NO_DATABASE ? defaultRedisTemplate : redisTemplates.get(database);
+        if (redisTemplate != null) {
+            if (start != 0L) {
+                metrics.recordRouting(database, System.nanoTime() - start);
             }
+            return redisTemplate;
         }
-        return redisTemplate;
+        // 如果当前要操作的db还没有维护到redisTemplates中，则创建一个对该库的连接并缓存起来，只锁当前db
+        // 创建耗时由DynamicRedisTemplateFactory单独记录
+        return redisTemplates.getOrCreate(database, redisTemplateCreator);
     }
 
     /**
      * 获取当前 Redis db
      *
-     * @return current redis db
+     * @return current redis db，没有指定时返回 {@link #NO_DATABASE}
+     */
+    protected abstract int determineCurrentDatabase();
+
+    /**
+     * 获取操作指定key时使用的 Redis db，默认与key无关
+     *
+     * @param key 本次操作的key
+     * @return redis db，没有指定时返回 {@link #NO_DATABASE}
+     */
+    protected int determineCurrentDatabase(Object key) {
+        return determineCurrentDatabase();
+    }
+
+    /**
+     * 按路由规则计算操作指定key时使用的db
+     *
+     * @param key key
+     * @return redis db，使用默认redisTemplate时返回 {@link #NO_DATABASE}
+     */
+    public int resolveDatabase(K key) {
+        return determineCurrentDatabase(key);
+    }
+
+    /**
+     * 按路由规则获取操作指定key时使用的RedisTemplate，用于在 opsForValue() 等调用上按key路由：
+     * <pre>
+     * redisTemplate.forKey(key).opsForValue().get(key);
+     * </pre>
+     *
+     * @param key key
+     * @return 该key所在db的RedisTemplate
+     */
+    public RedisTemplate<K, V> forKey(K key) {
+        return determineTargetRedisTemplate(key);
+    }
+
+    /**
+     * @param database redis db，{@link #NO_DATABASE} 表示默认db
+     * @return 指定db的RedisTemplate，不存在时创建
      */
-    protected abstract Object determineCurrentLookupKey();
+    public RedisTemplate<K, V> getTargetRedisTemplate(int database) {
+        return database == NO_DATABASE ? defaultRedisTemplate : getRedisTemplate(database);
+    }
 
     /**
      * 没有对应 db 的 RedisTemplate 时，则调用此方法创建 RedisTemplate
      *
-     * @param lookupKey RedisDB
+     * @param database RedisDB
+     * @return RedisTemplate
+     */
+    public abstract RedisTemplate<K, V> createRedisTemplateOnMissing(int database);
+
+    /**
+     * 获取指定db的RedisTemplate，不存在时创建并缓存，不受当前线程db的影响
+     *
+     * @param database redis db
      * @return RedisTemplate
      */
-    public abstract RedisTemplate<K, V> createRedisTemplateOnMissing(Object lookupKey);
+    public RedisTemplate<K, V> getRedisTemplate(int database) {
+        return redisTemplates.getOrCreate(database, redisTemplateCreator);
+    }
 
-    public void setRedisTemplates(Map<Object, RedisTemplate<K, V>> redisTemplates) {
-        this.redisTemplates = redisTemplates;
+    /**
+     * 获取指定db的RedisTemplate，并在 {@link #releaseRedisTemplate(int)} 之前禁止淘汰该db，
+     * 用于持续时间可能超过空闲时长、一直使用同一个RedisTemplate的操作，必须在finally中释放
+     *
+     * @param database redis db，{@link #NO_DATABASE} 表示默认db（不会被淘汰）
+     */
+    protected RedisTemplate<K, V> acquireRedisTemplate(int database) {
+        return database == NO_DATABASE ? defaultRedisTemplate : redisTemplates.acquire(database, redisTemplateCreator);
+    }
+
+    /**
+     * @param database {@link #acquireRedisTemplate(int)} 时的db
+     */
+    protected void releaseRedisTemplate(int database) {
+        if (database != NO_DATABASE) {
+            redisTemplates.release(database);
+        }
+    }
+
+    /**
+     * 淘汰空闲的RedisTemplate，被淘汰的db在下一次使用时会重新创建
+     *
+     * @param idleNanos 空闲时长（纳秒）
+     * @param pinned    不允许淘汰的db
+     * @return 被淘汰的RedisTemplate，由调用方负责销毁
+     */
+    public List<RedisTemplate<K, V>> evictIdleRedisTemplates(long idleNanos, Set<Integer> pinned) {
+        return redisTemplates.evictIdle(idleNanos, pinned);
+    }
+
+    /**
+     * @return 每个db被淘汰的次数
+     */
+    public Map<Integer, Long> getEvictionCounts() {
+        return redisTemplates.getEvictionCounts();
+    }
+
+    public void setRedisTemplates(Map<Integer, RedisTemplate<K, V>> redisTemplates) {
+        redisTemplates.forEach(this.redisTemplates::register);
     }
 
     public void setDefaultRedisTemplate(RedisTemplate<K, V> defaultRedisTemplate) {
         this.defaultRedisTemplate = defaultRedisTemplate;
     }
 
-    public Map<Object, RedisTemplate<K, V>> getRedisTemplates() {
-        return redisTemplates;
+    /**
+     * @return 当前已创建的redisTemplate快照，key为db号
+     */
+    public Map<Integer, RedisTemplate<K, V>> getRedisTemplates() {
+        return redisTemplates.snapshot();
+    }
+
+    /**
+     * 设置路由耗时埋点
+     */
+    public void setMetrics(DynamicRedisMetrics metrics) {
+        this.metrics = metrics == null ? DynamicRedisMetrics.NOOP : metrics;
     }
 
     public RedisTemplate<K, V> getDefaultRedisTemplate() {
@@ -96,7 +236,150 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
     }
 
 
+    /**
+     * 使用SCAN惰性遍历key，替代会阻塞redis的 {@link #keys(Object)}：返回的Stream按需翻页，内存中最多只有一页key。
+     * db在调用时确定（路由策略可以按MATCH的前缀决定db），每一页都重新获取该db的RedisTemplate，
+     * 遍历期间db会被记为使用中，即使被淘汰也会在下一页重新创建
+     *
+     * @param options MATCH、COUNT、TYPE
+     * @return 惰性的key流，遍历期间一直存在的key至少返回一次，但可能重复
+     */
+    public Stream<K> scan(RedisScanOptions options) {
+        int database = determineCurrentDatabase(options.getMatch());
+        return RedisScanner.scan(() -> getTargetRedisTemplate(database), options);
+    }
+
+    /**
+     * 使用SCAN惰性遍历指定db的key
+     *
+     * @param database redis db，{@link #NO_DATABASE} 表示默认db
+     */
+    public Stream<K> scan(int database, RedisScanOptions options) {
+        return RedisScanner.scan(() -> getTargetRedisTemplate(database), options);
+    }
+
+    /**
+     * 依次遍历多个db的key，一个db遍历完才开始下一个db，内存中最多只有一页key
+     *
+     * @param databases 要遍历的db
+     */
+    public Stream<DatabaseKey<K>> scan(Collection<Integer> databases, RedisScanOptions options) {
+        return RedisScanner.scan(this::getRedisTemplate, databases, options);
+    }
+
+    /**
+     * 使用HSCAN惰性遍历key所在db上的hash
+     */
+    public <HK, HV> Stream<Map.Entry<HK, HV>> hscan(K key, RedisScanOptions options) {
+        int database = determineCurrentDatabase(key);
+        return RedisScanner.hscan(() -> getTargetRedisTemplate(database), key, options);
+    }
+
+    /**
+     * 使用SSCAN惰性遍历key所在db上的set
+     */
+    public Stream<V> sscan(K key, RedisScanOptions options) {
+        int database = determineCurrentDatabase(key);
+        return RedisScanner.sscan(() -> getTargetRedisTemplate(database), key, options);
+    }
+
+    /**
+     * 使用ZSCAN惰性遍历key所在db上的有序集合
+     */
+    public Stream<ZSetOperations.TypedTuple<V>> zscan(K key, RedisScanOptions options) {
+        int database = determineCurrentDatabase(key);
+        return RedisScanner.zscan(() -> getTargetRedisTemplate(database), key, options);
+    }
+
+    /**
+     * 使用SCAN + UNLINK分批删除匹配的key，替代 keys() + delete(Collection)，在调用线程上执行直到删除完毕。
+     * db在调用时确定（路由策略可以按MATCH的前缀决定db），删除期间该db不会被淘汰
+     *
+     * @param options 模式（为null时删除整个db）、批大小、每秒删除的key数量和进度回调
+     * @return 最终进度
+     */
+    public RedisPurgeProgress purge(RedisPurgeOptions options) {
+        return purge(determineCurrentDatabase(options.getMatch()), options);
+    }
+
+    /**
+     * 使用SCAN + UNLINK分批删除指定db上匹配的key
+     *
+     * @param database redis db，{@link #NO_DATABASE} 表示默认db
+     */
+    public RedisPurgeProgress purge(int database, RedisPurgeOptions options) {
+        RedisTemplate<K, V> template = acquireRedisTemplate(database);
+        try {
+            return RedisPurger.purge(template, options);
+        } finally {
+            releaseRedisTemplate(database);
+        }
+    }
+
+    /**
+     * 把源db上匹配的key复制或移动到目标db，在调用线程上执行直到完成：
+     * 同一节点上移动使用MOVE，否则使用DUMP+PTTL/RESTORE，均按页一起发送；迁移期间源db和目标db都不会被淘汰
+     *
+     * @param sourceDatabase 源db
+     * @param targetDatabase 目标db
+     * @param options        模式（复制/移动）、是否覆盖、批大小、并行数、检查点和进度回调
+     * @return 最终进度
+     */
+    public RedisMigrationProgress migrate(int sourceDatabase, int targetDatabase, RedisMigrationOptions options) {
+        if (sourceDatabase == targetDatabase) {
+            throw new IllegalArgumentException("Source and target database are the same: " + sourceDatabase);
+        }
+        int moveDatabase = determineMoveDatabase(sourceDatabase, targetDatabase);
+        RedisTemplate<K, V> source = acquireRedisTemplate(sourceDatabase);
+        try {
+            RedisTemplate<K, V> target = acquireRedisTemplate(targetDatabase);
+            try {
+                return RedisMigrator.migrate(source, target, moveDatabase, options);
+            } finally {
+                releaseRedisTemplate(targetDatabase);
+            }
+        } finally {
+            releaseRedisTemplate(sourceDatabase);
+        }
+    }
+
+    /**
+     * 目标db与源db在同一个redis节点上时返回目标db的物理db，用于MOVE；不在同一个节点上时返回 {@link RedisMigrator#CROSS_NODE}。
+     * 默认所有db都在同一个节点上，物理db即逻辑db
+     */
+    protected int determineMoveDatabase(int sourceDatabase, int targetDatabase) {
+        return targetDatabase;
+    }
+
+    /**
+     * 按一组key获取要操作的RedisTemplate，用于必须在同一个连接上执行的命令（WATCH、脚本），
+     * key路由到不同db时直接失败，而不是按第一个key或当前db执行
+     *
+     * @param keys      本次操作的key
+     * @param operation 操作名称，用于错误信息
+     */
+    private RedisTemplate<K, V> determineTargetRedisTemplate(Collection<? extends K> keys, String operation) {
+        if (keys.isEmpty()) {
+            return determineTargetRedisTemplate();
+        }
+        DynamicRedisMetrics metrics = this.metrics;
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        Iterator<? extends K> iterator = keys.iterator();
+        int database = determineCurrentDatabase(iterator.next());
+        while (iterator.hasNext()) {
+            int other = determineCurrentDatabase(iterator.next());
+            if (other != database) {
+                throw new IllegalArgumentException("Keys of " + operation + " are routed to different databases ("
+                        + database + " and " + other + "), split them by resolveDatabase(key)");
+            }
+        }
+        return routeTo(database, start);
+    }
+
+
     // ====================以下都是继承自父类的方法，RedisTemplate中的方法执行时会调用下面的方法=====================
+    // ====================带有key的方法按key路由：delete(keys)按db分组执行，watch(keys)和脚本要求所有key在同一个db=====================
+    // ====================opsFor*()、execute、executePipelined、multi/exec等不带key的方法在执行命令前按当前db确定，按key路由需使用forKey(key)=====================
 
     @Override
     public <T> T execute(@NonNull RedisCallback<T> action) {
@@ -144,7 +427,7 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
     @Override
     public <T> T execute(@NonNull RedisScript<T> script, @NonNull List<K> keys, @NonNull Object... args) {
-        return determineTargetRedisTemplate().execute(script, keys, args);
+        return determineTargetRedisTemplate(keys, "script").execute(script, keys, args);
     }
 
     @Override
@@ -152,7 +435,7 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
                          @NonNull RedisSerializer<?> argsSerializer,
                          @NonNull RedisSerializer<T> resultSerializer,
                          @NonNull List<K> keys, @NonNull Object... args) {
-        return determineTargetRedisTemplate().execute(script, argsSerializer, resultSerializer, keys, args);
+        return determineTargetRedisTemplate(keys, "script").execute(script, argsSerializer, resultSerializer, keys, args);
     }
 
     @Override
@@ -264,27 +547,55 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
     @Override
     public Boolean delete(K key) {
-        return determineTargetRedisTemplate().delete(key);
+        return determineTargetRedisTemplate(key).delete(key);
     }
 
+    /**
+     * 按key路由的db分组，每个db一次DEL，返回所有db删除数量之和；
+     * 按模式删除大量key时使用 {@link #purge(RedisPurgeOptions)}
+     */
     @Override
     public Long delete(@NonNull Collection<K> keys) {
-        return determineTargetRedisTemplate().delete(keys);
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        int[] databases = new int[keys.size()];
+        boolean singleDatabase = true;
+        int i = 0;
+        for (K key : keys) {
+            databases[i] = determineCurrentDatabase(key);
+            singleDatabase &= databases[i] == databases[0];
+            i++;
+        }
+        if (singleDatabase) {
+            return getTargetRedisTemplate(databases[0]).delete(keys);
+        }
+        Map<Integer, List<K>> groups = new LinkedHashMap<>();
+        i = 0;
+        for (K key : keys) {
+            groups.computeIfAbsent(databases[i++], db -> new ArrayList<>()).add(key);
+        }
+        long deleted = 0;
+        for (Map.Entry<Integer, List<K>> entry : groups.entrySet()) {
+            Long count = getTargetRedisTemplate(entry.getKey()).delete(entry.getValue());
+            deleted += count == null ? 0 : count;
+        }
+        return deleted;
     }
 
     @Override
     public Boolean hasKey(K key) {
-        return determineTargetRedisTemplate().hasKey(key);
+        return determineTargetRedisTemplate(key).hasKey(key);
     }
 
     @Override
     public Boolean expire(K key, long timeout, TimeUnit unit) {
-        return determineTargetRedisTemplate().expire(key, timeout, unit);
+        return determineTargetRedisTemplate(key).expire(key, timeout, unit);
     }
 
     @Override
     public Boolean expireAt(K key, Date date) {
-        return determineTargetRedisTemplate().expireAt(key, date);
+        return determineTargetRedisTemplate(key).expireAt(key, date);
     }
 
     @Override
@@ -294,27 +605,30 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
     @Override
     public Long getExpire(K key) {
-        return determineTargetRedisTemplate().getExpire(key);
+        return determineTargetRedisTemplate(key).getExpire(key);
     }
 
     @Override
     public Long getExpire(K key, @NonNull TimeUnit timeUnit) {
-        return determineTargetRedisTemplate().getExpire(key, timeUnit);
+        return determineTargetRedisTemplate(key).getExpire(key, timeUnit);
     }
 
+    /**
+     * KEYS会阻塞redis直到遍历完整个db，并一次性返回所有key，大db上使用 {@link #scan(RedisScanOptions)}
+     */
     @Override
     public Set<K> keys(K pattern) {
-        return determineTargetRedisTemplate().keys(pattern);
+        return determineTargetRedisTemplate(pattern).keys(pattern);
     }
 
     @Override
     public Boolean persist(K key) {
-        return determineTargetRedisTemplate().persist(key);
+        return determineTargetRedisTemplate(key).persist(key);
     }
 
     @Override
     public Boolean move(K key, int dbIndex) {
-        return determineTargetRedisTemplate().move(key, dbIndex);
+        return determineTargetRedisTemplate(key).move(key, dbIndex);
     }
 
     @Override
@@ -324,27 +638,27 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
     @Override
     public void rename(K oldKey, K newKey) {
-        determineTargetRedisTemplate().rename(oldKey, newKey);
+        determineTargetRedisTemplate(oldKey).rename(oldKey, newKey);
     }
 
     @Override
     public Boolean renameIfAbsent(K oldKey, K newKey) {
-        return determineTargetRedisTemplate().renameIfAbsent(oldKey, newKey);
+        return determineTargetRedisTemplate(oldKey).renameIfAbsent(oldKey, newKey);
     }
 
     @Override
     public DataType type(K key) {
-        return determineTargetRedisTemplate().type(key);
+        return determineTargetRedisTemplate(key).type(key);
     }
 
     @Override
     public byte[] dump(K key) {
-        return determineTargetRedisTemplate().dump(key);
+        return determineTargetRedisTemplate(key).dump(key);
     }
 
     @Override
     public void restore(@NonNull K key, @NonNull byte[] value, long timeToLive, @NonNull TimeUnit unit) {
-        determineTargetRedisTemplate().restore(key, value, timeToLive, unit);
+        determineTargetRedisTemplate(key).restore(key, value, timeToLive, unit);
     }
 
     @Override
@@ -359,12 +673,15 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
     @Override
     public void watch(K key) {
-        determineTargetRedisTemplate().watch(key);
+        determineTargetRedisTemplate(key).watch(key);
     }
 
+    /**
+     * WATCH必须与之后的MULTI/EXEC在同一个db的连接上，所有key必须路由到同一个db
+     */
     @Override
     public void watch(Collection<K> keys) {
-        determineTargetRedisTemplate().watch(keys);
+        determineTargetRedisTemplate(keys, "watch").watch(keys);
     }
 
     @Override
@@ -374,35 +691,35 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
 
     @Override
     public List<V> sort(@NonNull SortQuery<K> query) {
-        return determineTargetRedisTemplate().sort(query);
+        return determineTargetRedisTemplate(query.getKey()).sort(query);
     }
 
     @Override
     public <T> List<T> sort(SortQuery<K> query, RedisSerializer<T> resultSerializer) {
-        return determineTargetRedisTemplate().sort(query, resultSerializer);
+        return determineTargetRedisTemplate(query.getKey()).sort(query, resultSerializer);
     }
 
     @Override
     public <T> List<T> sort(@NonNull SortQuery<K> query, @NonNull BulkMapper<T, V> bulkMapper) {
-        return determineTargetRedisTemplate().sort(query, bulkMapper);
+        return determineTargetRedisTemplate(query.getKey()).sort(query, bulkMapper);
     }
 
     @Override
     public <T, S> List<T> sort(@NonNull SortQuery<K> query,
                                @NonNull BulkMapper<T, S> bulkMapper,
                                RedisSerializer<S> resultSerializer) {
-        return determineTargetRedisTemplate().sort(query, bulkMapper, resultSerializer);
+        return determineTargetRedisTemplate(query.getKey()).sort(query, bulkMapper, resultSerializer);
     }
 
     @Override
     public Long sort(SortQuery<K> query, K storeKey) {
-        return determineTargetRedisTemplate().sort(query, storeKey);
+        return determineTargetRedisTemplate(query.getKey()).sort(query, storeKey);
     }
 
     @NonNull
     @Override
     public BoundValueOperations<K, V> boundValueOps(@NonNull K key) {
-        return determineTargetRedisTemplate().boundValueOps(key);
+        return determineTargetRedisTemplate(key).boundValueOps(key);
     }
 
     @NonNull
@@ -420,13 +737,13 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
     @NonNull
     @Override
     public BoundListOperations<K, V> boundListOps(@NonNull K key) {
-        return determineTargetRedisTemplate().boundListOps(key);
+        return determineTargetRedisTemplate(key).boundListOps(key);
     }
 
     @NonNull
     @Override
     public BoundSetOperations<K, V> boundSetOps(@NonNull K key) {
-        return determineTargetRedisTemplate().boundSetOps(key);
+        return determineTargetRedisTemplate(key).boundSetOps(key);
     }
 
     @NonNull
@@ -438,7 +755,7 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
     @NonNull
     @Override
     public BoundZSetOperations<K, V> boundZSetOps(@NonNull K key) {
-        return determineTargetRedisTemplate().boundZSetOps(key);
+        return determineTargetRedisTemplate(key).boundZSetOps(key);
     }
 
     @NonNull
@@ -456,7 +773,7 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
     @NonNull
     @Override
     public BoundGeoOperations<K, V> boundGeoOps(@NonNull K key) {
-        return determineTargetRedisTemplate().boundGeoOps(key);
+        return determineTargetRedisTemplate(key).boundGeoOps(key);
     }
 
     @NonNull
@@ -468,7 +785,7 @@ public abstract class AbstractRoutingRedisTemplate<K, V> extends RedisTemplate<K
     @NonNull
     @Override
     public <HK, HV> BoundHashOperations<K, HK, HV> boundHashOps(@NonNull K key) {
-        return determineTargetRedisTemplate().boundHashOps(key);
+        return determineTargetRedisTemplate(key).boundHashOps(key);
     }
 
     @NonNull
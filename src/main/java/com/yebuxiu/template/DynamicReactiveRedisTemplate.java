@@ -0,0 +1,44 @@
+package com.yebuxiu.template;
+
+import com.yebuxiu.config.DynamicRedisTemplateFactory;
+import com.yebuxiu.helper.ReactiveRedisDatabaseContext;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.util.context.Context;
+
+/**
+ * 动态 ReactiveRedisTemplate，以支持在WebFlux等非阻塞场景下动态切换 redis database
+ * 目标db通过 {@link ReactiveRedisDatabaseContext#withDatabase(int)} 写入Reactor Context
+ */
+public class DynamicReactiveRedisTemplate<K, V> extends AbstractRoutingReactiveRedisTemplate<K, V> {
+
+    /**
+     * 动态RedisTemplate工厂，用于为每个db创建连接工厂
+     */
+    private final DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory;
+
+    /**
+     * @param connectionFactory           未指定db时使用的默认连接工厂
+     * @param serializationContext        序列化配置
+     * @param dynamicRedisTemplateFactory 动态RedisTemplate工厂
+     * @param databases                   redis服务端的db数量
+     */
+    public DynamicReactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                        RedisSerializationContext<K, V> serializationContext,
+                                        DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory,
+                                        int databases) {
+        super(connectionFactory, serializationContext, databases);
+        this.dynamicRedisTemplateFactory = dynamicRedisTemplateFactory;
+    }
+
+    @Override
+    protected int determineCurrentDatabase(Context context) {
+        return ReactiveRedisDatabaseContext.getDatabase(context);
+    }
+
+    @Override
+    public ReactiveRedisTemplate<K, V> createRedisTemplateOnMissing(int database) {
+        return dynamicRedisTemplateFactory.createReactiveRedisTemplate(database);
+    }
+}
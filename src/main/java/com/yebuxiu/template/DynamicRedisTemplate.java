@@ -1,8 +1,13 @@
 package com.yebuxiu.template;
 
 import com.yebuxiu.config.DynamicRedisTemplateFactory;
-import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+import com.yebuxiu.config.RedisDatabaseLocation;
+import com.yebuxiu.config.RedisDatabaseMapping;
+import com.yebuxiu.routing.RedisRoutingStrategy;
+import com.yebuxiu.routing.ThreadLocalRoutingStrategy;
+import com.yebuxiu.scan.RedisMigrator;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
 
 /**
  * 动态 RedisTemplate ，以支持动态切换 redis database
@@ -14,24 +19,66 @@ public class DynamicRedisTemplate<K, V> extends AbstractRoutingRedisTemplate<K,
      */
     private final DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory;
 
-    public DynamicRedisTemplate(DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory) {
+    /**
+     * 路由策略，默认使用线程上设置的db
+     */
+    private volatile RedisRoutingStrategy routingStrategy = ThreadLocalRoutingStrategy.INSTANCE;
+
+    /**
+     * @param dynamicRedisTemplateFactory 动态RedisTemplate工厂
+     * @param databases                   redis服务端的db数量
+     */
+    public DynamicRedisTemplate(DynamicRedisTemplateFactory<K, V> dynamicRedisTemplateFactory, int databases) {
+        super(databases);
         this.dynamicRedisTemplateFactory = dynamicRedisTemplateFactory;
     }
 
     @Override
-    protected Object determineCurrentLookupKey() {
-        return RedisDatabaseThreadLocalHelper.get();
+    protected int determineCurrentDatabase() {
+        return routingStrategy.determineDatabase(null);
+    }
+
+    @Override
+    protected int determineCurrentDatabase(Object key) {
+        return routingStrategy.determineDatabase(key);
+    }
+
+    /**
+     * 按 redis.mappings 判断两个逻辑db是否在同一个节点上
+     */
+    @Override
+    protected int determineMoveDatabase(int sourceDatabase, int targetDatabase) {
+        RedisDatabaseMapping databaseMapping = dynamicRedisTemplateFactory.getDatabaseMapping();
+        RedisDatabaseLocation source = databaseMapping.locate(sourceDatabase);
+        RedisDatabaseLocation target = databaseMapping.locate(targetDatabase);
+        if (!source.getNode().equals(target.getNode())) {
+            return RedisMigrator.CROSS_NODE;
+        }
+        if (source.getDatabase() == target.getDatabase()) {
+            throw new IllegalArgumentException("Database " + sourceDatabase + " and " + targetDatabase
+                    + " are mapped to the same physical database " + source);
+        }
+        return target.getDatabase();
+    }
+
+    public RedisRoutingStrategy getRoutingStrategy() {
+        return routingStrategy;
+    }
+
+    public void setRoutingStrategy(RedisRoutingStrategy routingStrategy) {
+        Assert.notNull(routingStrategy, "routingStrategy must not be null");
+        this.routingStrategy = routingStrategy;
     }
 
     /**
      * 通过制定的db创建RedisTemplate
      *
-     * @param lookupKey db号
+     * @param database db号
      * @return org.springframework.data.redis.core.RedisTemplate<K, V>
      */
     @Override
-    public RedisTemplate<K, V> createRedisTemplateOnMissing(Object lookupKey) {
-        return dynamicRedisTemplateFactory.createRedisTemplate((Integer) lookupKey);
+    public RedisTemplate<K, V> createRedisTemplateOnMissing(int database) {
+        return dynamicRedisTemplateFactory.createRedisTemplate(database);
     }
 
 }
@@ -0,0 +1,243 @@
+package com.yebuxiu.template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * 以db号为下标的模板注册表
+ * 读路径无锁、无装箱；未命中时按db加锁创建，同一个db只会创建一次（single-flight），
+ * 某个db创建缓慢时不会阻塞路由到其他db的调用方；同时记录每个db的使用情况，支持淘汰长时间未使用的模板，
+ * 持续时间较长的操作可以通过 {@link #acquire(int, IntFunction)} 在操作期间禁止淘汰
+ *
+ * @param <T> 模板类型
+ */
+public class RedisTemplateRegistry<T> {
+
+    /**
+     * 下标即db号
+     */
+    private final AtomicReferenceArray<T> templates;
+
+    /**
+     * 每个db一把创建锁
+     */
+    private final Object[] creationLocks;
+
+    /**
+     * 两次空闲检查之间是否被使用过，读路径只在值为0时写入一次，避免频繁写共享缓存行
+     */
+    private final AtomicIntegerArray used;
+
+    /**
+     * 最近一次检查到被使用的时间（nanoTime），只由空闲检查线程访问
+     */
+    private final long[] lastUsedNanos;
+
+    /**
+     * 每个db正在进行的长操作数量，大于0时不会被淘汰
+     */
+    private final AtomicIntegerArray leases;
+
+    /**
+     * 每个db被淘汰的次数
+     */
+    private final AtomicLongArray evictions;
+
+    /**
+     * @param databases redis服务端的db数量（对应redis.conf中的databases配置）
+     */
+    public RedisTemplateRegistry(int databases) {
+        if (databases <= 0) {
+            throw new IllegalArgumentException("databases must be greater than 0, but was " + databases);
+        }
+        this.templates = new AtomicReferenceArray<>(databases);
+        this.creationLocks = new Object[databases];
+        this.used = new AtomicIntegerArray(databases);
+        this.lastUsedNanos = new long[databases];
+        this.leases = new AtomicIntegerArray(databases);
+        this.evictions = new AtomicLongArray(databases);
+        for (int i = 0; i < databases; i++) {
+            creationLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return 可容纳的db数量
+     */
+    public int size() {
+        return templates.length();
+    }
+
+    /**
+     * 获取指定db已创建的模板
+     *
+     * @param database db号
+     * @return 模板，还未创建时返回null
+     */
+    public T get(int database) {
+        checkDatabase(database);
+        T template = templates.get(database);
+        if (template != null) {
+            markUsed(database);
+        }
+        return template;
+    }
+
+    /**
+     * 获取指定db的模板，不存在时调用creator创建并缓存
+     * creator抛出异常时不会缓存任何内容，下一次调用会重新创建
+     *
+     * @param database db号
+     * @param creator  模板创建函数
+     * @return 模板，不会返回null
+     */
+    public T getOrCreate(int database, IntFunction<? extends T> creator) {
+        checkDatabase(database);
+        T template = templates.get(database);
+        if (template != null) {
+            markUsed(database);
+            return template;
+        }
+        synchronized (creationLocks[database]) {
+            template = templates.get(database);
+            if (template == null) {
+                template = creator.apply(database);
+                if (template == null) {
+                    throw new IllegalStateException("Created template for database " + database + " is null");
+                }
+                templates.set(database, template);
+            }
+        }
+        markUsed(database);
+        return template;
+    }
+
+    /**
+     * 获取指定db的模板并在 {@link #release(int)} 之前禁止淘汰，用于SCAN删除、迁移等持续时间可能超过空闲时长的操作
+     *
+     * @param database db号
+     * @param creator  模板不存在时的创建函数
+     * @return 模板，不会返回null
+     */
+    public T acquire(int database, IntFunction<? extends T> creator) {
+        checkDatabase(database);
+        // 与淘汰时的检查在同一把锁内，计数之后拿到的模板不会再被移除
+        synchronized (creationLocks[database]) {
+            leases.incrementAndGet(database);
+        }
+        try {
+            return getOrCreate(database, creator);
+        } catch (RuntimeException | Error e) {
+            leases.decrementAndGet(database);
+            throw e;
+        }
+    }
+
+    /**
+     * 结束 {@link #acquire(int, IntFunction)} 开始的操作，空闲时间从此刻开始计算
+     */
+    public void release(int database) {
+        checkDatabase(database);
+        if (leases.decrementAndGet(database) < 0) {
+            leases.incrementAndGet(database);
+            throw new IllegalStateException("Database " + database + " released more times than acquired");
+        }
+        markUsed(database);
+    }
+
+    /**
+     * 直接注册指定db的模板，会覆盖已存在的模板
+     */
+    public void register(int database, T template) {
+        checkDatabase(database);
+        synchronized (creationLocks[database]) {
+            templates.set(database, template);
+        }
+    }
+
+    /**
+     * @return 当前已创建模板的快照，key为db号
+     */
+    public Map<Integer, T> snapshot() {
+        Map<Integer, T> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < templates.length(); i++) {
+            T template = templates.get(i);
+            if (template != null) {
+                snapshot.put(i, template);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * 淘汰空闲时间超过idleNanos的模板，被淘汰的db在下一次使用时会重新创建
+     * 空闲时间以检查的粒度计算：两次检查之间被使用过即视为在本次检查时刻被使用；
+     * 有未结束的 {@link #acquire(int, IntFunction)} 的db视为一直在使用
+     *
+     * @param idleNanos 空闲时长（纳秒）
+     * @param pinned    不允许淘汰的db
+     * @return 被淘汰的模板，由调用方负责销毁
+     */
+    public synchronized List<T> evictIdle(long idleNanos, Set<Integer> pinned) {
+        long now = System.nanoTime();
+        List<T> evicted = new ArrayList<>();
+        for (int database = 0; database < templates.length(); database++) {
+            T template = templates.get(database);
+            if (template == null || pinned.contains(database)) {
+                continue;
+            }
+            if (used.getAndSet(database, 0) != 0 || lastUsedNanos[database] == 0 || leases.get(database) > 0) {
+                lastUsedNanos[database] = now;
+                continue;
+            }
+            if (now - lastUsedNanos[database] < idleNanos) {
+                continue;
+            }
+            synchronized (creationLocks[database]) {
+                // 加锁后再次确认没有被重新创建、使用或租用
+                if (templates.get(database) == template && used.get(database) == 0 && leases.get(database) == 0) {
+                    templates.set(database, null);
+                    lastUsedNanos[database] = 0;
+                    evictions.incrementAndGet(database);
+                    evicted.add(template);
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return 每个db被淘汰的次数，只包含淘汰过的db
+     */
+    public Map<Integer, Long> getEvictionCounts() {
+        Map<Integer, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < evictions.length(); i++) {
+            long count = evictions.get(i);
+            if (count > 0) {
+                counts.put(i, count);
+            }
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private void markUsed(int database) {
+        if (used.get(database) == 0) {
+            used.lazySet(database, 1);
+        }
+    }
+
+    private void checkDatabase(int database) {
+        if (database < 0 || database >= templates.length()) {
+            throw new IllegalArgumentException("Redis database index out of range [0, "
+                    + templates.length() + "): " + database);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yebuxiu.web;
+
+import com.yebuxiu.helper.DbScope;
+import com.yebuxiu.helper.RedisDatabaseThreadLocalHelper;
+import com.yebuxiu.routing.RedisTenantContext;
+import com.yebuxiu.routing.TenantDatabaseResolver;
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 从请求头中读取租户，每个请求解析一次租户的db并绑定到当前线程（{@link RedisDatabaseThreadLocalHelper}），
+ * 同时写入 {@link RedisTenantContext}，请求结束时（包括抛出异常）解绑，
+ * 替代在每个controller方法中手动切换db。没有租户请求头或租户未知时不切换db
+ */
+@Slf4j
+public class RedisTenantFilter extends OncePerRequestFilter {
+
+    private final TenantDatabaseResolver tenantDatabaseResolver;
+
+    private final String tenantHeader;
+
+    /**
+     * @param tenantDatabaseResolver 租户到db的解析
+     * @param tenantHeader           携带租户标识的请求头
+     */
+    public RedisTenantFilter(TenantDatabaseResolver tenantDatabaseResolver, String tenantHeader) {
+        Assert.notNull(tenantDatabaseResolver, "tenantDatabaseResolver must not be null");
+        Assert.hasText(tenantHeader, "tenantHeader must not be empty");
+        this.tenantDatabaseResolver = tenantDatabaseResolver;
+        this.tenantHeader = tenantHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String tenant = request.getHeader(tenantHeader);
+        if (!StringUtils.hasText(tenant)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        int database = tenantDatabaseResolver.resolveDatabase(tenant);
+        if (database == AbstractRoutingRedisTemplate.NO_DATABASE) {
+            log.debug("Unknown tenant '{}', using default redis database", tenant);
+        }
+        String previousTenant = RedisTenantContext.get();
+        RedisTenantContext.set(tenant);
+        try (DbScope ignored = database == AbstractRoutingRedisTemplate.NO_DATABASE ? null
+                : RedisDatabaseThreadLocalHelper.use(database)) {
+            filterChain.doFilter(request, response);
+        } finally {
+            RedisTenantContext.set(previousTenant);
+        }
+    }
+
+    public String getTenantHeader() {
+        return tenantHeader;
+    }
+}
@@ -0,0 +1,85 @@
+package com.yebuxiu.web;
+
+import com.yebuxiu.helper.ReactiveRedisDatabaseContext;
+import com.yebuxiu.routing.CachingTenantDatabaseResolver;
+import com.yebuxiu.routing.TenantDatabaseResolver;
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * WebFlux版本的 {@link RedisTenantFilter}：每个请求解析一次租户的db并写入Reactor Context，
+ * 请求链路上的响应式命令使用该db，Context随请求结束而失效，不需要手动解绑。
+ * 不会阻塞的解析器（{@link TenantDatabaseResolver#isBlocking()} 为false，例如 redis.routing.tenants 配置）
+ * 以及缓存命中时在当前事件循环线程上直接解析；只有可能阻塞的解析（缓存未命中时查表）在 boundedElastic 线程上执行，
+ * 解析完成后切换到 parallel 调度器继续执行后续的过滤器和handler，不会占用 boundedElastic 线程
+ */
+@Slf4j
+public class RedisTenantWebFilter implements WebFilter, Ordered {
+
+    private final TenantDatabaseResolver tenantDatabaseResolver;
+
+    private final String tenantHeader;
+
+    private int order = Ordered.HIGHEST_PRECEDENCE + 10;
+
+    /**
+     * @param tenantDatabaseResolver 租户到db的解析
+     * @param tenantHeader           携带租户标识的请求头
+     */
+    public RedisTenantWebFilter(TenantDatabaseResolver tenantDatabaseResolver, String tenantHeader) {
+        Assert.notNull(tenantDatabaseResolver, "tenantDatabaseResolver must not be null");
+        Assert.hasText(tenantHeader, "tenantHeader must not be empty");
+        this.tenantDatabaseResolver = tenantDatabaseResolver;
+        this.tenantHeader = tenantHeader;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String tenant = exchange.getRequest().getHeaders().getFirst(tenantHeader);
+        if (!StringUtils.hasText(tenant)) {
+            return chain.filter(exchange);
+        }
+        if (!tenantDatabaseResolver.isBlocking()) {
+            return filter(exchange, chain, tenant, tenantDatabaseResolver.resolveDatabase(tenant));
+        }
+        Integer cached = tenantDatabaseResolver instanceof CachingTenantDatabaseResolver
+                ? ((CachingTenantDatabaseResolver) tenantDatabaseResolver).getIfPresent(tenant) : null;
+        if (cached != null) {
+            return filter(exchange, chain, tenant, cached);
+        }
+        // 只有解析本身在 boundedElastic 上执行，过滤器链回到非阻塞的调度器上继续
+        return Mono.fromCallable(() -> tenantDatabaseResolver.resolveDatabase(tenant))
+                .subscribeOn(Schedulers.boundedElastic())
+                .publishOn(Schedulers.parallel())
+                .flatMap(database -> filter(exchange, chain, tenant, database));
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain, String tenant, int database) {
+        if (database == AbstractRoutingRedisTemplate.NO_DATABASE) {
+            log.debug("Unknown tenant '{}', using default redis database", tenant);
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).subscriberContext(ReactiveRedisDatabaseContext.withDatabase(database));
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    public void setOrder(int order) {
+        this.order = order;
+    }
+
+    public String getTenantHeader() {
+        return tenantHeader;
+    }
+}
@@ -0,0 +1,146 @@
+package com.yebuxiu.helper;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class RedisDatabaseContextPropagationTest {
+
+    /**
+     * 工作线程上未清理的db
+     */
+    private static final int RESIDUAL = 7;
+
+    private ExecutorService worker;
+
+    @Before
+    public void setUp() throws Exception {
+        worker = Executors.newSingleThreadExecutor();
+        worker.submit(() -> RedisDatabaseThreadLocalHelper.set(RESIDUAL)).get();
+    }
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+        RedisDatabaseThreadLocalHelper.reset(0);
+    }
+
+    @Test
+    public void runnableUsesSubmittingThreadDatabase() throws Exception {
+        int[] seen = new int[1];
+        Runnable task;
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(5)) {
+            task = RedisDatabaseContextPropagation.wrap(() -> seen[0] = RedisDatabaseThreadLocalHelper.current());
+        }
+        // 快照在包装时捕获，之后调用线程切换db不影响任务
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(6)) {
+            worker.submit(task).get();
+        }
+        assertEquals(5, seen[0]);
+        assertEquals(RESIDUAL, workerDatabase());
+    }
+
+    @Test
+    public void emptySnapshotMasksResidualDatabase() throws Exception {
+        int database = worker.submit(RedisDatabaseContextPropagation.wrapCallable(
+                RedisDatabaseThreadLocalHelper::current)).get();
+        assertEquals(AbstractRoutingRedisTemplate.NO_DATABASE, database);
+        assertEquals(RESIDUAL, workerDatabase());
+    }
+
+    @Test
+    public void unpairedSetInTaskIsDiscarded() throws Exception {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(2)) {
+            worker.submit(RedisDatabaseContextPropagation.wrap(() -> {
+                RedisDatabaseThreadLocalHelper.set(3);
+                RedisDatabaseThreadLocalHelper.set(4);
+            })).get();
+        }
+        assertEquals(RESIDUAL, workerDatabase());
+    }
+
+    @Test
+    public void failingTaskRestoresWorkerDatabase() throws Exception {
+        Future<?> future;
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(2)) {
+            future = worker.submit(RedisDatabaseContextPropagation.wrap((Runnable) () -> {
+                throw new IllegalStateException("boom");
+            }));
+        }
+        try {
+            future.get();
+            fail("task failure must propagate");
+        } catch (ExecutionException expected) {
+            assertEquals("boom", expected.getCause().getMessage());
+        }
+        assertEquals(RESIDUAL, workerDatabase());
+    }
+
+    @Test
+    public void completableFutureUsesCallerDatabase() throws Exception {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(3)) {
+            assertEquals(Integer.valueOf(3), RedisDatabaseContextPropagation.supplyAsync(
+                    RedisDatabaseThreadLocalHelper::get, worker).get(5, TimeUnit.SECONDS));
+            int[] seen = new int[1];
+            RedisDatabaseContextPropagation.runAsync(() -> seen[0] = RedisDatabaseThreadLocalHelper.current(), worker)
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(3, seen[0]);
+            Supplier<Integer> supplier = RedisDatabaseContextPropagation.wrapSupplier(RedisDatabaseThreadLocalHelper::get);
+            assertEquals(Integer.valueOf(3), worker.submit(supplier::get).get());
+        }
+        assertEquals(RESIDUAL, workerDatabase());
+    }
+
+    @Test
+    public void wrappedExecutorServiceCapturesAtSubmission() throws Exception {
+        ExecutorService wrapped = RedisDatabaseContextPropagation.wrap(worker);
+        assertSame(wrapped, RedisDatabaseContextPropagation.wrap(wrapped));
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(4)) {
+            Callable<Integer> current = RedisDatabaseThreadLocalHelper::current;
+            assertEquals(Integer.valueOf(4), wrapped.submit(current).get());
+            List<Future<Integer>> futures = wrapped.invokeAll(Arrays.asList(current, current));
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(4), future.get());
+            }
+        }
+        assertEquals(Integer.valueOf(AbstractRoutingRedisTemplate.NO_DATABASE),
+                wrapped.submit((Callable<Integer>) RedisDatabaseThreadLocalHelper::current).get());
+        assertEquals(RESIDUAL, workerDatabase());
+    }
+
+    @Test
+    public void wrappedExecutorUsesSubmittingThreadDatabase() {
+        int[] seen = new int[1];
+        Executor direct = Runnable::run;
+        Executor wrapped = RedisDatabaseContextPropagation.wrap(direct);
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(1)) {
+            wrapped.execute(() -> seen[0] = RedisDatabaseThreadLocalHelper.current());
+            assertEquals(1, RedisDatabaseThreadLocalHelper.current());
+        }
+        assertEquals(1, seen[0]);
+        assertEquals(AbstractRoutingRedisTemplate.NO_DATABASE, RedisDatabaseThreadLocalHelper.current());
+
+        new RedisDatabaseTaskDecorator().decorate(() -> seen[0] = RedisDatabaseThreadLocalHelper.current()).run();
+        assertEquals(AbstractRoutingRedisTemplate.NO_DATABASE, seen[0]);
+    }
+
+    private int workerDatabase() throws Exception {
+        return worker.submit((Callable<Integer>) RedisDatabaseThreadLocalHelper::current).get();
+    }
+}
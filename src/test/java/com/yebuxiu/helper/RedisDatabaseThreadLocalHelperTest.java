@@ -0,0 +1,174 @@
+package com.yebuxiu.helper;
+
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class RedisDatabaseThreadLocalHelperTest {
+
+    private static final int NO_DATABASE = AbstractRoutingRedisTemplate.NO_DATABASE;
+
+    @After
+    public void tearDown() {
+        RedisDatabaseThreadLocalHelper.reset(0);
+    }
+
+    @Test
+    public void nestedScopesRestoreOuterDatabase() {
+        try (DbScope outer = RedisDatabaseThreadLocalHelper.use(1)) {
+            assertEquals(1, outer.getDatabase());
+            try (DbScope inner = RedisDatabaseThreadLocalHelper.use(2)) {
+                assertEquals(2, RedisDatabaseThreadLocalHelper.current());
+                assertEquals(2, inner.getDatabase());
+            }
+            assertEquals(1, RedisDatabaseThreadLocalHelper.current());
+        }
+        assertEquals(NO_DATABASE, RedisDatabaseThreadLocalHelper.current());
+        assertNull(RedisDatabaseThreadLocalHelper.get());
+        assertNull(threadStack());
+    }
+
+    @Test
+    public void scopeCloseTruncatesUnpairedSets() {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(1)) {
+            RedisDatabaseThreadLocalHelper.set(2);
+            RedisDatabaseThreadLocalHelper.set(3);
+            try (DbScope inner = RedisDatabaseThreadLocalHelper.use(4)) {
+                RedisDatabaseThreadLocalHelper.set(5);
+                assertEquals(5, RedisDatabaseThreadLocalHelper.current());
+                assertEquals(4, inner.getDatabase());
+            }
+            assertEquals(3, RedisDatabaseThreadLocalHelper.current());
+        }
+        assertEquals(NO_DATABASE, RedisDatabaseThreadLocalHelper.current());
+        assertNull(threadStack());
+    }
+
+    @Test
+    public void scopeClosedAfterOuterCleanupDoesNotTouchNewStack() {
+        DbScope outer = RedisDatabaseThreadLocalHelper.use(1);
+        DbScope inner = RedisDatabaseThreadLocalHelper.use(2);
+        outer.close();
+        assertNull(threadStack());
+
+        try (DbScope current = RedisDatabaseThreadLocalHelper.use(3)) {
+            // 旧栈上的作用域晚于外层关闭，不能截断或移除新的栈
+            inner.close();
+            assertEquals(3, RedisDatabaseThreadLocalHelper.current());
+            assertEquals(3, current.getDatabase());
+        }
+        assertNull(threadStack());
+    }
+
+    @Test
+    public void scopesAreReusedPerDepth() {
+        try (DbScope outer = RedisDatabaseThreadLocalHelper.use(1)) {
+            DbScope nested = RedisDatabaseThreadLocalHelper.use(2);
+            nested.close();
+            try (DbScope again = RedisDatabaseThreadLocalHelper.use(3)) {
+                assertSame(nested, again);
+                assertEquals(3, again.getDatabase());
+            }
+            assertEquals(1, outer.getDatabase());
+        }
+    }
+
+    @Test
+    public void setAndClearArePaired() {
+        RedisDatabaseThreadLocalHelper.set(1);
+        RedisDatabaseThreadLocalHelper.set(2);
+        assertEquals(Integer.valueOf(2), RedisDatabaseThreadLocalHelper.get());
+        RedisDatabaseThreadLocalHelper.clear();
+        assertEquals(Integer.valueOf(1), RedisDatabaseThreadLocalHelper.get());
+        RedisDatabaseThreadLocalHelper.clear();
+        assertNull(RedisDatabaseThreadLocalHelper.get());
+        assertNull(threadStack());
+        // 多余的clear不会出错，也不会创建栈
+        RedisDatabaseThreadLocalHelper.clear();
+        assertNull(threadStack());
+    }
+
+    @Test
+    public void readingDoesNotCreateStack() {
+        assertEquals(NO_DATABASE, RedisDatabaseThreadLocalHelper.current());
+        assertSame(RedisDatabaseThreadLocalHelper.capture(), RedisDatabaseThreadLocalHelper.capture());
+        assertNull(threadStack());
+    }
+
+    @Test
+    public void restoreAndResetTruncateToPreviousDepth() {
+        RedisDatabaseThreadLocalHelper.set(7);
+        int depth = RedisDatabaseThreadLocalHelper.restore(new int[]{1, 2});
+        assertEquals(2, RedisDatabaseThreadLocalHelper.current());
+        RedisDatabaseThreadLocalHelper.set(3);
+        RedisDatabaseThreadLocalHelper.reset(depth);
+        assertEquals(7, RedisDatabaseThreadLocalHelper.current());
+
+        // 空快照屏蔽线程上残留的db
+        depth = RedisDatabaseThreadLocalHelper.restore(new int[0]);
+        assertEquals(NO_DATABASE, RedisDatabaseThreadLocalHelper.current());
+        RedisDatabaseThreadLocalHelper.reset(depth);
+        assertEquals(7, RedisDatabaseThreadLocalHelper.current());
+        RedisDatabaseThreadLocalHelper.clear();
+        assertNull(threadStack());
+    }
+
+    @Test
+    public void stackGrowsAndTruncates() {
+        DbContextStack stack = new DbContextStack();
+        for (int i = 0; i < 20; i++) {
+            stack.push(i);
+        }
+        assertEquals(20, stack.depth());
+        assertEquals(19, stack.peek());
+        stack.truncate(25);
+        assertEquals(20, stack.depth());
+        stack.truncate(3);
+        assertEquals(2, stack.peek());
+        stack.truncate(-1);
+        assertEquals(0, stack.depth());
+        assertEquals(NO_DATABASE, stack.peek());
+        stack.pop();
+        assertEquals(0, stack.depth());
+    }
+
+    @Test
+    public void capturedSnapshotKeepsStackOrder() {
+        try (DbScope ignored = RedisDatabaseThreadLocalHelper.use(1)) {
+            RedisDatabaseThreadLocalHelper.set(2);
+            assertArrayEquals(new int[]{1, 2}, RedisDatabaseThreadLocalHelper.capture());
+        }
+        assertArrayEquals(new int[0], RedisDatabaseThreadLocalHelper.capture());
+    }
+
+    @Test
+    public void rejectsNegativeDatabase() {
+        try {
+            RedisDatabaseThreadLocalHelper.use(-1);
+            fail("negative database must be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertNull(threadStack());
+        }
+    }
+
+    /**
+     * @return 当前线程的上下文栈，没有时为null
+     */
+    private static Object threadStack() {
+        try {
+            Field field = RedisDatabaseThreadLocalHelper.class.getDeclaredField("THREAD_DB");
+            field.setAccessible(true);
+            return ((ThreadLocal<?>) field.get(null)).get();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.yebuxiu.helper;
+
+import com.yebuxiu.stub.RedisStubServer;
+import com.yebuxiu.template.AbstractRoutingRedisTemplate;
+import com.yebuxiu.template.DynamicRedisTemplate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RedisGetCoalescerTest {
+
+    /**
+     * 创建RedisTemplate失败的db
+     */
+    private static final int UNAVAILABLE = 3;
+
+    private final RuntimeException unavailable = new IllegalStateException("database 3 is unavailable");
+
+    private RedisStubServer server;
+
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+
+    private DynamicRedisTemplate<String, String> redisTemplate;
+
+    private RedisGetCoalescer coalescer;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RedisStubServer().start();
+        for (int db = 0; db < 3; db++) {
+            server.set(db, "a", "a" + db);
+            server.set(db, "b", "b" + db);
+        }
+        redisTemplate = new DynamicRedisTemplate<String, String>(null, 16) {
+
+            @Override
+            public RedisTemplate<String, String> createRedisTemplateOnMissing(int database) {
+                if (database == UNAVAILABLE) {
+                    throw unavailable;
+                }
+                return template(database);
+            }
+        };
+        redisTemplate.setDefaultRedisTemplate(template(0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+        server.close();
+    }
+
+    @Test
+    public void coalescesGetsWithinWindowIntoOneMget() throws Exception {
+        coalescer = new RedisGetCoalescer(redisTemplate, 16, Duration.ofMillis(200), 100, 1);
+        // 先建立连接，之后db1上的命令只有合并后的MGET
+        assertEquals("a1", redisTemplate.getRedisTemplate(1).opsForValue().get("a"));
+        long before = server.getCommandCount(1);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (String key : new String[]{"a", "b", "a", "missing", "b", "a"}) {
+            futures.add(coalescer.get(1, key));
+        }
+        List<String> values = new ArrayList<>();
+        for (CompletableFuture<String> future : futures) {
+            values.add(future.get(5, TimeUnit.SECONDS));
+        }
+
+        List<String> expected = new ArrayList<>();
+        expected.add("a1");
+        expected.add("b1");
+        expected.add("a1");
+        expected.add(null);
+        expected.add("b1");
+        expected.add("a1");
+        assertEquals(expected, values);
+        assertEquals(1, server.getCommandCount(1) - before);
+        RedisGetCoalescer.Stats stats = coalescer.getStats();
+        assertEquals(1, stats.getBatches());
+        assertEquals(6, stats.getRequests());
+        assertEquals(6, stats.getMaxBatchSize());
+        assertEquals(0, stats.getFailedBatches());
+    }
+
+    @Test
+    public void batchesAreSeparatedByDatabase() throws Exception {
+        coalescer = new RedisGetCoalescer(redisTemplate, 16, Duration.ofMillis(50), 100, 2);
+        CompletableFuture<String> defaultDatabase = coalescer.get(AbstractRoutingRedisTemplate.NO_DATABASE, "a");
+        CompletableFuture<String> first = coalescer.get(1, "a");
+        CompletableFuture<String> second = coalescer.get(2, "a");
+
+        assertEquals("a0", defaultDatabase.get(5, TimeUnit.SECONDS));
+        assertEquals("a1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("a2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(3, coalescer.getStats().getBatches());
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaitingForWindow() throws Exception {
+        coalescer = new RedisGetCoalescer(redisTemplate, 16, Duration.ofMinutes(1), 3, 1);
+        List<CompletableFuture<String>> full = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            full.add(coalescer.get(2, "b"));
+        }
+        for (CompletableFuture<String> future : full) {
+            assertEquals("b2", future.get(5, TimeUnit.SECONDS));
+        }
+
+        // 没有达到maxBatchSize的批次一直等待，关闭时发送
+        CompletableFuture<String> waiting = coalescer.get(2, "a");
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        coalescer.shutdown();
+        assertEquals("a2", waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(2, coalescer.getStats().getBatches());
+    }
+
+    @Test
+    public void failureCompletesEveryRequestOfTheBatch() throws Exception {
+        coalescer = new RedisGetCoalescer(redisTemplate, 16, Duration.ofMillis(50), 100, 1);
+        List<CompletableFuture<String>> failing = new ArrayList<>();
+        for (String key : new String[]{"a", "b", "a"}) {
+            failing.add(coalescer.get(UNAVAILABLE, key));
+        }
+        CompletableFuture<String> healthy = coalescer.get(1, "b");
+
+        for (CompletableFuture<String> future : failing) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("request of a failed batch must fail");
+            } catch (ExecutionException e) {
+                assertSame(unavailable, e.getCause());
+            }
+        }
+        assertEquals("b1", healthy.get(5, TimeUnit.SECONDS));
+        RedisGetCoalescer.Stats stats = coalescer.getStats();
+        assertEquals(2, stats.getBatches());
+        assertEquals(1, stats.getFailedBatches());
+    }
+
+    @Test
+    public void rejectsDatabaseOutOfRange() {
+        coalescer = new RedisGetCoalescer(redisTemplate, 16, Duration.ofMillis(50), 100, 1);
+        for (int database : new int[]{-2, 16}) {
+            try {
+                coalescer.get(database, "a");
+                fail("database " + database + " must be rejected");
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().contains(String.valueOf(database)));
+            }
+        }
+    }
+
+    private StringRedisTemplate template(int database) {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(server.getHost(), server.getPort());
+        configuration.setDatabase(database);
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactories.add(connectionFactory);
+        return new StringRedisTemplate(connectionFactory);
+    }
+}
@@ -0,0 +1,201 @@
+package com.yebuxiu.scan;
+
+import com.yebuxiu.stub.RedisStubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RedisMigratorTest {
+
+    private static final int KEYS = 200;
+
+    private static final int BATCH_SIZE = 10;
+
+    private static final int SOURCE = 1;
+
+    private static final int TARGET = 2;
+
+    private RedisStubServer server;
+
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RedisStubServer().start();
+        // 让多个worker的页交错完成
+        server.setLatency(1, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < KEYS; i++) {
+            server.set(SOURCE, key(i), "value-" + i);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+        server.close();
+    }
+
+    @Test
+    public void checkpointOnlyCoversCompletedPrefixWithParallelWorkers() {
+        RecordingCheckpoint checkpoint = new RecordingCheckpoint();
+        AtomicBoolean delayed = new AtomicBoolean();
+        StringRedisTemplate target = new StringRedisTemplate(connectionFactory(TARGET)) {
+
+            @Override
+            public <T> T execute(RedisCallback<T> action) {
+                // 第一批RESTORE延迟完成，后面的页先完成，检查点不能越过它
+                if (delayed.compareAndSet(false, true)) {
+                    sleep(300);
+                }
+                return super.execute(action);
+            }
+        };
+        RedisMigrationProgress progress = RedisMigrator.migrate(template(SOURCE), target,
+                RedisMigrator.CROSS_NODE, RedisMigrationOptions.migrationOptions()
+                        .batchSize(BATCH_SIZE).workers(4).checkpoint(checkpoint).build());
+
+        assertTrue(progress.isFinished());
+        assertEquals(KEYS, progress.getScanned());
+        assertEquals(KEYS, progress.getMigrated());
+        assertNull(progress.getCheckpoint());
+        assertTrue(checkpoint.cleared);
+        assertEquals(Collections.emptyList(), checkpoint.violations);
+        assertFalse(checkpoint.saved.isEmpty());
+        // 页按顺序完成时每页保存一次（最后一页没有游标），有跳过说明发生了乱序完成
+        assertTrue("no page completed out of order: " + checkpoint.saved,
+                checkpoint.saved.size() < KEYS / BATCH_SIZE - 1);
+        for (int i = 1; i < checkpoint.saved.size(); i++) {
+            assertTrue("checkpoint moved backwards: " + checkpoint.saved,
+                    checkpoint.saved.get(i) > checkpoint.saved.get(i - 1));
+        }
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals("value-" + i, server.get(TARGET, key(i)));
+        }
+    }
+
+    @Test
+    public void interruptedMigrationResumesFromCheckpoint() {
+        RedisMigrationCheckpoint checkpoint = RedisMigrationCheckpoint.inMemory();
+        Thread caller = Thread.currentThread();
+        AtomicInteger pages = new AtomicInteger();
+        RedisMigrationProgress interrupted = RedisMigrator.migrate(template(SOURCE), template(TARGET),
+                RedisMigrator.CROSS_NODE, RedisMigrationOptions.migrationOptions()
+                        .batchSize(BATCH_SIZE).workers(4).checkpoint(checkpoint)
+                        .listener(progress -> {
+                            if (pages.incrementAndGet() == 3) {
+                                caller.interrupt();
+                            }
+                        }).build());
+        assertTrue(Thread.interrupted());
+        assertFalse(interrupted.isFinished());
+        assertNotNull(interrupted.getCheckpoint());
+        assertEquals(interrupted.getCheckpoint(), checkpoint.load());
+        int copied = server.dbSize(TARGET);
+        assertTrue(copied < KEYS);
+        // 返回后worker都已退出，不会再写入目标db或推进检查点
+        assertEquals(copied, server.dbSize(TARGET));
+        assertEquals(interrupted.getCheckpoint(), checkpoint.load());
+
+        RedisMigrationProgress resumed = RedisMigrator.migrate(template(SOURCE), template(TARGET),
+                RedisMigrator.CROSS_NODE, RedisMigrationOptions.migrationOptions()
+                        .batchSize(BATCH_SIZE).workers(4).checkpoint(checkpoint).build());
+        assertTrue(resumed.isFinished());
+        assertTrue(resumed.getScanned() < KEYS);
+        assertNull(checkpoint.load());
+        assertEquals(KEYS, server.dbSize(TARGET));
+    }
+
+    @Test
+    public void moveWithinNodeRemovesSourceKeys() {
+        server.set(TARGET, key(0), "existing");
+        RedisMigrationProgress progress = RedisMigrator.migrate(template(SOURCE), template(TARGET), TARGET,
+                RedisMigrationOptions.migrationOptions().mode(RedisMigrationMode.MOVE).replace(false)
+                        .batchSize(BATCH_SIZE).workers(3).build());
+
+        assertTrue(progress.isFinished());
+        assertEquals(KEYS - 1, progress.getMigrated());
+        assertEquals(1, progress.getSkipped());
+        assertEquals("existing", server.get(TARGET, key(0)));
+        assertEquals("value-0", server.get(SOURCE, key(0)));
+        assertEquals(1, server.dbSize(SOURCE));
+        assertEquals(KEYS, server.dbSize(TARGET));
+    }
+
+    private StringRedisTemplate template(int database) {
+        return new StringRedisTemplate(connectionFactory(database));
+    }
+
+    private LettuceConnectionFactory connectionFactory(int database) {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(server.getHost(), server.getPort());
+        configuration.setDatabase(database);
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactories.add(connectionFactory);
+        return connectionFactory;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 替身按key顺序SCAN，游标从1开始递增，key补零后第n页恰好是第n个游标之前的key
+     */
+    private static String key(int index) {
+        return String.format("key:%03d", index);
+    }
+
+    /**
+     * 保存检查点时检查之前的页都已经写入目标db
+     */
+    private final class RecordingCheckpoint implements RedisMigrationCheckpoint {
+
+        private final List<Long> saved = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+        private volatile boolean cleared;
+
+        @Override
+        public String load() {
+            return null;
+        }
+
+        @Override
+        public void save(String cursor) {
+            long page = Long.parseLong(cursor);
+            saved.add(page);
+            for (int i = 0; i < page * BATCH_SIZE; i++) {
+                if (server.get(TARGET, key(i)) == null) {
+                    violations.add("checkpoint " + cursor + " saved before " + key(i) + " was copied");
+                }
+            }
+        }
+
+        @Override
+        public void clear() {
+            cleared = true;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.yebuxiu.serializer;
+
+import com.yebuxiu.stub.RedisStubServer;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressingRedisSerializerTest {
+
+    private final CompressingRedisSerializer<byte[]> serializer =
+            new CompressingRedisSerializer<>(RedisSerializer.byteArray(), 64, 0, null);
+
+    @Test
+    public void escapesSmallValuesStartingWithMarkers() {
+        for (byte marker : new byte[]{CompressingRedisSerializer.COMPRESSED, CompressingRedisSerializer.ESCAPED}) {
+            byte[] raw = {marker, 1, 2, 3};
+            byte[] stored = serializer.compress(raw);
+            assertEquals(CompressingRedisSerializer.ESCAPED, stored[0]);
+            assertArrayEquals(raw, Arrays.copyOfRange(stored, 1, stored.length));
+            assertArrayEquals(raw, serializer.decompress(stored));
+        }
+        byte[] single = {CompressingRedisSerializer.COMPRESSED};
+        assertArrayEquals(single, serializer.decompress(serializer.compress(single)));
+    }
+
+    @Test
+    public void escapesIncompressibleValuesStartingWithMarkers() {
+        byte[] raw = new byte[1024];
+        new Random(1).nextBytes(raw);
+        raw[0] = CompressingRedisSerializer.COMPRESSED;
+        byte[] stored = serializer.compress(raw);
+        assertEquals(raw.length + 1, stored.length);
+        assertEquals(CompressingRedisSerializer.ESCAPED, stored[0]);
+        assertArrayEquals(raw, serializer.decompress(stored));
+    }
+
+    @Test
+    public void compressesLargeValues() {
+        byte[] raw = repeated(4096);
+        byte[] stored = serializer.compress(raw);
+        assertEquals(CompressingRedisSerializer.COMPRESSED, stored[0]);
+        assertTrue(stored.length < raw.length);
+        assertArrayEquals(raw, serializer.decompress(stored));
+        assertArrayEquals(raw, serializer.deserialize(serializer.serialize(raw)));
+    }
+
+    @Test
+    public void readsValuesWrittenBeforeCompression() {
+        byte[] legacy = "{\"name\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+        assertSame(legacy, serializer.decompress(legacy));
+        assertSame(legacy, serializer.compress(legacy));
+        byte[] empty = new byte[0];
+        assertArrayEquals(empty, serializer.decompress(serializer.compress(empty)));
+        assertEquals(null, serializer.decompress(null));
+    }
+
+    @Test
+    public void rejectsTruncatedHeader() {
+        assertCorrupt(new byte[]{CompressingRedisSerializer.COMPRESSED, 0, 0});
+    }
+
+    @Test
+    public void rejectsInvalidOriginalLength() {
+        assertCorrupt(new byte[]{CompressingRedisSerializer.COMPRESSED, (byte) 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0});
+        assertCorrupt(new byte[]{CompressingRedisSerializer.COMPRESSED, (byte) 0xFF, 0, 0, 0, 0});
+    }
+
+    @Test
+    public void rejectsCorruptedBody() {
+        byte[] stored = serializer.compress(repeated(4096));
+        assertCorrupt(Arrays.copyOf(stored, stored.length - 3));
+
+        byte[] wrongLength = stored.clone();
+        // 声明的原始长度比实际多一个字节
+        wrongLength[4]++;
+        assertCorrupt(wrongLength);
+
+        byte[] garbage = new byte[64];
+        new Random(2).nextBytes(garbage);
+        System.arraycopy(stored, 0, garbage, 0, 5);
+        assertCorrupt(garbage);
+    }
+
+    @Test
+    public void roundTripsThroughRedis() throws Exception {
+        try (RedisStubServer server = new RedisStubServer().start()) {
+            LettuceConnectionFactory connectionFactory =
+                    new LettuceConnectionFactory(new RedisStandaloneConfiguration(server.getHost(), server.getPort()));
+            connectionFactory.afterPropertiesSet();
+            try {
+                RedisTemplate<String, String> template = new RedisTemplate<>();
+                template.setConnectionFactory(connectionFactory);
+                template.setKeySerializer(RedisSerializer.string());
+                template.setValueSerializer(new CompressingRedisSerializer<>(RedisSerializer.string(), 64, 0, null));
+                template.afterPropertiesSet();
+
+                String large = new String(repeated(4096), StandardCharsets.UTF_8);
+                template.opsForValue().set("large", large);
+                template.opsForValue().set("small", "small");
+                byte[] stored = template.execute((RedisCallback<byte[]>) connection ->
+                        connection.get("large".getBytes(StandardCharsets.UTF_8)));
+                assertEquals(CompressingRedisSerializer.COMPRESSED, stored[0]);
+                assertTrue(stored.length < large.length());
+                assertEquals("small", server.get(0, "small"));
+                assertEquals(large, template.opsForValue().get("large"));
+                assertEquals("small", template.opsForValue().get("small"));
+            } finally {
+                connectionFactory.destroy();
+            }
+        }
+    }
+
+    private void assertCorrupt(byte[] stored) {
+        try {
+            serializer.decompress(stored);
+            fail("corrupted value must be rejected: " + Arrays.toString(stored));
+        } catch (SerializationException expected) {
+            // 损坏的数据不能被当作正常value返回
+        }
+    }
+
+    private static byte[] repeated(int length) {
+        byte[] raw = new byte[length];
+        for (int i = 0; i < length; i++) {
+            raw[i] = (byte) ('a' + i % 7);
+        }
+        return raw;
+    }
+}
@@ -0,0 +1,119 @@
+package com.yebuxiu.template;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RedisTemplateRegistryTest {
+
+    private static final Set<Integer> NONE_PINNED = Collections.emptySet();
+
+    private final AtomicInteger created = new AtomicInteger();
+
+    private final RedisTemplateRegistry<Object> registry = new RedisTemplateRegistry<>(4);
+
+    private Object create(int database) {
+        created.incrementAndGet();
+        return "template-" + database + "-" + created.get();
+    }
+
+    @Test
+    public void evictsAfterOneFullIdleCheck() {
+        Object template = registry.getOrCreate(1, this::create);
+        // 第一次检查只记录使用时间
+        assertTrue(registry.evictIdle(0, NONE_PINNED).isEmpty());
+        List<Object> evicted = registry.evictIdle(0, NONE_PINNED);
+        assertEquals(Collections.singletonList(template), evicted);
+        assertNull(registry.get(1));
+        assertEquals(Collections.singletonMap(1, 1L), registry.getEvictionCounts());
+
+        Object recreated = registry.getOrCreate(1, this::create);
+        assertNotSame(template, recreated);
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    public void usedDatabaseIsNotEvicted() {
+        registry.getOrCreate(1, this::create);
+        registry.evictIdle(0, NONE_PINNED);
+        registry.get(1);
+        assertTrue(registry.evictIdle(0, NONE_PINNED).isEmpty());
+        assertEquals(1, registry.evictIdle(0, NONE_PINNED).size());
+    }
+
+    @Test
+    public void leasedDatabaseIsNotEvictedUntilReleased() {
+        Object template = registry.acquire(2, this::create);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(registry.evictIdle(0, NONE_PINNED).isEmpty());
+        }
+        assertSame(template, registry.get(2));
+
+        registry.release(2);
+        // release算作一次使用，空闲时间从释放时开始计算
+        assertTrue(registry.evictIdle(0, NONE_PINNED).isEmpty());
+        assertEquals(Collections.singletonList(template), registry.evictIdle(0, NONE_PINNED));
+    }
+
+    @Test
+    public void nestedLeasesKeepDatabaseUntilLastRelease() {
+        Object template = registry.acquire(2, this::create);
+        assertSame(template, registry.acquire(2, this::create));
+        registry.release(2);
+        registry.evictIdle(0, NONE_PINNED);
+        assertTrue(registry.evictIdle(0, NONE_PINNED).isEmpty());
+        registry.release(2);
+        registry.evictIdle(0, NONE_PINNED);
+        assertEquals(1, registry.evictIdle(0, NONE_PINNED).size());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void failedCreationDoesNotLeakLease() {
+        try {
+            registry.acquire(3, database -> {
+                throw new IllegalStateException("boom");
+            });
+            fail("creator failure must propagate");
+        } catch (IllegalStateException expected) {
+            assertEquals("boom", expected.getMessage());
+        }
+        try {
+            registry.release(3);
+            fail("lease must not be held after failed creation");
+        } catch (IllegalStateException expected) {
+            // 没有未释放的租用
+        }
+        registry.getOrCreate(3, this::create);
+        registry.evictIdle(0, NONE_PINNED);
+        assertEquals(1, registry.evictIdle(0, NONE_PINNED).size());
+    }
+
+    @Test
+    public void pinnedDatabaseIsNeverEvicted() {
+        registry.getOrCreate(0, this::create);
+        Set<Integer> pinned = Collections.singleton(0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(registry.evictIdle(0, pinned).isEmpty());
+        }
+        assertTrue(registry.getEvictionCounts().isEmpty());
+    }
+
+    @Test
+    public void recentlyUsedDatabaseWaitsForIdleDuration() {
+        registry.getOrCreate(1, this::create);
+        registry.evictIdle(Long.MAX_VALUE, NONE_PINNED);
+        assertTrue(registry.evictIdle(Long.MAX_VALUE, NONE_PINNED).isEmpty());
+        assertEquals(1, registry.evictIdle(0, NONE_PINNED).size());
+    }
+}